@@ -0,0 +1,238 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * This class benchmarks the Java batch engine against the scalar Java engine
+ * on the same positions. Both report positions solved per second.
+ *
+ * The positions are read from the file given by the corpus parameter, one
+ * per line, or are generated from the JIT warm-up positions by relabeling
+ * digits and swapping rows, columns, bands and stacks, which keeps each
+ * position as hard as the one it came from.
+ *
+ * <pre>
+ * ./gradlew jmh -PjmhArgs="-f 1 -wi 3 -i 5 -p corpus=positions.txt"
+ * </pre>
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = { "--enable-preview", "--add-modules", "jdk.incubator.vector" })
+public class SudokuBatchBenchmark {
+
+  /**
+   * Method reads or generates the positions.
+   *
+   * @throws IOException .
+   */
+  @Setup
+  public void doSetup() throws IOException {
+
+    List<String> positions = corpus.isEmpty() ? getGeneratedPositions() : getCorpusPositions(new File(corpus));
+
+    _positions = new String[CONSTANT_POSITION_COUNT];
+
+    for (int i = 0; i < CONSTANT_POSITION_COUNT; ++i) {
+      _positions[i] = positions.get(i % positions.size());
+    }
+
+    _batchSolver = new SudokuBatchSolver(Sudoku.CONSTANT_JAVA_SOLVE_TIMEOUT_MS);
+  }
+
+  /**
+   * Method solves the positions on the batch engine.
+   *
+   * @return array of {@link SudokuResult} objects.
+   */
+  @Benchmark
+  @OperationsPerInvocation(CONSTANT_POSITION_COUNT)
+  public SudokuResult[] doSolveBatch() {
+    return _batchSolver.getResults(_positions);
+  }
+
+  /**
+   * Method solves the positions one at a time on the scalar engine.
+   *
+   * @return array of {@link SudokuResult} objects.
+   */
+  @Benchmark
+  @OperationsPerInvocation(CONSTANT_POSITION_COUNT)
+  public SudokuResult[] doSolveScalar() {
+
+    SudokuResult[] results = new SudokuResult[_positions.length];
+
+    for (int i = 0; i < _positions.length; ++i) {
+      results[i] = SudokuSolver.getResult(_positions[i], () -> false, Sudoku.CONSTANT_JAVA_SOLVE_TIMEOUT_MS);
+    }
+
+    return results;
+  }
+
+  /**
+   * Method returns the positions of a corpus file. Blank lines and lines
+   * starting with '#' are skipped and '.' stands for 0.
+   *
+   * @param file corpus file.
+   * @return {@link List} of canonical positions.
+   * @throws IOException .
+   */
+  private static List<String> getCorpusPositions(File file) throws IOException {
+
+    List<String> positions = new ArrayList<>();
+
+    for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+
+      String text = line.trim();
+
+      if (!text.isEmpty() &&
+          !text.startsWith("#")) {
+        positions.add(SudokuBoard.getCanonicalPosition(text.replace('.', '0')));
+      }
+    }
+
+    if (positions.isEmpty()) {
+      throw new IOException("corpus " + file + " holds no positions");
+    }
+
+    return positions;
+  }
+
+  /**
+   * Method returns positions generated from the JIT warm-up positions.
+   *
+   * @return {@link List} of canonical positions.
+   */
+  private static List<String> getGeneratedPositions() {
+
+    Random random = new Random(CONSTANT_SEED);
+
+    List<String> positions = new ArrayList<>();
+
+    for (int i = 0; i < CONSTANT_POSITION_COUNT; ++i) {
+
+      int[] cells = SudokuBoard.getCellsFromPosition(
+          SudokuJitWarmup.CONSTANT_POSITIONS[i % SudokuJitWarmup.CONSTANT_POSITIONS.length]);
+
+      int[] digits = getShuffled(random, 10, 1);
+
+      int[] rows = getLineOrder(random);
+
+      int[] columns = getLineOrder(random);
+
+      boolean isTransposed = random.nextBoolean();
+
+      StringBuilder buffer = new StringBuilder();
+
+      for (int row = 0; row < 9; ++row) {
+
+        for (int column = 0; column < 9; ++column) {
+
+          int cell = isTransposed ? columns[column] * 9 + rows[row] : rows[row] * 9 + columns[column];
+
+          if (buffer.length() > 0) {
+            buffer.append(' ');
+          }
+
+          buffer.append(digits[cells[cell]]);
+        }
+      }
+
+      positions.add(buffer.toString());
+    }
+
+    return positions;
+  }
+
+  /**
+   * Method returns a random order of the 9 rows or columns keeping each
+   * within a band or stack.
+   *
+   * @param random {@link Random} object.
+   * @return int array of 9 row or column indexes.
+   */
+  private static int[] getLineOrder(Random random) {
+
+    int[] bands = getShuffled(random, 3, 0);
+
+    int[] order = new int[9];
+
+    for (int band = 0; band < 3; ++band) {
+
+      int[] lines = getShuffled(random, 3, 0);
+
+      for (int line = 0; line < 3; ++line) {
+        order[band * 3 + line] = bands[band] * 3 + lines[line];
+      }
+    }
+
+    return order;
+  }
+
+  /**
+   * Method returns the identity permutation of count values with the values
+   * from first on shuffled.
+   *
+   * @param random {@link Random} object.
+   * @param count number of values.
+   * @param first index of the first shuffled value.
+   * @return int array of count values.
+   */
+  private static int[] getShuffled(Random random, int count, int first) {
+
+    int[] values = new int[count];
+
+    for (int i = 0; i < count; ++i) {
+      values[i] = i;
+    }
+
+    for (int i = count - 1; i > first; --i) {
+
+      int j = first + random.nextInt(i - first + 1);
+
+      int value = values[i];
+
+      values[i] = values[j];
+
+      values[j] = value;
+    }
+
+    return values;
+  }
+
+  /**
+   * positions file, empty to generate positions.
+   */
+  @Param({ "" })
+  public String corpus;
+
+  /**
+   * Java batch engine.
+   */
+  private SudokuBatchSolver _batchSolver;
+
+  /**
+   * positions solved per invocation.
+   */
+  private String[] _positions;
+
+  /**
+   * Constant for the number of positions solved per invocation.
+   */
+  final public static int CONSTANT_POSITION_COUNT = 1024;
+
+  /**
+   * Constant for the seed of the generated positions.
+   */
+  final public static long CONSTANT_SEED = 1;
+}
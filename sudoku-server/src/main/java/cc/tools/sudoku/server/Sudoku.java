@@ -3,12 +3,14 @@ package cc.tools.sudoku.server;
 import java.io.*;
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Function;
 import java.net.*;
 import java.net.http.HttpRequest;
 import java.util.logging.*;
 import java.util.regex.Pattern;
-import java.lang.reflect.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.*;
 
 import javax.servlet.*;
 import javax.servlet.http.*;
@@ -41,73 +43,166 @@ public class Sudoku extends HttpServlet {
   /**
    * Constructor for {@link Sudoku}. 
    * 
-   * This method creates the JNI objects used within the class.
+   * This method loads Sudoku-Lib for in-process solving.
    */
   public Sudoku() {
     super();
 
-    try {
-      
-      System.loadLibrary("sudoku");
+    _native = new SudokuNative();
+
+    if (_native.isValid()) {
       
-      _JNIClass = Class.forName("sudoku_jlib");
+      _isValid = true;
       
-      Class<?> JNIBUfferClass = Class.forName("SWIGTYPE_p_unsigned_char");
+      logInfoMessageToServerLog("servlet loaded and set to valid");
       
-      Method method = _JNIClass.getMethod("getL_CONST_RESULT_BUFFER_SIZE");
+      return;
+    }
+
+    logSevereMessageToServerLog("init failed ");
+  }
+  
+  /**
+   * Method implements this {@link javax.servlet.http.HttpServlet} handler for Get
+   * requests. This method overrides {@link javax.servlet.http.HttpServlet} method
+   * {@link javax.servlet.http.HttpServlet#doGet(HttpServletRequest, HttpServletResponse)}.
+   * 
+   * @param request  client http call
+   *                 {@link javax.servlet.http.HttpServletRequest} object.
+   * @param response client http call
+   *                 {@link javax.servlet.http.HttpServletResponse} object.
+   * @throws IOException      .
+   * @throws ServletException .
+   */
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+          throws ServletException, IOException {
+    
+    String requestURI = request.getRequestURI();
+
+    SudokuTrace trace = SudokuTrace.doStart(requestURI);
+
+    boolean isSynthetic = isSynthetic(request);
+
+    if (isSynthetic) {
+      SudokuTrace.setSynthetic();
+    
+    } else if (_isAllocationCounted) {
+      trace.doCountAllocation();
+    }
+
+    boolean isPeer = isPeerRequest(request);
+
+    SudokuRateLimiter rateLimiter = isSynthetic || isPeer ? null : _rateLimiter;
+
+    String client = null;
+
+    double cost = 0;
+
+    try {
+
+      if (isEndpointPeer(requestURI) &&
+          !isPeer) {
+        
+        response.setStatus(HttpURLConnection.HTTP_FORBIDDEN);
+
+        logSevereMessageToServerLog("peer call refused from remote ip " + request.getRemoteAddr());
+        
+        return;
+      }
+
+      if (rateLimiter != null &&
+          (isEndpointSolution(requestURI) ||
+              isEndpointMoves(requestURI) ||
+              isEndpointRate(requestURI) ||
+              isEndpointVerify(requestURI))) {
+        
+        client = getClientKey(request);
+
+        cost = getCostEstimate(request.getParameter(CONSTANT_HTTP_FIELD_POSITION));
+
+        if (!isAdmitted(rateLimiter, client, cost, response)) {
+          
+          client = null;
           
-      _JNIBufferSize = (int) method.invoke(null);
+          return;
+        }
+      }
       
-      logInfoMessageToServerLog("JNI buffer size: " + _JNIBufferSize);
+      if (isEndpointSolution(requestURI)) {
+        
+        doEndpointSolution(request, response);
+        
+        return;
+      }
 
-      _JNINewMethod = 
-          _JNIClass.getMethod("new_uint8Array", 
-              new Class<?>[] { int.class } );
-      
-      _JNIDeleteMethod = 
-          _JNIClass.getMethod("delete_uint8Array",
-              new Class<?>[] { JNIBUfferClass });
-      
-      _JNIGetItemMethod = 
-          _JNIClass.getMethod("uint8Array_getitem", 
-              new Class<?>[] { JNIBUfferClass, int.class });
+      if (isEndpointMoves(requestURI)) {
+        
+        doEndpointMoves(request, response);
+        
+        return;
+      }
 
-      _JNIGetMovesMethod = 
-          _JNIClass.getMethod("get_sudoku_possible_moves_STUB", 
-              new Class<?>[] { String.class , JNIBUfferClass, int[].class });
+      if (isEndpointPeer(requestURI)) {
+        
+        doEndpointPeer(request, response);
+        
+        return;
+      }
 
-      _JNIGetSolutionMethod = 
-          _JNIClass.getMethod("get_sudoku_solution_STUB", 
-              new Class<?>[] { String.class , JNIBUfferClass, int[].class });
+      if (isEndpointJobs(requestURI)) {
+        
+        doEndpointJobs(request, response);
+        
+        return;
+      }
 
-      if (_JNIBufferSize > 0 && 
-          _JNINewMethod     != null &&
-          _JNIDeleteMethod  != null &&
-          _JNIGetItemMethod != null &&
-          _JNIGetMovesMethod != null && 
-          _JNIGetSolutionMethod != null) {
+      if (isEndpointRate(requestURI)) {
         
-        _isValid = true;
-      
-        logInfoMessageToServerLog("servlet loaded and set to valid");
+        doEndpointRate(request, response);
         
         return;
-      } 
+      }
 
-      logSevereMessageToServerLog("init failed ");
-      
-    } catch (Exception e) {
-      
-      System.err.println("exception: " + e.toString());      
+      if (isEndpointVerify(requestURI)) {
+        
+        doEndpointVerify(request, response);
+        
+        return;
+      }
+    
+      logSevereMessageToServerLog("bad endpoint not in { " + 
+        CONSTANT_URI_ENDPOINT_MOVES + 
+        "," + 
+        CONSTANT_URI_ENDPOINT_SOLUTION + 
+        "," + 
+        CONSTANT_URI_ENDPOINT_VERIFY + 
+        " } to remote ip " + 
+        request.getRemoteAddr());
+    
+    } finally {
       
-      logExceptionToServerLog(e);
+      setTimingHeader(response);
+
+      SudokuTrace.doStop();
+
+      if (client != null) {
+        rateLimiter.doCharge(client, getCostMeasured(trace) - cost);
+      }
+
+      if (!isSynthetic) {
+        
+        doRecordAllocation(trace);
+
+        _accessLog.doLogAccess(trace, request.getRemoteAddr(), response.getStatus());
+      }
     }
   }
   
   /**
-   * Method implements this {@link javax.servlet.http.HttpServlet} handler for Get
+   * Method implements this {@link javax.servlet.http.HttpServlet} handler for Post
    * requests. This method overrides {@link javax.servlet.http.HttpServlet} method
-   * {@link javax.servlet.http.HttpServlet#doGet(HttpServletRequest, HttpServletResponse)}.
+   * {@link javax.servlet.http.HttpServlet#doPost(HttpServletRequest, HttpServletResponse)}.
+   * Only the jobs endpoint takes Post requests.
    * 
    * @param request  client http call
    *                 {@link javax.servlet.http.HttpServletRequest} object.
@@ -116,57 +211,60 @@ public class Sudoku extends HttpServlet {
    * @throws IOException      .
    * @throws ServletException .
    */
-  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+  protected void doPost(HttpServletRequest request, HttpServletResponse response)
           throws ServletException, IOException {
     
-    StringBuilder buffer = new StringBuilder();
-
-    String clientIp = request.getRemoteAddr();
-    
     String requestURI = request.getRequestURI();
 
-    if (isEndpointSolution(requestURI)) {
-      
-      if (doEndpointSolution(request, response)) {
-      
-        logInfoMessageToServerLog("HttpGet Solution OK client " + 
-          clientIp);
-      
-      } else {
-        
-        logSevereMessageToServerLog("HttpGet Solution NOT ok client " + 
-          clientIp);
-      }
-      
-      return;
+    SudokuTrace trace = SudokuTrace.doStart(requestURI);
+
+    if (_isAllocationCounted) {
+      trace.doCountAllocation();
     }
 
-    if (isEndpointMoves(requestURI)) {
+    SudokuRateLimiter rateLimiter = _rateLimiter;
+
+    try {
       
-      if (doEndpointMoves(request, response)) {
+      if (rateLimiter != null &&
+          isEndpointJobs(requestURI) &&
+          !isAdmitted(rateLimiter, getClientKey(request), 1, response)) {
+        return;
+      }
+
+      if (isEndpointJobs(requestURI)) {
         
-        logInfoMessageToServerLog("HttpGet Moves OK client " + 
-          clientIp);
+        doEndpointJobs(request, response);
         
-      } else {
+        return;
+      }
+
+      if (isEndpointRate(requestURI)) {
         
-        logSevereMessageToServerLog("HttpGet Moves NOT ok client " + 
-          clientIp);
-      
+        doEndpointRate(request, response);
+        
+        return;
       }
+    
+      response.setStatus(HttpURLConnection.HTTP_BAD_METHOD);
+
+      logSevereMessageToServerLog("bad endpoint not in { " + 
+        CONSTANT_URI_ENDPOINT_JOBS + 
+        "," + 
+        CONSTANT_URI_ENDPOINT_RATE + 
+        " } for Post to remote ip " + 
+        request.getRemoteAddr());
+    
+    } finally {
       
-      return;
+      setTimingHeader(response);
+
+      SudokuTrace.doStop();
+
+      doRecordAllocation(trace);
+
+      _accessLog.doLogAccess(trace, request.getRemoteAddr(), response.getStatus());
     }
-  
-    buffer.append("bad endpoint not in { " + 
-      CONSTANT_URI_ENDPOINT_MOVES + 
-      "," + 
-      CONSTANT_URI_ENDPOINT_SOLUTION + 
-      " }");
-    
-    logSevereMessageToServerLog(buffer.toString() + 
-      " to remote ip " + 
-      clientIp);
   }
   
   /**
@@ -174,8 +272,10 @@ public class Sudoku extends HttpServlet {
    * method
    * {@link javax.servlet.http.HttpServlet#service(HttpServletRequest, HttpServletResponse)}.
    * This method returns code {@value HttpURLConnection#HTTP_INTERNAL_ERROR} to
-   * clients if {@link Sudoku#_isValid} is false. Otherwise it calls the
-   * overridden superclass method.
+   * clients if Sudoku-Lib failed to load, and code
+   * {@value HttpURLConnection#HTTP_UNAVAILABLE} if no worker process is live
+   * or {@link Sudoku#_isReady} is false. Otherwise it calls the overridden
+   * superclass method. The liveness and readiness endpoints are always served.
    * 
    * @param request  client {@link javax.servlet.http.HttpServletRequest} object.
    * @param response client {@link javax.servlet.http.HttpServletResponse} object.
@@ -185,8 +285,33 @@ public class Sudoku extends HttpServlet {
   protected void service(HttpServletRequest request, HttpServletResponse response)
           throws ServletException, IOException {
 
-    if (!_isValid) {
+    if (isEndpointLive(request.getRequestURI())) {
+      
+      doEndpointLive(request, response);
+      
+      return;
+    }
+
+    if (isEndpointReady(request.getRequestURI())) {
+      
+      doEndpointReady(request, response);
+      
+      return;
+    }
+
+    if (!isValid()) {
       
+      if (_workerPool != null) {
+        
+        response.setStatus(HttpURLConnection.HTTP_UNAVAILABLE);
+      
+        response.setIntHeader("Retry-After", CONSTANT_RETRY_AFTER_WARMUP);
+
+        response.getWriter().append("no live worker process.");
+        
+        return;
+      }
+
       response.setStatus(HttpURLConnection.HTTP_INTERNAL_ERROR);
       
       response.getWriter().append(logSevereMessageToServerLog("servlet invalid."));
@@ -194,1127 +319,3924 @@ public class Sudoku extends HttpServlet {
       return;
     }
     
+    if (!_isReady) {
+      
+      response.setStatus(HttpURLConnection.HTTP_UNAVAILABLE);
+      
+      response.setIntHeader("Retry-After", CONSTANT_RETRY_AFTER_WARMUP);
+
+      response.getWriter().append("servlet warming up.");
+      
+      return;
+    }
+    
     super.service(request, response);
   }
   
   /**
-   * Method calls JNI get solution function and returns result.
+   * Override of 'init' {@link javax.servlet.GenericServlet} life cycle method
+   * {@link javax.servlet.GenericServlet#init()}. This method reads the servlet
+   * configuration supplied as init parameters in web.xml and starts the cache
+   * warm-up.
    * 
-   * @param position a string contaning a sudoku position.
-   * @param movesData output buffer to hold possible moves returned by JNI call.
-   * @param diagnosticsData output buffer to hold diagnostic message data if error occurs.
-   * @param runtimeData output buffer to hold runtime data.
-   * @return boolean true, indicating success or false otherwise.
+   * @throws ServletException .
    */
-  private boolean doCallJNIMethodMoves(String position, StringBuilder movesData, 
-      StringBuilder diagnosticsData, int[] runtimeData) {
-    
-    Object buffer = doCreateJNIBuffer();    
+  public void init() throws ServletException {
     
-    int result = -1;
+    _accessLog.setSampleRate(getIntegerFromConfig(CONSTANT_CONFIG_LOG_ACCESS_SAMPLE, 
+        CONSTANT_DEFAULT_LOG_ACCESS_SAMPLE));
 
-    try {
-      
-      result = (int) _JNIGetMovesMethod.invoke(null, 
-          position, buffer, runtimeData);
-    
-    } catch (Exception e) {
-      logExceptionToServerLog(e);
-    }
+    _cacheMaxAgeMoves = getIntegerFromConfig(CONSTANT_CONFIG_CACHE_MAX_AGE_MOVES, 
+        CONSTANT_DEFAULT_CACHE_MAX_AGE);
+
+    _cacheMaxAgeSolution = getIntegerFromConfig(CONSTANT_CONFIG_CACHE_MAX_AGE_SOLUTION, 
+        CONSTANT_DEFAULT_CACHE_MAX_AGE);
     
-    if (result != 0) {
-      
-      doDeleteJNIBuffer(buffer);
+    logInfoMessageToServerLog("cache max-age moves: " + _cacheMaxAgeMoves + 
+        "s solution: " + _cacheMaxAgeSolution + "s");
+
+    _responseCache = new SudokuResponseCache(
+        getIntegerFromConfig(CONSTANT_CONFIG_CACHE_RESPONSE_MB, CONSTANT_DEFAULT_CACHE_RESPONSE_MB) * 1024L * 1024L);
+
+    long offHeapBytes = getIntegerFromConfig(CONSTANT_CONFIG_CACHE_OFFHEAP_MB, 
+        CONSTANT_DEFAULT_CACHE_OFFHEAP_MB) * 1024L * 1024L;
 
-      if (!isWithinIntegerRange(result)) {
+    if (offHeapBytes > 0) {
       
-        diagnosticsData.append("JNI call bad return code.");
+      try {
         
-        return false;      
+        _offHeapCache = new SudokuOffHeapCache(offHeapBytes, _metrics);
+
+        logInfoMessageToServerLog("off-heap cache: " + (offHeapBytes >> 20) + "MB");
+      
+      } catch (OutOfMemoryError e) {
+        logSevereMessageToServerLog("off-heap cache of " + (offHeapBytes >> 20) + 
+            "MB not allocated, running without it: " + e.getMessage());
       }
+    }
 
-      diagnosticsData.append(getResponseJNIResultText((int) result));
+    String storeDirectory = getInitParameter(CONSTANT_CONFIG_STORE_DIRECTORY);
 
-      return false;      
+    if (storeDirectory != null &&
+        !storeDirectory.isEmpty()) {
+      
+      try {
+        
+        _solutionStore = new SudokuSolutionStore(new File(storeDirectory), 
+            getIntegerFromConfig(CONSTANT_CONFIG_STORE_CAPACITY, CONSTANT_DEFAULT_STORE_CAPACITY), 
+            _metrics);
+      
+      } catch (IOException e) {
+        logExceptionToServerLog(e);
+      }
     }
-    
-    movesData.append(getStringFromJNIBuffer(buffer));
 
-    doDeleteJNIBuffer(buffer);
-    
-    return true;
-  }
-  
-  /**
-   * Method calls JNI get solution function and returns result.
-   * 
-   * @param position a string contaning a sudoku position.
-   * @param solutionData output buffer to hold solution moves returned by JNI call.
-   * @param diagnosticsData output buffer to hold diagnostic message data if error occurs.
-   * @param runtimeData output buffer to hold runtime data.
-   * @return boolean true, indicating success or false otherwise.
-   */
-  private boolean doCallJNIMethodSolution(String position, StringBuilder solutionData, 
-      StringBuilder diagnosticsData, int[] runtimeData) {
-    
-    Object buffer = doCreateJNIBuffer();
-    
-    int result = -1;
+    String peerNodes = getInitParameter(CONSTANT_CONFIG_PEER_NODES);
 
-    try {
+    if (peerNodes != null &&
+        !peerNodes.isEmpty()) {
       
-      result = (int) _JNIGetSolutionMethod.invoke(null, 
-          position, buffer, runtimeData);
-    
-    } catch (Exception e) {
-      logExceptionToServerLog(e);
+      String peerSecret = getInitParameter(CONSTANT_CONFIG_PEER_SECRET);
+
+      _peers = new SudokuPeers(Arrays.asList(peerNodes.split(",")), 
+          String.valueOf(getInitParameter(CONSTANT_CONFIG_PEER_SELF)), 
+          getIntegerFromConfig(CONSTANT_CONFIG_PEER_TIMEOUT_MS, CONSTANT_DEFAULT_PEER_TIMEOUT_MS), 
+          peerSecret != null ? peerSecret : "", 
+          _metrics);
+
+      if (!_peers.isMember()) {
+        logSevereMessageToServerLog("'" + CONSTANT_CONFIG_PEER_SELF + "' not in '" + 
+            CONSTANT_CONFIG_PEER_NODES + "', every solve will be forwarded");
+      }
+
+      logInfoMessageToServerLog("peer nodes: " + peerNodes);
     }
-    
-    if (result != 0) {
-      
-      doDeleteJNIBuffer(buffer);
 
-      if (!isWithinIntegerRange(result)) {
+    _rater = new SudokuRater(
+        getIntegerFromConfig(CONSTANT_CONFIG_RATING_THREADS, Runtime.getRuntime().availableProcessors()), 
+        getIntegerFromConfig(CONSTANT_CONFIG_RATING_CACHE_ENTRIES, CONSTANT_DEFAULT_RATING_CACHE_ENTRIES), 
+        CONSTANT_JAVA_SOLVE_TIMEOUT_MS, _metrics);
+
+    _ratingBatchMax = getIntegerFromConfig(CONSTANT_CONFIG_RATING_BATCH_MAX, CONSTANT_DEFAULT_RATING_BATCH_MAX);
+
+    _safeMoves = new SudokuSafeMoves(
+        getIntegerFromConfig(CONSTANT_CONFIG_MOVES_SAFE_THREADS, Runtime.getRuntime().availableProcessors()));
+
+    String jobsDirectory = getInitParameter(CONSTANT_CONFIG_JOBS_DIRECTORY);
+
+    if (jobsDirectory != null &&
+        !jobsDirectory.isEmpty()) {
       
-        diagnosticsData.append("JNI call bad return code.");
+      try {
         
-        return false;      
+        _jobs = new SudokuJobs(new File(jobsDirectory), 
+            getIntegerFromConfig(CONSTANT_CONFIG_JOBS_THREADS, Runtime.getRuntime().availableProcessors()), 
+            getIntegerFromConfig(CONSTANT_CONFIG_JOBS_CHECKPOINT_LINES, CONSTANT_DEFAULT_JOBS_CHECKPOINT_LINES), 
+            getIntegerFromConfig(CONSTANT_CONFIG_JOBS_INPUT_MAX_MB, CONSTANT_DEFAULT_JOBS_INPUT_MAX_MB) * 1024L * 1024L, 
+            getIntegerFromConfig(CONSTANT_CONFIG_JOBS_CLIENT_MAX, CONSTANT_DEFAULT_JOBS_CLIENT_MAX), 
+            getIntegerFromConfig(CONSTANT_CONFIG_JOBS_RETENTION_HOURS, CONSTANT_DEFAULT_JOBS_RETENTION_HOURS) * 3600000L, 
+            position -> getSolutionResult(position, true, true), 
+            getBatchSolver(), _metrics);
+
+        _jobs.doStart();
+
+        logInfoMessageToServerLog("jobs directory: " + jobsDirectory);
+      
+      } catch (IOException e) {
+        logExceptionToServerLog(e);
       }
+    }
 
-      diagnosticsData.append(getResponseJNIResultText((int) result));
+    int ratePerSecond = getIntegerFromConfig(CONSTANT_CONFIG_RATE_PER_SECOND, 0);
 
-      return false;      
+    if (ratePerSecond > 0) {
+      
+      _rateLimiter = new SudokuRateLimiter(ratePerSecond, 
+          getIntegerFromConfig(CONSTANT_CONFIG_RATE_BURST, CONSTANT_DEFAULT_RATE_BURST), 
+          getIntegerFromConfig(CONSTANT_CONFIG_RATE_CLIENTS, CONSTANT_DEFAULT_RATE_CLIENTS));
+
+      _rateCostMs = Math.max(getIntegerFromConfig(CONSTANT_CONFIG_RATE_COST_MS, CONSTANT_DEFAULT_RATE_COST_MS), 1);
+
+      String keyHeader = getInitParameter(CONSTANT_CONFIG_RATE_KEY_HEADER);
+
+      _rateKeyHeader = keyHeader != null && !keyHeader.isEmpty() ? keyHeader : null;
+
+      logInfoMessageToServerLog("rate limit per client: " + ratePerSecond + "/s");
     }
-    
-    solutionData.append(getStringFromJNIBuffer(buffer));
 
-    doDeleteJNIBuffer(buffer);
+    _isRoutingUsed = getIntegerFromConfig(CONSTANT_CONFIG_ROUTE_SINGLES, CONSTANT_DEFAULT_ROUTE_SINGLES) != 0;
 
-    return true;
-  }
-  
-  /**
-   * Method to create a JNI buffer object for use as JNI output buffer.
-   * @return Object output buffer.
-   */
-  private Object doCreateJNIBuffer() {
-    Object jniBuffer = null;
-    
-    try {
+    _isAllocationCounted = getIntegerFromConfig(CONSTANT_CONFIG_DEBUG_ALLOCATION, 0) != 0;
+
+    int workerCount = getIntegerFromConfig(CONSTANT_CONFIG_WORKER_COUNT, 0);
+
+    if (workerCount > 0) {
+      
+      _workerPool = new SudokuWorkerPool(workerCount, 
+          getIntegerFromConfig(CONSTANT_CONFIG_WORKER_PIPELINE, CONSTANT_DEFAULT_WORKER_PIPELINE), 
+          getIntegerFromConfig(CONSTANT_CONFIG_WORKER_TIMEOUT_MS, CONSTANT_DEFAULT_WORKER_TIMEOUT_MS), 
+          getInitParameter(CONSTANT_CONFIG_WORKER_CLASSPATH), 
+          _metrics);
+
+      logInfoMessageToServerLog("native worker processes: " + workerCount);
+    }
+
+    int batchWindowUs = getIntegerFromConfig(CONSTANT_CONFIG_BATCH_WINDOW_US, 0);
+
+    if (batchWindowUs > 0 &&
+        _workerPool != null) {
       
-      jniBuffer = _JNINewMethod.invoke(null, _JNIBufferSize);
+      _microBatcher = new SudokuMicroBatcher(
+          positions -> doCallWorkers(SudokuNative.CONSTANT_FUNCTION_SOLUTION, positions), 
+          batchWindowUs, 
+          getIntegerFromConfig(CONSTANT_CONFIG_BATCH_MAX, CONSTANT_DEFAULT_BATCH_MAX), 
+          _metrics);
+
+      logInfoMessageToServerLog("worker solves batched within " + batchWindowUs + "us");
     
-    } catch (Exception e) {
-      logExceptionToServerLog(e);
+    } else if (batchWindowUs > 0) {
+      logInfoMessageToServerLog("batch.window.us ignored, in-process solves run on their own threads");
+    }
+
+    int hedgePercentile = getIntegerFromConfig(CONSTANT_CONFIG_HEDGE_PERCENTILE, 0);
+
+    if (hedgePercentile > 0) {
+      
+      SudokuHedge.Engine nativeEngine = (position, isCancelled) -> 
+          doCallNative(SudokuNative.CONSTANT_FUNCTION_SOLUTION, position);
+
+      SudokuHedge.Engine javaEngine = (position, isCancelled) -> 
+          SudokuSolver.getResult(position, isCancelled, CONSTANT_JAVA_SOLVE_TIMEOUT_MS);
+
+      boolean isJavaPrimary = CONSTANT_ENGINE_JAVA.equals(getInitParameter(CONSTANT_CONFIG_HEDGE_PRIMARY));
+
+      _hedge = new SudokuHedge(isJavaPrimary ? javaEngine : nativeEngine, 
+          isJavaPrimary ? nativeEngine : javaEngine, 
+          Math.min(hedgePercentile, 100), 
+          getIntegerFromConfig(CONSTANT_CONFIG_HEDGE_DELAY_MIN_MS, CONSTANT_DEFAULT_HEDGE_DELAY_MIN_MS), 
+          getIntegerFromConfig(CONSTANT_CONFIG_HEDGE_THREADS, 
+              CONSTANT_DEFAULT_HEDGE_THREADS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors()), 
+          _metrics);
+
+      logInfoMessageToServerLog("hedged solves at p" + hedgePercentile + " primary " + 
+          (isJavaPrimary ? CONSTANT_ENGINE_JAVA : CONSTANT_ENGINE_NATIVE));
     }
 
-    return jniBuffer;
+    doStartWarmup();
   }
   
   /**
-   * Method calls JNI API to delete resources held in JNIBuffer parameter object.
-   * 
-   * @param JNIBuffer Object to be deleted.
+   * Override of 'destroy' {@link javax.servlet.GenericServlet} life cycle method
+   * {@link javax.servlet.GenericServlet#destroy()}. This method releases the
+   * resources created in {@link Sudoku#init()}.
    */
-  private void doDeleteJNIBuffer(Object JNIBuffer) {
-  
-    if (JNIBuffer == null) {
-      return;
-    }
+  public void destroy() {
     
-    try {
-      _JNIDeleteMethod.invoke(null, JNIBuffer);   
-    } catch (Exception e) {
-      logExceptionToServerLog(e);
+    if (_jitWarmup != null) {
+      _jitWarmup.doStop();
     }
-  }
 
-  /**
-   * Method implements processing for Get Moves endpoint. 
-   * 
-   * @param request  client {@link javax.servlet.http.HttpServletRequest} object.
-   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
-   * @return boolean true indicating success, false otherwise.
-   * @throws IOException      .
-   * @throws ServletException .
-   */
-  private boolean doEndpointMoves(HttpServletRequest request, HttpServletResponse response)
-          throws ServletException, IOException {
-    
-    StringBuilder diagnosticsData = new StringBuilder();    
-    StringBuilder position        = new StringBuilder();
-    StringBuilder movesData       = new StringBuilder();
-    
-    int[] runtimeData = { -1 };
+    if (_warmup != null) {
+      
+      _warmup.doStop();
+      
+      _warmup = null;
+    }
 
-    if (!getStringFromRequest(request, CONSTANT_HTTP_FIELD_POSITION, true, "", position) ||
-        !isCleanPositionString(position.toString())) {
-      response.getWriter().append(
-          logInfoMessageToServerLog("'position' parameter invalid")); 
+    if (_jobs != null) {
       
-      return false;
+      _jobs.close();
+      
+      _jobs = null;
     }
-    
-    boolean isHtml = !isXml(request);
-   
-    if (!doCallJNIMethodMoves(position.toString(), movesData, diagnosticsData, runtimeData)) {
+
+    if (_rater != null) {
       
-      if (isHtml) {      
-        response.getWriter().append(getResponseJNICallFailHtml(position.toString(), 
-            diagnosticsData.toString(), 
-            runtimeData[0]));
-        
-      } else {
+      _rater.close();
+      
+      _rater = null;
+    }
+
+    if (_safeMoves != null) {
+      
+      _safeMoves.close();
+      
+      _safeMoves = null;
+    }
+
+    if (_solutionStore != null) {
+      
+      try {
         
-        if (isPretty(request)) {
-          response.getWriter().append(getResponseJNICallFailXmlPretty(position.toString(), 
-              new String[] { movesData.toString() }, 
-              diagnosticsData.toString(), 
-              runtimeData[0]));
-          
-          response.setContentType("application/xml");
-          
-        } else {
-          response.getWriter().append(getResponseJNICallFailXml(position.toString(), 
-              new String[] { movesData.toString() }, 
-              diagnosticsData.toString(), 
-              runtimeData[0]));
-        }
+        _solutionStore.close();
+      
+      } catch (IOException e) {
+        logExceptionToServerLog(e);
       }
-           
-      return false;
+      
+      _solutionStore = null;
     }
-    
-    if (isHtml) {
-      response.getWriter().append(
-          getResponseJNICallSuccessHtml(position.toString(), 
-              getFormattedTextFromAPIXml(movesData.toString(), 1, "m", new int[] { 0, 1 }, "."), 
-              runtimeData[0]));      
-    } else {
-              
-      if (isPretty(request)) {  
-        response.getWriter().append(
-            getResponseJNICallSuccessXmlPretty(position.toString(), 
-                new String[] { movesData.toString() }, diagnosticsData.toString(), runtimeData[0]));        
-        
-        response.setContentType("application/xml");
 
-      } else {
-        response.getWriter().append(
-            getResponseJNICallSuccessXml(position.toString(), 
-                new String[] { movesData.toString() }, diagnosticsData.toString(), runtimeData[0]));
-      }
+    if (_hedge != null) {
+      
+      _hedge.close();
+      
+      _hedge = null;
     }
-    
-    response.setStatus(HttpURLConnection.HTTP_OK);
-    
-    return true;
+
+    if (_workerPool != null) {
+      
+      _workerPool.close();
+      
+      _workerPool = null;
+    }
+
+    _accessLog.close();
   }
-    
+
   /**
-   * Method implements processing for Get Solution endpoint. 
-   * 
-   * @param request  client {@link javax.servlet.http.HttpServletRequest} object.
-   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
-   * @return boolean true indicating success, false otherwise.
-   * @throws IOException      .
-   * @throws ServletException .
+   * Method starts the warm-up on a background thread. The JIT warm-up runs
+   * first, followed by the cache warm-up if a corpus is configured. The cache
+   * warm-up is skipped, with a warning, if neither the off-heap cache nor the
+   * solution store is configured, as its results would not be kept. The
+   * servlet is set ready immediately if neither warm-up runs.
    */
-  private boolean doEndpointSolution(HttpServletRequest request, HttpServletResponse response)
-          throws ServletException, IOException {
-
-    StringBuilder diagnosticsData = new StringBuilder();    
-    StringBuilder position        = new StringBuilder();    
-    StringBuilder solutionData    = new StringBuilder();
+  private void doStartWarmup() {
+    
+    String corpus = getInitParameter(CONSTANT_CONFIG_WARMUP_CORPUS);
 
-    int[] runtimeData = { -1 };
+    int jitDurationMs = getIntegerFromConfig(CONSTANT_CONFIG_WARMUP_JIT_MS, 
+        CONSTANT_DEFAULT_WARMUP_JIT_MS);
 
-    if (!getStringFromRequest(request, CONSTANT_HTTP_FIELD_POSITION, true, "", position) ||
-        !isCleanPositionString(position.toString())) {
-      response.getWriter().append(
-          logInfoMessageToServerLog("'position' not in request")); 
+    if (!_isValid &&
+        _workerPool == null) {
       
-      return false;
+      _isReady = true;
+      
+      return;
     }
 
-    boolean isHtml = !isXml(request);
-   
-    if (!doCallJNIMethodSolution(position.toString(), solutionData, 
-        diagnosticsData, runtimeData)) {
+    if (jitDurationMs > 0) {
+      _jitWarmup = new SudokuJitWarmup(this, jitDurationMs, _metrics);
+    }
+
+    if (corpus != null &&
+        !corpus.isEmpty() &&
+        _offHeapCache == null &&
+        _solutionStore == null) {
       
-      if (isHtml) {
-        
-        response.getWriter().append(getResponseJNICallFailHtml(position.toString(), 
-            diagnosticsData.toString(), 
-            runtimeData[0]));
+      logSevereMessageToServerLog("warm-up corpus " + corpus + " skipped, neither '" + 
+          CONSTANT_CONFIG_CACHE_OFFHEAP_MB + "' nor '" + CONSTANT_CONFIG_STORE_DIRECTORY + 
+          "' is configured to keep its results");
+
+    } else if (corpus != null &&
+        !corpus.isEmpty()) {
       
-      } else {
-        
-        if (isPretty(request)) {
-          response.getWriter().append(getResponseJNICallFailXmlPretty(position.toString(), 
-              new String[] { solutionData.toString() }, 
-              diagnosticsData.toString(), 
-              runtimeData[0]));
-         
-          response.setContentType("application/xml");
+      _warmup = new SudokuWarmup(new File(corpus), 
+          getIntegerFromConfig(CONSTANT_CONFIG_WARMUP_THREADS, Runtime.getRuntime().availableProcessors()), 
+          getIntegerFromConfig(CONSTANT_CONFIG_WARMUP_PERCENT, CONSTANT_DEFAULT_WARMUP_PERCENT), 
+          position -> isCleanPositionString(position) && 
+              doCallJNIMethodSolution(position, new StringBuilder(), new StringBuilder(), 
+                  new int[] { -1 }, true), 
+          () -> setReady(), 
+          _metrics);
+    }
 
-        } else {
-          response.getWriter().append(getResponseJNICallFailXml(position.toString(), 
-              new String[] { solutionData.toString() }, 
-              diagnosticsData.toString(), 
-              runtimeData[0]));
-        }        
-      }
+    if (_jitWarmup == null &&
+        _warmup == null) {
       
-      return false;
+      _isReady = true;
+      
+      return;
     }
 
-    if (isHtml) {
-      response.getWriter().append(
-          getResponseJNICallSuccessHtml(position.toString(), 
-              getFormattedTextFromAPIXml(solutionData.toString(), 9, "m", new int[] { 1 }, ""), 
-              runtimeData[0]));        
-    } else {
+    SudokuJitWarmup jitWarmup = _jitWarmup;
+
+    SudokuWarmup warmup = _warmup;
+
+    Thread thread = new Thread(() -> {
       
-      if (isPretty(request)) {        
-        response.getWriter().append(
-            getResponseJNICallSuccessXmlPretty(position.toString(), 
-                new String[] { solutionData.toString() }, 
-                  diagnosticsData.toString(), runtimeData[0]));        
-        
-        response.setContentType("application/xml");
+      if (jitWarmup != null) {
+        jitWarmup.run();
+      }
 
+      if (warmup != null) {
+        warmup.run();
       } else {
-        response.getWriter().append(
-            getResponseJNICallSuccessXml(position.toString(), 
-                new String[] { solutionData.toString() }, 
-                  diagnosticsData.toString(), runtimeData[0]));
+        setReady();
       }
-    }
-    
-    response.setStatus(HttpURLConnection.HTTP_OK);
+    }, "sudoku-warmup");
+
+    thread.setDaemon(true);
+
+    thread.start();
+  }
+
+  /**
+   * Method calls JNI get moves function and returns result. Concurrent calls
+   * for the same position share a single JNI call.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @param movesData output buffer to hold possible moves returned by JNI call.
+   * @param diagnosticsData output buffer to hold diagnostic message data if error occurs.
+   * @param runtimeData output buffer to hold runtime data.
+   * @return boolean true, indicating success or false otherwise.
+   */
+  private boolean doCallJNIMethodMoves(String position, StringBuilder movesData, 
+      StringBuilder diagnosticsData, int[] runtimeData) {
     
-    return true;
+    SudokuResult result = _singleFlight.doCall(CONSTANT_URI_ENDPOINT_MOVES + "?" + position, 
+        () -> doCallNative(SudokuNative.CONSTANT_FUNCTION_MOVES, position));
+
+    return getDataFromResult(result, movesData, diagnosticsData, runtimeData);
   }
   
   /**
-   * Method returns the boolean in field 'name' from Http request object.
-   *
-   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
-   * @param name field name for which to extract string value.
-   * @param isMandatory indicates whether the field value is mandatory. 
-   * @param fallback default fallback value to be used when non-mandatory field is empty.
-   * @param result buffer in which translated boolean value, 'y' == true, 'n' == false, is returned.
-   * @return boolean true, indicating success and false indicating fail.
+   * Method calls JNI get solution function and returns result. Positions held
+   * in the off-heap cache or solution store are answered without calling JNI. Concurrent calls
+   * for the same position share a single JNI call. In peer mode positions owned
+   * by another node are solved by their owner.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @param solutionData output buffer to hold solution moves returned by JNI call.
+   * @param diagnosticsData output buffer to hold diagnostic message data if error occurs.
+   * @param runtimeData output buffer to hold runtime data.
+   * @param isCacheUsed boolean indicating whether cached results may be used.
+   * @return boolean true, indicating success or false otherwise.
    */
-  private boolean getBooleanFromRequest(HttpServletRequest request, 
-      String name, boolean isMandatory, boolean fallback, StringBuilder result) {
+  private boolean doCallJNIMethodSolution(String position, StringBuilder solutionData, 
+      StringBuilder diagnosticsData, int[] runtimeData, boolean isCacheUsed) {
     
-    String value = request.getParameter(name);
+    SudokuResult result = getSolutionResult(position, isCacheUsed, isCacheUsed);
 
-    if (isMandatory &&
-        (value == null ||
-            value.isEmpty())) {
-      return false;
-    }
+    return getDataFromResult(result, solutionData, diagnosticsData, runtimeData);
+  }
+
+  /**
+   * Method calls JNI get solution function, adds the result to the off-heap
+   * cache and queues it to be written to the solution store.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @return {@link SudokuResult} returned by the JNI call.
+   */
+  private SudokuResult doCallJNIMethodSolutionAndStore(String position) {
     
-    if (value != null &&
-        !value.isEmpty()) {
-      
-      value = value.toLowerCase();
+    SudokuResult result = doCallSolutionEngine(position);
 
-      if (value.equals("yes")  ||
-          value.equals("y")    ||
-          value.equals("true") ||
-          value.equals("t")) {
-        
-        result.append('y');
-        
-        return true;
-      } 
+    doStoreSolution(position, result);
 
-      if (value.equals("no")    ||
-          value.equals("n")     ||
-          value.equals("false") ||
-          value.equals("f")) {
-        
-        result.append('n');
-        
-        return true;
-      } 
-    }
-    
-    if (isMandatory) {
-      return false;
-    }
-    
-    result.append(fallback ? 'y' : 'n');
-    
-    return true;
+    return result;
   }
   
   /**
-   * Method to extract formatted Board from API space delimited board paramater.
+   * Method calls Sudoku-Lib function with position and returns its result. The
+   * call is sent to the worker pool if one is configured and made in-process
+   * otherwise. A flight recorder event is emitted for the call if enabled.
    * 
-   * @param boardPositionsText text contaning board.
-   * @param countPerRow the number of elements for each row.
-   * @return String containing formatted Board.
+   * @param function function constant such as {@link SudokuNative#CONSTANT_FUNCTION_SOLUTION}.
+   * @param position a string contaning a canonical sudoku position.
+   * @return {@link SudokuResult} holding result code, output data and runtime.
    */
-  private String getFormattedTextFromBoardPosition(String boardPositionsText, int countPerRow) {
-    
-    StringBuilder buffer = new StringBuilder();
-    
-    StringTokenizer tokens = new StringTokenizer(boardPositionsText, " "); 
+  private SudokuResult doCallNative(int function, String position) {
     
-    int i = 0;
+    SudokuWorkerPool workerPool = _workerPool;
 
-    while (tokens.hasMoreTokens()) {
-      
-      buffer.append(tokens.nextToken());
+    SudokuEvents.NativeCall event = SudokuEvents.doBeginNativeCall();
 
-      if ((i + 1) % countPerRow == 0) {
-        buffer.append("<br>"); 
-      } else {
-        buffer.append(" ");
-      }
+    SudokuResult result = workerPool != null ? 
+        workerPool.doCall(function, position) : 
+        _native.doCall(function, position);
 
-      ++i;        
-    }
-    
-    return buffer.toString();
+    SudokuEvents.doEndNativeCall(event, function, position, result, workerPool != null);
+
+    return result;
   }
 
   /**
-   * Method extracts tabular plain text from Xml.
+   * Method calls Sudoku-Lib function with positions on the worker pool as one
+   * dispatch and returns their results. A flight recorder event is emitted
+   * for each position if enabled.
    * 
-   * @param responseXmlText response text xml returned by sudoku-lib.
-   * @param countPerRow the number of elements for each row.
-   * @param recordNodeName main record node.
-   * @param childIndexes children positions of main record node to be captured.
-   * @param delimiter text used to delimit child indexes output where there is more than one.
-   * @return String containing extracted text.
+   * @param function function constant such as {@link SudokuNative#CONSTANT_FUNCTION_SOLUTION}.
+   * @param positions strings contaning canonical sudoku positions.
+   * @return array of {@link SudokuResult} objects, one per position, in order.
    */
-  private String getFormattedTextFromAPIXml(String responseXmlText, int countPerRow, String recordNodeName, 
-      int[] childIndexes, String delimiter) {
-
-    try {
-      StringBuilder buffer = new StringBuilder();
-
-      DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-
-      Document doc = builder.parse(new InputSource(new StringReader(responseXmlText)));
-
-      doc.getDocumentElement().normalize();
+  private SudokuResult[] doCallWorkers(int function, String[] positions) {
+    
+    SudokuEvents.NativeCall[] events = new SudokuEvents.NativeCall[positions.length];
 
-      NodeList nodes = doc.getElementsByTagName(recordNodeName);
+    for (int i = 0; i < positions.length; ++i) {
+      events[i] = SudokuEvents.doBeginNativeCall();
+    }
 
-      for (int i = 0; i < nodes.getLength(); ++i) {
+    SudokuWorkerPool workerPool = _workerPool;
 
-        Node node = nodes.item(i);
+    SudokuResult[] results = new SudokuResult[positions.length];
 
-        for (int j = 0; j < childIndexes.length; ++j) {
-          if (j > 0) {
-            buffer.append(delimiter); 
-          }
-          
-          int childIndex = childIndexes[j];
-          
-          buffer.append(node.getChildNodes().item(childIndex).
-              getTextContent());
-        }
-        
-        if ((i + 1) % countPerRow == 0) {
-          buffer.append("<br>"); 
-        } else {
-          buffer.append(" ");
-        }
-      }
+    if (workerPool != null) {
+      results = workerPool.doCall(function, positions);
+    } else {
+      Arrays.fill(results, new SudokuResult(SudokuNative.CONSTANT_RESULT_INTERNAL_ERROR, "", -1));
+    }
 
-      return buffer.toString();
-      
-    } catch (IOException e) {
-      logExceptionToServerLog(e);
-      
-    } catch (SAXException e) {
-      logExceptionToServerLog(e);
-      
-    } catch (ParserConfigurationException e) {
-      logExceptionToServerLog(e);
-      
+    for (int i = 0; i < positions.length; ++i) {
+      SudokuEvents.doEndNativeCall(events[i], function, positions[i], results[i], true);
     }
-    
-    return "";
-  }
 
-  /**
-   * Method returns the Html footer content.
-   * 
-   * @return Html footer content.
-   */
-  private String getHtmlTagsFooter() {
-    return "</pre>";  
+    return results;
   }
 
   /**
-   * Method returns the Html header content.
+   * Method solves position on the cheapest engine able to solve it. With
+   * 'route.singles' set, positions solved by singles alone are finished by the
+   * Java solver's pre-pass. The rest go to Sudoku-Lib, hedged or micro-batched to the workers if
+   * configured. The run-time of each route is recorded in the servlet metrics.
    * 
-   * @return Html header content.
+   * @param position a string contaning a canonical sudoku position.
+   * @return {@link SudokuResult} holding result code, output data and runtime.
    */
-  private String getHtmlTagsHeader() {
-    return "<!DOCTYPE html><pre>";  
-  }
+  private SudokuResult doCallSolutionEngine(String position) {
+    
+    long start = System.nanoTime();
 
-  /**
-   * Method returns the Html newline content.
-   * 
-   * @return Html newline content.
-   */
-  private String getHtmlTagsNewline() {
-    return "<br>";  
+    String route = CONSTANT_ROUTE_SINGLES;
+
+    SudokuResult result = _isRoutingUsed ? SudokuSolver.getResultBySingles(position) : null;
+
+    if (result == null) {
+      
+      SudokuHedge hedge = _hedge;
+
+      route = hedge != null ? CONSTANT_ROUTE_HEDGED : CONSTANT_ROUTE_NATIVE;
+
+      SudokuMicroBatcher microBatcher = _microBatcher;
+
+      if (hedge != null) {
+        result = hedge.doCall(position);
+      } else if (microBatcher != null) {
+        result = microBatcher.doCall(position);
+      } else {
+        result = doCallNative(SudokuNative.CONSTANT_FUNCTION_SOLUTION, position);
+      }
+    }
+
+    _metrics.doRecord(CONSTANT_METRIC_ROUTE_PREFIX + route + ".us", (System.nanoTime() - start) / 1000);
+
+    return result;
   }
 
   /**
-   * Method returns formatted request Xml
+   * Method implements processing for the bulk jobs endpoint. A Post request
+   * submits its body, one position per line, as a job and is answered 202 with
+   * the job status and its Url in 'Location'. A Get request with the job 'id'
+   * returns the job status, and with 'results' set the results of a finished
+   * job.
    * 
-   * @param request data for Xml output.
-   * @return request Xml as a String
+   * @param request  client {@link javax.servlet.http.HttpServletRequest} object.
+   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
+   * @throws IOException .
    */
-  private String getRequestXml(String request) {
+  private void doEndpointJobs(HttpServletRequest request, HttpServletResponse response)
+          throws IOException {
     
-    StringBuilder buffer = new StringBuilder();
+    SudokuJobs jobs = _jobs;
 
-    buffer.append("<request>");
-    
-    buffer.append(request);
-    
-    buffer.append("</request>");
+    setNoCacheHeaders(response);
 
-    return buffer.toString(); 
-  }
-  
-  /**
-   * Method pretty prints the concated results of all strings in parameter os. 
-   * 
-   * @param xml xml String to be pretty-printed.
-   * @param result results buffer for pretty printed output.
-   * @return boolean true if success, false otherwise.
-   */
-  private boolean getPrettyPrintXml(String xml, StringBuilder result) {
-        
-    try {
+    if (jobs == null) {
       
-      DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+      response.setStatus(HttpURLConnection.HTTP_NOT_FOUND);
 
-      Document doc = builder.parse(new InputSource(new StringReader(xml)));
+      response.getWriter().append("jobs not configured.");
+      
+      return;
+    }
 
-      doc.getDocumentElement().normalize();
+    String id;
+
+    if ("POST".equals(request.getMethod())) {
       
-      Transformer tf = TransformerFactory.newInstance().newTransformer();
+      String client = getClientKey(request);
+
+      if (!jobs.doReserve(client)) {
+        
+        _metrics.doIncrement(CONSTANT_METRIC_RATE_LIMITED);
+
+        response.setStatus(CONSTANT_HTTP_TOO_MANY_REQUESTS);
+
+        response.getWriter().append("too many jobs queued or running.");
+        
+        return;
+      }
+
+      id = jobs.doSubmit(request.getInputStream(), client);
+
+      if (id == null) {
+        
+        response.setStatus(HttpURLConnection.HTTP_ENTITY_TOO_LARGE);
+
+        response.getWriter().append("job input too large.");
+        
+        return;
+      }
+
+      response.setStatus(HttpURLConnection.HTTP_ACCEPTED);
+
+      response.setHeader("Location", CONSTANT_URI_ENDPOINT_JOBS + "?" + CONSTANT_HTTP_FIELD_ID + "=" + id);
+
+      logInfoMessageToServerLog("job " + id + " submitted from " + request.getRemoteAddr());
+    
+    } else {
       
-      tf.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+      id = request.getParameter(CONSTANT_HTTP_FIELD_ID);
+
+      response.setStatus(HttpURLConnection.HTTP_OK);
+    }
+
+    String status = jobs.getStatus(id);
+
+    if (status == null) {
       
-      tf.setOutputProperty(OutputKeys.INDENT, "yes");
+      response.setStatus(HttpURLConnection.HTTP_NOT_FOUND);
+
+      response.getWriter().append("job not found.");
       
-      Writer out = new StringWriter();
+      return;
+    }
+
+    StringBuilder isResults = new StringBuilder();
+
+    if ("POST".equals(request.getMethod()) ||
+        !getBooleanFromRequest(request, CONSTANT_HTTP_FIELD_RESULTS, false, false, isResults) ||
+        !isResults.toString().equals("y")) {
       
-      tf.transform(new DOMSource(doc), new StreamResult(out));
+      doWriteResponse(response, status.getBytes(StandardCharsets.UTF_8), 
+          "text/plain", SudokuResponseCache.CONSTANT_ENCODING_IDENTITY);
       
-      result.append(out.toString());
+      return;
+    }
+
+    File results = jobs.getResults(id);
+
+    if (results == null) {
       
-    } catch (Exception e) {
-      logExceptionToServerLog(e);
+      response.setStatus(HttpURLConnection.HTTP_CONFLICT);
+
+      response.getWriter().append("job not done.");
       
-      return false;
+      return;
     }
-    
-    return true;
+
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_WRITE);
+
+    response.setContentType("text/plain");
+
+    response.setContentLengthLong(results.length());
+
+    setTimingHeader(response);
+
+    response.flushBuffer();
+
+    Files.copy(results.toPath(), response.getOutputStream());
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_WRITE);
   }
-  
+
   /**
-   * Method generates Html fail response string.
+   * Method implements processing for the liveness endpoint. The servlet is
+   * live once loaded. The response lists the servlet metrics.
    * 
-   * @param position game position.
-   * @param diagnosticsData diagnostic information.
-   * @param runtimeData run-time of JBI call.
-   * @return String containing formatted output.
+   * @param request  client {@link javax.servlet.http.HttpServletRequest} object.
+   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
+   * @throws IOException .
    */
-  private String getResponseJNICallFailHtml(String position, String diagnosticsData, int runtimeData) {
-    StringBuilder buffer = new StringBuilder();
-  
-    buffer.append(getResponseJNIPrefixHtml(position));
-    buffer.append(logSevereMessageToServerLog(diagnosticsData));
-    buffer.append(getHtmlTagsNewline());
-    buffer.append(getHtmlTagsNewline());
-    buffer.append(getRuntimeDataHtml(runtimeData));
-    buffer.append(getHtmlTagsFooter());
-  
-    return buffer.toString();    
+  private void doEndpointLive(HttpServletRequest request, HttpServletResponse response)
+          throws IOException {
+    
+    StringBuilder body = new StringBuilder();
+
+    body.append("status: live\n");
+
+    for (Map.Entry<String, Long> entry : _metrics.getSnapshot().entrySet()) {
+      body.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+    }
+
+    setNoCacheHeaders(response);
+
+    response.setStatus(HttpURLConnection.HTTP_OK);
+
+    doWriteResponse(response, body.toString().getBytes(StandardCharsets.UTF_8), 
+        "text/plain", SudokuResponseCache.CONSTANT_ENCODING_IDENTITY);
   }
 
   /**
-   * Method generates Xml fail response string.
+   * Method implements processing for the peer endpoint, which answers solves
+   * forwarded by other nodes in peer mode. The result is written as a
+   * {@link SudokuWorker} result frame. Calls are always solved on this node so
+   * that forwarded calls never loop.
    * 
-   * @param request game position.
-   * @param jniData jniData returned by JNI API.
-   * @param diagnosticsData diagnostic information.
-   * @param runtimeData run-time of JBI call.
-   * @return String containing formatted output.
+   * @param request  client {@link javax.servlet.http.HttpServletRequest} object.
+   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
+   * @throws IOException      .
+   * @throws ServletException .
    */
-  private String getResponseJNICallFailXml(String request, String[] jniData, String diagnosticsData, 
-      int runtimeData) {
-    
-    StringBuilder buffer = new StringBuilder();
-    
-    buffer.append(getXmlTagsHeader());
-    buffer.append(getRequestXml(request));
+  private void doEndpointPeer(HttpServletRequest request, HttpServletResponse response)
+          throws ServletException, IOException {
     
-    for (String data : jniData) {
-      buffer.append(data);      
+    StringBuilder position = new StringBuilder();
+
+    if (!getStringFromRequest(request, CONSTANT_HTTP_FIELD_POSITION, true, "", position) ||
+        !isCleanPositionString(position.toString())) {
+      
+      response.setStatus(HttpURLConnection.HTTP_BAD_REQUEST);
+      
+      return;
     }
-  
-    buffer.append(getDiagnosticsDataXml(diagnosticsData.toString()));
-    buffer.append(getXmlTagsFooter());
-    
-    return buffer.toString();
+
+    setCanonicalPosition(position);
+
+    SudokuResult result = getSolutionResult(position.toString(), true, false);
+
+    SudokuTrace.setResultCode(result.getCode());
+
+    _metrics.doIncrement(CONSTANT_METRIC_PEER_SERVED);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    SudokuWorker.doWriteResult(new DataOutputStream(bytes), 0, result);
+
+    setNoCacheHeaders(response);
+
+    response.setStatus(HttpURLConnection.HTTP_OK);
+
+    doWriteResponse(response, bytes.toByteArray(), "application/octet-stream", 
+        SudokuResponseCache.CONSTANT_ENCODING_IDENTITY);
   }
 
   /**
-   * Method generates Xml pretty-printed fail response string.
+   * Method implements processing for the difficulty rating endpoint. A Get
+   * request rates its 'position', a Post request rates its body, one position
+   * per line, in parallel. The response holds one rating line per position,
+   * in order, as returned by {@link SudokuRater#getRating(String)}.
    * 
-   * @param position game position.
-   * @param jniData jniData returned by JNI API.
-   * @param diagnosticsData diagnostic information.
-   * @param runtimeData run-time of JBI call.
-   * @return String containing formatted output or error message if xml is invalid.
+   * @param request  client {@link javax.servlet.http.HttpServletRequest} object.
+   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
+   * @throws IOException .
    */
-  private String getResponseJNICallFailXmlPretty(String position, String[] jniData, String diagnosticsData, 
-      int runtimeData) {
-    
-    StringBuilder buffer = new StringBuilder();
+  private void doEndpointRate(HttpServletRequest request, HttpServletResponse response)
+          throws IOException {
     
-    if (!getPrettyPrintXml(
-        getResponseJNICallFailXml(position, jniData, diagnosticsData, runtimeData), 
-        buffer)) {
-      return "internal error: bad xml.";
-    }      
-  
-    return buffer.toString();
-  }
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_PARSE);
 
-  /**
-   * Method generates Html success response string.
-   * 
-   * @param position game position.
-   * @param formattedTextFromAPIXml JNI API call results data in xml format.
-   * @param runtimeData run-time of JBI call.
-   * @return String containing formatted output.
-   */
-  private String getResponseJNICallSuccessHtml(String position, String formattedTextFromAPIXml, 
-      int runtimeData) {
-    
-    StringBuilder buffer = new StringBuilder();
-  
-    buffer.append(getResponseJNIPrefixHtml(position));
-    buffer.append(formattedTextFromAPIXml);    
-    buffer.append(getHtmlTagsNewline());
-    buffer.append(getRuntimeDataHtml(runtimeData));
-    buffer.append(getHtmlTagsFooter());
-  
-    return buffer.toString();    
-  }
+    SudokuTrace.setFormat(CONSTANT_FORMAT_TEXT);
 
-  /**
-   * Method generates Xml success response string.
-   * 
-   * @param request game position.
-   * @param jniData jniData returned by JNI API.
-   * @param diagnosticsData diagnostic information.
-   * @param runtimeData run-time of JBI call.
-   * @return String containing formatted output.
-   */
-  private String getResponseJNICallSuccessXml(String request, String[] jniData, String diagnosticsData, 
-      int runtimeData) {
-    
-    StringBuilder buffer = new StringBuilder();
-  
-    buffer.append(getXmlTagsHeader());
-    buffer.append(getRequestXml(request));
+    boolean isBatch = "POST".equals(request.getMethod());
+
+    List<String> positions = new ArrayList<>();
+
+    if (isBatch) {
+      
+      BufferedReader reader = new BufferedReader(
+          new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+
+      String line;
+
+      while ((line = reader.readLine()) != null) {
+        
+        if (positions.size() >= _ratingBatchMax) {
+          
+          response.setStatus(HttpURLConnection.HTTP_ENTITY_TOO_LARGE);
+
+          response.getWriter().append("rating batch too large.");
+          
+          return;
+        }
+
+        positions.add(line);
+      }
+
+      SudokuRateLimiter rateLimiter = _rateLimiter;
+
+      if (rateLimiter != null) {
+        
+        double cost = 0;
+
+        for (String position : positions) {
+          cost += getCostEstimate(position);
+        }
+
+        if (!isAdmitted(rateLimiter, getClientKey(request), cost, response)) {
+          return;
+        }
+      }
     
-    for (String data : jniData) {
-      buffer.append(data);      
+    } else {
+      
+      StringBuilder position = new StringBuilder();
+
+      if (!getStringFromRequest(request, CONSTANT_HTTP_FIELD_POSITION, true, "", position) ||
+          !isCleanPositionString(position.toString())) {
+        
+        response.setStatus(HttpURLConnection.HTTP_BAD_REQUEST);
+
+        response.getWriter().append(
+            logInfoMessageToServerLog("'position' not in request")); 
+        
+        return;
+      }
+
+      positions.add(position.toString());
     }
-    
-    buffer.append(getDiagnosticsDataXml(diagnosticsData));
-    buffer.append(getXmlTagsFooter());
-    
-    return buffer.toString();
-  }
 
-  /**
-   * Method generates Xml pretty-printed success response string.
-   * 
-   * @param position game position.
-   * @param jniData jniData returned by JNI API.
-   * @param diagnosticsData diagnostic information.
-   * @param runtimeData run-time of JBI call.
-   * @return String contaning formatted output or error message if xml is invalid.
-   */
-  private String getResponseJNICallSuccessXmlPretty(String position, String[] jniData, String diagnosticsData, 
-      int runtimeData) {
-    
-    StringBuilder buffer = new StringBuilder();
-    
-    if (!getPrettyPrintXml(
-        getResponseJNICallSuccessXml(position, jniData, diagnosticsData, runtimeData), 
-        buffer)) {
-      return "internal error: bad xml.";
-    }      
-  
-    return buffer.toString();
-  }
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_PARSE);
 
-  /**
-   * Method generates Html response prefix string.
-   *
-   * @param position String to be checked.
-   * @return string contaning generated string.
-   */
-  private String getResponseJNIPrefixHtml(String position) {
-    StringBuilder buffer = new StringBuilder();
-    
-    buffer.append(getHtmlTagsHeader());
-    buffer.append(getFormattedTextFromBoardPosition(position.toString(), 9));
-    buffer.append(getHtmlTagsNewline());
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_ENGINE);
+
+    String[] ratings;
+
+    try {
+      
+      ratings = isBatch ? _rater.getRatings(positions) : new String[] { _rater.getRating(positions.get(0)) };
     
-    return buffer.toString();
+    } catch (InterruptedException e) {
+      
+      Thread.currentThread().interrupt();
+
+      throw new InterruptedIOException("rating interrupted");
+    }
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_ENGINE);
+
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_RENDER);
+
+    StringBuilder body = new StringBuilder(ratings.length * 32);
+
+    for (String rating : ratings) {
+      body.append(rating).append('\n');
+    }
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_RENDER);
+
+    int code = isBatch ? -1 : Integer.parseInt(ratings[0].substring(0, ratings[0].indexOf(' ')));
+
+    SudokuTrace.setResultCode(code);
+
+    if (!isBatch &&
+        code != SudokuNative.CONSTANT_RESULT_TIMEOUT) {
+      setCacheHeaders(response, "", _cacheMaxAgeSolution);
+    } else {
+      setNoCacheHeaders(response);
+    }
+
+    response.setStatus(HttpURLConnection.HTTP_OK);
+
+    doWriteResponse(response, body.toString().getBytes(StandardCharsets.UTF_8), "text/plain;charset=UTF-8", 
+        SudokuResponseCache.CONSTANT_ENCODING_IDENTITY);
   }
 
   /**
-   * Method returns user response message text for the parameter jni code.
+   * Method implements processing for the readiness endpoint. The servlet is
+   * ready once it is valid, with a worker process live if solves are sent to
+   * workers, and its warm-up has reached the configured point.
+   * Code {@value HttpURLConnection#HTTP_UNAVAILABLE} is returned otherwise.
    * 
-   * @param jniCode JNI return code. Used to decide which message to log.
-   * @return response text.
+   * @param request  client {@link javax.servlet.http.HttpServletRequest} object.
+   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
+   * @throws IOException .
    */
-  private String getResponseJNIResultText(int jniCode) {
-  
-    if (jniCode < 0) {
-      return "JNI call failed."; 
-    }
+  private void doEndpointReady(HttpServletRequest request, HttpServletResponse response)
+          throws IOException {
     
-    if (jniCode == 0) {
-      return "ok.";
-    }
-  
-    switch (jniCode) {
-  
-    case 1: {
-      return "bad parameter. check query position size and elements."; 
-    }
-  
-    case 2: {
-      return "setup failed. check query position."; 
-    }
-  
-    case 3: {
-      return "solved early. solved before end of setup."; 
-    }
-  
-    case 4: {
-      return "no solution.";
-    }
-  
-    case 5: {
-      return "timeout. took too long."; 
-    }
-  
-    case 6: {
-      return "internal error. something went wrong."; 
-    }
-  
-    case 7: {
-      return "shutdown exit. server recievd shutdown command.";
-    }
-  
-    case 8: {
-      return "server busy.";
+    StringBuilder body = new StringBuilder();
+
+    SudokuWorkerPool workerPool = _workerPool;
+
+    boolean isValid = isValid();
+
+    boolean isReady = isValid && _isReady;
+
+    body.append("status: ").append(!isValid ? "invalid" : isReady ? "ready" : "warming up").append('\n');
+
+    if (workerPool != null) {
+      body.append(SudokuWorkerPool.CONSTANT_METRIC_LIVE).append(": ").append(workerPool.getLiveCount()).append('\n');
     }
-  
-    default: {
-      return "unknown error. unclassified error number returned.";
+
+    if (_jitWarmup != null) {
+      body.append(SudokuJitWarmup.CONSTANT_METRIC_DURATION).append(": ").append(_jitWarmup.getDurationMs()).append('\n');
+      body.append(SudokuJitWarmup.CONSTANT_METRIC_ROUNDS).append(": ").append(_jitWarmup.getRounds()).append('\n');
     }
-  
+
+    if (_warmup != null) {
+      body.append(SudokuWarmup.CONSTANT_METRIC_SOLVED).append(": ")
+          .append(_metrics.getValue(SudokuWarmup.CONSTANT_METRIC_SOLVED)).append('\n');
     }
+
+    setNoCacheHeaders(response);
+
+    response.setStatus(isReady ? HttpURLConnection.HTTP_OK : HttpURLConnection.HTTP_UNAVAILABLE);
+
+    doWriteResponse(response, body.toString().getBytes(StandardCharsets.UTF_8), 
+        "text/plain", SudokuResponseCache.CONSTANT_ENCODING_IDENTITY);
   }
 
   /**
-   * Method returns formatted String for the runtimeMS parameter
+   * Method implements processing for Get Moves endpoint. 
    * 
-   * @param runtimeMS runtime to be formatted.
-   * @return String containing Html output 
+   * @param request  client {@link javax.servlet.http.HttpServletRequest} object.
+   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
+   * @return boolean true indicating success, false otherwise.
+   * @throws IOException      .
+   * @throws ServletException .
    */
-  private String getRuntimeDataHtml(int runtimeMS) {
-    
-    StringBuilder buffer = new StringBuilder();
-
-    buffer.append("runtime: ");
-    
-    if (runtimeMS == -1) {
+  private boolean doEndpointMoves(HttpServletRequest request, HttpServletResponse response)
+          throws ServletException, IOException {
     
-      buffer.append("n/a");
+    StringBuilder diagnosticsData = new StringBuilder();    
+    StringBuilder position        = new StringBuilder();
+    StringBuilder movesData       = new StringBuilder();
     
-    } else {
+    int[] runtimeData = { -1 };
+
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_PARSE);
+
+    if (!getStringFromRequest(request, CONSTANT_HTTP_FIELD_POSITION, true, "", position) ||
+        !isCleanPositionString(position.toString())) {
+      response.getWriter().append(
+          logInfoMessageToServerLog("'position' parameter invalid")); 
       
-      buffer.append(
-          Integer.toString(runtimeMS));
+      return false;
+    }
+
+    setCanonicalPosition(position);
+
+    SudokuVariant[] variant = { null };
+
+    if (!getVariantFromRequest(request, variant)) {
+      response.getWriter().append(
+          logInfoMessageToServerLog("'variant' parameter invalid")); 
+      
+      return false;
     }
     
-    buffer.append("ms");
-    
-    return buffer.toString();
-  }
- 
+    boolean isHtml = !isXml(request);
+
+    boolean isSafe = isSafe(request);
+
+    String eTag = getETag(CONSTANT_URI_ENDPOINT_MOVES, position.toString(), 
+        getFormatName(request) + (isSafe ? CONSTANT_FORMAT_SAFE_SUFFIX : "") + getVariantSuffix(variant[0]));
+
+    String encoding = getAcceptedEncoding(request);
+
+    SudokuTrace.setFormat(getFormatName(request));
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_PARSE);
+
+    if (isETagMatch(request, eTag)) {
+      
+      setCacheHeaders(response, getETagForEncoding(eTag, encoding), _cacheMaxAgeMoves);
+      
+      response.setStatus(HttpURLConnection.HTTP_NOT_MODIFIED);
+      
+      return true;
+    }
+
+    boolean isCacheUsed = !isCacheBypassed(request);
+
+    SudokuResponseCache.Entry entry = isCacheUsed ? _responseCache.get(eTag) : null;
+
+    if (entry != null) {
+
+      _metrics.doIncrement(CONSTANT_METRIC_RESPONSE_CACHE_HIT);
+
+      SudokuTrace.setCacheTier(CONSTANT_CACHE_TIER_RESPONSE);
+
+      setCacheHeaders(response, getETagForEncoding(eTag, encoding), _cacheMaxAgeMoves);
+
+      doWriteResponse(response, entry.getBytes(encoding), entry.getContentType(), encoding);
+
+      return true;
+    }
+
+    _metrics.doIncrement(CONSTANT_METRIC_RESPONSE_CACHE_MISS);
+
+    StringBuilder body = new StringBuilder();
+
+    String contentType = null;
+
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_ENGINE);
+
+    boolean isSuccess = variant[0] == null ? 
+        doCallJNIMethodMoves(position.toString(), movesData, diagnosticsData, runtimeData) : 
+        getDataFromResult(getVariantMovesResult(position.toString(), variant[0]), 
+            movesData, diagnosticsData, runtimeData);
+
+    if (isSuccess &&
+        isSafe) {
+      isSuccess = doFilterSafeMoves(position.toString(), variant[0], isCacheUsed, 
+          movesData, diagnosticsData, runtimeData);
+    }
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_ENGINE);
+
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_RENDER);
+   
+    if (!isSuccess) {
+      
+      setNoCacheHeaders(response);
+
+      if (isHtml) {      
+        body.append(getResponseJNICallFailHtml(position.toString(), 
+            diagnosticsData.toString(), 
+            runtimeData[0]));
+        
+      } else {
+        
+        if (isPretty(request)) {
+          body.append(getResponseJNICallFailXmlPretty(position.toString(), 
+              new String[] { movesData.toString() }, 
+              diagnosticsData.toString(), 
+              runtimeData[0]));
+          
+          contentType = "application/xml";
+          
+        } else {
+          body.append(getResponseJNICallFailXml(position.toString(), 
+              new String[] { movesData.toString() }, 
+              diagnosticsData.toString(), 
+              runtimeData[0]));
+        }
+      }
+           
+      byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+
+      SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_RENDER);
+
+      doWriteResponse(response, bytes, contentType, SudokuResponseCache.CONSTANT_ENCODING_IDENTITY);
+
+      return false;
+    }
+    
+    if (isHtml) {
+      body.append(
+          getResponseJNICallSuccessHtml(position.toString(), 
+              getFormattedTextFromAPIXml(movesData.toString(), 1, "m", new int[] { 0, 1 }, "."), 
+              runtimeData[0]));      
+    } else {
+              
+      if (isPretty(request)) {  
+        body.append(
+            getResponseJNICallSuccessXmlPretty(position.toString(), 
+                new String[] { movesData.toString() }, diagnosticsData.toString(), runtimeData[0]));        
+        
+        contentType = "application/xml";
+
+      } else {
+        body.append(
+            getResponseJNICallSuccessXml(position.toString(), 
+                new String[] { movesData.toString() }, diagnosticsData.toString(), runtimeData[0]));
+      }
+    }
+
+    entry = isCacheUsed ? 
+        _responseCache.doPut(eTag, body.toString(), contentType) : 
+        new SudokuResponseCache.Entry(body.toString(), contentType);
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_RENDER);
+
+    setCacheHeaders(response, getETagForEncoding(eTag, encoding), _cacheMaxAgeMoves);
+
+    response.setStatus(HttpURLConnection.HTTP_OK);
+    
+    doWriteResponse(response, entry.getBytes(encoding), entry.getContentType(), encoding);
+    
+    return true;
+  }
+    
+  /**
+   * Method implements processing for Get Solution endpoint. 
+   * 
+   * @param request  client {@link javax.servlet.http.HttpServletRequest} object.
+   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
+   * @return boolean true indicating success, false otherwise.
+   * @throws IOException      .
+   * @throws ServletException .
+   */
+  private boolean doEndpointSolution(HttpServletRequest request, HttpServletResponse response)
+          throws ServletException, IOException {
+
+    StringBuilder diagnosticsData = new StringBuilder();    
+    StringBuilder position        = new StringBuilder();    
+    StringBuilder solutionData    = new StringBuilder();
+
+    int[] runtimeData = { -1 };
+
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_PARSE);
+
+    if (!getStringFromRequest(request, CONSTANT_HTTP_FIELD_POSITION, true, "", position) ||
+        !isCleanPositionString(position.toString())) {
+      response.getWriter().append(
+          logInfoMessageToServerLog("'position' not in request")); 
+      
+      return false;
+    }
+
+    setCanonicalPosition(position);
+
+    SudokuVariant[] variant = { null };
+
+    if (!getVariantFromRequest(request, variant)) {
+      response.getWriter().append(
+          logInfoMessageToServerLog("'variant' parameter invalid")); 
+      
+      return false;
+    }
+
+    boolean isHtml = !isXml(request);
+
+    String eTag = getETag(CONSTANT_URI_ENDPOINT_SOLUTION, position.toString(), 
+        getFormatName(request) + getVariantSuffix(variant[0]));
+
+    String encoding = getAcceptedEncoding(request);
+
+    SudokuTrace.setFormat(getFormatName(request));
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_PARSE);
+
+    if (isStream(request)) {
+      return doStreamSolution(response, position.toString(), variant[0], !isCacheBypassed(request));
+    }
+
+    if (isETagMatch(request, eTag)) {
+      
+      setCacheHeaders(response, getETagForEncoding(eTag, encoding), _cacheMaxAgeSolution);
+      
+      response.setStatus(HttpURLConnection.HTTP_NOT_MODIFIED);
+      
+      return true;
+    }
+
+    boolean isCacheUsed = !isCacheBypassed(request);
+
+    SudokuResponseCache.Entry entry = isCacheUsed ? _responseCache.get(eTag) : null;
+
+    if (entry != null) {
+
+      _metrics.doIncrement(CONSTANT_METRIC_RESPONSE_CACHE_HIT);
+
+      SudokuTrace.setCacheTier(CONSTANT_CACHE_TIER_RESPONSE);
+
+      setCacheHeaders(response, getETagForEncoding(eTag, encoding), _cacheMaxAgeSolution);
+
+      doWriteResponse(response, entry.getBytes(encoding), entry.getContentType(), encoding);
+
+      return true;
+    }
+
+    _metrics.doIncrement(CONSTANT_METRIC_RESPONSE_CACHE_MISS);
+
+    StringBuilder body = new StringBuilder();
+
+    String contentType = null;
+
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_ENGINE);
+
+    boolean isSuccess = variant[0] == null ? 
+        doCallJNIMethodSolution(position.toString(), solutionData, diagnosticsData, runtimeData, isCacheUsed) : 
+        getDataFromResult(getVariantSolutionResult(position.toString(), variant[0]), 
+            solutionData, diagnosticsData, runtimeData);
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_ENGINE);
+
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_RENDER);
+   
+    if (!isSuccess) {
+      
+      setNoCacheHeaders(response);
+
+      if (isHtml) {
+        
+        body.append(getResponseJNICallFailHtml(position.toString(), 
+            diagnosticsData.toString(), 
+            runtimeData[0]));
+      
+      } else {
+        
+        if (isPretty(request)) {
+          body.append(getResponseJNICallFailXmlPretty(position.toString(), 
+              new String[] { solutionData.toString() }, 
+              diagnosticsData.toString(), 
+              runtimeData[0]));
+         
+          contentType = "application/xml";
+
+        } else {
+          body.append(getResponseJNICallFailXml(position.toString(), 
+              new String[] { solutionData.toString() }, 
+              diagnosticsData.toString(), 
+              runtimeData[0]));
+        }        
+      }
+      
+      byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+
+      SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_RENDER);
+
+      doWriteResponse(response, bytes, contentType, SudokuResponseCache.CONSTANT_ENCODING_IDENTITY);
+
+      return false;
+    }
+
+    if (isHtml) {
+      body.append(
+          getResponseJNICallSuccessHtml(position.toString(), 
+              getFormattedTextFromAPIXml(solutionData.toString(), 9, "m", new int[] { 1 }, ""), 
+              runtimeData[0]));        
+    } else {
+      
+      if (isPretty(request)) {        
+        body.append(
+            getResponseJNICallSuccessXmlPretty(position.toString(), 
+                new String[] { solutionData.toString() }, 
+                  diagnosticsData.toString(), runtimeData[0]));        
+        
+        contentType = "application/xml";
+
+      } else {
+        body.append(
+            getResponseJNICallSuccessXml(position.toString(), 
+                new String[] { solutionData.toString() }, 
+                  diagnosticsData.toString(), runtimeData[0]));
+      }
+    }
+
+    entry = isCacheUsed ? 
+        _responseCache.doPut(eTag, body.toString(), contentType) : 
+        new SudokuResponseCache.Entry(body.toString(), contentType);
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_RENDER);
+
+    setCacheHeaders(response, getETagForEncoding(eTag, encoding), _cacheMaxAgeSolution);
+
+    response.setStatus(HttpURLConnection.HTTP_OK);
+    
+    doWriteResponse(response, entry.getBytes(encoding), entry.getContentType(), encoding);
+    
+    return true;
+  }
+  
+  /**
+   * Method implements processing for the board verification endpoint. The
+   * player's 'board' is checked against the 'position' it was played from for
+   * changed clues, digits repeated in a row, column or box and filled cells
+   * differing from the solution. A complete board without changed clues or
+   * conflicts is a solution and is verified without a solve. Otherwise the
+   * solution of position is taken from the result caches or solved once.
+   * 
+   * The response holds a line with the result code, the board state and the
+   * number of changed clues, conflicts and wrong cells, followed by the line
+   * returned by {@link SudokuVerifier#getMarksLine(int[])}.
+   * 
+   * @param request  client {@link javax.servlet.http.HttpServletRequest} object.
+   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
+   * @throws IOException .
+   */
+  private void doEndpointVerify(HttpServletRequest request, HttpServletResponse response)
+          throws IOException {
+    
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_PARSE);
+
+    SudokuTrace.setFormat(CONSTANT_FORMAT_TEXT);
+
+    StringBuilder position = new StringBuilder();
+    StringBuilder board    = new StringBuilder();
+
+    int[] cells = null;
+    int[] boardCells = null;
+
+    if (getStringFromRequest(request, CONSTANT_HTTP_FIELD_POSITION, true, "", position) &&
+        getStringFromRequest(request, CONSTANT_HTTP_FIELD_BOARD, true, "", board) &&
+        isCleanPositionString(position.toString()) &&
+        isCleanPositionString(board.toString())) {
+      
+      setCanonicalPosition(position);
+
+      setCanonicalPosition(board);
+
+      cells = SudokuBoard.getCellsFromPosition(position.toString());
+
+      boardCells = SudokuBoard.getCellsFromPosition(board.toString());
+    }
+
+    if (cells == null ||
+        boardCells == null) {
+      
+      response.setStatus(HttpURLConnection.HTTP_BAD_REQUEST);
+
+      response.getWriter().append(
+          logInfoMessageToServerLog("'position' or 'board' not in request")); 
+      
+      return;
+    }
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_PARSE);
+
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_ENGINE);
+
+    int[] marks = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    int clueCount = SudokuVerifier.doCheckClues(cells, boardCells, marks);
+
+    int conflictCount = SudokuVerifier.doCheckConflicts(boardCells, marks);
+
+    int wrongCount = 0;
+
+    int code = SudokuNative.CONSTANT_RESULT_OK;
+
+    boolean isSolveNeeded = false;
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+      
+      if (cells[i] == 0 &&
+          boardCells[i] != 0 &&
+          marks[i] == 0) {
+        
+        isSolveNeeded = true;
+
+        break;
+      }
+    }
+
+    boolean isSolved = clueCount == 0 && 
+        conflictCount == 0 && 
+        SudokuVerifier.isComplete(boardCells);
+
+    if (!isSolved &&
+        isSolveNeeded) {
+      
+      SudokuResult result = getSolutionResult(position.toString(), !isCacheBypassed(request), true);
+
+      int[] solution = result.isSuccess() ? SudokuBoard.getCellsFromSolutionXml(result.getData()) : null;
+
+      if (solution != null) {
+        wrongCount = SudokuVerifier.doCheckSolution(boardCells, solution, marks);
+      } else {
+        code = result.isSuccess() ? SudokuNative.CONSTANT_RESULT_INTERNAL_ERROR : result.getCode();
+      }
+    }
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_ENGINE);
+
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_RENDER);
+
+    String state;
+
+    if (isSolved) {
+      state = SudokuVerifier.CONSTANT_STATE_SOLVED;
+    } else if (clueCount + conflictCount + wrongCount > 0) {
+      state = SudokuVerifier.CONSTANT_STATE_INCORRECT;
+    } else if (code != SudokuNative.CONSTANT_RESULT_OK) {
+      state = SudokuVerifier.CONSTANT_STATE_UNKNOWN;
+    } else {
+      state = SudokuVerifier.CONSTANT_STATE_CORRECT;
+    }
+
+    StringBuilder body = new StringBuilder(128);
+
+    body.append(code)
+        .append(' ').append(state)
+        .append(' ').append(clueCount)
+        .append(' ').append(conflictCount)
+        .append(' ').append(wrongCount)
+        .append('\n')
+        .append(SudokuVerifier.getMarksLine(marks))
+        .append('\n');
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_RENDER);
+
+    SudokuTrace.setResultCode(code);
+
+    if (code == SudokuNative.CONSTANT_RESULT_OK ||
+        code == SudokuNative.CONSTANT_RESULT_NO_SOLUTION) {
+      setCacheHeaders(response, "", _cacheMaxAgeSolution);
+    } else {
+      setNoCacheHeaders(response);
+    }
+
+    response.setStatus(HttpURLConnection.HTTP_OK);
+
+    doWriteResponse(response, body.toString().getBytes(StandardCharsets.UTF_8), "text/plain;charset=UTF-8", 
+        SudokuResponseCache.CONSTANT_ENCODING_IDENTITY);
+  }
+
+  /**
+   * Method adds the solution result of position to the off-heap cache and the
+   * solution store, where configured.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @param result {@link SudokuResult} returned by the engine.
+   */
+  private void doStoreSolution(String position, SudokuResult result) {
+    
+    if (_offHeapCache != null) {
+      _offHeapCache.doPut(position, result);
+    }
+
+    if (_solutionStore != null) {
+      _solutionStore.doPutAsync(position, result);
+    }
+  }
+
+  /**
+   * Method implements the streaming mode of the solution endpoint. The
+   * response is a text/event-stream of Server-Sent Events, flushed as each
+   * event is written: a 'request' event echoing the canonical position, 
+   * 'progress' events while the Java engine searches and a final 'solution'
+   * or 'error' event. Positions not in the result caches are solved by the
+   * Java engine, which reports its progress. The solve is cancelled once an
+   * event can no longer be written, that is once the client has gone.
+   * 
+   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
+   * @param position a string contaning a canonical sudoku position.
+   * @param variant {@link SudokuVariant} or null for the classic game.
+   *                Variant solves bypass the result caches.
+   * @param isCacheUsed boolean indicating whether cached results may be used.
+   * @return boolean true indicating success, false otherwise.
+   * @throws IOException .
+   */
+  private boolean doStreamSolution(HttpServletResponse response, String position, SudokuVariant variant, 
+      boolean isCacheUsed) throws IOException {
+    
+    SudokuTrace.setFormat(CONSTANT_FORMAT_STREAM);
+
+    setNoCacheHeaders(response);
+
+    response.setStatus(HttpURLConnection.HTTP_OK);
+
+    response.setContentType("text/event-stream;charset=UTF-8");
+
+    setTimingHeader(response);
+
+    OutputStream out = response.getOutputStream();
+
+    doWriteEvent(out, CONSTANT_EVENT_REQUEST, position);
+
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_ENGINE);
+
+    SudokuResult result = isCacheUsed && variant == null ? getSolutionFromCache(position) : null;
+
+    boolean[] isClosed = { false };
+
+    if (result == null) {
+      
+      long[] next = { System.nanoTime() };
+
+      result = SudokuSolver.getResult(position, variant, () -> isClosed[0], CONSTANT_JAVA_SOLVE_TIMEOUT_MS, 
+          (fixedCount, depth, nodeCount) -> {
+            
+            long now = System.nanoTime();
+
+            if (isClosed[0] ||
+                now < next[0]) {
+              return;
+            }
+
+            next[0] = now + CONSTANT_STREAM_PROGRESS_MS * 1000000L;
+
+            try {
+              doWriteEvent(out, CONSTANT_EVENT_PROGRESS, 
+                  "fixed=" + fixedCount + " depth=" + depth + " nodes=" + nodeCount);
+            } catch (IOException e) {
+              isClosed[0] = true;
+            }
+          });
+
+      if (!isClosed[0] &&
+          variant == null) {
+        doStoreSolution(position, result);
+      }
+    }
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_ENGINE);
+
+    SudokuTrace.setResultCode(result.getCode());
+
+    if (isClosed[0]) {
+      
+      _metrics.doIncrement(CONSTANT_METRIC_STREAM_CANCELLED);
+      
+      return false;
+    }
+
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_WRITE);
+
+    if (result.isSuccess()) {
+      doWriteEvent(out, CONSTANT_EVENT_SOLUTION, result.getData());
+    } else {
+      doWriteEvent(out, CONSTANT_EVENT_ERROR, 
+          "code=" + result.getCode() + " " + getResponseJNIResultText(result.getCode()));
+    }
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_WRITE);
+
+    return result.isSuccess();
+  }
+
+  /**
+   * Method replaces movesData with the safe moves among them, those
+   * consistent with at least one solution of position. The solution of
+   * position, cached or solved, seeds the safe moves so only the others are
+   * checked.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @param variant {@link SudokuVariant} or null for the classic game.
+   * @param isCacheUsed boolean indicating whether cached results may be used.
+   * @param movesData moves Xml, replaced by the safe moves Xml.
+   * @param diagnosticsData diagnostics filled in if the checks fail.
+   * @param runtimeData the check run-time in ms is added to element 0, which
+   *                    counts as 0 if the moves run-time is not known (-1).
+   * @return boolean true indicating success, false otherwise.
+   */
+  private boolean doFilterSafeMoves(String position, SudokuVariant variant, boolean isCacheUsed, 
+      StringBuilder movesData, StringBuilder diagnosticsData, int[] runtimeData) {
+    
+    long start = System.nanoTime();
+
+    int[] cells = SudokuBoard.getCellsFromPosition(position);
+
+    int[] moves = SudokuBoard.getMovesFromXml(movesData.toString());
+
+    if (cells == null ||
+        moves == null) {
+      
+      diagnosticsData.append("moves data invalid.");
+      
+      return false;
+    }
+
+    SudokuResult solution = variant == null ? 
+        getSolutionResult(position, isCacheUsed, true) : 
+        getVariantSolutionResult(position, variant);
+
+    int[] safe;
+
+    if (solution.getCode() == SudokuNative.CONSTANT_RESULT_NO_SOLUTION) {
+      
+      safe = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+    
+    } else {
+      
+      try {
+        
+        safe = _safeMoves.getSafeMoves(cells, variant, moves, 
+            solution.isSuccess() ? SudokuBoard.getCellsFromSolutionXml(solution.getData()) : null, 
+            CONSTANT_JAVA_SOLVE_TIMEOUT_MS);
+      
+      } catch (InterruptedException e) {
+        
+        Thread.currentThread().interrupt();
+
+        safe = null;
+      }
+    }
+
+    int runtime = Math.max(runtimeData[0], 0) + (int) ((System.nanoTime() - start) / 1000000L);
+
+    if (safe == null) {
+      
+      movesData.setLength(0);
+
+      return getDataFromResult(new SudokuResult(SudokuNative.CONSTANT_RESULT_TIMEOUT, "", runtime), 
+          movesData, diagnosticsData, runtimeData);
+    }
+
+    runtimeData[0] = runtime;
+
+    movesData.setLength(0);
+
+    movesData.append(SudokuBoard.getMovesXml(safe));
+
+    return true;
+  }
+
+  /**
+   * Method records the bytes allocated by a finished request in the servlet
+   * metrics as 'alloc.&lt;endpoint&gt;.&lt;format&gt;.bytes' if allocation is
+   * counted. Requests to unknown endpoints are not recorded.
+   * 
+   * @param trace {@link SudokuTrace} of the finished request.
+   */
+  private void doRecordAllocation(SudokuTrace trace) {
+    
+    long allocatedBytes = trace.getAllocatedBytes();
+
+    String endpoint = trace.getEndpoint();
+
+    if (allocatedBytes < 0 ||
+        !(isEndpointSolution(endpoint) || 
+            isEndpointMoves(endpoint) || 
+            isEndpointPeer(endpoint) || 
+            isEndpointJobs(endpoint) || 
+            isEndpointRate(endpoint) || 
+            isEndpointVerify(endpoint))) {
+      return;
+    }
+
+    String format = trace.getFormat() != null ? trace.getFormat() : "none";
+
+    _metrics.doRecord(CONSTANT_METRIC_ALLOC_PREFIX + endpoint.substring(endpoint.lastIndexOf('/') + 1) + 
+        "." + format + ".bytes", allocatedBytes);
+  }
+
+  /**
+   * Method writes a Server-Sent Event and flushes it to the client.
+   * 
+   * @param out response {@link OutputStream}.
+   * @param name event name.
+   * @param data event data. Each line is sent as a data field.
+   * @throws IOException if the event cannot be written.
+   */
+  private void doWriteEvent(OutputStream out, String name, String data) throws IOException {
+    
+    StringBuilder buffer = new StringBuilder();
+
+    buffer.append("event: ").append(name).append('\n');
+
+    for (String line : data.split("\r?\n", -1)) {
+      buffer.append("data: ").append(line).append('\n');
+    }
+
+    buffer.append('\n');
+
+    out.write(buffer.toString().getBytes(StandardCharsets.UTF_8));
+
+    out.flush();
+  }
+
+  /**
+   * Method writes the response body with a single bulk copy to the client.
+   * 
+   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
+   * @param bytes encoded response body.
+   * @param contentType response content type or null to use the container default.
+   * @param encoding content coding of bytes.
+   * @throws IOException .
+   */
+  private void doWriteResponse(HttpServletResponse response, byte[] bytes, String contentType, 
+      String encoding) throws IOException {
+    
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_WRITE);
+
+    if (contentType != null) {
+      response.setContentType(contentType);
+    }
+
+    if (!SudokuResponseCache.CONSTANT_ENCODING_IDENTITY.equals(encoding)) {
+      response.setHeader("Content-Encoding", encoding);
+    }
+
+    response.setContentLength(bytes.length);
+
+    setTimingHeader(response);
+
+    response.getOutputStream().write(bytes);
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_WRITE);
+  }
+
+  /**
+   * Method returns the content coding to be used for the response, negotiated
+   * from the request 'Accept-Encoding' header. gzip is used if the client
+   * accepts it, otherwise the response is sent uncompressed. An explicit
+   * gzip entry overrides '*', so 'gzip;q=0, *' refuses gzip.
+   * 
+   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
+   * @return String containing the negotiated content coding.
+   */
+  private String getAcceptedEncoding(HttpServletRequest request) {
+    
+    String header = request.getHeader("Accept-Encoding");
+    
+    if (header == null ||
+        header.isEmpty()) {
+      return SudokuResponseCache.CONSTANT_ENCODING_IDENTITY;
+    }
+    
+    double gzipQuality = -1;
+
+    double anyQuality = -1;
+
+    StringTokenizer tokens = new StringTokenizer(header, ",");
+    
+    while (tokens.hasMoreTokens()) {
+      
+      String[] parts = tokens.nextToken().trim().toLowerCase().split(";");
+      
+      String coding = parts[0].trim();
+
+      double quality = 1.0;
+      
+      for (int i = 1; i < parts.length; ++i) {
+        
+        String parameter = parts[i].trim();
+
+        if (parameter.startsWith("q=")) {
+          
+          try {
+            
+            quality = Double.parseDouble(parameter.substring(2).trim());
+          
+          } catch (NumberFormatException e) {
+            quality = 0;
+          }
+        }
+      }
+
+      if (coding.equals(SudokuResponseCache.CONSTANT_ENCODING_GZIP)) {
+        gzipQuality = quality;
+      
+      } else if (coding.equals("*")) {
+        anyQuality = quality;
+      }
+    }
+    
+    return (gzipQuality >= 0 ? gzipQuality : anyQuality) > 0 ? 
+        SudokuResponseCache.CONSTANT_ENCODING_GZIP : 
+        SudokuResponseCache.CONSTANT_ENCODING_IDENTITY;
+  }
+
+  /**
+   * Method returns the boolean in field 'name' from Http request object.
+   *
+   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
+   * @param name field name for which to extract string value.
+   * @param isMandatory indicates whether the field value is mandatory. 
+   * @param fallback default fallback value to be used when non-mandatory field is empty.
+   * @param result buffer in which translated boolean value, 'y' == true, 'n' == false, is returned.
+   * @return boolean true, indicating success and false indicating fail.
+   */
+  private boolean getBooleanFromRequest(HttpServletRequest request, 
+      String name, boolean isMandatory, boolean fallback, StringBuilder result) {
+    
+    String value = request.getParameter(name);
+
+    if (isMandatory &&
+        (value == null ||
+            value.isEmpty())) {
+      return false;
+    }
+    
+    if (value != null &&
+        !value.isEmpty()) {
+      
+      value = value.toLowerCase();
+
+      if (value.equals("yes")  ||
+          value.equals("y")    ||
+          value.equals("true") ||
+          value.equals("t")) {
+        
+        result.append('y');
+        
+        return true;
+      } 
+
+      if (value.equals("no")    ||
+          value.equals("n")     ||
+          value.equals("false") ||
+          value.equals("f")) {
+        
+        result.append('n');
+        
+        return true;
+      } 
+    }
+    
+    if (isMandatory) {
+      return false;
+    }
+    
+    result.append(fallback ? 'y' : 'n');
+    
+    return true;
+  }
+  
+  /**
+   * Method returns the key a client is rate limited by, the value of the
+   * configured key header if the request has one and the client address
+   * otherwise.
+   * 
+   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
+   * @return String containing client key.
+   */
+  private String getClientKey(HttpServletRequest request) {
+    
+    String header = _rateKeyHeader;
+
+    String key = header != null ? request.getHeader(header) : null;
+
+    if (key != null &&
+        !key.isEmpty()) {
+      return "key:" + key;
+    }
+
+    return "ip:" + request.getRemoteAddr();
+  }
+
+  /**
+   * Method returns the estimated rate limit cost of solving position, in
+   * tokens. Positions with fewer clues are expected to take longer, so each
+   * clue below {@value CONSTANT_RATE_EASY_CLUES} adds
+   * {@value CONSTANT_RATE_COST_PER_CLUE} to the base cost of 1.
+   * 
+   * @param position position as sent by the client or null.
+   * @return estimated cost in tokens.
+   */
+  private double getCostEstimate(String position) {
+    
+    int[] cells = position == null ? null : 
+        SudokuBoard.getCellsFromPosition(SudokuBoard.getCanonicalPosition(position));
+
+    if (cells == null) {
+      return 1;
+    }
+
+    return 1 + Math.max(0, CONSTANT_RATE_EASY_CLUES - SudokuSolver.getClueCount(cells)) * 
+        CONSTANT_RATE_COST_PER_CLUE;
+  }
+
+  /**
+   * Method returns the measured rate limit cost of a served request, in
+   * tokens: 1 plus one token per 'rate.cost.ms' of engine time. Responses
+   * served from a cache therefore cost little.
+   * 
+   * @param trace {@link SudokuTrace} of the request.
+   * @return measured cost in tokens.
+   */
+  private double getCostMeasured(SudokuTrace trace) {
+    return 1 + trace.getPhaseNanos(SudokuTrace.CONSTANT_PHASE_ENGINE) / (_rateCostMs * 1e6);
+  }
+
+  /**
+   * Method copies the contents of result into the output buffers.
+   * 
+   * @param result {@link SudokuResult} returned by the engine.
+   * @param data output buffer to hold data returned by the engine.
+   * @param diagnosticsData output buffer to hold diagnostic message data if error occurs.
+   * @param runtimeData output buffer to hold runtime data.
+   * @return boolean true, indicating success or false otherwise.
+   */
+  private boolean getDataFromResult(SudokuResult result, StringBuilder data, 
+      StringBuilder diagnosticsData, int[] runtimeData) {
+
+    runtimeData[0] = result.getRuntime();
+
+    SudokuTrace.setResultCode(result.getCode());
+
+    if (!result.isSuccess()) {
+
+      if (!isWithinIntegerRange(result.getCode())) {
+      
+        diagnosticsData.append("JNI call bad return code.");
+        
+        return false;      
+      }
+
+      diagnosticsData.append(getResponseJNIResultText(result.getCode()));
+
+      return false;      
+    }
+
+    data.append(result.getData());
+
+    return true;
+  }
+
+  /**
+   * Method returns the quoted opaque part of the entity tag for a response.
+   * The solution or moves of a response are fully determined by endpoint,
+   * canonical position and output format, so the tag is a hash of these values
+   * and can be computed without calling the engine. The run-time held in the
+   * response depends on the tier which answered, so the tag is sent as a weak
+   * validator by {@link #setCacheHeaders(HttpServletResponse, String, int)}.
+   * 
+   * @param endpoint endpoint Uri.
+   * @param position canonical game position.
+   * @param format output format name.
+   * @return String containing quoted entity tag.
+   */
+  private String getETag(String endpoint, String position, String format) {
+    
+    StringBuilder buffer = new StringBuilder();
+    
+    try {
+      
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+      digest.update(endpoint.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) '\n');
+      digest.update(format.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) '\n');
+      digest.update(position.getBytes(StandardCharsets.UTF_8));
+
+      byte[] hash = digest.digest();
+
+      buffer.append('"');
+      
+      for (int i = 0; i < CONSTANT_ETAG_HASH_BYTES; ++i) {
+        buffer.append(String.format("%02x", hash[i]));
+      }
+
+      buffer.append('"');
+
+    } catch (NoSuchAlgorithmException e) {
+      logExceptionToServerLog(e);
+    }
+    
+    return buffer.toString();
+  }
+
+  /**
+   * Method returns the entity tag for the encoding of a response. Tags differ
+   * between content codings of the same response, so that a cache never
+   * serves one coding in place of another.
+   * 
+   * @param eTag quoted entity tag of the uncompressed response.
+   * @param encoding content coding of the response.
+   * @return String containing quoted entity tag.
+   */
+  private String getETagForEncoding(String eTag, String encoding) {
+    
+    if (eTag.isEmpty() ||
+        SudokuResponseCache.CONSTANT_ENCODING_IDENTITY.equals(encoding)) {
+      return eTag;
+    }
+    
+    return eTag.substring(0, eTag.length() - 1) + "-" + encoding + "\"";
+  }
+
+  /**
+   * Method returns the name of the output format requested in
+   * {@link javax.servlet.http.HttpServletRequest}.
+   * 
+   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
+   * @return String containing one of 'html', 'xml' or 'pretty'.
+   */
+  private String getFormatName(HttpServletRequest request) {
+    
+    if (!isXml(request)) {
+      return "html";
+    }
+    
+    return isPretty(request) ? "pretty" : "xml";
+  }
+
+  /**
+   * Method to extract formatted Board from API space delimited board paramater.
+   * 
+   * @param boardPositionsText text contaning board.
+   * @param countPerRow the number of elements for each row.
+   * @return String containing formatted Board.
+   */
+  private String getFormattedTextFromBoardPosition(String boardPositionsText, int countPerRow) {
+    
+    StringBuilder buffer = new StringBuilder();
+    
+    StringTokenizer tokens = new StringTokenizer(boardPositionsText, " "); 
+    
+    int i = 0;
+
+    while (tokens.hasMoreTokens()) {
+      
+      buffer.append(tokens.nextToken());
+
+      if ((i + 1) % countPerRow == 0) {
+        buffer.append("<br>"); 
+      } else {
+        buffer.append(" ");
+      }
+
+      ++i;        
+    }
+    
+    return buffer.toString();
+  }
+
+  /**
+   * Method extracts tabular plain text from Xml.
+   * 
+   * @param responseXmlText response text xml returned by sudoku-lib.
+   * @param countPerRow the number of elements for each row.
+   * @param recordNodeName main record node.
+   * @param childIndexes children positions of main record node to be captured.
+   * @param delimiter text used to delimit child indexes output where there is more than one.
+   * @return String containing extracted text.
+   */
+  private String getFormattedTextFromAPIXml(String responseXmlText, int countPerRow, String recordNodeName, 
+      int[] childIndexes, String delimiter) {
+
+    try {
+      StringBuilder buffer = new StringBuilder();
+
+      DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+
+      Document doc = builder.parse(new InputSource(new StringReader(responseXmlText)));
+
+      doc.getDocumentElement().normalize();
+
+      NodeList nodes = doc.getElementsByTagName(recordNodeName);
+
+      for (int i = 0; i < nodes.getLength(); ++i) {
+
+        Node node = nodes.item(i);
+
+        for (int j = 0; j < childIndexes.length; ++j) {
+          if (j > 0) {
+            buffer.append(delimiter); 
+          }
+          
+          int childIndex = childIndexes[j];
+          
+          buffer.append(node.getChildNodes().item(childIndex).
+              getTextContent());
+        }
+        
+        if ((i + 1) % countPerRow == 0) {
+          buffer.append("<br>"); 
+        } else {
+          buffer.append(" ");
+        }
+      }
+
+      return buffer.toString();
+      
+    } catch (IOException e) {
+      logExceptionToServerLog(e);
+      
+    } catch (SAXException e) {
+      logExceptionToServerLog(e);
+      
+    } catch (ParserConfigurationException e) {
+      logExceptionToServerLog(e);
+      
+    }
+    
+    return "";
+  }
+
+  /**
+   * Method returns the result for position held in the off-heap cache or the
+   * solution store. Results found in the store are added to the off-heap cache.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @return {@link SudokuResult} or null if position is not held.
+   */
+  private SudokuResult getSolutionFromCache(String position) {
+    
+    SudokuResult result = _offHeapCache == null ? null : _offHeapCache.get(position);
+
+    if (result != null) {
+      
+      SudokuTrace.setCacheTier(CONSTANT_CACHE_TIER_OFFHEAP);
+      
+      return result;
+    }
+
+    if (_solutionStore == null) {
+      return null;
+    }
+
+    result = _solutionStore.get(position);
+
+    if (result != null) {
+      
+      SudokuTrace.setCacheTier(CONSTANT_CACHE_TIER_STORE);
+      
+      if (_offHeapCache != null) {
+        _offHeapCache.doPut(position, result);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Method returns the solution result for position from the result caches,
+   * the node owning position in peer mode or the engines, in that order.
+   * Results solved here are added to the result caches. Concurrent calls for
+   * the same position share a single solve or forwarded call.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @param isCacheUsed boolean indicating whether cached results may be used.
+   * @param isForwardUsed boolean indicating whether the call may be forwarded
+   *                      to another node.
+   * @return {@link SudokuResult} holding result code, output data and runtime.
+   */
+  private SudokuResult getSolutionResult(String position, boolean isCacheUsed, 
+      boolean isForwardUsed) {
+    
+    SudokuResult result = isCacheUsed ? getSolutionFromCache(position) : null;
+
+    if (result != null) {
+      return result;
+    }
+
+    SudokuPeers peers = _peers;
+
+    if (isForwardUsed &&
+        peers != null &&
+        !peers.isOwner(position)) {
+      
+      result = _singleFlight.doCall(CONSTANT_URI_ENDPOINT_PEER + "?" + position, 
+          () -> peers.doForward(position));
+
+      if (result != null) {
+        
+        SudokuTrace.setCacheTier(CONSTANT_CACHE_TIER_PEER);
+        
+        return result;
+      }
+    }
+
+    return _singleFlight.doCall(CONSTANT_URI_ENDPOINT_SOLUTION + "?" + position, 
+        () -> doCallJNIMethodSolutionAndStore(position));
+  }
+
+  /**
+   * Method returns the variant selected by the request 'variant' and 'cages'
+   * parameters.
+   * 
+   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
+   * @param result element 0 is set to the {@link SudokuVariant} or to null
+   *               for the classic game.
+   * @return boolean true if the parameters are valid, false otherwise.
+   */
+  private boolean getVariantFromRequest(HttpServletRequest request, SudokuVariant[] result) {
+    
+    StringBuilder names = new StringBuilder();
+    StringBuilder cages = new StringBuilder();
+
+    getStringFromRequest(request, CONSTANT_HTTP_FIELD_VARIANT, false, "", names);
+
+    getStringFromRequest(request, CONSTANT_HTTP_FIELD_CAGES, false, "", cages);
+
+    try {
+      
+      result[0] = SudokuVariant.getVariant(names.toString(), cages.toString());
+    
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Method returns the moves result for position under the constraints of
+   * variant from the Java engine. Concurrent calls for the same position and
+   * variant share a single call.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @param variant {@link SudokuVariant} object.
+   * @return {@link SudokuResult} holding result code, output data and runtime.
+   */
+  private SudokuResult getVariantMovesResult(String position, SudokuVariant variant) {
+    return _singleFlight.doCall(CONSTANT_URI_ENDPOINT_MOVES + "?" + position + getVariantSuffix(variant), 
+        () -> SudokuSolver.getMovesResult(position, variant));
+  }
+
+  /**
+   * Method returns the solution result for position under the constraints of
+   * variant from the Java engine. Variant results are not held in the result
+   * caches, which are keyed by position alone. Concurrent calls for the same
+   * position and variant share a single solve.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @param variant {@link SudokuVariant} object.
+   * @return {@link SudokuResult} holding result code, output data and runtime.
+   */
+  private SudokuResult getVariantSolutionResult(String position, SudokuVariant variant) {
+    
+    return _singleFlight.doCall(CONSTANT_URI_ENDPOINT_SOLUTION + "?" + position + getVariantSuffix(variant), 
+        () -> {
+          
+          long start = System.nanoTime();
+
+          SudokuResult result = SudokuSolver.getResult(position, variant, () -> false, 
+              CONSTANT_JAVA_SOLVE_TIMEOUT_MS, null);
+
+          _metrics.doRecord(CONSTANT_METRIC_ROUTE_PREFIX + CONSTANT_ROUTE_VARIANT + ".us", 
+              (System.nanoTime() - start) / 1000);
+
+          return result;
+        });
+  }
+
+  /**
+   * Method returns the suffix distinguishing cache and call keys of variant
+   * from those of the classic game.
+   * 
+   * @param variant {@link SudokuVariant} or null for the classic game.
+   * @return String suffix, empty for the classic game.
+   */
+  private String getVariantSuffix(SudokuVariant variant) {
+    return variant == null ? "" : "-" + CONSTANT_HTTP_FIELD_VARIANT + "=" + variant.getKey();
+  }
+
+  /**
+   * Method returns the Html footer content.
+   * 
+   * @return Html footer content.
+   */
+  private String getHtmlTagsFooter() {
+    return "</pre>";  
+  }
+
+  /**
+   * Method returns the Html header content.
+   * 
+   * @return Html header content.
+   */
+  private String getHtmlTagsHeader() {
+    return "<!DOCTYPE html><pre>";  
+  }
+
+  /**
+   * Method returns the Html newline content.
+   * 
+   * @return Html newline content.
+   */
+  private String getHtmlTagsNewline() {
+    return "<br>";  
+  }
+
+  /**
+   * Method returns formatted request Xml
+   * 
+   * @param request data for Xml output.
+   * @return request Xml as a String
+   */
+  private String getRequestXml(String request) {
+    
+    StringBuilder buffer = new StringBuilder();
+
+    buffer.append("<request>");
+    
+    buffer.append(request);
+    
+    buffer.append("</request>");
+
+    return buffer.toString(); 
+  }
+  
+  /**
+   * Method pretty prints the concated results of all strings in parameter os. 
+   * 
+   * @param xml xml String to be pretty-printed.
+   * @param result results buffer for pretty printed output.
+   * @return boolean true if success, false otherwise.
+   */
+  private boolean getPrettyPrintXml(String xml, StringBuilder result) {
+        
+    try {
+      
+      DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+
+      Document doc = builder.parse(new InputSource(new StringReader(xml)));
+
+      doc.getDocumentElement().normalize();
+      
+      Transformer tf = TransformerFactory.newInstance().newTransformer();
+      
+      tf.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+      
+      tf.setOutputProperty(OutputKeys.INDENT, "yes");
+      
+      Writer out = new StringWriter();
+      
+      tf.transform(new DOMSource(doc), new StreamResult(out));
+      
+      result.append(out.toString());
+      
+    } catch (Exception e) {
+      logExceptionToServerLog(e);
+      
+      return false;
+    }
+    
+    return true;
+  }
+  
+  /**
+   * Method generates Html fail response string.
+   * 
+   * @param position game position.
+   * @param diagnosticsData diagnostic information.
+   * @param runtimeData run-time of JBI call.
+   * @return String containing formatted output.
+   */
+  private String getResponseJNICallFailHtml(String position, String diagnosticsData, int runtimeData) {
+    StringBuilder buffer = new StringBuilder();
+  
+    buffer.append(getResponseJNIPrefixHtml(position));
+    buffer.append(logSevereMessageToServerLog(diagnosticsData));
+    buffer.append(getHtmlTagsNewline());
+    buffer.append(getHtmlTagsNewline());
+    buffer.append(getRuntimeDataHtml(runtimeData));
+    buffer.append(getHtmlTagsFooter());
+  
+    return buffer.toString();    
+  }
+
+  /**
+   * Method generates Xml fail response string.
+   * 
+   * @param request game position.
+   * @param jniData jniData returned by JNI API.
+   * @param diagnosticsData diagnostic information.
+   * @param runtimeData run-time of JBI call.
+   * @return String containing formatted output.
+   */
+  private String getResponseJNICallFailXml(String request, String[] jniData, String diagnosticsData, 
+      int runtimeData) {
+    
+    StringBuilder buffer = new StringBuilder();
+    
+    buffer.append(getXmlTagsHeader());
+    buffer.append(getRequestXml(request));
+    
+    for (String data : jniData) {
+      buffer.append(data);      
+    }
+  
+    buffer.append(getDiagnosticsDataXml(diagnosticsData.toString()));
+    buffer.append(getXmlTagsFooter());
+    
+    return buffer.toString();
+  }
+
+  /**
+   * Method generates Xml pretty-printed fail response string.
+   * 
+   * @param position game position.
+   * @param jniData jniData returned by JNI API.
+   * @param diagnosticsData diagnostic information.
+   * @param runtimeData run-time of JBI call.
+   * @return String containing formatted output or error message if xml is invalid.
+   */
+  private String getResponseJNICallFailXmlPretty(String position, String[] jniData, String diagnosticsData, 
+      int runtimeData) {
+    
+    StringBuilder buffer = new StringBuilder();
+    
+    if (!getPrettyPrintXml(
+        getResponseJNICallFailXml(position, jniData, diagnosticsData, runtimeData), 
+        buffer)) {
+      return "internal error: bad xml.";
+    }      
+  
+    return buffer.toString();
+  }
+
+  /**
+   * Method generates Html success response string.
+   * 
+   * @param position game position.
+   * @param formattedTextFromAPIXml JNI API call results data in xml format.
+   * @param runtimeData run-time of JBI call.
+   * @return String containing formatted output.
+   */
+  private String getResponseJNICallSuccessHtml(String position, String formattedTextFromAPIXml, 
+      int runtimeData) {
+    
+    StringBuilder buffer = new StringBuilder();
+  
+    buffer.append(getResponseJNIPrefixHtml(position));
+    buffer.append(formattedTextFromAPIXml);    
+    buffer.append(getHtmlTagsNewline());
+    buffer.append(getRuntimeDataHtml(runtimeData));
+    buffer.append(getHtmlTagsFooter());
+  
+    return buffer.toString();    
+  }
+
+  /**
+   * Method generates Xml success response string.
+   * 
+   * @param request game position.
+   * @param jniData jniData returned by JNI API.
+   * @param diagnosticsData diagnostic information.
+   * @param runtimeData run-time of JBI call.
+   * @return String containing formatted output.
+   */
+  private String getResponseJNICallSuccessXml(String request, String[] jniData, String diagnosticsData, 
+      int runtimeData) {
+    
+    StringBuilder buffer = new StringBuilder();
+  
+    buffer.append(getXmlTagsHeader());
+    buffer.append(getRequestXml(request));
+    
+    for (String data : jniData) {
+      buffer.append(data);      
+    }
+    
+    buffer.append(getDiagnosticsDataXml(diagnosticsData));
+    buffer.append(getXmlTagsFooter());
+    
+    return buffer.toString();
+  }
+
+  /**
+   * Method generates Xml pretty-printed success response string.
+   * 
+   * @param position game position.
+   * @param jniData jniData returned by JNI API.
+   * @param diagnosticsData diagnostic information.
+   * @param runtimeData run-time of JBI call.
+   * @return String contaning formatted output or error message if xml is invalid.
+   */
+  private String getResponseJNICallSuccessXmlPretty(String position, String[] jniData, String diagnosticsData, 
+      int runtimeData) {
+    
+    StringBuilder buffer = new StringBuilder();
+    
+    if (!getPrettyPrintXml(
+        getResponseJNICallSuccessXml(position, jniData, diagnosticsData, runtimeData), 
+        buffer)) {
+      return "internal error: bad xml.";
+    }      
+  
+    return buffer.toString();
+  }
+
+  /**
+   * Method generates Html response prefix string.
+   *
+   * @param position String to be checked.
+   * @return string contaning generated string.
+   */
+  private String getResponseJNIPrefixHtml(String position) {
+    StringBuilder buffer = new StringBuilder();
+    
+    buffer.append(getHtmlTagsHeader());
+    buffer.append(getFormattedTextFromBoardPosition(position.toString(), 9));
+    buffer.append(getHtmlTagsNewline());
+    
+    return buffer.toString();
+  }
+
+  /**
+   * Method returns user response message text for the parameter jni code.
+   * 
+   * @param jniCode JNI return code. Used to decide which message to log.
+   * @return response text.
+   */
+  static String getResponseJNIResultText(int jniCode) {
+  
+    if (jniCode < 0) {
+      return "JNI call failed."; 
+    }
+    
+    if (jniCode == 0) {
+      return "ok.";
+    }
+  
+    switch (jniCode) {
+  
+    case 1: {
+      return "bad parameter. check query position size and elements."; 
+    }
+  
+    case 2: {
+      return "setup failed. check query position."; 
+    }
+  
+    case 3: {
+      return "solved early. solved before end of setup."; 
+    }
+  
+    case 4: {
+      return "no solution.";
+    }
+  
+    case 5: {
+      return "timeout. took too long."; 
+    }
+  
+    case 6: {
+      return "internal error. something went wrong."; 
+    }
+  
+    case 7: {
+      return "shutdown exit. server recievd shutdown command.";
+    }
+  
+    case 8: {
+      return "server busy.";
+    }
+  
+    default: {
+      return "unknown error. unclassified error number returned.";
+    }
+  
+    }
+  }
+
+  /**
+   * Method returns formatted String for the runtimeMS parameter
+   * 
+   * @param runtimeMS runtime to be formatted.
+   * @return String containing Html output 
+   */
+  private String getRuntimeDataHtml(int runtimeMS) {
+    
+    StringBuilder buffer = new StringBuilder();
+
+    buffer.append("runtime: ");
+    
+    if (runtimeMS == -1) {
+    
+      buffer.append("n/a");
+    
+    } else {
+      
+      buffer.append(
+          Integer.toString(runtimeMS));
+    }
+    
+    buffer.append("ms");
+    
+    return buffer.toString();
+  }
+ 
+  /**
+   * Method returns Xml String for the runtimeMS parameter
+   * 
+   * @param runtimeMS runtime to be formatted.
+   * @return String containing runtimeMS Xml output 
+   */
+  private String getRuntimeDataXml(int runtimeMS) {
+    
+    StringBuilder buffer = new StringBuilder();
+
+    buffer.append("<runtime>");
+    
+    if (runtimeMS != -1) {
+      buffer.append(
+          Integer.toString(runtimeMS));
+    }
+    
+    buffer.append("</runtime>");
+
+    return buffer.toString();
+  }
+  
+  /**
+   * Method returns Xml String for the diagnostic parameter
+   * 
+   * @param diagnostic diagnostic message to be formatted.
+   * @return String containing diagnostic Xml output 
+   */
+  private String getDiagnosticsDataXml(String diagnostic) {
+    
+    StringBuilder buffer = new StringBuilder();
+
+    buffer.append("<diagnostic>");
+    
+    buffer.append(diagnostic);
+    
+    buffer.append("</diagnostic>");
+
+    return buffer.toString();    
+  }
+  
+  /**
+   * Method returns the batch solver of bulk jobs if enabled by the jobs.batch
+   * init parameter. The Java batch engine needs the jdk.incubator.vector
+   * module, so jobs fall back to solving each position if it is missing.
+   *
+   * @return {@link Function} solving positions together or null.
+   */
+  private Function<String[], SudokuResult[]> getBatchSolver() {
+
+    if (getIntegerFromConfig(CONSTANT_CONFIG_JOBS_BATCH, 0) != 1) {
+      return null;
+    }
+
+    if (!ModuleLayer.boot().findModule(CONSTANT_VECTOR_MODULE).isPresent()) {
+
+      logSevereMessageToServerLog("jobs batch engine needs --add-modules " + CONSTANT_VECTOR_MODULE);
+
+      return null;
+    }
+
+    try {
+      
+      SudokuMicroBatcher.Engine engine = SudokuJobs.getBatchSolver(CONSTANT_JAVA_SOLVE_TIMEOUT_MS);
+
+      logInfoMessageToServerLog("jobs batch engine loaded");
+
+      return engine::doCall;
+    
+    } catch (ReflectiveOperationException | LinkageError e) {
+      
+      logSevereMessageToServerLog("jobs batch engine not loaded: " + e);
+
+      return null;
+    }
+  }
+
+  /**
+   * Method returns the integer value of servlet init parameter 'name'.
+   * 
+   * @param name init parameter name.
+   * @param fallback default fallback value used when the parameter is missing or invalid.
+   * @return int parameter value.
+   */
+  private int getIntegerFromConfig(String name, int fallback) {
+    
+    String value = getInitParameter(name);
+
+    if (value == null ||
+        value.isEmpty()) {
+      return fallback;
+    }
+
+    try {
+      
+      return Integer.parseInt(value.trim());
+    
+    } catch (NumberFormatException e) {
+      
+      logSevereMessageToServerLog("init parameter '" + name + "' invalid: " + value);
+    }
+    
+    return fallback;
+  }
+
+  /**
+   * Method returns the string in field 'name' from Http request object.
+   * 
+   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
+   * @param name field name for which to extract String value.
+   * @param isMandatory indicates whether the field value is mandatory. 
+   * @param fallback default fallback value to be used when non-mandatory field is empty.
+   * @param result the result is returned in this field.
+   * @return boolean indicating success, true or false otherwise.
+   */
+  private boolean getStringFromRequest(HttpServletRequest request,
+      String name, boolean isMandatory, String fallback, StringBuilder result) {
+
+    String value = request.getParameter(name);
+
+    if (value == null ||
+            value.isEmpty()) {
+      
+      if (isMandatory) {
+        return false;        
+      }
+      
+      value = fallback;
+    }
+
+    result.append(value);
+    
+    return true;
+  }
+  
+  /**
+   * Method returns the Xml footer content.
+   * 
+   * @return Xml footer content.
+   */
+  private String getXmlTagsFooter() {
+    return "</sudoku>";  
+  }
+  
+  /**
+   * Method returns the Xml header content.
+   * 
+   * @return Xml header content.
+   */
+  private String getXmlTagsHeader() {
+    return "<sudoku>";  
+  }
+  
+  /**
+   * Method returns boolean indicating whether the request asks for the result
+   * caches to be bypassed. This is set on synthetic warm-up requests so that
+   * they run the full pipeline.
+   * 
+   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
+   * @return boolean true if caches are bypassed, false otherwise.
+   */
+  private boolean isCacheBypassed(HttpServletRequest request) {
+    return Boolean.TRUE.equals(request.getAttribute(CONSTANT_ATTRIBUTE_NO_CACHE));
+  }
+
+  /**
+   * Method admits a request of client under its rate limit, taking cost
+   * tokens. A request refused is answered with code
+   * {@value CONSTANT_HTTP_TOO_MANY_REQUESTS} and 'Retry-After'.
+   * 
+   * @param rateLimiter {@link SudokuRateLimiter} object.
+   * @param client client key as returned by {@link Sudoku#getClientKey(HttpServletRequest)}.
+   * @param cost estimated cost of the request in tokens.
+   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
+   * @return boolean true if the request is admitted, false if it was refused.
+   * @throws IOException .
+   */
+  private boolean isAdmitted(SudokuRateLimiter rateLimiter, String client, double cost, 
+      HttpServletResponse response) throws IOException {
+    
+    long retryMs = rateLimiter.doAcquire(client, cost);
+
+    if (retryMs <= 0) {
+      return true;
+    }
+
+    _metrics.doIncrement(CONSTANT_METRIC_RATE_LIMITED);
+
+    response.setStatus(CONSTANT_HTTP_TOO_MANY_REQUESTS);
+
+    response.setIntHeader("Retry-After", (int) Math.max(1, (retryMs + 999) / 1000));
+
+    response.getWriter().append("rate limit exceeded.");
+
+    return false;
+  }
+
+  /**
+   * Method check whether position string only contains spaces and numbers 0 to 9.
+   * 
+   * @param position string to be checked.
+   * @return boolean true, if yes, false otherwise.
+   */
+  private boolean isCleanPositionString(String position) {
+    for (char c : position.toCharArray()) {
+      if (c != ' ' &&
+         !(c >= '0' && c <= '9')) {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  /**
+   * Method checks whether eTag matches any entity tag listed in the request
+   * 'If-None-Match' header. Weak comparison is used as required for this header
+   * and tags of compressed encodings of the same response also match.
+   * 
+   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
+   * @param eTag quoted opaque part of the entity tag of the response.
+   * @return boolean true, if the client copy is current, false otherwise.
+   */
+  private boolean isETagMatch(HttpServletRequest request, String eTag) {
+    
+    String header = request.getHeader("If-None-Match");
+    
+    if (header == null ||
+        header.isEmpty() ||
+        eTag.isEmpty()) {
+      return false;
+    }
+    
+    StringTokenizer tokens = new StringTokenizer(header, ",");
+    
+    while (tokens.hasMoreTokens()) {
+      
+      String token = tokens.nextToken().trim();
+      
+      if (token.startsWith("W/")) {
+        token = token.substring(2);
+      }
+      
+      if (token.endsWith("-" + SudokuResponseCache.CONSTANT_ENCODING_GZIP + "\"")) {
+        token = token.substring(0, 
+            token.length() - SudokuResponseCache.CONSTANT_ENCODING_GZIP.length() - 2) + "\"";
+      }
+      
+      if (token.equals("*") ||
+          token.equals(eTag)) {
+        return true;
+      }
+    }
+    
+    return false;
+  }
+
+  /**
+   * Method returns boolean indicating whether Uri is the solution endpoint.
+   * 
+   * @param uri contains Uri path to be tested.
+   * @return boolean indicating whether Uri is the solution endpoint.
+   **/
+  private boolean isEndpointSolution(String uri) {
+    return CONSTANT_URI_ENDPOINT_SOLUTION.compareToIgnoreCase(uri) == 0;
+  }
+
+  /**
+   * Method returns boolean indicating whether Uri is the liveness endpoint.
+   * 
+   * @param uri contains Uri path to be tested.
+   * @return boolean indicating whether Uri is the liveness endpoint.
+   **/
+  private boolean isEndpointLive(String uri) {
+    return CONSTANT_URI_ENDPOINT_LIVE.compareToIgnoreCase(uri) == 0;
+  }
+
+  /**
+   * Method returns boolean indicating whether Uri is the moves endpoint.
+   * 
+   * @param uri contains Uri path to be tested.
+   * @return boolean indicating whether Uri is the moves endpoint.
+   **/
+  private boolean isEndpointMoves(String uri) {
+    return CONSTANT_URI_ENDPOINT_MOVES.compareToIgnoreCase(uri) == 0;
+  }
+  
+  /**
+   * Method returns boolean indicating whether Uri is the jobs endpoint.
+   * 
+   * @param uri contains Uri path to be tested.
+   * @return boolean indicating whether Uri is the jobs endpoint.
+   **/
+  private boolean isEndpointJobs(String uri) {
+    return CONSTANT_URI_ENDPOINT_JOBS.compareToIgnoreCase(uri) == 0;
+  }
+
+  /**
+   * Method returns boolean indicating whether Uri is the rating endpoint.
+   * 
+   * @param uri contains Uri path to be tested.
+   * @return boolean indicating whether Uri is the rating endpoint.
+   */
+  private boolean isEndpointRate(String uri) {
+    return CONSTANT_URI_ENDPOINT_RATE.compareToIgnoreCase(uri) == 0;
+  }
+  
+  /**
+   * Method returns boolean indicating whether Uri is the board verification endpoint.
+   * 
+   * @param uri contains Uri path to be tested.
+   * @return boolean indicating whether Uri is the board verification endpoint.
+   */
+  private boolean isEndpointVerify(String uri) {
+    return CONSTANT_URI_ENDPOINT_VERIFY.compareToIgnoreCase(uri) == 0;
+  }
+  
+  /**
+   * Method returns boolean indicating whether request comes from a cluster
+   * node, as only those may call the peer endpoint.
+   * 
+   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
+   * @return boolean true if peer mode is on and request comes from a cluster
+   *         node, false otherwise.
+   */
+  private boolean isPeerRequest(HttpServletRequest request) {
+    
+    SudokuPeers peers = _peers;
+
+    return peers != null &&
+        peers.isPeer(request.getRemoteAddr(), request.getHeader(SudokuPeers.CONSTANT_HTTP_HEADER_SECRET));
+  }
+
+  /**
+   * Method returns boolean indicating whether Uri is the peer endpoint.
+   * 
+   * @param uri contains Uri path to be tested.
+   * @return boolean indicating whether Uri is the peer endpoint.
+   **/
+  private boolean isEndpointPeer(String uri) {
+    return CONSTANT_URI_ENDPOINT_PEER.compareToIgnoreCase(uri) == 0;
+  }
+  
+  /**
+   * Method returns boolean indicating whether Uri is the readiness endpoint.
+   * 
+   * @param uri contains Uri path to be tested.
+   * @return boolean indicating whether Uri is the readiness endpoint.
+   **/
+  private boolean isEndpointReady(String uri) {
+    return CONSTANT_URI_ENDPOINT_READY.compareToIgnoreCase(uri) == 0;
+  }
+
+  /**
+   * Method determines and returns value of flag in  
+   * {@link javax.servlet.http.HttpServletRequest} as boolean
+   * 
+   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
+   * @return boolean indicating format is pretty xml or false for non-pretty xml.
+   */
+  private boolean isPretty(HttpServletRequest request) {
+    StringBuilder buffer = new StringBuilder();
+    
+    if (!getBooleanFromRequest(request, 
+        CONSTANT_HTTP_FIELD_XML_PRETTY, 
+        false, 
+        false, 
+        buffer)) {
+      
+      logSevereMessageToServerLog("extract 'pretty' in request failed");
+
+      return false;
+    }
+    
+    return buffer.toString().equals("y") ? true : false;
+  }
+  
+  /**
+   * Method determines and returns value of flag in  
+   * {@link javax.servlet.http.HttpServletRequest} as boolean
+   * 
+   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
+   * @return boolean indicating format is xml or false for html.
+   */
+  private boolean isXml(HttpServletRequest request) {
+    StringBuilder buffer = new StringBuilder();
+    
+    if (!getBooleanFromRequest(request, 
+        CONSTANT_HTTP_FIELD_XML_FORMAT, 
+        false, 
+        false, 
+        buffer)) {
+      
+      logSevereMessageToServerLog("extract 'xml' in request failed");
+
+      return false;
+    }
+    
+    return buffer.toString().equals("y") ? true : false;
+  }
+  
+  /**
+   * Method determines and returns value of flag in  
+   * {@link javax.servlet.http.HttpServletRequest} as boolean
+   * 
+   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
+   * @return boolean indicating whether only safe moves are returned.
+   */
+  private boolean isSafe(HttpServletRequest request) {
+    StringBuilder buffer = new StringBuilder();
+    
+    if (!getBooleanFromRequest(request, 
+        CONSTANT_HTTP_FIELD_SAFE, 
+        false, 
+        false, 
+        buffer)) {
+      
+      logSevereMessageToServerLog("extract 'safe' in request failed");
+
+      return false;
+    }
+    
+    return buffer.toString().equals("y");
+  }
+
+  /**
+   * Method determines and returns value of flag in  
+   * {@link javax.servlet.http.HttpServletRequest} as boolean
+   * 
+   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
+   * @return boolean indicating whether the solution is streamed as events.
+   */
+  private boolean isStream(HttpServletRequest request) {
+    StringBuilder buffer = new StringBuilder();
+    
+    if (!getBooleanFromRequest(request, 
+        CONSTANT_HTTP_FIELD_STREAM, 
+        false, 
+        false, 
+        buffer)) {
+      
+      logSevereMessageToServerLog("extract 'stream' in request failed");
+
+      return false;
+    }
+    
+    return buffer.toString().equals("y");
+  }
+  
+  /**
+   * Method returns boolean indicating whether solves can be answered. With
+   * worker processes configured at least one must be live, otherwise
+   * Sudoku-Lib must have loaded in-process.
+   * 
+   * @return boolean true if an engine takes calls, false otherwise.
+   */
+  private boolean isValid() {
+    
+    SudokuWorkerPool workerPool = _workerPool;
+
+    return workerPool != null ? workerPool.getLiveCount() > 0 : _isValid;
+  }
+
+  /**
+   * Method returns boolean indicating whether request is a synthetic request
+   * made by the servlet itself, such as a JIT warm-up request. Synthetic
+   * requests are not rate limited, logged or counted in the metrics.
+   * 
+   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
+   * @return boolean true if request is synthetic, false otherwise.
+   */
+  private boolean isSynthetic(HttpServletRequest request) {
+    return Boolean.TRUE.equals(request.getAttribute(CONSTANT_ATTRIBUTE_SYNTHETIC));
+  }
+
+  /**
+   * Method checks to see if long parameter value is within valid integer range.
+   * 
+   * @param value value to be checked.
+   * @return true if value is a valid integer, false otherwise.
+   */
+  private boolean isWithinIntegerRange(long value) {
+    return value <= Integer.MAX_VALUE && 
+        value >= Integer.MIN_VALUE;
+  }
+  
+  /**
+   * Method to log {@link Exception} to server log.
+   * 
+   * @param exception {@link Exception} object to be logged.
+   */
+  private void logExceptionToServerLog(Exception exception) {
+    _accessLog.doLogException(exception);
+  }
+
+  /**
+   * Method to report {@link java.util.logging.Level#INFO} message to server log
+   * 
+   * @param message {@link String} containing message to be logged.
+   * @return message param value is returned for inline use.
+   */
+  private String logInfoMessageToServerLog(String message) {
+    _accessLog.doLogMessage(Level.INFO, "info: " + message);
+    return message;
+  }
+
+  /**
+   * Method to report {@link java.util.logging.Level#SEVERE} message to server log.
+   * 
+   * @param message {@link String} containing message to be logged.
+   * @return message param value is returned for inline use.
+   */
+  private String logSevereMessageToServerLog(String message) {
+    _accessLog.doLogMessage(Level.SEVERE, "error: " + message);
+    return message;
+  }
+  
+  /**
+   * Method sets the caching headers for a deterministic response. The entity
+   * tag is sent as a weak validator. No Last-Modified header is sent, as
+   * responses have no modification time which survives a restart.
+   * 
+   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
+   * @param eTag quoted opaque part of the entity tag of the response.
+   * @param maxAge Cache-Control max-age in seconds.
+   */
+  private void setCacheHeaders(HttpServletResponse response, String eTag, int maxAge) {
+    
+    if (!eTag.isEmpty()) {
+      response.setHeader("ETag", "W/" + eTag);
+    }
+    
+    response.setHeader("Cache-Control", "public, max-age=" + maxAge);
+    
+    response.setHeader("Vary", "Accept-Encoding");
+  }
+
+  /**
+   * Method sets the caching headers for a response which must not be reused,
+   * such as an engine failure caused by timeout or load.
+   * 
+   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
+   */
+  private void setNoCacheHeaders(HttpServletResponse response) {
+    response.setHeader("Cache-Control", "no-store");
+  }
+
+  /**
+   * Method sets the 'Server-Timing' header from the phase timings of the
+   * current thread's trace, unless the response is already committed.
+   * 
+   * @param response client {@link javax.servlet.http.HttpServletResponse} object.
+   */
+  private void setTimingHeader(HttpServletResponse response) {
+    
+    SudokuTrace trace = SudokuTrace.getCurrent();
+
+    if (trace != null &&
+        !response.isCommitted()) {
+      response.setHeader("Server-Timing", trace.getServerTiming());
+    }
+  }
+
+  /**
+   * Method sets this servlet ready to take traffic.
+   */
+  private void setReady() {
+    
+    _isReady = true;
+          
+    logInfoMessageToServerLog("servlet warmed up and set to ready");
+  }
+
+  /**
+   * Method replaces the contents of position with its canonical form.
+   * 
+   * @param position buffer containing a sudoku position.
+   */
+  private void setCanonicalPosition(StringBuilder position) {
+    String canonical = SudokuBoard.getCanonicalPosition(position.toString());
+
+    position.setLength(0);
+
+    position.append(canonical);
+  }
+
+  /**
+   * {@link SudokuHedge} object racing the Java and native engines or null if
+   * solves are not hedged.
+   */
+  private volatile SudokuHedge _hedge = null;
+
+  /**
+   * boolean indicating whether positions solved by singles are routed to the
+   * Java solver's pre-pass.
+   */
+  private boolean _isRoutingUsed = false;
+
+  /**
+   * boolean indicating whether the bytes allocated by each request are
+   * counted.
+   */
+  private boolean _isAllocationCounted = false;
+
+  /**
+   * engine time in ms charged as one rate limit token.
+   */
+  private int _rateCostMs = CONSTANT_DEFAULT_RATE_COST_MS;
+
+  /**
+   * name of the request header holding client keys or null if clients are
+   * rate limited by address only.
+   */
+  private String _rateKeyHeader = null;
+
+  /**
+   * {@link SudokuRateLimiter} object limiting client request rates or null
+   * if rate limiting is not configured.
+   */
+  private SudokuRateLimiter _rateLimiter = null;
+
+  /**
+   * {@link SudokuJobs} object running bulk solve jobs or null if jobs are not
+   * configured.
+   */
+  private SudokuJobs _jobs = null;
+
+  /**
+   * {@link SudokuRater} object rating positions for the rating endpoint.
+   */
+  private SudokuRater _rater = null;
+
+  /**
+   * maximum number of positions in a rating batch.
+   */
+  private int _ratingBatchMax = CONSTANT_DEFAULT_RATING_BATCH_MAX;
+
+  /**
+   * {@link SudokuSafeMoves} object checking moves for the safe moves filter.
+   */
+  private SudokuSafeMoves _safeMoves = null;
+
+  /**
+   * {@link SudokuPeers} object partitioning positions across cluster nodes or
+   * null if peer mode is not configured.
+   */
+  private SudokuPeers _peers = null;
+
+  /**
+   * {@link SudokuMicroBatcher} object batching concurrent native solves or
+   * null if solves are dispatched one at a time.
+   */
+  private SudokuMicroBatcher _microBatcher = null;
+
+  /**
+   * {@link SudokuNative} object calling Sudoku-Lib in-process.
+   */
+  private final SudokuNative _native;
+
+  /**
+   * {@link SudokuWorkerPool} object calling Sudoku-Lib in worker processes or
+   * null if solving is in-process.
+   */
+  private volatile SudokuWorkerPool _workerPool = null;
+
+  /**
+   * boolean indicating whether Sudoku-Lib loaded in-process.
+   */
+  private boolean _isValid = false;
+
+  /**
+   * boolean indicating whether this {@link Sudoku} object has finished warming
+   * up and may take traffic.
+   */
+  private volatile boolean _isReady = false;
+
+  /**
+   * {@link SudokuJitWarmup} object running the JIT warm-up or null if disabled.
+   */
+  private SudokuJitWarmup _jitWarmup = null;
+
+  /**
+   * {@link SudokuWarmup} object running the cache warm-up or null if none is running.
+   */
+  private SudokuWarmup _warmup = null;
+  
+  /**
+   * Cache-Control max-age in seconds for moves endpoint responses.
+   */
+  private int _cacheMaxAgeMoves = CONSTANT_DEFAULT_CACHE_MAX_AGE;
+
+  /**
+   * Cache-Control max-age in seconds for solution endpoint responses.
+   */
+  private int _cacheMaxAgeSolution = CONSTANT_DEFAULT_CACHE_MAX_AGE;
+
+  /**
+   * {@link SudokuOffHeapCache} object holding solve results or null if disabled.
+   */
+  private SudokuOffHeapCache _offHeapCache = null;
+
+  /**
+   * {@link SudokuResponseCache} object holding encoded responses keyed by entity tag.
+   */
+  private SudokuResponseCache _responseCache = 
+      new SudokuResponseCache(CONSTANT_DEFAULT_CACHE_RESPONSE_MB * 1024L * 1024L);
+
+  /**
+   * {@link SudokuSolutionStore} object holding persisted solve results or null if disabled.
+   */
+  private volatile SudokuSolutionStore _solutionStore = null;
+
+  /**
+   * {@link SudokuMetrics} object recording servlet activity.
+   */
+  private final SudokuMetrics _metrics = new SudokuMetrics();
+
+  /**
+   * {@link SudokuAccessLog} object writing the access and server logs off the
+   * request path. Created here as the constructor already logs.
+   */
+  private final SudokuAccessLog _accessLog = new SudokuAccessLog(CONSTANT_LOG_CAPACITY, 
+      CONSTANT_DEFAULT_LOG_ACCESS_SAMPLE, CONSTANT_LOG_ERRORS_PER_SECOND, 
+      CONSTANT_LOG_STACK_TRACES_PER_SECOND, _metrics);
+
+  /**
+   * {@link SudokuSingleFlight} object coalescing identical in-flight JNI calls.
+   */
+  private final SudokuSingleFlight _singleFlight = new SudokuSingleFlight(_metrics);
+  
+  /**
+   * Request attribute constant marking a request which bypasses the result
+   * caches.
+   */
+  final public static String CONSTANT_ATTRIBUTE_NO_CACHE = "cc.tools.sudoku.server.nocache";
+
+  /**
+   * Request attribute constant marking a synthetic request made by the
+   * servlet itself, which is not rate limited, logged or counted.
+   */
+  final public static String CONSTANT_ATTRIBUTE_SYNTHETIC = "cc.tools.sudoku.server.synthetic";
+
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} liveness
+   * endpoint Uri '{@value CONSTANT_URI_ENDPOINT_LIVE}'.
+   */
+  final public static String CONSTANT_URI_ENDPOINT_LIVE = "/sudoku/server/game/live";
+
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} query
+   * endpoint Uri '{@value CONSTANT_URI_ENDPOINT_MOVES}'.
+   */
+  final public static String CONSTANT_URI_ENDPOINT_MOVES = "/sudoku/server/game/moves";
+
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} bulk
+   * jobs endpoint Uri '{@value CONSTANT_URI_ENDPOINT_JOBS}'.
+   */
+  final public static String CONSTANT_URI_ENDPOINT_JOBS = "/sudoku/server/game/jobs";
+
+  /**
+   * Uri constant for the difficulty rating endpoint.
+   */
+  final public static String CONSTANT_URI_ENDPOINT_RATE = "/sudoku/server/game/rate";
+
+  /**
+   * Uri constant for the board verification endpoint.
+   */
+  final public static String CONSTANT_URI_ENDPOINT_VERIFY = "/sudoku/server/game/verify";
+
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} peer
+   * endpoint Uri '{@value CONSTANT_URI_ENDPOINT_PEER}'.
+   */
+  final public static String CONSTANT_URI_ENDPOINT_PEER = "/sudoku/server/game/peer";
+
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} readiness
+   * endpoint Uri '{@value CONSTANT_URI_ENDPOINT_READY}'.
+   */
+  final public static String CONSTANT_URI_ENDPOINT_READY = "/sudoku/server/game/ready";
+
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} get
+   * endpoint Uri '{@value CONSTANT_URI_ENDPOINT_SOLUTION}'.
+   */
+  final public static String CONSTANT_URI_ENDPOINT_SOLUTION = "/sudoku/server/game/solution";
+
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} query
+   * field containing the input sudoku position.
+   */
+  final public static String CONSTANT_HTTP_FIELD_POSITION = "position";
+
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} query
+   * field containing the player's board for the verification endpoint.
+   */
+  final public static String CONSTANT_HTTP_FIELD_BOARD = "board";
+
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} query
+   * field containing the output format flag.
+   * 
+   * This can be set to either 'yes' (text: yes/y/true/t) or 'no' (text: no/n/fale/f).
+   * 
+   * The default output format is 'no' i.e. Html will be output.
+   */
+  final public static String CONSTANT_HTTP_FIELD_XML_FORMAT = "xml";  
+  
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} query
+   * field containing the Xml output format flag.
+   * 
+   * This can be set to either 'yes' (text: yes/y/true/t) or 'no' (text: no/n/fale/f).
+   * 
+   * The default output format is 'no' i.e. non-pretty Xml will be output.
+   */
+  final public static String CONSTANT_HTTP_FIELD_XML_PRETTY = "pretty";  
+
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} query
+   * field containing a bulk job id.
+   */
+  final public static String CONSTANT_HTTP_FIELD_ID = "id";  
+
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} query
+   * field requesting the results of a bulk job rather than its status.
+   * 
+   * This can be set to either 'yes' (text: yes/y/true/t) or 'no' (text: no/n/fale/f).
+   */
+  final public static String CONSTANT_HTTP_FIELD_RESULTS = "results";  
+
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} query
+   * field restricting the moves endpoint to safe moves, those consistent with
+   * at least one solution.
+   * 
+   * This can be set to either 'yes' (text: yes/y/true/t) or 'no' (text: no/n/fale/f).
+   * 
+   * The default is 'no' i.e. every possible move is returned.
+   */
+  final public static String CONSTANT_HTTP_FIELD_SAFE = "safe";  
+
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} query
+   * field selecting the streaming mode of the solution endpoint.
+   * 
+   * This can be set to either 'yes' (text: yes/y/true/t) or 'no' (text: no/n/fale/f).
+   * 
+   * The default is 'no' i.e. the response is sent once the solve has finished.
+   */
+  final public static String CONSTANT_HTTP_FIELD_STREAM = "stream";  
+
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} query
+   * field containing the comma separated constraints of a Sudoku variant,
+   * such as 'x', 'windoku' or 'killer'.
+   * 
+   * The default is 'classic' i.e. the classic game solved by Sudoku-Lib.
+   */
+  final public static String CONSTANT_HTTP_FIELD_VARIANT = "variant";  
+
+  /**
+   * Parameter constant for the {@link javax.servlet.http.HttpServlet} query
+   * field containing the cages of a killer variant.
+   */
+  final public static String CONSTANT_HTTP_FIELD_CAGES = "cages";  
+
+  /**
+   * Parameter constant for the servlet init parameter containing the
+   * Cache-Control max-age, in seconds, of moves endpoint responses.
+   */
+  final public static String CONSTANT_CONFIG_CACHE_MAX_AGE_MOVES = "cache.maxage.moves";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the
+   * Cache-Control max-age, in seconds, of solution endpoint responses.
+   */
+  final public static String CONSTANT_CONFIG_CACHE_MAX_AGE_SOLUTION = "cache.maxage.solution";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the size, in
+   * MB, of the off-heap solve result cache. 0 disables the cache.
+   */
+  final public static String CONSTANT_CONFIG_CACHE_OFFHEAP_MB = "cache.offheap.mb";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the size, in
+   * MB, of the encoded response cache. 0 disables the cache.
+   */
+  final public static String CONSTANT_CONFIG_CACHE_RESPONSE_MB = "cache.response.mb";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the access
+   * log sampling rate. One in this many requests is logged, 0 disables the
+   * access log.
+   */
+  final public static String CONSTANT_CONFIG_LOG_ACCESS_SAMPLE = "log.access.sample";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the number of
+   * index slots of the solution store.
+   */
+  final public static String CONSTANT_CONFIG_STORE_CAPACITY = "store.capacity";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the minimum
+   * delay, in ms, before a hedged solve is started on the second engine.
+   */
+  final public static String CONSTANT_CONFIG_HEDGE_DELAY_MIN_MS = "hedge.delay.min.ms";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the
+   * percentile of primary engine run-times after which solves are hedged on
+   * the other engine. 0 disables hedging.
+   */
+  final public static String CONSTANT_CONFIG_HEDGE_PERCENTILE = "hedge.percentile";
+
+  /**
+   * Parameter constant for the servlet init parameter naming the primary
+   * engine of hedged solves, {@value CONSTANT_ENGINE_NATIVE} or
+   * {@value CONSTANT_ENGINE_JAVA}.
+   */
+  final public static String CONSTANT_CONFIG_HEDGE_PRIMARY = "hedge.primary";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the maximum
+   * number of threads running the engine calls of hedged solves.
+   */
+  final public static String CONSTANT_CONFIG_HEDGE_THREADS = "hedge.threads";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the rate
+   * limit tokens added per second to each client's bucket. Rate limiting is
+   * disabled if this is 0.
+   */
+  final public static String CONSTANT_CONFIG_RATE_PER_SECOND = "rate.per.second";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the maximum
+   * number of rate limit tokens a client can hold.
+   */
+  final public static String CONSTANT_CONFIG_RATE_BURST = "rate.burst";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the engine
+   * time, in ms, charged as one rate limit token.
+   */
+  final public static String CONSTANT_CONFIG_RATE_COST_MS = "rate.cost.ms";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the maximum
+   * number of clients whose rate limit state is held.
+   */
+  final public static String CONSTANT_CONFIG_RATE_CLIENTS = "rate.clients";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the name of
+   * the request header holding client keys, such as an Api key set by a
+   * gateway. Clients are limited by address if this is empty.
+   */
+  final public static String CONSTANT_CONFIG_RATE_KEY_HEADER = "rate.key.header";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the directory
+   * bulk jobs are spooled to. Jobs are disabled if this is empty.
+   */
+  final public static String CONSTANT_CONFIG_JOBS_DIRECTORY = "jobs.directory";
+
+  /**
+   * Parameter constant for the servlet init parameter selecting the solver of
+   * bulk jobs, 1 for the Java batch engine, 0 for the servlet per position.
+   */
+  final public static String CONSTANT_CONFIG_JOBS_BATCH = "jobs.batch";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the number of
+   * bulk job solver threads.
+   */
+  final public static String CONSTANT_CONFIG_JOBS_THREADS = "jobs.threads";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the maximum
+   * number of positions in a rating batch.
+   */
+  final public static String CONSTANT_CONFIG_RATING_BATCH_MAX = "rating.batch.max";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the number of
+   * threads checking moves for the safe moves filter.
+   */
+  final public static String CONSTANT_CONFIG_MOVES_SAFE_THREADS = "moves.safe.threads";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the number of
+   * ratings cached. 0 disables the cache.
+   */
+  final public static String CONSTANT_CONFIG_RATING_CACHE_ENTRIES = "rating.cache.entries";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the number of
+   * batch rating threads.
+   */
+  final public static String CONSTANT_CONFIG_RATING_THREADS = "rating.threads";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the number of
+   * input lines solved between bulk job checkpoints.
+   */
+  final public static String CONSTANT_CONFIG_JOBS_CHECKPOINT_LINES = "jobs.checkpoint.lines";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the maximum
+   * size, in Mb, of a bulk job's input.
+   */
+  final public static String CONSTANT_CONFIG_JOBS_INPUT_MAX_MB = "jobs.input.max.mb";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the maximum
+   * number of queued or running bulk jobs per client. 0 disables the limit.
+   */
+  final public static String CONSTANT_CONFIG_JOBS_CLIENT_MAX = "jobs.client.max";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the number of
+   * hours done or failed bulk jobs are kept. 0 keeps them forever.
+   */
+  final public static String CONSTANT_CONFIG_JOBS_RETENTION_HOURS = "jobs.retention.hours";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the comma
+   * separated base Urls of all cluster nodes in peer mode, such as
+   * http://host:8080. Peer mode is disabled if this is empty.
+   */
+  final public static String CONSTANT_CONFIG_PEER_NODES = "peer.nodes";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the base Url
+   * of this node as listed in the cluster nodes.
+   */
+  final public static String CONSTANT_CONFIG_PEER_SELF = "peer.self";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the secret
+   * shared by the cluster nodes. Calls to the peer endpoint must carry it if
+   * set, otherwise they must come from the addresses of the cluster nodes.
+   */
+  final public static String CONSTANT_CONFIG_PEER_SECRET = "peer.secret";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the maximum
+   * time, in ms, to wait for a solve forwarded to another node.
+   */
+  final public static String CONSTANT_CONFIG_PEER_TIMEOUT_MS = "peer.timeout.ms";
+
+  /**
+   * Parameter constant for the servlet init parameter enabling the routing of
+   * positions solved by singles to the Java solver. 0 sends every position to
+   * Sudoku-Lib.
+   */
+  final public static String CONSTANT_CONFIG_ROUTE_SINGLES = "route.singles";
+
+  /**
+   * Parameter constant for the servlet init parameter turning on counting of
+   * the bytes allocated by each request. 0 disables it.
+   */
+  final public static String CONSTANT_CONFIG_DEBUG_ALLOCATION = "debug.allocation";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the directory
+   * of the solution store. The store is disabled if this is empty.
+   */
+  final public static String CONSTANT_CONFIG_STORE_DIRECTORY = "store.directory";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the warm-up
+   * corpus file. Warm-up is disabled if this is empty.
+   */
+  final public static String CONSTANT_CONFIG_WARMUP_CORPUS = "warmup.corpus";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the maximum
+   * duration, in ms, of the JIT warm-up. 0 disables the JIT warm-up.
+   */
+  final public static String CONSTANT_CONFIG_WARMUP_JIT_MS = "warmup.jit.ms";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the
+   * percentage of the warm-up corpus solved before the servlet takes traffic.
+   */
+  final public static String CONSTANT_CONFIG_WARMUP_PERCENT = "warmup.percent";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the number of
+   * warm-up solver threads. Defaults to the number of processors.
+   */
+  final public static String CONSTANT_CONFIG_WARMUP_THREADS = "warmup.threads";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the class
+   * path of the native worker processes. Derived from the servlet and
+   * Sudoku-Lib class locations if empty.
+   */
+  final public static String CONSTANT_CONFIG_WORKER_CLASSPATH = "worker.classpath";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the number of
+   * native worker processes. 0 solves in-process.
+   */
+  final public static String CONSTANT_CONFIG_WORKER_COUNT = "worker.count";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the maximum
+   * number of pipelined calls per native worker process.
+   */
+  final public static String CONSTANT_CONFIG_WORKER_PIPELINE = "worker.pipeline";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the maximum
+   * time, in ms, to wait for a native worker process result.
+   */
+  final public static String CONSTANT_CONFIG_WORKER_TIMEOUT_MS = "worker.timeout.ms";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the maximum
+   * time in us concurrent native solves are collected into one batch. Solves
+   * are dispatched one at a time if this is 0.
+   */
+  final public static String CONSTANT_CONFIG_BATCH_WINDOW_US = "batch.window.us";
+
+  /**
+   * Parameter constant for the servlet init parameter containing the maximum
+   * number of native solves in one batch.
+   */
+  final public static String CONSTANT_CONFIG_BATCH_MAX = "batch.max";
+
+  /**
+   * Cache tier constant for results found in the off-heap cache.
+   */
+  final public static String CONSTANT_CACHE_TIER_OFFHEAP = "offheap";
+
+  /**
+   * Cache tier constant for results answered by the owning peer node.
+   */
+  final public static String CONSTANT_CACHE_TIER_PEER = "peer";
+
+  /**
+   * Cache tier constant for responses found in the encoded response cache.
+   */
+  final public static String CONSTANT_CACHE_TIER_RESPONSE = "response";
+
+  /**
+   * Cache tier constant for results found in the solution store.
+   */
+  final public static String CONSTANT_CACHE_TIER_STORE = "store";
+
+  /**
+   * Engine name constant for the Java solver.
+   */
+  final public static String CONSTANT_ENGINE_JAVA = "java";
+
+  /**
+   * Engine name constant for Sudoku-Lib.
+   */
+  final public static String CONSTANT_ENGINE_NATIVE = "native";
+
+  /**
+   * Default Cache-Control max-age in seconds.
+   */
+  final public static int CONSTANT_DEFAULT_CACHE_MAX_AGE = 86400;
+
+  /**
+   * Default minimum hedge delay in ms.
+   */
+  final public static int CONSTANT_DEFAULT_HEDGE_DELAY_MIN_MS = 2;
+
+  /**
+   * Default number of hedge threads per processor.
+   */
+  final public static int CONSTANT_DEFAULT_HEDGE_THREADS_PER_PROCESSOR = 4;
+
+  /**
+   * Default size in MB of the off-heap solve result cache.
+   */
+  final public static int CONSTANT_DEFAULT_CACHE_OFFHEAP_MB = 0;
+
+  /**
+   * Default size in MB of the encoded response cache.
+   */
+  final public static int CONSTANT_DEFAULT_CACHE_RESPONSE_MB = 64;
+
+  /**
+   * Default access log sampling rate.
+   */
+  final public static int CONSTANT_DEFAULT_LOG_ACCESS_SAMPLE = 1;
+
+  /**
+   * Default maximum number of rate limit tokens a client can hold.
+   */
+  final public static int CONSTANT_DEFAULT_RATE_BURST = 20;
+
+  /**
+   * Default maximum number of clients whose rate limit state is held.
+   */
+  final public static int CONSTANT_DEFAULT_RATE_CLIENTS = 65536;
+
+  /**
+   * Default engine time in ms charged as one rate limit token.
+   */
+  final public static int CONSTANT_DEFAULT_RATE_COST_MS = 10;
+
+  /**
+   * Default number of input lines solved between bulk job checkpoints.
+   */
+  final public static int CONSTANT_DEFAULT_JOBS_CHECKPOINT_LINES = 1000;
+
+  /**
+   * Default maximum size in Mb of a bulk job's input.
+   */
+  final public static int CONSTANT_DEFAULT_JOBS_INPUT_MAX_MB = 1024;
+
+  /**
+   * Default maximum number of queued or running bulk jobs per client.
+   */
+  final public static int CONSTANT_DEFAULT_JOBS_CLIENT_MAX = 2;
+
+  /**
+   * Default number of hours done or failed bulk jobs are kept.
+   */
+  final public static int CONSTANT_DEFAULT_JOBS_RETENTION_HOURS = 168;
+
+  /**
+   * Default maximum number of positions in a rating batch.
+   */
+  final public static int CONSTANT_DEFAULT_RATING_BATCH_MAX = 100000;
+
+  /**
+   * Default number of ratings cached.
+   */
+  final public static int CONSTANT_DEFAULT_RATING_CACHE_ENTRIES = 65536;
+
+  /**
+   * Default maximum time in ms to wait for a solve forwarded to another node.
+   */
+  final public static int CONSTANT_DEFAULT_PEER_TIMEOUT_MS = 2000;
+
+  /**
+   * Default of 'route.singles', off so that every position goes to Sudoku-Lib.
+   */
+  final public static int CONSTANT_DEFAULT_ROUTE_SINGLES = 0;
+
+  /**
+   * Default number of index slots of the solution store.
+   */
+  final public static int CONSTANT_DEFAULT_STORE_CAPACITY = 1 << 22;
+
+  /**
+   * Default maximum duration in ms of the JIT warm-up.
+   */
+  final public static int CONSTANT_DEFAULT_WARMUP_JIT_MS = 0;
+
   /**
-   * Method returns Xml String for the runtimeMS parameter
-   * 
-   * @param runtimeMS runtime to be formatted.
-   * @return String containing runtimeMS Xml output 
+   * Default percentage of the warm-up corpus solved before the servlet takes traffic.
    */
-  private String getRuntimeDataXml(int runtimeMS) {
-    
-    StringBuilder buffer = new StringBuilder();
+  final public static int CONSTANT_DEFAULT_WARMUP_PERCENT = 90;
 
-    buffer.append("<runtime>");
-    
-    if (runtimeMS != -1) {
-      buffer.append(
-          Integer.toString(runtimeMS));
-    }
-    
-    buffer.append("</runtime>");
+  /**
+   * Default maximum number of pipelined calls per native worker process.
+   */
+  final public static int CONSTANT_DEFAULT_WORKER_PIPELINE = 8;
 
-    return buffer.toString();
-  }
-  
   /**
-   * Method returns Xml String for the diagnostic parameter
-   * 
-   * @param diagnostic diagnostic message to be formatted.
-   * @return String containing diagnostic Xml output 
+   * Default maximum number of native solves in one batch.
    */
-  private String getDiagnosticsDataXml(String diagnostic) {
-    
-    StringBuilder buffer = new StringBuilder();
+  final public static int CONSTANT_DEFAULT_BATCH_MAX = 32;
 
-    buffer.append("<diagnostic>");
-    
-    buffer.append(diagnostic);
-    
-    buffer.append("</diagnostic>");
+  /**
+   * Default maximum time in ms to wait for a native worker process result.
+   */
+  final public static int CONSTANT_DEFAULT_WORKER_TIMEOUT_MS = 30000;
 
-    return buffer.toString();    
-  }
-  
   /**
-   * Method returns a String containing stack trace from Throwable parameter t.
-   * 
-   * @param throwable {@link java.lang.Throwable} object containing stack trace
-   * @return String containing stack trace of throwable parameter
+   * Maximum duration in ms of a Java engine solve.
    */
-  private String getStackTraceAsString(Throwable throwable) {
-    StringWriter sw = new StringWriter();
-    
-    PrintWriter pw = new PrintWriter(sw, true);
-    
-    throwable.printStackTrace(pw);
-    
-    return sw.getBuffer().toString();
-  }
-  
+  final public static int CONSTANT_JAVA_SOLVE_TIMEOUT_MS = 10000;
+
   /**
-   * Method extracts data from JNIBuffer object and returns it as a String.
-   * 
-   * @param JNIBuffer Object containg data returned from JNI call.
-   * @return String containing extracted JNIBuffer data. String is null if and error occurs.
+   * Name of the module needed by the Java batch engine.
    */
-  private String getStringFromJNIBuffer(Object JNIBuffer) {
+  final public static String CONSTANT_VECTOR_MODULE = "jdk.incubator.vector";
 
-    StringBuilder buffer = new StringBuilder();
-    
-    try {
-      
-      for (int i = 0; i < _JNIBufferSize; ++i) {
-        
-        short item = (short) _JNIGetItemMethod.invoke(null, JNIBuffer, i);
-        
-        if (item == 0) {
-          break;
-        }
-        
-        buffer.append((char) item);
-      }
-      
-      return buffer.toString();
-      
-    } catch (Exception e) {
-      logExceptionToServerLog(e);
-    }
-  
-    return null;
-  }
-  
   /**
-   * Method returns the string in field 'name' from Http request object.
-   * 
-   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
-   * @param name field name for which to extract String value.
-   * @param isMandatory indicates whether the field value is mandatory. 
-   * @param fallback default fallback value to be used when non-mandatory field is empty.
-   * @param result the result is returned in this field.
-   * @return boolean indicating success, true or false otherwise.
+   * Http status sent to clients over their rate limit.
    */
-  private boolean getStringFromRequest(HttpServletRequest request,
-      String name, boolean isMandatory, String fallback, StringBuilder result) {
+  final public static int CONSTANT_HTTP_TOO_MANY_REQUESTS = 429;
 
-    String value = request.getParameter(name);
+  /**
+   * Number of clues from which positions get the base rate limit cost.
+   */
+  final public static int CONSTANT_RATE_EASY_CLUES = 30;
 
-    if (value == null ||
-            value.isEmpty()) {
-      
-      if (isMandatory) {
-        return false;        
-      }
-      
-      value = fallback;
-    }
+  /**
+   * Rate limit cost added for each clue below {@value CONSTANT_RATE_EASY_CLUES}.
+   */
+  final public static double CONSTANT_RATE_COST_PER_CLUE = 0.25;
 
-    result.append(value);
-    
-    return true;
-  }
-  
   /**
-   * Method returns the Xml footer content.
-   * 
-   * @return Xml footer content.
+   * Minimum interval in ms between progress events of a streamed solve.
    */
-  private String getXmlTagsFooter() {
-    return "</sudoku>";  
-  }
-  
+  final public static int CONSTANT_STREAM_PROGRESS_MS = 100;
+
   /**
-   * Method returns the Xml header content.
-   * 
-   * @return Xml header content.
+   * Event name constant for the final event of a failed streamed solve.
    */
-  private String getXmlTagsHeader() {
-    return "<sudoku>";  
-  }
-  
+  final public static String CONSTANT_EVENT_ERROR = "error";
+
   /**
-   * Method check whether position string only contains spaces and numbers 0 to 9.
-   * 
-   * @param position string to be checked.
-   * @return boolean true, if yes, false otherwise.
+   * Event name constant for the progress events of a streamed solve.
    */
-  private boolean isCleanPositionString(String position) {
-    for (char c : position.toCharArray()) {
-      if (c != ' ' &&
-         !(c >= '0' && c <= '9')) {
-        return false;
-      }
-    }
-    
-    return true;
-  }
-  
+  final public static String CONSTANT_EVENT_PROGRESS = "progress";
+
   /**
-   * Method returns boolean indicating whether Uri is the solution endpoint.
-   * 
-   * @param uri contains Uri path to be tested.
-   * @return boolean indicating whether Uri is the solution endpoint.
-   **/
-  private boolean isEndpointSolution(String uri) {
-    return CONSTANT_URI_ENDPOINT_SOLUTION.compareToIgnoreCase(uri) == 0;
-  }
+   * Event name constant for the request echo starting a streamed solve.
+   */
+  final public static String CONSTANT_EVENT_REQUEST = "request";
 
   /**
-   * Method returns boolean indicating whether Uri is the moves endpoint.
-   * 
-   * @param uri contains Uri path to be tested.
-   * @return boolean indicating whether Uri is the moves endpoint.
-   **/
-  private boolean isEndpointMoves(String uri) {
-    return CONSTANT_URI_ENDPOINT_MOVES.compareToIgnoreCase(uri) == 0;
-  }
-  
+   * Event name constant for the final event of a successful streamed solve.
+   */
+  final public static String CONSTANT_EVENT_SOLUTION = "solution";
+
   /**
-   * Method determines and returns value of flag in  
-   * {@link javax.servlet.http.HttpServletRequest} as boolean
-   * 
-   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
-   * @return boolean indicating format is pretty xml or false for non-pretty xml.
+   * Format name constant for streamed solves.
    */
-  private boolean isPretty(HttpServletRequest request) {
-    StringBuilder buffer = new StringBuilder();
-    
-    if (!getBooleanFromRequest(request, 
-        CONSTANT_HTTP_FIELD_XML_PRETTY, 
-        false, 
-        false, 
-        buffer)) {
-      
-      logSevereMessageToServerLog("extract 'pretty' in request failed");
+  final public static String CONSTANT_FORMAT_STREAM = "stream";
 
-      return false;
-    }
-    
-    return buffer.toString().equals("y") ? true : false;
-  }
-  
   /**
-   * Method determines and returns value of flag in  
-   * {@link javax.servlet.http.HttpServletRequest} as boolean
-   * 
-   * @param request client {@link javax.servlet.http.HttpServletRequest} object.
-   * @return boolean indicating format is xml or false for html.
+   * Format name constant for plain text responses such as ratings.
    */
-  private boolean isXml(HttpServletRequest request) {
-    StringBuilder buffer = new StringBuilder();
-    
-    if (!getBooleanFromRequest(request, 
-        CONSTANT_HTTP_FIELD_XML_FORMAT, 
-        false, 
-        false, 
-        buffer)) {
-      
-      logSevereMessageToServerLog("extract 'xml' in request failed");
+  final public static String CONSTANT_FORMAT_TEXT = "text";
 
-      return false;
-    }
-    
-    return buffer.toString().equals("y") ? true : false;
-  }
-  
   /**
-   * Method checks to see if long parameter value is within valid integer range.
-   * 
-   * @param value value to be checked.
-   * @return true if value is a valid integer, false otherwise.
+   * Format name suffix constant for safe moves responses, so they are cached
+   * apart from unfiltered ones.
    */
-  private boolean isWithinIntegerRange(long value) {
-    return value <= Integer.MAX_VALUE && 
-        value >= Integer.MIN_VALUE;
-  }
-  
+  final public static String CONSTANT_FORMAT_SAFE_SUFFIX = "-safe";
+
   /**
-   * Method to log {@link Exception} to server log.
-   * 
-   * @param exception {@link Exception} object to be logged.
+   * Number of hash bytes used in entity tags.
    */
-  private void logExceptionToServerLog(Exception exception) {
-    Logger.getLogger(Sudoku.class.getName()).log(Level.SEVERE,
-        "exception: " + exception.getClass().getName() + " - " + exception.getMessage());
-    
-    Logger.getLogger(Sudoku.class.getName()).log(Level.SEVERE, getStackTraceAsString(exception));
-  }
+  final public static int CONSTANT_ETAG_HASH_BYTES = 16;
 
   /**
-   * Method to report {@link java.util.logging.Level#INFO} message to server log
-   * 
-   * @param message {@link String} containing message to be logged.
-   * @return message param value is returned for inline use.
+   * Number of records the log ring buffer holds before records are dropped.
    */
-  private String logInfoMessageToServerLog(String message) {
-    Logger.getLogger(Sudoku.class.getName()).log(Level.INFO, "info: " + message);
-    return message;
-  }
+  final public static int CONSTANT_LOG_CAPACITY = 8192;
 
   /**
-   * Method to report {@link java.util.logging.Level#SEVERE} message to server log.
-   * 
-   * @param message {@link String} containing message to be logged.
-   * @return message param value is returned for inline use.
+   * Number of error messages logged per second. Further errors are counted and
+   * reported with the next error logged.
    */
-  private String logSevereMessageToServerLog(String message) {
-    Logger.getLogger(Sudoku.class.getName()).log(Level.SEVERE, "error: " + message);
-    return message;
-  }
-  
+  final public static int CONSTANT_LOG_ERRORS_PER_SECOND = 100;
+
   /**
-   * JNI sudoku_jlib class object for JNI calls.
+   * Number of exception stack traces logged per second.
    */
-  private Class<?> _JNIClass = null;
+  final public static int CONSTANT_LOG_STACK_TRACES_PER_SECOND = 5;
 
   /**
-   * JNI delete method to delete JNI buffer.
+   * Metric name constant for requests served from the encoded response cache.
    */
-  private Method _JNIDeleteMethod = null;
+  final public static String CONSTANT_METRIC_RESPONSE_CACHE_HIT = "cache.response.hit";
 
   /**
-   * JNI get item method to access JNI buffer contents.
+   * Metric name constant for requests not found in the encoded response cache.
    */
-  private Method _JNIGetItemMethod = null;
-      
+  final public static String CONSTANT_METRIC_RESPONSE_CACHE_MISS = "cache.response.miss";
+
   /**
-   * JNI get moves method to call API get_moves_STUB.
+   * Metric name constant for solves answered for other nodes.
    */
-  private  Method _JNIGetMovesMethod = null;
-      
+  final public static String CONSTANT_METRIC_PEER_SERVED = "peer.served";
+
   /**
-   * JNI get solution method to call API get_solution_STUB.
+   * Metric name constant for requests rejected by the rate limit.
    */
-  private Method _JNIGetSolutionMethod = null;
-      
+  final public static String CONSTANT_METRIC_RATE_LIMITED = "rate.limited";
+
   /**
-   * JNI new method to create JNI buffer.
+   * Metric name constant for streamed solves cancelled by the client going away.
    */
-  private  Method _JNINewMethod = null;
+  final public static String CONSTANT_METRIC_STREAM_CANCELLED = "stream.cancelled";
 
   /**
-   * buffer size for JNI buffers.
+   * Metric name prefix constant for the run-time histograms of each solve route.
    */
-  private int _JNIBufferSize = 0;
-  
+  final public static String CONSTANT_METRIC_ROUTE_PREFIX = "route.";
+
   /**
-   * boolean indicating whether this {@link Sudoku} object is in a valid state.
+   * Metrics constant for the prefix of the allocated bytes of each endpoint
+   * and format.
    */
-  private boolean _isValid = false;
-  
+  final public static String CONSTANT_METRIC_ALLOC_PREFIX = "alloc.";
+
   /**
-   * Parameter constant for the {@link javax.servlet.http.HttpServlet} query
-   * endpoint Uri '{@value CONSTANT_URI_ENDPOINT_MOVES}'.
+   * Route name constant for solves hedged across engines.
    */
-  final public static String CONSTANT_URI_ENDPOINT_MOVES = "/sudoku/server/game/moves";
+  final public static String CONSTANT_ROUTE_HEDGED = "hedged";
 
   /**
-   * Parameter constant for the {@link javax.servlet.http.HttpServlet} get
-   * endpoint Uri '{@value CONSTANT_URI_ENDPOINT_SOLUTION}'.
+   * Route name constant for solves made by Sudoku-Lib.
    */
-  final public static String CONSTANT_URI_ENDPOINT_SOLUTION = "/sudoku/server/game/solution";
+  final public static String CONSTANT_ROUTE_NATIVE = "native";
 
   /**
-   * Parameter constant for the {@link javax.servlet.http.HttpServlet} query
-   * field containing the input sudoku position.
+   * Route name constant for solves finished by singles in Java.
    */
-  final public static String CONSTANT_HTTP_FIELD_POSITION = "position";
+  final public static String CONSTANT_ROUTE_SINGLES = "singles";
 
   /**
-   * Parameter constant for the {@link javax.servlet.http.HttpServlet} query
-   * field containing the output format flag.
-   * 
-   * This can be set to either 'yes' (text: yes/y/true/t) or 'no' (text: no/n/fale/f).
-   * 
-   * The default output format is 'no' i.e. Html will be output.
+   * Route name constant for variant solves made by the Java engine.
    */
-  final public static String CONSTANT_HTTP_FIELD_XML_FORMAT = "xml";  
-  
+  final public static String CONSTANT_ROUTE_VARIANT = "variant";
+
   /**
-   * Parameter constant for the {@link javax.servlet.http.HttpServlet} query
-   * field containing the Xml output format flag.
-   * 
-   * This can be set to either 'yes' (text: yes/y/true/t) or 'no' (text: no/n/fale/f).
-   * 
-   * The default output format is 'no' i.e. non-pretty Xml will be output.
+   * Retry-After value in seconds sent while the servlet is warming up.
    */
-  final public static String CONSTANT_HTTP_FIELD_XML_PRETTY = "pretty";  
+  final public static int CONSTANT_RETRY_AFTER_WARMUP = 5;
 }
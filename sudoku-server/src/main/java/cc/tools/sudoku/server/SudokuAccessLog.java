@@ -0,0 +1,476 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.time.Instant;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.*;
+
+/**
+ * This class writes the servlet access log and server log messages from a
+ * background thread, so request threads never format or write log records.
+ * 
+ * Request threads publish records into a fixed size lock-free ring buffer and
+ * return immediately. Records are dropped, and counted, when the ring is full.
+ * Error messages and stack traces are rate limited, so a flood of bad requests
+ * cannot make logging dominate the server. Access records may be sampled.
+ * 
+ * Access records are written to the {@value CONSTANT_LOGGER_ACCESS} logger as
+ * one line of name=value fields, which can be routed to its own file by the
+ * container logging configuration.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuAccessLog implements Closeable {
+
+  /**
+   * This class holds a server log message.
+   */
+  private static class Message {
+
+    /**
+     * Constructor for {@link Message}.
+     * 
+     * @param level log level.
+     * @param text message text.
+     * @param exception exception whose stack trace is logged or null.
+     */
+    Message(Level level, String text, Exception exception) {
+      _level = level;
+      _text = text;
+      _exception = exception;
+    }
+
+    /**
+     * exception whose stack trace is logged.
+     */
+    private final Exception _exception;
+
+    /**
+     * log level.
+     */
+    private final Level _level;
+
+    /**
+     * message text.
+     */
+    private final String _text;
+  }
+
+  /**
+   * This class implements a lock-free limit on the number of events allowed
+   * per second.
+   */
+  private static class RateLimit {
+
+    /**
+     * Constructor for {@link RateLimit}.
+     * 
+     * @param perSecond number of events allowed per second.
+     */
+    RateLimit(int perSecond) {
+      _perSecond = perSecond;
+    }
+
+    /**
+     * Method returns boolean indicating whether one more event is allowed in
+     * the current second.
+     * 
+     * @return boolean true if allowed, false if the event must be suppressed.
+     */
+    boolean isAllowed() {
+      
+      long second = System.nanoTime() / 1000000000L;
+
+      while (true) {
+        
+        long state = _state.get();
+
+        long count = state & CONSTANT_COUNT_MASK;
+
+        long next;
+
+        if ((state >>> CONSTANT_COUNT_BITS) != second) {
+          
+          next = (second << CONSTANT_COUNT_BITS) | 1;
+        
+        } else if (count < _perSecond) {
+          
+          next = state + 1;
+        
+        } else {
+          
+          _suppressed.incrementAndGet();
+          
+          return false;
+        }
+
+        if (_state.compareAndSet(state, next)) {
+          return true;
+        }
+      }
+    }
+
+    /**
+     * Method returns and resets the number of suppressed events.
+     * 
+     * @return number of events suppressed since the last call.
+     */
+    long getSuppressed() {
+      return _suppressed.getAndSet(0);
+    }
+
+    /**
+     * number of events allowed per second.
+     */
+    private final int _perSecond;
+
+    /**
+     * current second and number of events allowed in it.
+     */
+    private final AtomicLong _state = new AtomicLong();
+
+    /**
+     * number of suppressed events.
+     */
+    private final AtomicLong _suppressed = new AtomicLong();
+
+    /**
+     * number of bits holding the event count in the state.
+     */
+    private static final int CONSTANT_COUNT_BITS = 24;
+
+    /**
+     * mask of the event count in the state.
+     */
+    private static final long CONSTANT_COUNT_MASK = (1L << CONSTANT_COUNT_BITS) - 1;
+  }
+
+  /**
+   * Constructor for {@link SudokuAccessLog}. Starts the writer thread.
+   * 
+   * @param capacity ring buffer size. Rounded up to a power of two.
+   * @param sampleRate one in sampleRate access records is written. 0 disables the access log.
+   * @param errorsPerSecond number of error messages logged per second.
+   * @param stackTracesPerSecond number of stack traces logged per second.
+   * @param metrics {@link SudokuMetrics} object used to count dropped records.
+   */
+  public SudokuAccessLog(int capacity, int sampleRate, int errorsPerSecond, 
+      int stackTracesPerSecond, SudokuMetrics metrics) {
+    
+    int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+
+    _ring = new AtomicReferenceArray<>(size);
+    _mask = size - 1;
+    _sampleRate = sampleRate;
+    _errors = new RateLimit(errorsPerSecond);
+    _stackTraces = new RateLimit(stackTracesPerSecond);
+    _metrics = metrics;
+
+    _writer = new Thread(this::doWrite, "sudoku-log-writer");
+
+    _writer.setDaemon(true);
+
+    _writer.start();
+  }
+
+  /**
+   * Method stops the writer thread after it has written the published records.
+   */
+  public void close() {
+    
+    _isClosed = true;
+
+    LockSupport.unpark(_writer);
+
+    try {
+      
+      _writer.join(CONSTANT_CLOSE_TIMEOUT_MS);
+    
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Method publishes an access record for a finished request.
+   * 
+   * @param trace {@link SudokuTrace} of the finished request.
+   * @param client client address.
+   * @param status Http status returned.
+   */
+  public void doLogAccess(SudokuTrace trace, String client, int status) {
+    
+    if (_sampleRate <= 0 ||
+        (_sampleRate > 1 && _accessCount.getAndIncrement() % _sampleRate != 0)) {
+      return;
+    }
+
+    doPublish(new Object[] { trace, client, status });
+  }
+
+  /**
+   * Method publishes exception to be logged. The stack trace is formatted on
+   * the writer thread and only logged within the stack trace rate limit.
+   * 
+   * @param exception {@link Exception} object to be logged.
+   */
+  public void doLogException(Exception exception) {
+    
+    if (!_errors.isAllowed()) {
+      return;
+    }
+
+    doPublish(new Message(Level.SEVERE, 
+        "exception: " + exception.getClass().getName() + " - " + exception.getMessage(), 
+        _stackTraces.isAllowed() ? exception : null));
+  }
+
+  /**
+   * Method publishes a server log message. {@link Level#SEVERE} messages are
+   * only logged within the error rate limit.
+   * 
+   * @param level log level.
+   * @param text message text.
+   */
+  public void doLogMessage(Level level, String text) {
+    
+    if (level == Level.SEVERE &&
+        !_errors.isAllowed()) {
+      return;
+    }
+
+    doPublish(new Message(level, text, null));
+  }
+
+  /**
+   * Method sets the access log sampling rate.
+   * 
+   * @param sampleRate one in sampleRate access records is written. 0 disables the access log.
+   */
+  public void setSampleRate(int sampleRate) {
+    _sampleRate = sampleRate;
+  }
+
+  /**
+   * Method publishes record into the ring buffer. The record is dropped if
+   * the ring buffer is full.
+   * 
+   * @param record record to be published.
+   */
+  private void doPublish(Object record) {
+    
+    while (true) {
+      
+      long tail = _tail.get();
+
+      if (tail - _head.get() > _mask) {
+        
+        _metrics.doIncrement(CONSTANT_METRIC_DROPPED);
+        
+        return;
+      }
+
+      if (_tail.compareAndSet(tail, tail + 1)) {
+        
+        _ring.lazySet((int) tail & _mask, record);
+        
+        return;
+      }
+    }
+  }
+
+  /**
+   * Method runs on the writer thread, taking records from the ring buffer in
+   * publish order and writing them.
+   */
+  private void doWrite() {
+    
+    StringBuilder buffer = new StringBuilder(256);
+
+    while (true) {
+      
+      long head = _head.get();
+
+      int slot = (int) head & _mask;
+
+      Object record = _ring.get(slot);
+
+      if (record == null) {
+        
+        if (_isClosed &&
+            head == _tail.get()) {
+          return;
+        }
+
+        LockSupport.parkNanos(CONSTANT_IDLE_PARK_NS);
+        
+        continue;
+      }
+
+      _ring.set(slot, null);
+
+      _head.lazySet(head + 1);
+
+      try {
+        
+        if (record instanceof Message) {
+          doWriteMessage((Message) record);
+        } else {
+          doWriteAccess((Object[]) record, buffer);
+        }
+      
+      } catch (RuntimeException e) {
+        _serverLogger.log(Level.SEVERE, "error: log write failed " + e);
+      }
+    }
+  }
+
+  /**
+   * Method formats and writes an access record.
+   * 
+   * @param record access record holding {@link SudokuTrace}, client and status.
+   * @param buffer buffer reused for formatting.
+   */
+  private void doWriteAccess(Object[] record, StringBuilder buffer) {
+    
+    SudokuTrace trace = (SudokuTrace) record[0];
+
+    buffer.setLength(0);
+
+    buffer.append("ts=").append(Instant.ofEpochMilli(trace.getStartMillis()));
+    buffer.append(" endpoint=").append(trace.getEndpoint());
+    buffer.append(" format=").append(trace.getFormat() == null ? "-" : trace.getFormat());
+    buffer.append(" client=").append(record[1]);
+    buffer.append(" status=").append(record[2]);
+    buffer.append(" code=").append(trace.getResultCode());
+    buffer.append(" cache=").append(trace.getCacheTier() == null ? "miss" : trace.getCacheTier());
+
+    for (int i = 0; i < SudokuTrace.CONSTANT_PHASE_NAMES.length; ++i) {
+      buffer.append(' ').append(SudokuTrace.CONSTANT_PHASE_NAMES[i]).append("_us=")
+          .append(trace.getPhaseNanos(i) / 1000);
+    }
+
+    buffer.append(" total_us=").append(trace.getTotalNanos() / 1000);
+
+    _accessLogger.log(Level.INFO, buffer.toString());
+  }
+
+  /**
+   * Method writes a server log message, noting any messages suppressed by the
+   * rate limits since the last one.
+   * 
+   * @param message {@link Message} to be written.
+   */
+  private void doWriteMessage(Message message) {
+    
+    String text = message._text;
+
+    if (message._level == Level.SEVERE) {
+      
+      long suppressed = _errors.getSuppressed();
+
+      if (suppressed > 0) {
+        text += " (" + suppressed + " errors suppressed)";
+      }
+    }
+
+    _serverLogger.log(message._level, text);
+
+    if (message._exception != null) {
+      
+      StringWriter writer = new StringWriter();
+
+      message._exception.printStackTrace(new PrintWriter(writer, true));
+
+      _serverLogger.log(Level.SEVERE, writer.toString());
+    }
+  }
+
+  /**
+   * number of access records offered, used for sampling.
+   */
+  private final AtomicLong _accessCount = new AtomicLong();
+
+  /**
+   * access log logger.
+   */
+  private final Logger _accessLogger = Logger.getLogger(CONSTANT_LOGGER_ACCESS);
+
+  /**
+   * error message rate limit.
+   */
+  private final RateLimit _errors;
+
+  /**
+   * sequence of the next record to be written.
+   */
+  private final AtomicLong _head = new AtomicLong();
+
+  /**
+   * boolean indicating whether the log has been closed.
+   */
+  private volatile boolean _isClosed = false;
+
+  /**
+   * ring buffer index mask.
+   */
+  private final int _mask;
+
+  /**
+   * {@link SudokuMetrics} object used to count dropped records.
+   */
+  private final SudokuMetrics _metrics;
+
+  /**
+   * ring buffer of published records.
+   */
+  private final AtomicReferenceArray<Object> _ring;
+
+  /**
+   * one in _sampleRate access records is written.
+   */
+  private volatile int _sampleRate;
+
+  /**
+   * server log logger.
+   */
+  private final Logger _serverLogger = Logger.getLogger(Sudoku.class.getName());
+
+  /**
+   * stack trace rate limit.
+   */
+  private final RateLimit _stackTraces;
+
+  /**
+   * sequence of the next record to be published.
+   */
+  private final AtomicLong _tail = new AtomicLong();
+
+  /**
+   * writer thread.
+   */
+  private final Thread _writer;
+
+  /**
+   * Constant for the maximum time in ms to wait for the writer thread on close.
+   */
+  final public static long CONSTANT_CLOSE_TIMEOUT_MS = 2000;
+
+  /**
+   * Constant for the time in ns the writer thread parks when the ring buffer is empty.
+   */
+  final public static long CONSTANT_IDLE_PARK_NS = 1000000;
+
+  /**
+   * Constant for the name of the access log logger.
+   */
+  final public static String CONSTANT_LOGGER_ACCESS = "cc.tools.sudoku.server.access";
+
+  /**
+   * Metric name constant for log records dropped because the ring buffer was full.
+   */
+  final public static String CONSTANT_METRIC_DROPPED = "log.dropped";
+}
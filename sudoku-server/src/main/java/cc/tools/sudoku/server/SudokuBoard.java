@@ -0,0 +1,287 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.util.*;
+
+import javax.xml.parsers.*;
+
+import org.w3c.dom.*;
+import org.xml.sax.*;
+
+/**
+ * This class provides static helpers for handling Sudoku board positions.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuBoard {
+
+  /**
+   * Constructor for {@link SudokuBoard}. Not used.
+   */
+  private SudokuBoard() {
+  }
+
+  /**
+   * Method returns the canonical form of position. The canonical form is the
+   * position's cell values delimited by single spaces, so that positions which
+   * differ only by whitespace map to the same String. A position supplied as a
+   * single undelimited string of {@value CONSTANT_CELL_COUNT} digits is split
+   * into cells.
+   * 
+   * @param position String containing a sudoku position.
+   * @return String containing canonical position.
+   */
+  public static String getCanonicalPosition(String position) {
+
+    StringTokenizer tokens = new StringTokenizer(position, " "); 
+
+    if (tokens.countTokens() == 1 &&
+        position.trim().length() == CONSTANT_CELL_COUNT) {
+      
+      tokens = new StringTokenizer(position.trim().replace("", " "), " "); 
+    }
+
+    StringBuilder buffer = new StringBuilder();
+
+    while (tokens.hasMoreTokens()) {
+
+      if (buffer.length() > 0) {
+        buffer.append(' ');
+      }
+
+      buffer.append(tokens.nextToken());
+    }
+
+    return buffer.toString();
+  }
+
+  /**
+   * Method returns the cell values of canonical position.
+   * 
+   * @param position String containing a canonical sudoku position.
+   * @return int array of {@value CONSTANT_CELL_COUNT} cell values or null if
+   *         position does not hold {@value CONSTANT_CELL_COUNT} digits.
+   */
+  public static int[] getCellsFromPosition(String position) {
+    
+    if (position.length() != CONSTANT_CELL_COUNT * 2 - 1) {
+      return null;
+    }
+
+    int[] cells = new int[CONSTANT_CELL_COUNT];
+
+    for (int i = 0; i < CONSTANT_CELL_COUNT; ++i) {
+      
+      char c = position.charAt(i * 2);
+
+      if (c < '0' || 
+          c > '9') {
+        return null;
+      }
+
+      cells[i] = c - '0';
+    }
+
+    return cells;
+  }
+
+  /**
+   * Method returns the cell values held in a Sudoku-Lib solution. The solution
+   * holds one 'm' record per cell whose second child is the cell value.
+   * 
+   * @param solutionXml solution data returned by Sudoku-Lib.
+   * @return int array of {@value CONSTANT_CELL_COUNT} cell values or null if
+   *         solutionXml is not a complete solution.
+   */
+  public static int[] getCellsFromSolutionXml(String solutionXml) {
+
+    try {
+      
+      DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+
+      Document doc = builder.parse(new InputSource(new StringReader(solutionXml)));
+
+      NodeList nodes = doc.getElementsByTagName("m");
+
+      if (nodes.getLength() != CONSTANT_CELL_COUNT) {
+        return null;
+      }
+
+      int[] cells = new int[CONSTANT_CELL_COUNT];
+
+      for (int i = 0; i < CONSTANT_CELL_COUNT; ++i) {
+        
+        String value = nodes.item(i).getChildNodes().item(1).getTextContent().trim();
+
+        if (value.length() != 1 ||
+            value.charAt(0) < '1' ||
+            value.charAt(0) > '9') {
+          return null;
+        }
+
+        cells[i] = value.charAt(0) - '0';
+      }
+
+      return cells;
+
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * Method extracts the moves from Sudoku-Lib moves Xml.
+   * 
+   * @param movesXml String containing Xml with one 'm' element per move.
+   * @return int array of {@value CONSTANT_CELL_COUNT} bitmasks with bit d set
+   *         for each digit d which may be placed in the cell, or null if
+   *         movesXml is invalid.
+   */
+  public static int[] getMovesFromXml(String movesXml) {
+
+    try {
+      
+      DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+
+      Document doc = builder.parse(new InputSource(new StringReader(movesXml)));
+
+      NodeList nodes = doc.getElementsByTagName("m");
+
+      int[] moves = new int[CONSTANT_CELL_COUNT];
+
+      for (int i = 0; i < nodes.getLength(); ++i) {
+        
+        NodeList fields = nodes.item(i).getChildNodes();
+
+        int cell = Integer.parseInt(fields.item(0).getTextContent().trim());
+
+        int digit = Integer.parseInt(fields.item(1).getTextContent().trim());
+
+        if (cell < 0 ||
+            cell >= CONSTANT_CELL_COUNT ||
+            digit < 1 ||
+            digit > 9) {
+          return null;
+        }
+
+        moves[cell] |= 1 << digit;
+      }
+
+      return moves;
+
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * Method returns moves as Xml in the form returned by Sudoku-Lib.
+   * 
+   * @param moves int array of {@value CONSTANT_CELL_COUNT} bitmasks with bit d
+   *              set for each digit d which may be placed in the cell.
+   * @return String containing moves Xml.
+   */
+  public static String getMovesXml(int[] moves) {
+    
+    StringBuilder buffer = new StringBuilder();
+
+    buffer.append("<moves>");
+
+    for (int i = 0; i < CONSTANT_CELL_COUNT; ++i) {
+      
+      for (int digit = 1; digit <= 9; ++digit) {
+        
+        if ((moves[i] & (1 << digit)) != 0) {
+          buffer.append("<m><c>").append(i).append("</c><v>").append(digit).append("</v></m>");
+        }
+      }
+    }
+
+    buffer.append("</moves>");
+
+    return buffer.toString();
+  }
+
+  /**
+   * Method returns cells packed two cells per byte. The first cell of each pair
+   * is held in the high nibble.
+   * 
+   * @param cells int array of {@value CONSTANT_CELL_COUNT} cell values.
+   * @return byte array of {@value CONSTANT_PACKED_SIZE} bytes.
+   */
+  public static byte[] getPackedCells(int[] cells) {
+    
+    byte[] packed = new byte[CONSTANT_PACKED_SIZE];
+
+    for (int i = 0; i < CONSTANT_CELL_COUNT; ++i) {
+      packed[i >> 1] |= (byte) ((i & 1) == 0 ? cells[i] << 4 : cells[i]);
+    }
+
+    return packed;
+  }
+
+  /**
+   * Method returns canonical position packed two cells per byte.
+   * 
+   * @param position String containing a canonical sudoku position.
+   * @return byte array of {@value CONSTANT_PACKED_SIZE} bytes or null if
+   *         position does not hold {@value CONSTANT_CELL_COUNT} digits.
+   */
+  public static byte[] getPackedPosition(String position) {
+    
+    int[] cells = getCellsFromPosition(position);
+    
+    return cells == null ? null : getPackedCells(cells);
+  }
+
+  /**
+   * Method returns the cell values held in packed.
+   * 
+   * @param packed byte array of {@value CONSTANT_PACKED_SIZE} packed bytes.
+   * @return int array of {@value CONSTANT_CELL_COUNT} cell values.
+   */
+  public static int[] getUnpackedCells(byte[] packed) {
+    
+    int[] cells = new int[CONSTANT_CELL_COUNT];
+
+    for (int i = 0; i < CONSTANT_CELL_COUNT; ++i) {
+      cells[i] = (i & 1) == 0 ? (packed[i >> 1] >> 4) & 0xf : packed[i >> 1] & 0xf;
+    }
+
+    return cells;
+  }
+
+  /**
+   * Method returns solution data for cells in the record layout returned by
+   * Sudoku-Lib, one 'm' record per cell holding the cell index and value.
+   * 
+   * @param cells int array of {@value CONSTANT_CELL_COUNT} cell values.
+   * @return String containing solution Xml.
+   */
+  public static String getSolutionXml(int[] cells) {
+    
+    StringBuilder buffer = new StringBuilder(CONSTANT_CELL_COUNT * 24);
+
+    buffer.append("<solution>");
+
+    for (int i = 0; i < CONSTANT_CELL_COUNT; ++i) {
+      buffer.append("<m><c>").append(i).append("</c><v>").append(cells[i]).append("</v></m>");
+    }
+
+    buffer.append("</solution>");
+
+    return buffer.toString();
+  }
+
+  /**
+   * Constant for the number of cells on a board.
+   */
+  final public static int CONSTANT_CELL_COUNT = 81;
+
+  /**
+   * Constant for the number of bytes in a packed board.
+   */
+  final public static int CONSTANT_PACKED_SIZE = (CONSTANT_CELL_COUNT + 1) / 2;
+}
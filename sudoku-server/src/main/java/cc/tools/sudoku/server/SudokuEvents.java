@@ -0,0 +1,244 @@
+package cc.tools.sudoku.server;
+
+import jdk.jfr.*;
+
+/**
+ * This class defines the Java Flight Recorder events emitted by the servlet.
+ *
+ * A {@link Phase} event is emitted for each request phase recorded by
+ * {@link SudokuTrace}, decoding the JNI buffer being one, and for the finer
+ * steps around the engine call, which are waiting for a coalesced call and
+ * leasing the JNI buffer. A {@link NativeCall} event is emitted for each
+ * Sudoku-Lib call. Events carry the endpoint and format of the request being
+ * handled by the thread, so slow requests can be correlated with GC and
+ * native time in a single recording.
+ *
+ * Events are only created and committed while a recording has them enabled,
+ * so the cost when disabled is a flag check. Events emitted off the request
+ * thread, as for hedged calls, carry no endpoint or format.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuEvents {
+
+  /**
+   * This class is the event for a request phase.
+   */
+  @Name("cc.tools.sudoku.Phase")
+  @Label("Sudoku Phase")
+  @Category("Sudoku")
+  @Description("Phase of a Sudoku server request")
+  @StackTrace(false)
+  public static class Phase extends Event {
+
+    /**
+     * request endpoint Uri.
+     */
+    @Label("Endpoint")
+    String endpoint;
+
+    /**
+     * request output format.
+     */
+    @Label("Format")
+    String format;
+
+    /**
+     * phase name.
+     */
+    @Label("Phase")
+    String phase;
+  }
+
+  /**
+   * This class is the event for a Sudoku-Lib call.
+   */
+  @Name("cc.tools.sudoku.NativeCall")
+  @Label("Sudoku Native Call")
+  @Category("Sudoku")
+  @Description("Sudoku-Lib call made in-process or on a worker process")
+  @StackTrace(false)
+  public static class NativeCall extends Event {
+
+    /**
+     * request endpoint Uri.
+     */
+    @Label("Endpoint")
+    String endpoint;
+
+    /**
+     * request output format.
+     */
+    @Label("Format")
+    String format;
+
+    /**
+     * Sudoku-Lib function name.
+     */
+    @Label("Function")
+    String function;
+
+    /**
+     * position passed to Sudoku-Lib.
+     */
+    @Label("Position")
+    String position;
+
+    /**
+     * Sudoku-Lib result code.
+     */
+    @Label("Result Code")
+    int resultCode;
+
+    /**
+     * run-time reported by Sudoku-Lib.
+     */
+    @Label("Runtime")
+    int runtime;
+
+    /**
+     * whether the call was made on a worker process.
+     */
+    @Label("Worker")
+    boolean worker;
+  }
+
+  /**
+   * Constructor for {@link SudokuEvents}.
+   */
+  private SudokuEvents() {
+  }
+
+  /**
+   * Method starts a {@link NativeCall} event if it is enabled.
+   *
+   * @return started event or null if it is disabled.
+   */
+  public static NativeCall doBeginNativeCall() {
+
+    NativeCall event = new NativeCall();
+
+    if (!event.isEnabled()) {
+      return null;
+    }
+
+    event.begin();
+
+    return event;
+  }
+
+  /**
+   * Method starts a {@link Phase} event if it is enabled.
+   *
+   * @return started event or null if it is disabled.
+   */
+  public static Phase doBeginPhase() {
+
+    Phase event = new Phase();
+
+    if (!event.isEnabled()) {
+      return null;
+    }
+
+    event.begin();
+
+    return event;
+  }
+
+  /**
+   * Method ends event and commits it if it passes the recording's threshold.
+   *
+   * @param event event started by {@link SudokuEvents#doBeginNativeCall()} or null.
+   * @param function function constant such as {@link SudokuNative#CONSTANT_FUNCTION_SOLUTION}.
+   * @param position position passed to Sudoku-Lib.
+   * @param result {@link SudokuResult} returned by Sudoku-Lib.
+   * @param isWorker whether the call was made on a worker process.
+   */
+  public static void doEndNativeCall(NativeCall event, int function, String position,
+      SudokuResult result, boolean isWorker) {
+
+    if (event == null) {
+      return;
+    }
+
+    event.end();
+
+    if (event.shouldCommit()) {
+
+      SudokuTrace trace = SudokuTrace.getCurrent();
+
+      if (trace != null) {
+
+        event.endpoint = trace.getEndpoint();
+
+        event.format = trace.getFormat();
+      }
+
+      event.function = function == SudokuNative.CONSTANT_FUNCTION_MOVES ?
+          CONSTANT_FUNCTION_MOVES : CONSTANT_FUNCTION_SOLUTION;
+
+      event.position = position;
+
+      event.resultCode = result.getCode();
+
+      event.runtime = result.getRuntime();
+
+      event.worker = isWorker;
+
+      event.commit();
+    }
+  }
+
+  /**
+   * Method ends event and commits it if it passes the recording's threshold.
+   *
+   * @param event event started by {@link SudokuEvents#doBeginPhase()} or null.
+   * @param phase phase name such as {@link SudokuEvents#CONSTANT_PHASE_QUEUE}.
+   */
+  public static void doEndPhase(Phase event, String phase) {
+
+    if (event == null) {
+      return;
+    }
+
+    event.end();
+
+    if (event.shouldCommit()) {
+
+      SudokuTrace trace = SudokuTrace.getCurrent();
+
+      if (trace != null) {
+
+        event.endpoint = trace.getEndpoint();
+
+        event.format = trace.getFormat();
+      }
+
+      event.phase = phase;
+
+      event.commit();
+    }
+  }
+
+  /**
+   * Constant for the moves function name.
+   */
+  final public static String CONSTANT_FUNCTION_MOVES = "moves";
+
+  /**
+   * Constant for the solution function name.
+   */
+  final public static String CONSTANT_FUNCTION_SOLUTION = "solution";
+
+  /**
+   * Constant for the phase name of leasing the JNI buffer.
+   */
+  final public static String CONSTANT_PHASE_LEASE = "lease";
+
+  /**
+   * Constant for the phase name of waiting for a coalesced call.
+   */
+  final public static String CONSTANT_PHASE_QUEUE = "queue";
+}
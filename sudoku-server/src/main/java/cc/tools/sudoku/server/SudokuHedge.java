@@ -0,0 +1,303 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class runs hedged solves across two engines to cut tail latency.
+ * 
+ * Each solve starts on the primary engine. If the primary has not answered
+ * within a delay taken from a percentile of its recent run-times, the same
+ * position is also started on the secondary engine. The first definitive
+ * result wins and the other engine is cancelled. Engines which cannot stop,
+ * such as Sudoku-Lib, run to completion and their result is discarded.
+ * Run-times are recorded afresh every {@value CONSTANT_MAX_SAMPLES} solves
+ * so the delay follows changes in load.
+ * 
+ * Engine calls run on a bounded pool of threads without a queue. When the
+ * pool is saturated a solve is not hedged: the primary's result is returned
+ * once it completes, or the primary runs on the calling thread if it cannot
+ * be started either, so overload does not add threads or work.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuHedge implements Closeable {
+
+  /**
+   * This interface is implemented by the engines raced by {@link SudokuHedge}.
+   */
+  public interface Engine {
+
+    /**
+     * Method solves position.
+     * 
+     * @param position a string contaning a canonical sudoku position.
+     * @param isCancelled check returning true once the result is no longer
+     *                    needed.
+     * @return {@link SudokuResult} holding result code, solution data and runtime.
+     */
+    SudokuResult doCall(String position, BooleanSupplier isCancelled);
+  }
+
+  /**
+   * Constructor for {@link SudokuHedge}.
+   * 
+   * @param primary {@link Engine} every solve starts on.
+   * @param secondary {@link Engine} started when the primary is slow.
+   * @param percentile percentile of primary run-times used as hedge delay.
+   * @param minDelayMs minimum hedge delay in ms.
+   * @param threads maximum number of threads running engine calls.
+   * @param metrics {@link SudokuMetrics} object used to count hedges.
+   */
+  public SudokuHedge(Engine primary, Engine secondary, int percentile, int minDelayMs, int threads, 
+      SudokuMetrics metrics) {
+    
+    _primary = primary;
+    _secondary = secondary;
+    _percentile = percentile;
+    _minDelayUs = minDelayMs * 1000L;
+    _metrics = metrics;
+
+    _executor = new ThreadPoolExecutor(0, Math.max(threads, 2), 
+        CONSTANT_THREAD_KEEP_ALIVE_S, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+      
+      Thread thread = new Thread(runnable, "sudoku-hedge-" + _threadCount.incrementAndGet());
+      
+      thread.setDaemon(true);
+      
+      return thread;
+    });
+  }
+
+  /**
+   * Method stops the engine threads.
+   */
+  public void close() {
+    _executor.shutdownNow();
+  }
+
+  /**
+   * Method solves position, hedging on the secondary engine if the primary is
+   * slow and a thread is free for it.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @return {@link SudokuResult} of the winning engine.
+   */
+  public SudokuResult doCall(String position) {
+    
+    AtomicBoolean isPrimaryCancelled = new AtomicBoolean();
+
+    AtomicBoolean isSecondaryCancelled = new AtomicBoolean();
+
+    long start = System.nanoTime();
+
+    CompletableFuture<SudokuResult> primary = doStart(_primary, position, isPrimaryCancelled);
+
+    if (primary == null) {
+      
+      _metrics.doIncrement(CONSTANT_METRIC_SKIPPED);
+
+      return _primary.doCall(position, isPrimaryCancelled::get);
+    }
+
+    primary.thenAccept(result -> {
+      
+      if (!isPrimaryCancelled.get() ||
+          result.getCode() != SudokuNative.CONSTANT_RESULT_TIMEOUT) {
+        
+        if (_latency.getCount() >= CONSTANT_MAX_SAMPLES) {
+          _latency.doReset();
+        }
+
+        _latency.doRecord((System.nanoTime() - start) / 1000);
+      }
+    });
+
+    try {
+      
+      return primary.get(getDelayUs(), TimeUnit.MICROSECONDS);
+    
+    } catch (TimeoutException e) {
+      // primary slow, hedged below.
+    
+    } catch (InterruptedException | ExecutionException e) {
+      
+      isPrimaryCancelled.set(true);
+      
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+
+      return new SudokuResult(SudokuNative.CONSTANT_RESULT_INTERNAL_ERROR, "", -1);
+    }
+
+    CompletableFuture<SudokuResult> secondary = doStart(_secondary, position, isSecondaryCancelled);
+
+    if (secondary == null) {
+      
+      _metrics.doIncrement(CONSTANT_METRIC_SKIPPED);
+
+      return primary.join();
+    }
+
+    _metrics.doIncrement(CONSTANT_METRIC_FIRED);
+
+    CompletableFuture.anyOf(primary, secondary).join();
+
+    boolean isPrimaryWinner = primary.isDone();
+
+    SudokuResult result = (isPrimaryWinner ? primary : secondary).join();
+
+    if (!isDefinitive(result)) {
+      
+      SudokuResult other = (isPrimaryWinner ? secondary : primary).join();
+
+      if (isDefinitive(other)) {
+        
+        result = other;
+        
+        isPrimaryWinner = !isPrimaryWinner;
+      }
+    }
+
+    (isPrimaryWinner ? isSecondaryCancelled : isPrimaryCancelled).set(true);
+
+    if (!isPrimaryWinner) {
+      _metrics.doIncrement(CONSTANT_METRIC_WON);
+    }
+
+    return result;
+  }
+
+  /**
+   * Method starts a solve of position on engine.
+   * 
+   * @param engine {@link Engine} to be called.
+   * @param position a string contaning a canonical sudoku position.
+   * @param isCancelled flag set once the result is no longer needed.
+   * @return future completed with the engine result or null if every
+   *         thread is busy.
+   */
+  private CompletableFuture<SudokuResult> doStart(Engine engine, String position, 
+      AtomicBoolean isCancelled) {
+    
+    try {
+      
+      return CompletableFuture
+          .supplyAsync(() -> engine.doCall(position, isCancelled::get), _executor)
+          .exceptionally(e -> new SudokuResult(SudokuNative.CONSTANT_RESULT_INTERNAL_ERROR, "", -1));
+    
+    } catch (RejectedExecutionException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Method returns the current hedge delay, the configured percentile of
+   * primary run-times but no less than the minimum delay. A fixed delay is
+   * used until enough run-times have been recorded.
+   * 
+   * @return hedge delay in us.
+   */
+  public long getDelayUs() {
+    
+    if (_latency.getCount() < CONSTANT_MIN_SAMPLES) {
+      return Math.max(_minDelayUs, CONSTANT_INITIAL_DELAY_US);
+    }
+
+    return Math.max(_minDelayUs, _latency.getPercentile(_percentile));
+  }
+
+  /**
+   * Method returns boolean indicating whether result is an answer for the
+   * position rather than an engine failure.
+   * 
+   * @param result {@link SudokuResult} to be checked.
+   * @return boolean true if result is definitive, false otherwise.
+   */
+  private boolean isDefinitive(SudokuResult result) {
+    return result.getCode() >= SudokuNative.CONSTANT_RESULT_OK &&
+        result.getCode() <= SudokuNative.CONSTANT_RESULT_NO_SOLUTION;
+  }
+
+  /**
+   * executor running engine calls.
+   */
+  private final ExecutorService _executor;
+
+  /**
+   * primary engine run-times in us.
+   */
+  private final SudokuHistogram _latency = new SudokuHistogram();
+
+  /**
+   * {@link SudokuMetrics} object used to count hedges.
+   */
+  private final SudokuMetrics _metrics;
+
+  /**
+   * minimum hedge delay in us.
+   */
+  private final long _minDelayUs;
+
+  /**
+   * percentile of primary run-times used as hedge delay.
+   */
+  private final int _percentile;
+
+  /**
+   * engine every solve starts on.
+   */
+  private final Engine _primary;
+
+  /**
+   * engine started when the primary is slow.
+   */
+  private final Engine _secondary;
+
+  /**
+   * number of engine threads created, used in thread names.
+   */
+  private final AtomicInteger _threadCount = new AtomicInteger();
+
+  /**
+   * Constant for the hedge delay in us used until enough run-times are recorded.
+   */
+  final public static long CONSTANT_INITIAL_DELAY_US = 100000;
+
+  /**
+   * Constant for the number of primary run-times recorded before they are
+   * cleared.
+   */
+  final public static int CONSTANT_MAX_SAMPLES = 100000;
+
+  /**
+   * Metric name constant for hedged solves.
+   */
+  final public static String CONSTANT_METRIC_FIRED = "hedge.fired";
+
+  /**
+   * Metric name constant for solves not hedged as every thread was busy.
+   */
+  final public static String CONSTANT_METRIC_SKIPPED = "hedge.skipped";
+
+  /**
+   * Metric name constant for hedged solves won by the secondary engine.
+   */
+  final public static String CONSTANT_METRIC_WON = "hedge.won";
+
+  /**
+   * Constant for the number of primary run-times recorded before the
+   * percentile is used as hedge delay.
+   */
+  final public static int CONSTANT_MIN_SAMPLES = 100;
+
+  /**
+   * Constant for the time in s an idle engine thread is kept.
+   */
+  final public static long CONSTANT_THREAD_KEEP_ALIVE_S = 60;
+}
@@ -0,0 +1,139 @@
+package cc.tools.sudoku.server;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * This class records a distribution of non-negative values, such as
+ * latencies, in log-linear buckets and answers percentile queries.
+ * 
+ * Values below 32 are recorded exactly. Larger values are recorded in 16
+ * buckets per power of two, so percentiles are within about 6% of the
+ * recorded values. Recording is lock-free and safe from concurrent threads.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuHistogram {
+
+  /**
+   * Method records value.
+   * 
+   * @param value value to be recorded. Negative values are recorded as 0.
+   */
+  public void doRecord(long value) {
+    
+    _counts.incrementAndGet(getBucket(Math.max(value, 0)));
+
+    _count.incrementAndGet();
+  }
+
+  /**
+   * Method clears the recorded values. Values recorded concurrently may be
+   * lost.
+   */
+  public void doReset() {
+    
+    for (int i = 0; i < _counts.length(); ++i) {
+      _counts.set(i, 0);
+    }
+
+    _count.set(0);
+  }
+
+  /**
+   * Method returns the bucket index of value.
+   * 
+   * @param value non-negative value.
+   * @return bucket index.
+   */
+  private static int getBucket(long value) {
+    
+    if (value < CONSTANT_LINEAR_LIMIT) {
+      return (int) value;
+    }
+
+    int shift = 63 - Long.numberOfLeadingZeros(value) - 4;
+
+    return (shift + 1) * 16 + (int) ((value >> shift) - 16);
+  }
+
+  /**
+   * Method returns the highest value recorded in bucket.
+   * 
+   * @param bucket bucket index.
+   * @return highest value of bucket.
+   */
+  private static long getBucketMax(int bucket) {
+    
+    if (bucket < CONSTANT_LINEAR_LIMIT) {
+      return bucket;
+    }
+
+    int shift = bucket / 16 - 1;
+
+    long sub = bucket % 16 + 16;
+
+    return ((sub + 1) << shift) - 1;
+  }
+
+  /**
+   * Method returns the number of values recorded.
+   * 
+   * @return number of values.
+   */
+  public long getCount() {
+    return _count.get();
+  }
+
+  /**
+   * Method returns the value at percentile of the recorded values, as the
+   * highest value of the bucket holding it.
+   * 
+   * @param percentile percentile in the range 0 to 100.
+   * @return value at percentile or 0 if no values were recorded.
+   */
+  public long getPercentile(double percentile) {
+    
+    long count = _count.get();
+
+    if (count == 0) {
+      return 0;
+    }
+
+    long target = Math.max((long) Math.ceil(percentile / 100.0 * count), 1);
+
+    long seen = 0;
+
+    for (int i = 0; i < _counts.length(); ++i) {
+      
+      seen += _counts.get(i);
+
+      if (seen >= target) {
+        return getBucketMax(i);
+      }
+    }
+
+    return getBucketMax(_counts.length() - 1);
+  }
+
+  /**
+   * number of values recorded.
+   */
+  private final AtomicLong _count = new AtomicLong();
+
+  /**
+   * number of values recorded in each bucket.
+   */
+  private final AtomicLongArray _counts = new AtomicLongArray(CONSTANT_BUCKET_COUNT);
+
+  /**
+   * Constant for the number of buckets, enough for any non-negative long.
+   */
+  final public static int CONSTANT_BUCKET_COUNT = 976;
+
+  /**
+   * Constant for the limit below which values are recorded exactly.
+   */
+  final public static int CONSTANT_LINEAR_LIMIT = 32;
+}
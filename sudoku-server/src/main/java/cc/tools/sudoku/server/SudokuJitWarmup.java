@@ -0,0 +1,242 @@
+package cc.tools.sudoku.server;
+
+import java.lang.management.*;
+import java.util.*;
+import java.util.logging.*;
+
+/**
+ * This class warms up the {@link Sudoku} servlet before it takes traffic by
+ * passing synthetic requests for every endpoint and output format through the
+ * full request pipeline, bypassing the result caches, until JIT compilation
+ * settles. The requests are marked synthetic, so they are not rate limited,
+ * written to the access log or counted in the metrics.
+ * 
+ * This loads and initialises the Xml parser and transformer classes, runs the
+ * first native calls and lets the JIT compiler optimise the render path, so
+ * the first client requests do not pay for them.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuJitWarmup implements Runnable {
+
+  /**
+   * Constructor for {@link SudokuJitWarmup}.
+   * 
+   * @param servlet {@link Sudoku} servlet to be warmed up.
+   * @param maxDurationMs maximum warm-up duration in ms.
+   * @param metrics {@link SudokuMetrics} object used to record warm-up results.
+   */
+  public SudokuJitWarmup(Sudoku servlet, long maxDurationMs, SudokuMetrics metrics) {
+    _servlet = servlet;
+    _maxDurationMs = maxDurationMs;
+    _metrics = metrics;
+  }
+
+  /**
+   * Method stops the warm-up after the current round.
+   */
+  public void doStop() {
+    _isStopped = true;
+  }
+
+  /**
+   * Method returns the warm-up duration.
+   * 
+   * @return duration in ms or -1 if the warm-up has not completed.
+   */
+  public long getDurationMs() {
+    return _durationMs;
+  }
+
+  /**
+   * Method returns the number of warm-up rounds run.
+   * 
+   * @return number of rounds.
+   */
+  public int getRounds() {
+    return _rounds;
+  }
+
+  /**
+   * Method runs warm-up rounds until the JIT compiler has been idle for
+   * {@value CONSTANT_QUIET_ROUNDS} consecutive rounds or the maximum duration
+   * is reached.
+   */
+  public void run() {
+    
+    long startTime = System.nanoTime();
+
+    long deadline = startTime + _maxDurationMs * 1000000;
+
+    CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+
+    boolean isMonitored = compiler != null && 
+        compiler.isCompilationTimeMonitoringSupported();
+
+    long compileTime = isMonitored ? compiler.getTotalCompilationTime() : 0;
+
+    int quietRounds = 0;
+
+    while (!_isStopped &&
+        System.nanoTime() < deadline &&
+        quietRounds < CONSTANT_QUIET_ROUNDS) {
+      
+      doRound(deadline);
+
+      ++_rounds;
+
+      if (!isMonitored) {
+        
+        quietRounds = _rounds >= CONSTANT_UNMONITORED_ROUNDS ? CONSTANT_QUIET_ROUNDS : 0;
+        
+        continue;
+      }
+
+      long time = compiler.getTotalCompilationTime();
+
+      quietRounds = time == compileTime ? quietRounds + 1 : 0;
+
+      compileTime = time;
+    }
+
+    _durationMs = (System.nanoTime() - startTime) / 1000000;
+
+    _metrics.doAdd(CONSTANT_METRIC_DURATION, _durationMs);
+
+    _metrics.doAdd(CONSTANT_METRIC_ROUNDS, _rounds);
+
+    Logger.getLogger(SudokuJitWarmup.class.getName()).log(Level.INFO, 
+        "info: JIT warm-up of " + _rounds + " rounds done in " + _durationMs + "ms");
+  }
+
+  /**
+   * Method passes {@value CONSTANT_REQUESTS_PER_ROUND} requests for every
+   * endpoint, format and warm-up position through the servlet.
+   * 
+   * @param deadline {@link System#nanoTime()} after which the round is ended early.
+   */
+  private void doRound(long deadline) {
+    
+    for (int i = 0; i < CONSTANT_REQUESTS_PER_ROUND && System.nanoTime() < deadline; ++i) {
+      
+      for (String endpoint : CONSTANT_ENDPOINTS) {
+        
+        for (Map<String, String> format : CONSTANT_FORMATS) {
+          
+          for (String position : CONSTANT_POSITIONS) {
+            
+            Map<String, String> parameters = new HashMap<>(format);
+
+            parameters.put(Sudoku.CONSTANT_HTTP_FIELD_POSITION, position);
+
+            SudokuSyntheticExchange exchange = new SudokuSyntheticExchange(endpoint, parameters);
+
+            exchange.getRequest().setAttribute(Sudoku.CONSTANT_ATTRIBUTE_NO_CACHE, Boolean.TRUE);
+
+            exchange.getRequest().setAttribute(Sudoku.CONSTANT_ATTRIBUTE_SYNTHETIC, Boolean.TRUE);
+
+            try {
+              
+              _servlet.doGet(exchange.getRequest(), exchange.getResponse());
+            
+            } catch (Exception e) {
+              
+              Logger.getLogger(SudokuJitWarmup.class.getName()).log(Level.SEVERE, 
+                  "error: JIT warm-up request failed " + e);
+              
+              return;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * warm-up duration in ms.
+   */
+  private volatile long _durationMs = -1;
+
+  /**
+   * boolean indicating whether the warm-up has been stopped.
+   */
+  private volatile boolean _isStopped = false;
+
+  /**
+   * maximum warm-up duration in ms.
+   */
+  private final long _maxDurationMs;
+
+  /**
+   * {@link SudokuMetrics} object used to record warm-up results.
+   */
+  private final SudokuMetrics _metrics;
+
+  /**
+   * number of warm-up rounds run.
+   */
+  private volatile int _rounds = 0;
+
+  /**
+   * {@link Sudoku} servlet to be warmed up.
+   */
+  private final Sudoku _servlet;
+
+  /**
+   * Constant for the endpoints exercised by the warm-up.
+   */
+  final public static String[] CONSTANT_ENDPOINTS = { 
+      Sudoku.CONSTANT_URI_ENDPOINT_SOLUTION, 
+      Sudoku.CONSTANT_URI_ENDPOINT_MOVES 
+  };
+
+  /**
+   * Constant for the output formats exercised by the warm-up: Html, Xml and
+   * pretty-printed Xml.
+   */
+  final public static List<Map<String, String>> CONSTANT_FORMATS = List.of(
+      Map.of(),
+      Map.of(Sudoku.CONSTANT_HTTP_FIELD_XML_FORMAT, "y"),
+      Map.of(Sudoku.CONSTANT_HTTP_FIELD_XML_FORMAT, "y", Sudoku.CONSTANT_HTTP_FIELD_XML_PRETTY, "y"));
+
+  /**
+   * Metric name constant for the warm-up duration in ms.
+   */
+  final public static String CONSTANT_METRIC_DURATION = "warmup.jit.ms";
+
+  /**
+   * Metric name constant for the number of warm-up rounds.
+   */
+  final public static String CONSTANT_METRIC_ROUNDS = "warmup.jit.rounds";
+
+  /**
+   * Constant for the positions used by the warm-up.
+   */
+  final public static String[] CONSTANT_POSITIONS = {
+      "0 6 5 2 0 9 3 0 0 0 8 0 0 0 0 0 0 1 0 0 0 0 6 0 0 0 0 0 0 6 0 3 0 0 0 0 " +
+      "0 5 0 6 0 4 0 8 0 0 0 0 0 7 0 4 0 0 0 0 0 0 0 7 0 0 0 0 0 2 4 0 5 9 0 0 " + 
+      "9 0 0 0 0 0 0 3 0",
+      "5 3 0 0 7 0 0 0 0 6 0 0 1 9 5 0 0 0 0 9 8 0 0 0 0 6 0 8 0 0 0 6 0 0 0 3 " +
+      "4 0 0 8 0 3 0 0 1 7 0 0 0 2 0 0 0 6 0 6 0 0 0 0 2 8 0 0 0 0 4 1 9 0 0 5 " + 
+      "0 0 0 0 8 0 0 7 9"
+  };
+
+  /**
+   * Constant for the number of consecutive rounds without JIT compilation
+   * after which compilation is considered settled.
+   */
+  final public static int CONSTANT_QUIET_ROUNDS = 3;
+
+  /**
+   * Constant for the number of requests per endpoint, format and position in
+   * a round.
+   */
+  final public static int CONSTANT_REQUESTS_PER_ROUND = 10;
+
+  /**
+   * Constant for the number of rounds run when compilation time cannot be monitored.
+   */
+  final public static int CONSTANT_UNMONITORED_ROUNDS = 50;
+}
@@ -0,0 +1,1128 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.logging.*;
+import java.util.regex.Pattern;
+
+/**
+ * This class runs bulk solve jobs. A job is a file of positions, one per line,
+ * which is spooled to disk on submission and solved in the background.
+ *
+ * Each job has its own directory holding the spooled input, the results
+ * written so far and a checkpoint. Positions are read in blocks, solved on a
+ * fixed pool of threads and their results appended in input order, so memory
+ * use does not depend on the size of a job. After each block the results are
+ * forced to disk and the checkpoint, holding the number of input lines and
+ * result bytes done, is replaced atomically. Jobs found unfinished at start-up
+ * are resumed from their checkpoint, discarding any results written after it.
+ *
+ * Each result line holds the input line number, the result code and the 81
+ * solution digits, or '-' if there is no solution.
+ *
+ * Jobs done or failed for longer than the retention time are forgotten and
+ * their directories deleted.
+ *
+ * With a batch solver, each block is split into runs of
+ * {@value CONSTANT_BATCH_LINES} lines solved together on one thread, as by
+ * the Java batch engine, rather than one task per line.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuJobs implements Runnable, Closeable {
+
+  /**
+   * This class holds the progress of a job.
+   */
+  private static class Job {
+
+    /**
+     * Constructor for {@link Job}.
+     *
+     * @param id job id.
+     * @param directory job directory.
+     * @param client key of the submitting client or null for a recovered job.
+     */
+    Job(String id, File directory, String client) {
+
+      _id = id;
+
+      _directory = directory;
+
+      _client = client;
+    }
+
+    /**
+     * key of the submitting client or null for a recovered job.
+     */
+    private final String _client;
+
+    /**
+     * job directory.
+     */
+    private final File _directory;
+
+    /**
+     * number of positions which failed to solve.
+     */
+    private volatile long _failed = 0;
+
+    /**
+     * time in ms the job was done or failed, 0 while it is queued or running.
+     */
+    private volatile long _finishedMs = 0;
+
+    /**
+     * job id.
+     */
+    private final String _id;
+
+    /**
+     * number of input lines done.
+     */
+    private volatile long _lines = 0;
+
+    /**
+     * number of result bytes written.
+     */
+    private volatile long _resultBytes = 0;
+
+    /**
+     * number of positions solved.
+     */
+    private volatile long _solved = 0;
+
+    /**
+     * job state, one of the CONSTANT_STATE_* constants.
+     */
+    private volatile String _state = CONSTANT_STATE_QUEUED;
+  }
+
+  /**
+   * Constructor for {@link SudokuJobs}.
+   *
+   * @param directory directory holding one sub-directory per job.
+   * @param threads number of solver threads.
+   * @param blockLines number of input lines solved between checkpoints.
+   * @param inputMaxBytes maximum size of a job's input.
+   * @param clientMaxJobs maximum number of queued or running jobs per client,
+   *                      0 for no limit.
+   * @param retentionMs time in ms done or failed jobs are kept, 0 to keep
+   *                    them forever.
+   * @param solver {@link Function} solving a canonical position.
+   * @param batchSolver {@link Function} solving canonical positions together,
+   *                    returning their results in order, or null to solve
+   *                    each position with solver.
+   * @param metrics {@link SudokuMetrics} object used to record job progress.
+   * @throws IOException if directory cannot be created.
+   */
+  public SudokuJobs(File directory, int threads, int blockLines, long inputMaxBytes, int clientMaxJobs,
+      long retentionMs, Function<String, SudokuResult> solver, Function<String[], SudokuResult[]> batchSolver, 
+      SudokuMetrics metrics) throws IOException {
+
+    _directory = directory;
+    _threads = Math.max(threads, 1);
+    _blockLines = Math.max(blockLines, 1);
+    _inputMaxBytes = inputMaxBytes;
+    _clientMaxJobs = clientMaxJobs;
+    _retentionMs = retentionMs;
+    _solver = solver;
+    _batchSolver = batchSolver;
+    _metrics = metrics;
+
+    Files.createDirectories(directory.toPath());
+
+    _executor = Executors.newFixedThreadPool(_threads, runnable -> {
+      Thread thread = new Thread(runnable, "sudoku-jobs-solver");
+
+      thread.setDaemon(true);
+
+      return thread;
+    });
+  }
+
+  /**
+   * Method stops the jobs. The block being solved is completed and
+   * checkpointed if that takes less than {@value CONSTANT_STOP_WAIT_MS}ms,
+   * otherwise the runner is interrupted. Either way the job is resumed from
+   * its last checkpoint at the next start.
+   */
+  public void close() {
+
+    _isStopped = true;
+
+    Thread runner = _runner;
+
+    if (runner != null) {
+
+      try {
+
+        runner.join(CONSTANT_STOP_WAIT_MS);
+
+        if (runner.isAlive()) {
+
+          runner.interrupt();
+
+          runner.join(CONSTANT_STOP_WAIT_MS);
+        }
+
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    _executor.shutdownNow();
+  }
+
+  /**
+   * Method forgets the jobs done or failed for longer than the retention time
+   * and deletes their directories.
+   *
+   * @param nowMs current time in ms.
+   */
+  void doExpire(long nowMs) {
+
+    if (_retentionMs <= 0) {
+      return;
+    }
+
+    for (Job job : _jobs.values()) {
+
+      long finishedMs = job._finishedMs;
+
+      if (finishedMs == 0 ||
+          nowMs - finishedMs < _retentionMs) {
+        continue;
+      }
+
+      _jobs.remove(job._id);
+
+      doDelete(job._directory);
+
+      Logger.getLogger(SudokuJobs.class.getName()).log(Level.INFO,
+          "info: job " + job._id + " expired");
+    }
+  }
+
+  /**
+   * Method solves the rest of job from its checkpoint.
+   *
+   * @param job {@link Job} object.
+   * @throws IOException if the job files cannot be read or written.
+   * @throws InterruptedException .
+   */
+  private void doProcess(Job job) throws IOException, InterruptedException {
+
+    job._state = CONSTANT_STATE_RUNNING;
+
+    Path input = new File(job._directory, CONSTANT_FILE_INPUT).toPath();
+
+    Path results = new File(job._directory, CONSTANT_FILE_RESULTS).toPath();
+
+    try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+        FileChannel channel = FileChannel.open(results,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+
+      channel.truncate(job._resultBytes);
+
+      channel.position(job._resultBytes);
+
+      for (long i = 0; i < job._lines; ++i) {
+
+        if (reader.readLine() == null) {
+          break;
+        }
+      }
+
+      List<Future<String[]>> block = new ArrayList<>(_blockLines);
+
+      while (!_isStopped) {
+
+        block.clear();
+
+        int lineCount = 0;
+
+        List<String> run = new ArrayList<>(CONSTANT_BATCH_LINES);
+
+        String line;
+
+        while (lineCount < _blockLines &&
+            (line = reader.readLine()) != null) {
+
+          String text = line;
+
+          long lineNumber = job._lines + ++lineCount;
+
+          if (_batchSolver == null) {
+
+            block.add(_executor.submit(() -> new String[] { getResultLine(lineNumber, text) }));
+
+            continue;
+          }
+
+          run.add(text);
+
+          if (run.size() == CONSTANT_BATCH_LINES) {
+
+            block.add(doSubmitRun(lineNumber - run.size() + 1, run));
+
+            run = new ArrayList<>(CONSTANT_BATCH_LINES);
+          }
+        }
+
+        if (!run.isEmpty()) {
+          block.add(doSubmitRun(job._lines + lineCount - run.size() + 1, run));
+        }
+
+        if (lineCount == 0) {
+          break;
+        }
+
+        StringBuilder buffer = new StringBuilder();
+
+        for (Future<String[]> future : block) {
+
+          try {
+
+            for (String result : future.get()) {
+
+              if (result == null) {
+                continue;
+              }
+
+              buffer.append(result).append('\n');
+
+              if (result.endsWith(CONSTANT_NO_SOLUTION)) {
+                ++job._failed;
+              } else {
+                ++job._solved;
+              }
+            }
+
+          } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+          }
+        }
+
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.US_ASCII);
+
+        channel.write(ByteBuffer.wrap(bytes));
+
+        channel.force(false);
+
+        job._lines += lineCount;
+
+        job._resultBytes += bytes.length;
+
+        doWriteCheckpoint(job);
+      }
+    }
+
+    if (_isStopped) {
+
+      job._state = CONSTANT_STATE_QUEUED;
+
+      return;
+    }
+
+    Files.write(new File(job._directory, CONSTANT_FILE_DONE).toPath(), new byte[0]);
+
+    job._state = CONSTANT_STATE_DONE;
+
+    job._finishedMs = System.currentTimeMillis();
+
+    Logger.getLogger(SudokuJobs.class.getName()).log(Level.INFO,
+        "info: job " + job._id + " done, " + job._solved + " solved " + job._failed + " failed");
+  }
+
+  /**
+   * Method loads the jobs found in the jobs directory and queues those not
+   * done.
+   */
+  private void doRecover() {
+
+    File[] directories = _directory.listFiles(File::isDirectory);
+
+    if (directories == null) {
+      return;
+    }
+
+    Arrays.sort(directories, Comparator.comparingLong(File::lastModified));
+
+    for (File directory : directories) {
+
+      if (!isJobId(directory.getName()) ||
+          !new File(directory, CONSTANT_FILE_INPUT).isFile()) {
+        continue;
+      }
+
+      Job job = new Job(directory.getName(), directory, null);
+
+      try {
+
+        doReadCheckpoint(job);
+
+      } catch (IOException e) {
+
+        Logger.getLogger(SudokuJobs.class.getName()).log(Level.SEVERE,
+            "error: job " + job._id + " checkpoint unreadable, restarting it: " + e.getMessage());
+      }
+
+      _jobs.put(job._id, job);
+
+      File done = new File(directory, CONSTANT_FILE_DONE);
+
+      if (done.isFile()) {
+
+        job._state = CONSTANT_STATE_DONE;
+
+        job._finishedMs = Math.max(done.lastModified(), 1);
+
+        continue;
+      }
+
+      _queue.add(job);
+
+      Logger.getLogger(SudokuJobs.class.getName()).log(Level.INFO,
+          "info: job " + job._id + " resumed at line " + job._lines);
+    }
+  }
+
+  /**
+   * Method reads the checkpoint of job, if it has one. A checkpoint missing a
+   * value or pointing past the end of a result line is rejected.
+   *
+   * @param job {@link Job} object.
+   * @throws IOException if the checkpoint cannot be read or is rejected.
+   */
+  private void doReadCheckpoint(Job job) throws IOException {
+
+    Path checkpoint = new File(job._directory, CONSTANT_FILE_CHECKPOINT).toPath();
+
+    if (!Files.exists(checkpoint)) {
+      return;
+    }
+
+    Properties properties = new Properties();
+
+    try (InputStream in = Files.newInputStream(checkpoint)) {
+      properties.load(in);
+    }
+
+    try {
+
+      job._lines = Long.parseLong(properties.getProperty("lines"));
+      job._resultBytes = Long.parseLong(properties.getProperty("bytes"));
+      job._solved = Long.parseLong(properties.getProperty("solved"));
+      job._failed = Long.parseLong(properties.getProperty("failed"));
+
+      if (!isLineEnd(new File(job._directory, CONSTANT_FILE_RESULTS), job._resultBytes)) {
+        throw new NumberFormatException("bytes " + job._resultBytes + " not at a line end");
+      }
+
+    } catch (NumberFormatException e) {
+
+      job._lines = 0;
+      job._resultBytes = 0;
+      job._solved = 0;
+      job._failed = 0;
+
+      throw new IOException("bad checkpoint " + checkpoint, e);
+    }
+  }
+
+  /**
+   * Method starts solving queued jobs, first resuming the unfinished jobs
+   * found in the jobs directory.
+   */
+  public void doStart() {
+
+    doRecover();
+
+    Thread thread = new Thread(this, "sudoku-jobs");
+
+    thread.setDaemon(true);
+
+    _runner = thread;
+
+    thread.start();
+  }
+
+  /**
+   * Method spools a job's input to disk and queues the job. The input is
+   * renamed into place once complete, so a partly spooled job is never
+   * resumed. The job takes over the client's reservation made by
+   * {@link SudokuJobs#doReserve(String)}, which is released if the job is
+   * not queued.
+   *
+   * @param in {@link InputStream} holding one position per line.
+   * @param client key of the submitting client.
+   * @return String containing the job id or null if the input is larger than
+   *         the configured maximum.
+   * @throws IOException if the input cannot be spooled.
+   */
+  public String doSubmit(InputStream in, String client) throws IOException {
+
+    try {
+
+      String id = doSpool(in, client);
+
+      if (id != null) {
+        return id;
+      }
+
+    } catch (IOException | RuntimeException e) {
+
+      doRelease(client);
+
+      throw e;
+    }
+
+    doRelease(client);
+
+    return null;
+  }
+
+  /**
+   * Method reserves a job for client if it has fewer queued or running jobs
+   * than the configured maximum. The reservation is released once the job is
+   * done or has failed.
+   *
+   * @param client key of the submitting client.
+   * @return boolean true if a job was reserved, false if the client is at
+   *         its limit.
+   */
+  public boolean doReserve(String client) {
+
+    if (_clientMaxJobs <= 0) {
+      return true;
+    }
+
+    boolean[] isReserved = { false };
+
+    _clientJobs.compute(client, (key, count) -> {
+
+      int current = count == null ? 0 : count;
+
+      if (current >= _clientMaxJobs) {
+        return count;
+      }
+
+      isReserved[0] = true;
+
+      return current + 1;
+    });
+
+    return isReserved[0];
+  }
+
+  /**
+   * Method releases a job reservation of client.
+   *
+   * @param client key of the client or null for a recovered job.
+   */
+  private void doRelease(String client) {
+
+    if (client == null ||
+        _clientMaxJobs <= 0) {
+      return;
+    }
+
+    _clientJobs.computeIfPresent(client, (key, count) -> count > 1 ? count - 1 : null);
+  }
+
+  /**
+   * Method spools a job's input to disk and queues the job.
+   *
+   * @param in {@link InputStream} holding one position per line.
+   * @param client key of the submitting client.
+   * @return String containing the job id or null if the input is larger than
+   *         the configured maximum.
+   * @throws IOException if the input cannot be spooled.
+   */
+  private String doSpool(InputStream in, String client) throws IOException {
+
+    String id = UUID.randomUUID().toString();
+
+    File directory = new File(_directory, id);
+
+    Files.createDirectories(directory.toPath());
+
+    Path spool = new File(directory, CONSTANT_FILE_INPUT + ".tmp").toPath();
+
+    long size = 0;
+
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(spool))) {
+
+      byte[] buffer = new byte[CONSTANT_COPY_BUFFER_BYTES];
+
+      int count;
+
+      while ((count = in.read(buffer)) >= 0) {
+
+        size += count;
+
+        if (size > _inputMaxBytes) {
+          break;
+        }
+
+        out.write(buffer, 0, count);
+      }
+    }
+
+    if (size > _inputMaxBytes) {
+
+      doDelete(directory);
+
+      return null;
+    }
+
+    Files.move(spool, new File(directory, CONSTANT_FILE_INPUT).toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+    Job job = new Job(id, directory, client);
+
+    _jobs.put(id, job);
+
+    _queue.add(job);
+
+    _metrics.doIncrement(CONSTANT_METRIC_SUBMITTED);
+
+    return id;
+  }
+
+  /**
+   * Method submits a run of input lines to be solved together by the batch
+   * solver.
+   *
+   * @param firstLineNumber input line number of the first line, from 1.
+   * @param lines input lines.
+   * @return {@link Future} of the result lines.
+   */
+  private Future<String[]> doSubmitRun(long firstLineNumber, List<String> lines) {
+    return _executor.submit(() -> getResultLines(firstLineNumber, lines));
+  }
+
+  /**
+   * Method deletes the files of directory and directory.
+   *
+   * @param directory job directory.
+   */
+  private static void doDelete(File directory) {
+
+    File[] files = directory.listFiles();
+
+    if (files != null) {
+
+      for (File file : files) {
+        file.delete();
+      }
+    }
+
+    directory.delete();
+  }
+
+  /**
+   * Method replaces the checkpoint of job with its current progress.
+   *
+   * @param job {@link Job} object.
+   * @throws IOException if the checkpoint cannot be written.
+   */
+  private void doWriteCheckpoint(Job job) throws IOException {
+
+    Properties properties = new Properties();
+
+    properties.setProperty("lines", Long.toString(job._lines));
+    properties.setProperty("bytes", Long.toString(job._resultBytes));
+    properties.setProperty("solved", Long.toString(job._solved));
+    properties.setProperty("failed", Long.toString(job._failed));
+
+    Path temporary = new File(job._directory, CONSTANT_FILE_CHECKPOINT + ".tmp").toPath();
+
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+      properties.store(bytes, null);
+
+      channel.write(ByteBuffer.wrap(bytes.toByteArray()));
+
+      channel.force(true);
+    }
+
+    Files.move(temporary, new File(job._directory, CONSTANT_FILE_CHECKPOINT).toPath(),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Method returns a new Java batch engine. The engine is compiled apart from
+   * the servlet with the 'jdk.incubator.vector' module and loaded by name, so
+   * the servlet builds and runs without the module.
+   *
+   * @param timeoutMs maximum duration in ms of the search of each position
+   *                  left unsolved by propagation.
+   * @return {@link SudokuMicroBatcher.Engine} solving positions together.
+   * @throws ReflectiveOperationException if the engine cannot be loaded.
+   */
+  public static SudokuMicroBatcher.Engine getBatchSolver(long timeoutMs) throws ReflectiveOperationException {
+    return (SudokuMicroBatcher.Engine) Class.forName(CONSTANT_BATCH_SOLVER_CLASS)
+        .getConstructor(long.class)
+        .newInstance(timeoutMs);
+  }
+
+  /**
+   * Method returns the canonical position held by an input line.
+   *
+   * @param line input line.
+   * @return String containing the canonical position or null if line is
+   *         blank or a comment.
+   */
+  private static String getPosition(String line) {
+
+    String text = line.trim();
+
+    if (text.isEmpty() ||
+        text.startsWith("#")) {
+      return null;
+    }
+
+    return SudokuBoard.getCanonicalPosition(text.replace('.', '0'));
+  }
+
+  /**
+   * Method returns the result line of an input line.
+   *
+   * @param lineNumber input line number, from 1.
+   * @param line input line.
+   * @return String containing the result line or null if line is blank or a
+   *         comment.
+   */
+  private String getResultLine(long lineNumber, String line) {
+
+    String position = getPosition(line);
+
+    if (position == null) {
+      return null;
+    }
+
+    SudokuResult result = SudokuBoard.getCellsFromPosition(position) == null ?
+        new SudokuResult(SudokuNative.CONSTANT_RESULT_BAD_PARAMETER, "", 0) :
+        _solver.apply(position);
+
+    return getResultLine(lineNumber, result);
+  }
+
+  /**
+   * Method returns the result line of an input line and records it in the
+   * job metrics.
+   *
+   * @param lineNumber input line number, from 1.
+   * @param result {@link SudokuResult} of the line's position.
+   * @return String containing the result line.
+   */
+  private String getResultLine(long lineNumber, SudokuResult result) {
+
+    int[] cells = result.isSuccess() ? SudokuBoard.getCellsFromSolutionXml(result.getData()) : null;
+
+    StringBuilder buffer = new StringBuilder(CONSTANT_RESULT_LINE_BYTES);
+
+    buffer.append(lineNumber).append(' ').append(result.getCode()).append(' ');
+
+    if (cells == null) {
+
+      _metrics.doIncrement(CONSTANT_METRIC_FAILED);
+
+      return buffer.append(CONSTANT_NO_SOLUTION).toString();
+    }
+
+    for (int cell : cells) {
+      buffer.append(cell);
+    }
+
+    _metrics.doIncrement(CONSTANT_METRIC_SOLVED);
+
+    return buffer.toString();
+  }
+
+  /**
+   * Method returns the result lines of a run of input lines solved together
+   * by the batch solver.
+   *
+   * @param firstLineNumber input line number of the first line, from 1.
+   * @param lines input lines.
+   * @return String array holding the result line of each input line, null
+   *         for blank lines and comments.
+   */
+  private String[] getResultLines(long firstLineNumber, List<String> lines) {
+
+    String[] positions = new String[lines.size()];
+
+    List<String> batch = new ArrayList<>(lines.size());
+
+    for (int i = 0; i < positions.length; ++i) {
+
+      positions[i] = getPosition(lines.get(i));
+
+      if (positions[i] != null) {
+        batch.add(positions[i]);
+      }
+    }
+
+    SudokuResult[] results = _batchSolver.apply(batch.toArray(new String[0]));
+
+    String[] resultLines = new String[positions.length];
+
+    for (int i = 0, j = 0; i < positions.length; ++i) {
+
+      if (positions[i] != null) {
+        resultLines[i] = getResultLine(firstLineNumber + i, results[j++]);
+      }
+    }
+
+    return resultLines;
+  }
+
+  /**
+   * Method returns the results file of a job once it is done.
+   *
+   * @param id job id.
+   * @return results {@link File} or null if the job is unknown or not done.
+   */
+  public File getResults(String id) {
+
+    Job job = isJobId(id) ? _jobs.get(id) : null;
+
+    if (job == null ||
+        !CONSTANT_STATE_DONE.equals(job._state)) {
+      return null;
+    }
+
+    return new File(job._directory, CONSTANT_FILE_RESULTS);
+  }
+
+  /**
+   * Method returns the state of a job.
+   *
+   * @param id job id.
+   * @return String containing one of the CONSTANT_STATE_* constants or null
+   *         if the job is unknown.
+   */
+  public String getState(String id) {
+
+    Job job = isJobId(id) ? _jobs.get(id) : null;
+
+    return job == null ? null : job._state;
+  }
+
+  /**
+   * Method returns the progress of a job as 'name: value' lines.
+   *
+   * @param id job id.
+   * @return String containing job progress or null if the job is unknown.
+   */
+  public String getStatus(String id) {
+
+    Job job = isJobId(id) ? _jobs.get(id) : null;
+
+    if (job == null) {
+      return null;
+    }
+
+    StringBuilder buffer = new StringBuilder();
+
+    buffer.append("id: ").append(job._id).append('\n');
+    buffer.append("state: ").append(job._state).append('\n');
+    buffer.append("lines: ").append(job._lines).append('\n');
+    buffer.append("solved: ").append(job._solved).append('\n');
+    buffer.append("failed: ").append(job._failed).append('\n');
+
+    return buffer.toString();
+  }
+
+  /**
+   * Method returns boolean indicating whether the first bytes of results end
+   * with a complete result line.
+   *
+   * @param results results {@link File} of a job.
+   * @param bytes number of bytes.
+   * @return boolean true if bytes is 0 or the byte before it ends a line,
+   *         false otherwise.
+   * @throws IOException if results cannot be read.
+   */
+  private static boolean isLineEnd(File results, long bytes) throws IOException {
+
+    if (bytes == 0) {
+      return true;
+    }
+
+    if (bytes < 0 ||
+        bytes > results.length()) {
+      return false;
+    }
+
+    try (RandomAccessFile file = new RandomAccessFile(results, "r")) {
+
+      file.seek(bytes - 1);
+
+      return file.read() == '\n';
+    }
+  }
+
+  /**
+   * Method returns boolean indicating whether id is a well formed job id, so
+   * that it can be used as a directory name.
+   *
+   * @param id job id.
+   * @return boolean true if id is well formed, false otherwise.
+   */
+  private static boolean isJobId(String id) {
+    return id != null && CONSTANT_ID_PATTERN.matcher(id).matches();
+  }
+
+  /**
+   * Method solves queued jobs one at a time until the jobs are stopped,
+   * expiring old jobs every {@value CONSTANT_EXPIRE_INTERVAL_MS}ms.
+   */
+  public void run() {
+
+    long expiredMs = 0;
+
+    while (!_isStopped) {
+
+      long nowMs = System.currentTimeMillis();
+
+      if (nowMs - expiredMs >= CONSTANT_EXPIRE_INTERVAL_MS) {
+
+        doExpire(nowMs);
+
+        expiredMs = nowMs;
+      }
+
+      Job job;
+
+      try {
+
+        job = _queue.poll(CONSTANT_POLL_MS, TimeUnit.MILLISECONDS);
+
+      } catch (InterruptedException e) {
+        return;
+      }
+
+      if (job == null) {
+        continue;
+      }
+
+      try {
+
+        doProcess(job);
+
+      } catch (InterruptedException e) {
+
+        job._state = CONSTANT_STATE_QUEUED;
+
+        return;
+
+      } catch (IOException | RuntimeException e) {
+
+        job._state = CONSTANT_STATE_FAILED;
+
+        job._finishedMs = System.currentTimeMillis();
+
+        Logger.getLogger(SudokuJobs.class.getName()).log(Level.SEVERE,
+            "error: job " + job._id + " failed at line " + job._lines + ": " + e.toString());
+      }
+
+      if (CONSTANT_STATE_DONE.equals(job._state) ||
+          CONSTANT_STATE_FAILED.equals(job._state)) {
+        doRelease(job._client);
+      }
+    }
+  }
+
+  /**
+   * batch position solver or null.
+   */
+  private final Function<String[], SudokuResult[]> _batchSolver;
+
+  /**
+   * number of input lines solved between checkpoints.
+   */
+  private final int _blockLines;
+
+  /**
+   * number of queued or running jobs by client key.
+   */
+  private final ConcurrentHashMap<String, Integer> _clientJobs = new ConcurrentHashMap<>();
+
+  /**
+   * maximum number of queued or running jobs per client, 0 for no limit.
+   */
+  private final int _clientMaxJobs;
+
+  /**
+   * directory holding one sub-directory per job.
+   */
+  private final File _directory;
+
+  /**
+   * solver threads.
+   */
+  private final ExecutorService _executor;
+
+  /**
+   * maximum size of a job's input.
+   */
+  private final long _inputMaxBytes;
+
+  /**
+   * boolean indicating whether the jobs have been stopped.
+   */
+  private volatile boolean _isStopped = false;
+
+  /**
+   * jobs by id.
+   */
+  private final Map<String, Job> _jobs = new ConcurrentHashMap<>();
+
+  /**
+   * {@link SudokuMetrics} object used to record job progress.
+   */
+  private final SudokuMetrics _metrics;
+
+  /**
+   * jobs waiting to be solved.
+   */
+  private final BlockingQueue<Job> _queue = new LinkedBlockingQueue<>();
+
+  /**
+   * time in ms done or failed jobs are kept, 0 to keep them forever.
+   */
+  private final long _retentionMs;
+
+  /**
+   * thread solving queued jobs.
+   */
+  private volatile Thread _runner = null;
+
+  /**
+   * position solver.
+   */
+  private final Function<String, SudokuResult> _solver;
+
+  /**
+   * number of solver threads.
+   */
+  private final int _threads;
+
+  /**
+   * Constant for the class name of the Java batch engine.
+   */
+  final public static String CONSTANT_BATCH_SOLVER_CLASS = "cc.tools.sudoku.server.SudokuBatchSolver";
+
+  /**
+   * Constant for the number of lines solved together by the batch solver.
+   */
+  final public static int CONSTANT_BATCH_LINES = 256;
+
+  /**
+   * Constant for the size of the buffer spooling job input.
+   */
+  final public static int CONSTANT_COPY_BUFFER_BYTES = 65536;
+
+  /**
+   * Constant for the interval in ms at which jobs done or failed for longer
+   * than the retention time are expired.
+   */
+  final public static long CONSTANT_EXPIRE_INTERVAL_MS = 60000;
+
+  /**
+   * Constant for the name of a job's checkpoint file.
+   */
+  final public static String CONSTANT_FILE_CHECKPOINT = "checkpoint";
+
+  /**
+   * Constant for the name of the file marking a job done.
+   */
+  final public static String CONSTANT_FILE_DONE = "done";
+
+  /**
+   * Constant for the name of a job's spooled input file.
+   */
+  final public static String CONSTANT_FILE_INPUT = "input";
+
+  /**
+   * Constant for the name of a job's results file.
+   */
+  final public static String CONSTANT_FILE_RESULTS = "results";
+
+  /**
+   * Constant for the pattern of job ids.
+   */
+  final public static Pattern CONSTANT_ID_PATTERN = Pattern.compile("[0-9a-f]{8}(-[0-9a-f]{4}){3}-[0-9a-f]{12}");
+
+  /**
+   * Metric name constant for job positions which failed to solve.
+   */
+  final public static String CONSTANT_METRIC_FAILED = "jobs.failed";
+
+  /**
+   * Metric name constant for job positions solved.
+   */
+  final public static String CONSTANT_METRIC_SOLVED = "jobs.solved";
+
+  /**
+   * Metric name constant for jobs submitted.
+   */
+  final public static String CONSTANT_METRIC_SUBMITTED = "jobs.submitted";
+
+  /**
+   * Constant for the solution column of result lines without a solution.
+   */
+  final public static String CONSTANT_NO_SOLUTION = "-";
+
+  /**
+   * Constant for the interval in ms at which the job runner checks whether
+   * the jobs have been stopped.
+   */
+  final public static long CONSTANT_POLL_MS = 500;
+
+  /**
+   * Constant for the expected length of a result line.
+   */
+  final public static int CONSTANT_RESULT_LINE_BYTES = 100;
+
+  /**
+   * Job state constant for jobs solved completely.
+   */
+  final public static String CONSTANT_STATE_DONE = "done";
+
+  /**
+   * Job state constant for jobs stopped by an error. They are resumed at the
+   * next start.
+   */
+  final public static String CONSTANT_STATE_FAILED = "failed";
+
+  /**
+   * Job state constant for jobs waiting to be solved.
+   */
+  final public static String CONSTANT_STATE_QUEUED = "queued";
+
+  /**
+   * Job state constant for the job being solved.
+   */
+  final public static String CONSTANT_STATE_RUNNING = "running";
+
+  /**
+   * Constant for the time in ms to wait for the block being solved when the
+   * jobs are stopped.
+   */
+  final public static long CONSTANT_STOP_WAIT_MS = 5000;
+}
@@ -0,0 +1,603 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class is an open-loop load generator for the solution and moves
+ * endpoints. It replays a corpus of positions at a fixed arrival rate,
+ * cycling through every endpoint and output format, and reports throughput,
+ * latency percentiles and the outcome of the requests for each.
+ *
+ * Requests are sent on a fixed schedule whether or not earlier requests have
+ * been answered, so a slow server builds a queue instead of slowing the
+ * client down. Latency is measured from the time a request was scheduled to
+ * be sent, not from when it was sent, which corrects for coordinated
+ * omission. The uncorrected service time is reported alongside it.
+ *
+ * <pre>
+ * --url=base          server base Url, default {@value CONSTANT_DEFAULT_URL}.
+ * --corpus=file       file of positions, one per line. Required.
+ * --rate=n            requests per second, default {@value CONSTANT_DEFAULT_RATE}.
+ * --duration.s=n      measured run time in seconds, default {@value CONSTANT_DEFAULT_DURATION_S}.
+ * --warmup.s=n        unmeasured run time in seconds before the measured run,
+ *                     default {@value CONSTANT_DEFAULT_WARMUP_S}.
+ * --endpoints=list    comma separated endpoints out of solution and moves,
+ *                     default both.
+ * --formats=list      comma separated formats out of xml, pretty and html,
+ *                     default all.
+ * --timeout.ms=n      request timeout in ms, default {@value CONSTANT_DEFAULT_TIMEOUT_MS}.
+ * --outstanding.max=n maximum number of unanswered requests, further requests
+ *                     are counted as '{@value CONSTANT_OUTCOME_OVERLOAD}', default {@value CONSTANT_DEFAULT_OUTSTANDING_MAX}.
+ * </pre>
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuLoad {
+
+  /**
+   * This class holds the statistics of one endpoint and output format.
+   */
+  private static class Target {
+
+    /**
+     * Constructor for {@link Target}.
+     *
+     * @param endpoint endpoint name, solution or moves.
+     * @param format output format name, xml, pretty or html.
+     */
+    Target(String endpoint, String format) {
+
+      _endpoint = endpoint;
+
+      _format = format;
+    }
+
+    /**
+     * Method records the outcome of a request.
+     *
+     * @param outcome outcome text.
+     * @param latencyUs latency in us from the scheduled send time, or -1 if
+     *                  the request was not sent.
+     * @param serviceUs latency in us from the actual send time, or -1 if the
+     *                  request was not sent.
+     */
+    void doRecord(String outcome, long latencyUs, long serviceUs) {
+
+      _outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+
+      if (latencyUs >= 0) {
+
+        _latency.doRecord(latencyUs);
+
+        _service.doRecord(serviceUs);
+      }
+    }
+
+    /**
+     * endpoint name.
+     */
+    private final String _endpoint;
+
+    /**
+     * output format name.
+     */
+    private final String _format;
+
+    /**
+     * latencies in us from the scheduled send time.
+     */
+    private final SudokuHistogram _latency = new SudokuHistogram();
+
+    /**
+     * number of requests per outcome.
+     */
+    private final Map<String, LongAdder> _outcomes = new ConcurrentSkipListMap<>();
+
+    /**
+     * latencies in us from the actual send time.
+     */
+    private final SudokuHistogram _service = new SudokuHistogram();
+  }
+
+  /**
+   * Constructor for {@link SudokuLoad}.
+   *
+   * @param url server base Url.
+   * @param positions positions to be replayed.
+   * @param endpoints endpoint names.
+   * @param formats output format names.
+   * @param rate requests per second.
+   * @param timeoutMs request timeout in ms.
+   * @param outstandingMax maximum number of unanswered requests.
+   */
+  public SudokuLoad(String url, List<String> positions, List<String> endpoints,
+      List<String> formats, double rate, int timeoutMs, int outstandingMax) {
+
+    _url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+
+    _positions = positions;
+
+    _rate = rate;
+
+    _timeoutMs = timeoutMs;
+
+    _outstandingMax = outstandingMax;
+
+    for (String endpoint : endpoints) {
+
+      for (String format : formats) {
+        _targets.add(new Target(endpoint, format));
+      }
+    }
+
+    _client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofMillis(timeoutMs))
+        .build();
+  }
+
+  /**
+   * Method prints the report of the measured run.
+   *
+   * @param out {@link PrintStream} the report is printed to.
+   */
+  public void doReport(PrintStream out) {
+
+    double seconds = _measuredNs / 1e9;
+
+    out.printf("target rate %.1f/s, measured %.1fs, %d sends late by over %dms%n",
+        _rate, seconds, _late.get(), CONSTANT_LATE_MS);
+
+    out.printf("%n%-10s %-7s %8s %8s %9s %9s %9s %9s %9s %9s %12s%n",
+        "endpoint", "format", "count", "errors", "rate/s",
+        "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "svc p99 us");
+
+    for (Target target : _targets) {
+      doReportTarget(out, target, seconds);
+    }
+
+    doReportTarget(out, _total, seconds);
+
+    out.printf("%noutcomes%n");
+
+    for (Target target : _targets) {
+
+      for (Map.Entry<String, LongAdder> entry : target._outcomes.entrySet()) {
+        out.printf("%-10s %-7s %-24s %8d%n", target._endpoint, target._format, entry.getKey(),
+            entry.getValue().sum());
+      }
+    }
+  }
+
+  /**
+   * Method prints the report line of target.
+   *
+   * @param out {@link PrintStream} the report is printed to.
+   * @param target {@link Target} to be reported.
+   * @param seconds measured run time in seconds.
+   */
+  private void doReportTarget(PrintStream out, Target target, double seconds) {
+
+    long count = 0;
+
+    for (Map.Entry<String, LongAdder> entry : target._outcomes.entrySet()) {
+      count += entry.getValue().sum();
+    }
+
+    SudokuHistogram latency = target._latency;
+
+    out.printf("%-10s %-7s %8d %8d %9.1f %9d %9d %9d %9d %9d %12d%n",
+        target._endpoint, target._format, count, count - getOkCount(target),
+        seconds > 0 ? latency.getCount() / seconds : 0.0,
+        latency.getPercentile(50), latency.getPercentile(90), latency.getPercentile(99),
+        latency.getPercentile(99.9), latency.getPercentile(100), target._service.getPercentile(99));
+  }
+
+  /**
+   * Method sends request number index, scheduled for intendedNs, and
+   * records its outcome once answered.
+   *
+   * @param index request number.
+   * @param intendedNs scheduled send time in {@link System#nanoTime()} units.
+   * @param isMeasured boolean indicating whether the outcome is recorded.
+   */
+  private void doSend(long index, long intendedNs, boolean isMeasured) {
+
+    Target target = _targets.get((int) (index % _targets.size()));
+
+    String position = _positions.get((int) (index / _targets.size() % _positions.size()));
+
+    if (_outstanding.get() >= _outstandingMax) {
+
+      if (isMeasured) {
+        
+        target.doRecord(CONSTANT_OUTCOME_OVERLOAD, -1, -1);
+
+        _total.doRecord(CONSTANT_OUTCOME_OVERLOAD, -1, -1);
+      }
+
+      return;
+    }
+
+    _outstanding.incrementAndGet();
+
+    HttpRequest request = HttpRequest.newBuilder(URI.create(getUri(target, position)))
+        .timeout(Duration.ofMillis(_timeoutMs))
+        .GET()
+        .build();
+
+    long sentNs = System.nanoTime();
+
+    _client.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+        .whenComplete((response, e) -> {
+
+          long now = System.nanoTime();
+
+          _outstanding.decrementAndGet();
+
+          if (!isMeasured) {
+            return;
+          }
+
+          long latencyUs = (now - intendedNs) / 1000;
+
+          long serviceUs = (now - sentNs) / 1000;
+
+          String outcome = getOutcome(response, e);
+
+          target.doRecord(outcome, latencyUs, serviceUs);
+
+          _total.doRecord(outcome, latencyUs, serviceUs);
+        });
+  }
+
+  /**
+   * Method runs the load, an unmeasured warm-up followed by the measured run,
+   * and waits for the outstanding requests to be answered.
+   *
+   * @param warmupMs warm-up run time in ms.
+   * @param durationMs measured run time in ms.
+   * @throws InterruptedException .
+   */
+  public void doRun(long warmupMs, long durationMs) throws InterruptedException {
+
+    long periodNs = Math.max((long) (1e9 / _rate), 1);
+
+    long start = System.nanoTime();
+
+    long measureStart = start + warmupMs * 1000000;
+
+    long end = measureStart + durationMs * 1000000;
+
+    for (long i = 0; ; ++i) {
+
+      long intended = start + i * periodNs;
+
+      if (intended >= end) {
+        break;
+      }
+
+      long wait = intended - System.nanoTime();
+
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      } else if (-wait > CONSTANT_LATE_MS * 1000000 &&
+                 intended >= measureStart) {
+        _late.incrementAndGet();
+      }
+
+      doSend(i, intended, intended >= measureStart);
+    }
+
+    _measuredNs = end - measureStart;
+
+    long deadline = System.nanoTime() + (_timeoutMs + CONSTANT_DRAIN_GRACE_MS) * 1000000L;
+
+    while (_outstanding.get() > 0 &&
+           System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
+  /**
+   * Method returns the number of requests of target answered with 200 and
+   * result code 0.
+   *
+   * @param target {@link Target} object.
+   * @return number of successful requests.
+   */
+  private static long getOkCount(Target target) {
+
+    LongAdder ok = target._outcomes.get(getOutcomeText(200, 0));
+
+    return ok == null ? 0 : ok.sum();
+  }
+
+  /**
+   * Method returns the outcome text of an answered or failed request, the
+   * Http status and for status 200 the engine result code found in the body.
+   *
+   * @param response {@link HttpResponse} or null if the request failed.
+   * @param e exception the request failed with or null.
+   * @return outcome text.
+   */
+  private static String getOutcome(HttpResponse<String> response, Throwable e) {
+
+    if (e != null) {
+
+      Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+      return "error " + cause.getClass().getSimpleName();
+    }
+
+    if (response.statusCode() != 200) {
+      return "http " + response.statusCode();
+    }
+
+    return getOutcomeText(200, getResultCode(response.body()));
+  }
+
+  /**
+   * Method returns the outcome text of an answered request.
+   *
+   * @param status Http status.
+   * @param code engine result code.
+   * @return outcome text.
+   */
+  private static String getOutcomeText(int status, int code) {
+    return "http " + status + " code " + code;
+  }
+
+  /**
+   * Method returns the engine result code of a response body, found by its
+   * diagnostic message.
+   *
+   * @param body response body.
+   * @return result code or 0 if the body holds no failure message.
+   */
+  private static int getResultCode(String body) {
+
+    for (int code = 1; code <= CONSTANT_RESULT_CODE_MAX; ++code) {
+
+      if (body.contains(Sudoku.getResponseJNIResultText(code))) {
+        return code;
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Method returns the request Uri of position for target.
+   *
+   * @param target {@link Target} object.
+   * @param position game position.
+   * @return String containing request Uri.
+   */
+  private String getUri(Target target, String position) {
+
+    StringBuilder uri = new StringBuilder(_url);
+
+    uri.append(target._endpoint.equals("moves") ? Sudoku.CONSTANT_URI_ENDPOINT_MOVES
+        : Sudoku.CONSTANT_URI_ENDPOINT_SOLUTION);
+
+    uri.append('?').append(Sudoku.CONSTANT_HTTP_FIELD_POSITION).append('=');
+
+    uri.append(URLEncoder.encode(position, StandardCharsets.UTF_8));
+
+    if (!target._format.equals("html")) {
+      uri.append('&').append(Sudoku.CONSTANT_HTTP_FIELD_XML_FORMAT).append("=yes");
+    }
+
+    if (target._format.equals("pretty")) {
+      uri.append('&').append(Sudoku.CONSTANT_HTTP_FIELD_XML_PRETTY).append("=yes");
+    }
+
+    return uri.toString();
+  }
+
+  /**
+   * Method returns the positions of a corpus file. Blank lines and lines
+   * starting with '#' are skipped and '.' stands for 0.
+   *
+   * @param corpus corpus file.
+   * @return {@link List} of positions.
+   * @throws IOException .
+   */
+  private static List<String> getPositions(File corpus) throws IOException {
+
+    List<String> positions = new ArrayList<>();
+
+    for (String line : Files.readAllLines(corpus.toPath(), StandardCharsets.UTF_8)) {
+
+      String text = line.trim();
+
+      if (!text.isEmpty() &&
+          !text.startsWith("#")) {
+        positions.add(text.replace('.', '0'));
+      }
+    }
+
+    return positions;
+  }
+
+  /**
+   * Method runs the load generator.
+   *
+   * @param args command line options, see {@link SudokuLoad}.
+   * @throws Exception .
+   */
+  public static void main(String[] args) throws Exception {
+
+    Map<String, String> options = new HashMap<>();
+
+    for (String arg : args) {
+
+      int separator = arg.indexOf('=');
+
+      if (!arg.startsWith("--") ||
+          separator < 0) {
+
+        System.err.println("usage: SudokuLoad --corpus=file [--url=base] [--rate=n] [--duration.s=n] " +
+            "[--warmup.s=n] [--endpoints=list] [--formats=list] [--timeout.ms=n] [--outstanding.max=n]");
+
+        System.exit(1);
+      }
+
+      options.put(arg.substring(2, separator), arg.substring(separator + 1));
+    }
+
+    if (!options.containsKey("corpus")) {
+
+      System.err.println("error: --corpus is required");
+
+      System.exit(1);
+    }
+
+    List<String> positions = getPositions(new File(options.get("corpus")));
+
+    if (positions.isEmpty()) {
+
+      System.err.println("error: corpus holds no positions");
+
+      System.exit(1);
+    }
+
+    SudokuLoad load = new SudokuLoad(options.getOrDefault("url", CONSTANT_DEFAULT_URL),
+        positions,
+        Arrays.asList(options.getOrDefault("endpoints", "solution,moves").split(",")),
+        Arrays.asList(options.getOrDefault("formats", "xml,pretty,html").split(",")),
+        Double.parseDouble(options.getOrDefault("rate", String.valueOf(CONSTANT_DEFAULT_RATE))),
+        Integer.parseInt(options.getOrDefault("timeout.ms", String.valueOf(CONSTANT_DEFAULT_TIMEOUT_MS))),
+        Integer.parseInt(options.getOrDefault("outstanding.max", String.valueOf(CONSTANT_DEFAULT_OUTSTANDING_MAX))));
+
+    load.doRun(Long.parseLong(options.getOrDefault("warmup.s", String.valueOf(CONSTANT_DEFAULT_WARMUP_S))) * 1000,
+        Long.parseLong(options.getOrDefault("duration.s", String.valueOf(CONSTANT_DEFAULT_DURATION_S))) * 1000);
+
+    load.doReport(System.out);
+
+    System.exit(0);
+  }
+
+  /**
+   * Http client sending the requests.
+   */
+  private final HttpClient _client;
+
+  /**
+   * number of sends during the measured run later than {@value CONSTANT_LATE_MS}ms.
+   */
+  private final AtomicLong _late = new AtomicLong();
+
+  /**
+   * length of the measured run in ns.
+   */
+  private long _measuredNs = 0;
+
+  /**
+   * number of unanswered requests.
+   */
+  private final AtomicInteger _outstanding = new AtomicInteger();
+
+  /**
+   * maximum number of unanswered requests.
+   */
+  private final int _outstandingMax;
+
+  /**
+   * positions replayed.
+   */
+  private final List<String> _positions;
+
+  /**
+   * requests per second.
+   */
+  private final double _rate;
+
+  /**
+   * statistics per endpoint and output format.
+   */
+  private final List<Target> _targets = new ArrayList<>();
+
+  /**
+   * request timeout in ms.
+   */
+  private final int _timeoutMs;
+
+  /**
+   * statistics over every endpoint and output format.
+   */
+  private final Target _total = new Target("total", "-");
+
+  /**
+   * server base Url.
+   */
+  private final String _url;
+
+  /**
+   * Constant for the default measured run time in seconds.
+   */
+  final public static int CONSTANT_DEFAULT_DURATION_S = 30;
+
+  /**
+   * Constant for the default maximum number of unanswered requests.
+   */
+  final public static int CONSTANT_DEFAULT_OUTSTANDING_MAX = 10000;
+
+  /**
+   * Constant for the default requests per second.
+   */
+  final public static int CONSTANT_DEFAULT_RATE = 100;
+
+  /**
+   * Constant for the default request timeout in ms.
+   */
+  final public static int CONSTANT_DEFAULT_TIMEOUT_MS = 10000;
+
+  /**
+   * Constant for the default server base Url.
+   */
+  final public static String CONSTANT_DEFAULT_URL = "http://localhost:8080";
+
+  /**
+   * Constant for the default warm-up run time in seconds.
+   */
+  final public static int CONSTANT_DEFAULT_WARMUP_S = 5;
+
+  /**
+   * Constant for the time in ms allowed beyond the request timeout for the
+   * outstanding requests to be answered at the end of a run.
+   */
+  final public static long CONSTANT_DRAIN_GRACE_MS = 1000;
+
+  /**
+   * Constant for the delay in ms after which a send counts as late, showing
+   * that the load generator itself could not keep up.
+   */
+  final public static long CONSTANT_LATE_MS = 1;
+
+  /**
+   * Constant for the outcome of requests not sent because too many requests
+   * were unanswered.
+   */
+  final public static String CONSTANT_OUTCOME_OVERLOAD = "client overload";
+
+  /**
+   * Constant for the highest engine result code recognised in responses.
+   */
+  final public static int CONSTANT_RESULT_CODE_MAX = 8;
+}
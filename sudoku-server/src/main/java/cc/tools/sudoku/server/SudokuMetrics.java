@@ -0,0 +1,103 @@
+package cc.tools.sudoku.server;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * This class holds named counters and histograms recording {@link Sudoku}
+ * servlet activity.
+ * 
+ * Counters and histograms are created on first use and are safe to update
+ * from concurrent request threads. Updates made while a thread handles a
+ * synthetic request, such as a JIT warm-up request, are dropped.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuMetrics {
+
+  /**
+   * Method adds value to the counter called name.
+   * 
+   * @param name counter name.
+   * @param value amount to be added.
+   */
+  public void doAdd(String name, long value) {
+    
+    if (SudokuTrace.isSynthetic()) {
+      return;
+    }
+
+    _counters.computeIfAbsent(name, k -> new LongAdder()).add(value);
+  }
+
+  /**
+   * Method increments the counter called name by one.
+   * 
+   * @param name counter name.
+   */
+  public void doIncrement(String name) {
+    doAdd(name, 1);
+  }
+
+  /**
+   * Method records value in the histogram called name.
+   * 
+   * @param name histogram name.
+   * @param value value to be recorded.
+   */
+  public void doRecord(String name, long value) {
+    
+    if (SudokuTrace.isSynthetic()) {
+      return;
+    }
+
+    _histograms.computeIfAbsent(name, k -> new SudokuHistogram()).doRecord(value);
+  }
+
+  /**
+   * Method returns a sorted copy of all counter values. Each histogram is
+   * reported as its count, median and 99th percentile.
+   * 
+   * @return {@link SortedMap} of counter names to values.
+   */
+  public SortedMap<String, Long> getSnapshot() {
+    SortedMap<String, Long> snapshot = new TreeMap<>();
+
+    for (Map.Entry<String, LongAdder> entry : _counters.entrySet()) {
+      snapshot.put(entry.getKey(), entry.getValue().sum());
+    }
+
+    for (Map.Entry<String, SudokuHistogram> entry : _histograms.entrySet()) {
+      snapshot.put(entry.getKey() + ".count", entry.getValue().getCount());
+      snapshot.put(entry.getKey() + ".p50", entry.getValue().getPercentile(50));
+      snapshot.put(entry.getKey() + ".p99", entry.getValue().getPercentile(99));
+    }
+
+    return snapshot;
+  }
+
+  /**
+   * Method returns the current value of the counter called name.
+   * 
+   * @param name counter name.
+   * @return counter value or 0 if the counter has not been used.
+   */
+  public long getValue(String name) {
+    LongAdder counter = _counters.get(name);
+
+    return counter == null ? 0 : counter.sum();
+  }
+
+  /**
+   * counters keyed by name.
+   */
+  private final ConcurrentMap<String, LongAdder> _counters = new ConcurrentHashMap<>();
+
+  /**
+   * histograms keyed by name.
+   */
+  private final ConcurrentMap<String, SudokuHistogram> _histograms = new ConcurrentHashMap<>();
+}
@@ -0,0 +1,243 @@
+package cc.tools.sudoku.server;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * This class collects concurrent solves arriving within a short window into
+ * one batch dispatched to the engine in a single call.
+ *
+ * The first call to arrive opens a batch and becomes its leader. Calls
+ * arriving while the batch is open join it and wait. Once the batch holds
+ * the maximum number of positions or its window has passed, it is closed and
+ * the leader dispatches it on its own thread, completing every call of the
+ * batch with its result. No dispatcher thread is needed and a call arriving
+ * alone pays at most the window. The batch sizes are recorded in the metrics.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuMicroBatcher {
+
+  /**
+   * This interface is implemented by engines solving batches of positions.
+   */
+  public interface Engine {
+
+    /**
+     * Method solves positions.
+     *
+     * @param positions strings containing canonical sudoku positions.
+     * @return array of {@link SudokuResult} objects, one per position, in order.
+     */
+    SudokuResult[] doCall(String[] positions);
+  }
+
+  /**
+   * This class holds the calls of one batch.
+   */
+  private static class Batch {
+
+    /**
+     * futures of the calls, in the order of their positions.
+     */
+    final List<CompletableFuture<SudokuResult>> _futures = new ArrayList<>();
+
+    /**
+     * boolean indicating whether the batch takes no further calls.
+     */
+    boolean _isClosed = false;
+
+    /**
+     * positions of the calls.
+     */
+    final List<String> _positions = new ArrayList<>();
+  }
+
+  /**
+   * Constructor for {@link SudokuMicroBatcher}.
+   *
+   * @param engine {@link Engine} solving the batches.
+   * @param windowUs maximum time in us a batch stays open.
+   * @param batchMax maximum number of positions in a batch.
+   * @param metrics {@link SudokuMetrics} object used to record batch sizes.
+   */
+  public SudokuMicroBatcher(Engine engine, long windowUs, int batchMax, SudokuMetrics metrics) {
+
+    _engine = engine;
+    _windowNs = windowUs * 1000L;
+    _batchMax = Math.max(batchMax, 1);
+    _metrics = metrics;
+    _closedCondition = _lock.newCondition();
+  }
+
+  /**
+   * Method solves position as part of the open batch, opening one if none is.
+   * A call joining a batch whose engine call throws gets an internal error.
+   *
+   * @param position a string contaning a canonical sudoku position.
+   * @return {@link SudokuResult} holding result code, solution data and runtime.
+   */
+  public SudokuResult doCall(String position) {
+
+    CompletableFuture<SudokuResult> future = new CompletableFuture<>();
+
+    Batch batch;
+
+    boolean isLeader;
+
+    _lock.lock();
+
+    try {
+
+      batch = _batch;
+
+      batch._positions.add(position);
+
+      batch._futures.add(future);
+
+      isLeader = batch._positions.size() == 1;
+
+      if (batch._positions.size() >= _batchMax) {
+
+        doClose(batch);
+
+        _closedCondition.signalAll();
+      }
+
+    } finally {
+      _lock.unlock();
+    }
+
+    if (isLeader) {
+      doDispatch(batch);
+    }
+
+    try {
+
+      return future.get();
+
+    } catch (InterruptedException | ExecutionException e) {
+
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    return new SudokuResult(SudokuNative.CONSTANT_RESULT_INTERNAL_ERROR, "", -1);
+  }
+
+  /**
+   * Method closes batch, so that the next call opens a new one. Called with
+   * the lock held.
+   *
+   * @param batch {@link Batch} to be closed.
+   */
+  private void doClose(Batch batch) {
+
+    batch._isClosed = true;
+
+    _batch = new Batch();
+  }
+
+  /**
+   * Method waits until batch is closed or its window has passed, then solves
+   * it and completes the futures of its calls. Calls left without a result by
+   * the engine get an internal error. If the engine throws, every call of the
+   * batch is completed exceptionally and the exception is rethrown to the
+   * leader.
+   *
+   * @param batch {@link Batch} opened by the calling thread.
+   */
+  private void doDispatch(Batch batch) {
+
+    _lock.lock();
+
+    try {
+
+      long remainingNs = _windowNs;
+
+      while (!batch._isClosed &&
+          remainingNs > 0) {
+
+        remainingNs = _closedCondition.awaitNanos(remainingNs);
+      }
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+
+    } finally {
+
+      if (!batch._isClosed) {
+        doClose(batch);
+      }
+
+      _lock.unlock();
+    }
+
+    _metrics.doRecord(CONSTANT_METRIC_SIZE, batch._positions.size());
+
+    SudokuResult[] results;
+
+    try {
+
+      results = _engine.doCall(batch._positions.toArray(new String[0]));
+
+    } catch (RuntimeException | Error e) {
+
+      for (CompletableFuture<SudokuResult> future : batch._futures) {
+        future.completeExceptionally(e);
+      }
+
+      throw e;
+    }
+
+    for (int i = 0; i < batch._futures.size(); ++i) {
+
+      batch._futures.get(i).complete(results != null && i < results.length && results[i] != null ? results[i] :
+          new SudokuResult(SudokuNative.CONSTANT_RESULT_INTERNAL_ERROR, "", -1));
+    }
+  }
+
+  /**
+   * open batch.
+   */
+  private Batch _batch = new Batch();
+
+  /**
+   * maximum number of positions in a batch.
+   */
+  private final int _batchMax;
+
+  /**
+   * condition signalled once a batch is closed by filling up.
+   */
+  private final Condition _closedCondition;
+
+  /**
+   * engine solving the batches.
+   */
+  private final Engine _engine;
+
+  /**
+   * lock guarding the open batch.
+   */
+  private final ReentrantLock _lock = new ReentrantLock();
+
+  /**
+   * {@link SudokuMetrics} object used to record batch sizes.
+   */
+  private final SudokuMetrics _metrics;
+
+  /**
+   * maximum time in ns a batch stays open.
+   */
+  private final long _windowNs;
+
+  /**
+   * Metric name constant for the number of positions per batch.
+   */
+  final public static String CONSTANT_METRIC_SIZE = "batch.size";
+}
@@ -0,0 +1,371 @@
+package cc.tools.sudoku.server;
+
+import java.lang.reflect.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+/**
+ * This class calls Sudoku-Lib through its JNI wrapper. It is used by the
+ * servlet for in-process solving and by {@link SudokuWorker} processes.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuNative {
+
+  /**
+   * Constructor for {@link SudokuNative}. 
+   * 
+   * This method loads Sudoku-Lib and creates the JNI objects used within the
+   * class.
+   */
+  public SudokuNative() {
+
+    try {
+      
+      System.loadLibrary("sudoku");
+      
+      _JNIClass = Class.forName("sudoku_jlib");
+      
+      Class<?> JNIBUfferClass = Class.forName("SWIGTYPE_p_unsigned_char");
+      
+      Method method = _JNIClass.getMethod("getL_CONST_RESULT_BUFFER_SIZE");
+          
+      _JNIBufferSize = (int) method.invoke(null);
+      
+      logInfoMessage("JNI buffer size: " + _JNIBufferSize);
+
+      _JNINewMethod = 
+          _JNIClass.getMethod("new_uint8Array", 
+              new Class<?>[] { int.class } );
+      
+      _JNIDeleteMethod = 
+          _JNIClass.getMethod("delete_uint8Array",
+              new Class<?>[] { JNIBUfferClass });
+      
+      _JNIGetItemMethod = 
+          _JNIClass.getMethod("uint8Array_getitem", 
+              new Class<?>[] { JNIBUfferClass, int.class });
+
+      _JNIGetMovesMethod = 
+          _JNIClass.getMethod("get_sudoku_possible_moves_STUB", 
+              new Class<?>[] { String.class , JNIBUfferClass, int[].class });
+
+      _JNIGetSolutionMethod = 
+          _JNIClass.getMethod("get_sudoku_solution_STUB", 
+              new Class<?>[] { String.class , JNIBUfferClass, int[].class });
+
+      if (_JNIBufferSize > 0 && 
+          _JNINewMethod     != null &&
+          _JNIDeleteMethod  != null &&
+          _JNIGetItemMethod != null &&
+          _JNIGetMovesMethod != null && 
+          _JNIGetSolutionMethod != null) {
+        
+        _isValid = true;
+        
+        return;
+      } 
+
+      logSevereMessage("JNI init failed ");
+      
+    } catch (Throwable e) {
+      logSevereMessage("JNI init failed " + e.toString());
+    }
+  }
+
+  /**
+   * Method calls Sudoku-Lib function with position and returns its result.
+   * The JNI buffer is leased from the pool of free buffers, so concurrent
+   * calls each run on their own thread without creating a buffer per call.
+   * 
+   * @param function function constant such as {@link SudokuNative#CONSTANT_FUNCTION_SOLUTION}.
+   * @param position a string contaning a sudoku position.
+   * @return {@link SudokuResult} holding result code, output data and runtime.
+   */
+  public SudokuResult doCall(int function, String position) {
+    
+    if (!_isValid) {
+      return new SudokuResult(CONSTANT_RESULT_INTERNAL_ERROR, "", -1);
+    }
+
+    SudokuEvents.Phase leaseEvent = SudokuEvents.doBeginPhase();
+
+    Object buffer = _freeBuffers.poll();
+
+    if (buffer == null) {
+      buffer = doCreateJNIBuffer();
+    }
+
+    SudokuEvents.doEndPhase(leaseEvent, SudokuEvents.CONSTANT_PHASE_LEASE);
+    
+    SudokuResult result = doCall(function, position, buffer);
+
+    if (buffer != null &&
+        !_freeBuffers.offer(buffer)) {
+      doDeleteJNIBuffer(buffer);
+    }
+    
+    return result;
+  }
+
+  /**
+   * Method calls Sudoku-Lib function with position and JNI buffer and returns
+   * its result.
+   * 
+   * @param function function constant such as {@link SudokuNative#CONSTANT_FUNCTION_SOLUTION}.
+   * @param position a string contaning a sudoku position.
+   * @param buffer JNI output buffer.
+   * @return {@link SudokuResult} holding result code, output data and runtime.
+   */
+  private SudokuResult doCall(int function, String position, Object buffer) {
+    
+    Method method = function == CONSTANT_FUNCTION_MOVES ? _JNIGetMovesMethod : _JNIGetSolutionMethod;
+
+    int[] runtimeData = { -1 };
+
+    int result = -1;
+
+    try {
+      
+      result = (int) method.invoke(null, 
+          position, buffer, runtimeData);
+    
+    } catch (Exception e) {
+      logSevereMessage("JNI call failed " + e.toString());
+    }
+    
+    if (result != 0) {
+      return new SudokuResult(result, "", runtimeData[0]);
+    }
+    
+    SudokuTrace.doBeginPhase(SudokuTrace.CONSTANT_PHASE_DECODE);
+
+    String data = getRenderedData(function, getStringFromJNIBuffer(buffer));
+
+    SudokuTrace.doEndPhase(SudokuTrace.CONSTANT_PHASE_DECODE);
+
+    return new SudokuResult(result, data, runtimeData[0]);
+  }
+
+  /**
+   * Method to create a JNI buffer object for use as JNI output buffer.
+   * @return Object output buffer.
+   */
+  private Object doCreateJNIBuffer() {
+    Object jniBuffer = null;
+    
+    try {
+      
+      jniBuffer = _JNINewMethod.invoke(null, _JNIBufferSize);
+    
+    } catch (Exception e) {
+      logSevereMessage("JNI buffer create failed " + e.toString());
+    }
+
+    return jniBuffer;
+  }
+  
+  /**
+   * Method calls JNI API to delete resources held in JNIBuffer parameter object.
+   * 
+   * @param JNIBuffer Object to be deleted.
+   */
+  private void doDeleteJNIBuffer(Object JNIBuffer) {
+  
+    if (JNIBuffer == null) {
+      return;
+    }
+    
+    try {
+      _JNIDeleteMethod.invoke(null, JNIBuffer);   
+    } catch (Exception e) {
+      logSevereMessage("JNI buffer delete failed " + e.toString());
+    }
+  }
+
+  /**
+   * Method returns data output by Sudoku-Lib rendered by
+   * {@link SudokuBoard#getSolutionXml(int[])} or
+   * {@link SudokuBoard#getMovesXml(int[])}, the renderers used for results
+   * served from the Java engine, the stores and the caches. A response body
+   * is therefore the same whichever of them answered. Data which cannot be
+   * parsed is returned unchanged.
+   * 
+   * @param function function constant such as {@link SudokuNative#CONSTANT_FUNCTION_SOLUTION}.
+   * @param data String containing the Xml output by Sudoku-Lib or null.
+   * @return String containing the rendered Xml.
+   */
+  public static String getRenderedData(int function, String data) {
+
+    if (data == null) {
+      return null;
+    }
+
+    if (function == CONSTANT_FUNCTION_MOVES) {
+
+      int[] moves = SudokuBoard.getMovesFromXml(data);
+
+      return moves == null ? data : SudokuBoard.getMovesXml(moves);
+    }
+
+    int[] cells = SudokuBoard.getCellsFromSolutionXml(data);
+
+    return cells == null ? data : SudokuBoard.getSolutionXml(cells);
+  }
+
+  /**
+   * Method extracts data from JNIBuffer object and returns it as a String.
+   * 
+   * @param JNIBuffer Object containg data returned from JNI call.
+   * @return String containing extracted JNIBuffer data. String is null if and error occurs.
+   */
+  private String getStringFromJNIBuffer(Object JNIBuffer) {
+
+    StringBuilder buffer = new StringBuilder();
+    
+    try {
+      
+      for (int i = 0; i < _JNIBufferSize; ++i) {
+        
+        short item = (short) _JNIGetItemMethod.invoke(null, JNIBuffer, i);
+        
+        if (item == 0) {
+          break;
+        }
+        
+        buffer.append((char) item);
+      }
+      
+      return buffer.toString();
+      
+    } catch (Exception e) {
+      logSevereMessage("JNI buffer read failed " + e.toString());
+    }
+  
+    return null;
+  }
+
+  /**
+   * Method returns boolean indicating whether Sudoku-Lib was loaded.
+   * 
+   * @return boolean true if Sudoku-Lib can be called, false otherwise.
+   */
+  public boolean isValid() {
+    return _isValid;
+  }
+
+  /**
+   * Method to report {@link java.util.logging.Level#INFO} message to server log.
+   * 
+   * @param message {@link String} containing message to be logged.
+   */
+  private void logInfoMessage(String message) {
+    Logger.getLogger(SudokuNative.class.getName()).log(Level.INFO, "info: " + message);
+  }
+
+  /**
+   * Method to report {@link java.util.logging.Level#SEVERE} message to server log.
+   * 
+   * @param message {@link String} containing message to be logged.
+   */
+  private void logSevereMessage(String message) {
+    Logger.getLogger(SudokuNative.class.getName()).log(Level.SEVERE, "error: " + message);
+  }
+
+  /**
+   * JNI buffers free to be leased by a call.
+   */
+  private final BlockingQueue<Object> _freeBuffers = new ArrayBlockingQueue<>(CONSTANT_FREE_BUFFERS_MAX);
+
+  /**
+   * JNI sudoku_jlib class object for JNI calls.
+   */
+  private Class<?> _JNIClass = null;
+
+  /**
+   * JNI delete method to delete JNI buffer.
+   */
+  private Method _JNIDeleteMethod = null;
+
+  /**
+   * JNI get item method to access JNI buffer contents.
+   */
+  private Method _JNIGetItemMethod = null;
+      
+  /**
+   * JNI get moves method to call API get_moves_STUB.
+   */
+  private  Method _JNIGetMovesMethod = null;
+      
+  /**
+   * JNI get solution method to call API get_solution_STUB.
+   */
+  private Method _JNIGetSolutionMethod = null;
+      
+  /**
+   * JNI new method to create JNI buffer.
+   */
+  private  Method _JNINewMethod = null;
+
+  /**
+   * buffer size for JNI buffers.
+   */
+  private int _JNIBufferSize = 0;
+
+  /**
+   * boolean indicating whether Sudoku-Lib was loaded.
+   */
+  private boolean _isValid = false;
+
+  /**
+   * Constant for the maximum number of free JNI buffers kept for reuse.
+   */
+  final public static int CONSTANT_FREE_BUFFERS_MAX = 64;
+
+  /**
+   * Function constant for the Sudoku-Lib get possible moves function.
+   */
+  final public static int CONSTANT_FUNCTION_MOVES = 0;
+
+  /**
+   * Function constant for the Sudoku-Lib get solution function.
+   */
+  final public static int CONSTANT_FUNCTION_SOLUTION = 1;
+
+  /**
+   * Sudoku-Lib result code for success.
+   */
+  final public static int CONSTANT_RESULT_OK = 0;
+
+  /**
+   * Sudoku-Lib result code for an invalid parameter.
+   */
+  final public static int CONSTANT_RESULT_BAD_PARAMETER = 1;
+
+  /**
+   * Sudoku-Lib result code for a position which could not be set up.
+   */
+  final public static int CONSTANT_RESULT_SETUP_FAILED = 2;
+
+  /**
+   * Sudoku-Lib result code for a position without solution.
+   */
+  final public static int CONSTANT_RESULT_NO_SOLUTION = 4;
+
+  /**
+   * Sudoku-Lib result code for a call which timed out.
+   */
+  final public static int CONSTANT_RESULT_TIMEOUT = 5;
+
+  /**
+   * Sudoku-Lib result code for an internal error.
+   */
+  final public static int CONSTANT_RESULT_INTERNAL_ERROR = 6;
+
+  /**
+   * Sudoku-Lib result code for a call made while the engine is busy.
+   */
+  final public static int CONSTANT_RESULT_BUSY = 8;
+}
@@ -0,0 +1,436 @@
+package cc.tools.sudoku.server;
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * This class implements a fixed size cache of solve results held outside the
+ * Java heap.
+ * 
+ * Each entry holds a packed position, the engine result code and a packed
+ * solution in a fixed size slot of a direct {@link ByteBuffer}, so entries
+ * cost {@value CONSTANT_SLOT_SIZE} bytes and add no work for the garbage
+ * collector. The cache is split into shards, each an open-addressing hash
+ * table with linear probing guarded by its own lock. When a shard is full the
+ * clock algorithm evicts an entry which has not been read since the clock hand
+ * last passed it.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuOffHeapCache {
+
+  /**
+   * This class holds one shard of the cache.
+   */
+  private static class Shard {
+
+    /**
+     * Constructor for {@link Shard}.
+     * 
+     * @param capacity number of slots. Must be a power of two.
+     */
+    Shard(int capacity) {
+      _capacity = capacity;
+      _limit = (int) (capacity * CONSTANT_LOAD_FACTOR);
+      _slots = ByteBuffer.allocateDirect(capacity * CONSTANT_SLOT_SIZE);
+    }
+
+    /**
+     * number of slots.
+     */
+    private final int _capacity;
+
+    /**
+     * number of occupied slots.
+     */
+    private int _count = 0;
+
+    /**
+     * clock hand slot.
+     */
+    private int _hand = 0;
+
+    /**
+     * maximum number of occupied slots.
+     */
+    private final int _limit;
+
+    /**
+     * slot memory.
+     */
+    private final ByteBuffer _slots;
+  }
+
+  /**
+   * Constructor for {@link SudokuOffHeapCache}.
+   * 
+   * @param capacityBytes maximum number of bytes of off-heap memory used.
+   * @param metrics {@link SudokuMetrics} object used to record cache activity.
+   */
+  public SudokuOffHeapCache(long capacityBytes, SudokuMetrics metrics) {
+    
+    long slotsPerShard = capacityBytes / CONSTANT_SLOT_SIZE / CONSTANT_SHARD_COUNT;
+
+    int capacity = (int) Math.max(Long.highestOneBit(Math.max(slotsPerShard, 2)), 2);
+
+    capacity = Math.min(capacity, CONSTANT_MAX_SHARD_CAPACITY);
+
+    _shards = new Shard[CONSTANT_SHARD_COUNT];
+
+    for (int i = 0; i < CONSTANT_SHARD_COUNT; ++i) {
+      _shards[i] = new Shard(capacity);
+    }
+
+    _metrics = metrics;
+  }
+
+  /**
+   * Method adds result for position to the cache. Only results which are fully
+   * determined by the position are cached.
+   * 
+   * @param position String containing a canonical sudoku position.
+   * @param result {@link SudokuResult} returned by the engine.
+   */
+  public void doPut(String position, SudokuResult result) {
+    
+    if (result.getCode() != 0 && 
+        result.getCode() != 4) {
+      return;
+    }
+
+    byte[] packedPosition = SudokuBoard.getPackedPosition(position);
+
+    if (packedPosition == null) {
+      return;
+    }
+
+    byte[] packedSolution = new byte[SudokuBoard.CONSTANT_PACKED_SIZE];
+
+    if (result.isSuccess()) {
+      
+      int[] cells = SudokuBoard.getCellsFromSolutionXml(result.getData());
+
+      if (cells == null) {
+        return;
+      }
+
+      packedSolution = SudokuBoard.getPackedCells(cells);
+    }
+
+    int hash = getHash(packedPosition);
+
+    Shard shard = getShard(hash);
+
+    synchronized (shard) {
+      
+      int slot = getSlot(shard, hash, packedPosition);
+
+      if (slot >= 0) {
+        return;
+      }
+
+      if (shard._count >= shard._limit) {
+        doEvict(shard);
+      }
+
+      slot = hash & (shard._capacity - 1);
+
+      while ((shard._slots.get(slot * CONSTANT_SLOT_SIZE) & CONSTANT_STATE_OCCUPIED) != 0) {
+        slot = (slot + 1) & (shard._capacity - 1);
+      }
+
+      int offset = slot * CONSTANT_SLOT_SIZE;
+
+      shard._slots.put(offset, CONSTANT_STATE_OCCUPIED);
+      shard._slots.put(offset + 1, (byte) result.getCode());
+      shard._slots.putInt(offset + 2, hash);
+      shard._slots.put(offset + CONSTANT_OFFSET_KEY, packedPosition);
+      shard._slots.put(offset + CONSTANT_OFFSET_VALUE, packedSolution);
+
+      ++shard._count;
+    }
+  }
+
+  /**
+   * Method returns the cached result for position.
+   * 
+   * @param position String containing a canonical sudoku position.
+   * @return {@link SudokuResult} with runtime -1 or null if position is not cached.
+   */
+  public SudokuResult get(String position) {
+    
+    byte[] packedPosition = SudokuBoard.getPackedPosition(position);
+
+    if (packedPosition == null) {
+      return null;
+    }
+
+    int hash = getHash(packedPosition);
+
+    Shard shard = getShard(hash);
+
+    int code;
+
+    byte[] packedSolution = new byte[SudokuBoard.CONSTANT_PACKED_SIZE];
+
+    synchronized (shard) {
+      
+      int slot = getSlot(shard, hash, packedPosition);
+
+      if (slot < 0) {
+        
+        _metrics.doIncrement(CONSTANT_METRIC_MISS);
+        
+        return null;
+      }
+
+      int offset = slot * CONSTANT_SLOT_SIZE;
+
+      shard._slots.put(offset, (byte) (CONSTANT_STATE_OCCUPIED | CONSTANT_STATE_REFERENCED));
+
+      code = shard._slots.get(offset + 1);
+
+      shard._slots.get(offset + CONSTANT_OFFSET_VALUE, packedSolution);
+    }
+
+    _metrics.doIncrement(CONSTANT_METRIC_HIT);
+
+    if (code != 0) {
+      return new SudokuResult(code, "", -1);
+    }
+
+    return new SudokuResult(0, 
+        SudokuBoard.getSolutionXml(SudokuBoard.getUnpackedCells(packedSolution)), -1);
+  }
+
+  /**
+   * Method returns the number of entries in the cache.
+   * 
+   * @return number of entries.
+   */
+  public long getCount() {
+    
+    long count = 0;
+
+    for (Shard shard : _shards) {
+      synchronized (shard) {
+        count += shard._count;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Method advances the clock hand of shard until it finds an entry which has
+   * not been referenced since the hand last passed, and removes it. Referenced
+   * entries passed by the hand have their reference bit cleared.
+   * 
+   * @param shard {@link Shard} to evict from. The caller holds its lock.
+   */
+  private void doEvict(Shard shard) {
+    
+    while (true) {
+      
+      int offset = shard._hand * CONSTANT_SLOT_SIZE;
+
+      byte state = shard._slots.get(offset);
+
+      if ((state & CONSTANT_STATE_OCCUPIED) != 0) {
+        
+        if ((state & CONSTANT_STATE_REFERENCED) == 0) {
+          
+          doRemove(shard, shard._hand);
+
+          _metrics.doIncrement(CONSTANT_METRIC_EVICT);
+          
+          return;
+        }
+
+        shard._slots.put(offset, CONSTANT_STATE_OCCUPIED);
+      }
+
+      shard._hand = (shard._hand + 1) & (shard._capacity - 1);
+    }
+  }
+
+  /**
+   * Method empties slot and shifts back the entries which follow it in its
+   * probe sequence so that lookups never stop at the emptied slot.
+   * 
+   * @param shard {@link Shard} holding slot. The caller holds its lock.
+   * @param slot slot to be emptied.
+   */
+  private void doRemove(Shard shard, int slot) {
+    
+    int mask = shard._capacity - 1;
+
+    int empty = slot;
+
+    int next = (slot + 1) & mask;
+
+    while ((shard._slots.get(next * CONSTANT_SLOT_SIZE) & CONSTANT_STATE_OCCUPIED) != 0) {
+      
+      int home = shard._slots.getInt(next * CONSTANT_SLOT_SIZE + 2) & mask;
+
+      if (((next - home) & mask) >= ((next - empty) & mask)) {
+        
+        shard._slots.put(empty * CONSTANT_SLOT_SIZE, shard._slots, 
+            next * CONSTANT_SLOT_SIZE, CONSTANT_SLOT_SIZE);
+
+        empty = next;
+      }
+
+      next = (next + 1) & mask;
+    }
+
+    shard._slots.put(empty * CONSTANT_SLOT_SIZE, (byte) 0);
+
+    --shard._count;
+  }
+
+  /**
+   * Method returns a hash of packed.
+   * 
+   * @param packed packed position.
+   * @return hash value.
+   */
+  private int getHash(byte[] packed) {
+    
+    int hash = Arrays.hashCode(packed);
+
+    return hash ^ (hash >>> 16) ^ (hash >>> 7);
+  }
+
+  /**
+   * Method returns the shard for hash.
+   * 
+   * @param hash hash of a packed position.
+   * @return {@link Shard} holding the position.
+   */
+  private Shard getShard(int hash) {
+    return _shards[(hash >>> 24) & (CONSTANT_SHARD_COUNT - 1)];
+  }
+
+  /**
+   * Method returns the slot of shard holding packedPosition.
+   * 
+   * @param shard {@link Shard} to search. The caller holds its lock.
+   * @param hash hash of packedPosition.
+   * @param packedPosition packed position.
+   * @return slot or -1 if packedPosition is not cached.
+   */
+  private int getSlot(Shard shard, int hash, byte[] packedPosition) {
+    
+    int mask = shard._capacity - 1;
+
+    int slot = hash & mask;
+
+    while (true) {
+      
+      int offset = slot * CONSTANT_SLOT_SIZE;
+
+      if ((shard._slots.get(offset) & CONSTANT_STATE_OCCUPIED) == 0) {
+        return -1;
+      }
+
+      if (shard._slots.getInt(offset + 2) == hash &&
+          isKeyEqual(shard, offset, packedPosition)) {
+        return slot;
+      }
+
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  /**
+   * Method compares the packed position held in the slot at offset with
+   * packedPosition.
+   * 
+   * @param shard {@link Shard} holding the slot. The caller holds its lock.
+   * @param offset byte offset of the slot.
+   * @param packedPosition packed position.
+   * @return boolean true if the positions are equal, false otherwise.
+   */
+  private boolean isKeyEqual(Shard shard, int offset, byte[] packedPosition) {
+    
+    for (int i = 0; i < packedPosition.length; ++i) {
+      
+      if (shard._slots.get(offset + CONSTANT_OFFSET_KEY + i) != packedPosition[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * {@link SudokuMetrics} object used to record cache activity.
+   */
+  private final SudokuMetrics _metrics;
+
+  /**
+   * cache shards.
+   */
+  private final Shard[] _shards;
+
+  /**
+   * Constant for the maximum fraction of slots in use in a shard.
+   */
+  final public static double CONSTANT_LOAD_FACTOR = 0.75;
+
+  /**
+   * Constant for the maximum number of slots in a shard, keeping each shard
+   * within a single direct buffer.
+   */
+  final public static int CONSTANT_MAX_SHARD_CAPACITY = 1 << 24;
+
+  /**
+   * Metric name constant for entries evicted from the cache.
+   */
+  final public static String CONSTANT_METRIC_EVICT = "cache.offheap.evict";
+
+  /**
+   * Metric name constant for positions found in the cache.
+   */
+  final public static String CONSTANT_METRIC_HIT = "cache.offheap.hit";
+
+  /**
+   * Metric name constant for positions not found in the cache.
+   */
+  final public static String CONSTANT_METRIC_MISS = "cache.offheap.miss";
+
+  /**
+   * Constant for the byte offset of the packed position in a slot.
+   */
+  final public static int CONSTANT_OFFSET_KEY = 6;
+
+  /**
+   * Constant for the byte offset of the packed solution in a slot.
+   */
+  final public static int CONSTANT_OFFSET_VALUE = CONSTANT_OFFSET_KEY + SudokuBoard.CONSTANT_PACKED_SIZE;
+
+  /**
+   * Constant for the number of shards. Must be a power of two.
+   */
+  final public static int CONSTANT_SHARD_COUNT = 64;
+
+  /**
+   * Constant for the slot size in bytes: state, result code, hash, packed
+   * position and packed solution.
+   */
+  final public static int CONSTANT_SLOT_SIZE = CONSTANT_OFFSET_VALUE + SudokuBoard.CONSTANT_PACKED_SIZE;
+
+  /**
+   * Constant for the slot state bit marking an occupied slot.
+   */
+  final public static byte CONSTANT_STATE_OCCUPIED = 1;
+
+  /**
+   * Constant for the slot state bit marking an entry read since the clock hand
+   * last passed it.
+   */
+  final public static byte CONSTANT_STATE_REFERENCED = 2;
+}
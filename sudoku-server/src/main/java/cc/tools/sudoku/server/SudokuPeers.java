@@ -0,0 +1,280 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * This class partitions the position space across a cluster of servlet nodes
+ * with a consistent hash ring, so that the nodes' result caches behave as one
+ * large cache.
+ * 
+ * Each node is placed on the ring at {@value CONSTANT_VIRTUAL_NODES} points
+ * and owns the positions hashing up to each of its points. Solves of
+ * positions owned by another node are forwarded to the owner's peer endpoint,
+ * which always solves locally, so forwarded calls never loop. Adding or
+ * removing a node only moves the positions of its own ring slices.
+ * 
+ * The peer endpoint only answers calls of cluster nodes. With a shared
+ * secret configured, forwarded calls carry it in the
+ * {@value CONSTANT_HTTP_HEADER_SECRET} header and calls without it are
+ * refused. Otherwise calls are only taken from the addresses the node hosts
+ * resolve to when the ring is built.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuPeers {
+
+  /**
+   * Constructor for {@link SudokuPeers}.
+   * 
+   * @param nodes base Urls of all cluster nodes, including this node.
+   * @param self base Url of this node as listed in nodes.
+   * @param timeoutMs maximum time in ms to wait for a forwarded call.
+   * @param secret secret shared by the cluster nodes, empty to accept calls
+   *               by node address.
+   * @param metrics {@link SudokuMetrics} object used to count forwarded calls.
+   */
+  public SudokuPeers(List<String> nodes, String self, int timeoutMs, String secret, SudokuMetrics metrics) {
+    
+    _self = getNormalisedUrl(self);
+    _timeout = Duration.ofMillis(timeoutMs);
+    _secret = secret.getBytes(StandardCharsets.UTF_8);
+    _metrics = metrics;
+
+    for (String node : nodes) {
+      
+      String url = getNormalisedUrl(node);
+
+      for (int i = 0; i < CONSTANT_VIRTUAL_NODES; ++i) {
+        _ring.put(getHash(url + "#" + i), url);
+      }
+
+      try {
+        
+        for (InetAddress address : InetAddress.getAllByName(URI.create(url).getHost())) {
+          _addresses.add(address.getHostAddress());
+        }
+      
+      } catch (IOException | IllegalArgumentException e) {
+        // node unresolvable, calls from it are refused.
+      }
+    }
+
+    _client = HttpClient.newBuilder()
+        .connectTimeout(_timeout)
+        .version(HttpClient.Version.HTTP_1_1)
+        .build();
+  }
+
+  /**
+   * Method forwards a solve of position to the node owning it.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @return {@link SudokuResult} returned by the owner or null if the owner
+   *         could not answer, in which case the caller solves locally.
+   */
+  public SudokuResult doForward(String position) {
+    
+    String owner = getOwner(position);
+
+    HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(owner + 
+            Sudoku.CONSTANT_URI_ENDPOINT_PEER + "?" + Sudoku.CONSTANT_HTTP_FIELD_POSITION + "=" + 
+            URLEncoder.encode(position, StandardCharsets.UTF_8)))
+        .timeout(_timeout)
+        .GET();
+
+    if (_secret.length > 0) {
+      builder.header(CONSTANT_HTTP_HEADER_SECRET, new String(_secret, StandardCharsets.UTF_8));
+    }
+
+    HttpRequest request = builder.build();
+
+    try {
+      
+      HttpResponse<InputStream> response = _client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(response.body()))) {
+        
+        if (response.statusCode() == HttpURLConnection.HTTP_OK) {
+          
+          in.readInt();
+
+          _metrics.doIncrement(CONSTANT_METRIC_FORWARDED);
+          
+          return SudokuWorker.doReadResult(in);
+        }
+      }
+    
+    } catch (IOException e) {
+      // owner unreachable, solved locally.
+    
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    _metrics.doIncrement(CONSTANT_METRIC_FALLBACK);
+
+    return null;
+  }
+
+  /**
+   * Method returns the ring hash of key, a 64 bit FNV-1a hash with a final
+   * mix so that similar keys spread around the ring.
+   * 
+   * @param key String to be hashed.
+   * @return hash value.
+   */
+  private static long getHash(String key) {
+    
+    long hash = 0xcbf29ce484222325L;
+
+    for (int i = 0; i < key.length(); ++i) {
+      
+      hash ^= key.charAt(i);
+      
+      hash *= 0x100000001b3L;
+    }
+
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+
+    return hash;
+  }
+
+  /**
+   * Method returns url without trailing slashes, so that node lists match.
+   * 
+   * @param url node base Url.
+   * @return normalised Url.
+   */
+  private static String getNormalisedUrl(String url) {
+    
+    String normalised = url.trim();
+
+    while (normalised.endsWith("/")) {
+      normalised = normalised.substring(0, normalised.length() - 1);
+    }
+
+    return normalised;
+  }
+
+  /**
+   * Method returns the node owning position, the first ring point at or after
+   * the position's hash.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @return base Url of the owning node.
+   */
+  public String getOwner(String position) {
+    
+    Map.Entry<Long, String> entry = _ring.ceilingEntry(getHash(position));
+
+    return entry != null ? entry.getValue() : _ring.firstEntry().getValue();
+  }
+
+  /**
+   * Method returns boolean indicating whether a call to the peer endpoint
+   * comes from a cluster node. With a shared secret the call must carry it,
+   * otherwise it must come from a node address.
+   * 
+   * @param remoteAddress address the call comes from.
+   * @param secret value of the {@value CONSTANT_HTTP_HEADER_SECRET} header or
+   *               null if the call has none.
+   * @return boolean true if the call may be answered, false otherwise.
+   */
+  public boolean isPeer(String remoteAddress, String secret) {
+    
+    if (_secret.length > 0) {
+      return secret != null &&
+          MessageDigest.isEqual(_secret, secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    return _addresses.contains(remoteAddress);
+  }
+
+  /**
+   * Method returns boolean indicating whether this node is on the ring.
+   * 
+   * @return boolean true if this node is listed in the cluster nodes, false otherwise.
+   */
+  public boolean isMember() {
+    return _ring.containsValue(_self);
+  }
+
+  /**
+   * Method returns boolean indicating whether this node owns position.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @return boolean true if this node owns position, false otherwise.
+   */
+  public boolean isOwner(String position) {
+    return _self.equals(getOwner(position));
+  }
+
+  /**
+   * addresses of the cluster nodes.
+   */
+  private final Set<String> _addresses = new HashSet<>();
+
+  /**
+   * Http client used to forward calls.
+   */
+  private final HttpClient _client;
+
+  /**
+   * {@link SudokuMetrics} object used to count forwarded calls.
+   */
+  private final SudokuMetrics _metrics;
+
+  /**
+   * hash ring of node base Urls.
+   */
+  private final TreeMap<Long, String> _ring = new TreeMap<>();
+
+  /**
+   * secret shared by the cluster nodes, empty if none.
+   */
+  private final byte[] _secret;
+
+  /**
+   * base Url of this node.
+   */
+  private final String _self;
+
+  /**
+   * maximum time to wait for a forwarded call.
+   */
+  private final Duration _timeout;
+
+  /**
+   * Http header constant for the secret shared by the cluster nodes.
+   */
+  final public static String CONSTANT_HTTP_HEADER_SECRET = "X-Sudoku-Peer-Secret";
+
+  /**
+   * Metric name constant for forwarded calls which were solved locally as
+   * the owner could not answer.
+   */
+  final public static String CONSTANT_METRIC_FALLBACK = "peer.fallback";
+
+  /**
+   * Metric name constant for calls answered by their owning node.
+   */
+  final public static String CONSTANT_METRIC_FORWARDED = "peer.forwarded";
+
+  /**
+   * Constant for the number of ring points of each node.
+   */
+  final public static int CONSTANT_VIRTUAL_NODES = 160;
+}
@@ -0,0 +1,223 @@
+package cc.tools.sudoku.server;
+
+import java.util.*;
+
+/**
+ * This class limits the request rate of each client with a token bucket.
+ *
+ * Each client's bucket refills at a fixed rate up to a burst size. A request
+ * is admitted if the bucket holds its estimated cost, which is then taken.
+ * Once the request has been served the difference between its measured and
+ * estimated cost is charged, so clients sending expensive positions run out
+ * of tokens sooner. A bucket may go into debt of up to one burst, or deeper
+ * when a request costing more than a burst, such as a batch, is admitted.
+ *
+ * Buckets are held in striped maps, each guarded by its own lock, so clients
+ * in different stripes never contend. Each stripe holds a bounded number of
+ * buckets and drops the least recently used one when full. A bucket idle
+ * long enough to have refilled completely is equal to a new one, so such
+ * buckets are also dropped as new ones are added.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuRateLimiter {
+
+  /**
+   * This class holds the state of a client's bucket.
+   */
+  private static class Bucket {
+
+    /**
+     * Constructor for {@link Bucket}.
+     *
+     * @param tokens initial number of tokens.
+     * @param nanos time of creation in {@link System#nanoTime()} units.
+     */
+    Bucket(double tokens, long nanos) {
+
+      _tokens = tokens;
+
+      _nanos = nanos;
+    }
+
+    /**
+     * time of the last refill in {@link System#nanoTime()} units.
+     */
+    private long _nanos;
+
+    /**
+     * number of tokens held.
+     */
+    private double _tokens;
+  }
+
+  /**
+   * Constructor for {@link SudokuRateLimiter}.
+   *
+   * @param ratePerSecond tokens added to each bucket per second.
+   * @param burst maximum number of tokens held by a bucket.
+   * @param maxClients maximum number of buckets held.
+   */
+  public SudokuRateLimiter(double ratePerSecond, double burst, int maxClients) {
+
+    _ratePerNano = ratePerSecond / 1e9;
+
+    _burst = Math.max(burst, 1);
+
+    long idleNanos = (long) ((_burst * 2) / _ratePerNano);
+
+    int stripeCapacity = Math.max(maxClients / CONSTANT_STRIPES, 1);
+
+    for (int i = 0; i < CONSTANT_STRIPES; ++i) {
+
+      _stripes.add(new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+          return size() > stripeCapacity || 
+              System.nanoTime() - eldest.getValue()._nanos > idleNanos;
+        }
+      });
+    }
+  }
+
+  /**
+   * Method admits a request of client if its bucket holds cost tokens and
+   * takes them. A cost larger than the burst is admitted from a full bucket.
+   *
+   * @param client client key such as its address.
+   * @param cost estimated cost of the request in tokens.
+   * @return 0 if the request is admitted, otherwise the time in ms until it
+   *         would be.
+   */
+  public long doAcquire(String client, double cost) {
+
+    long now = System.nanoTime();
+
+    double needed = Math.min(cost, _burst);
+
+    Map<String, Bucket> stripe = getStripe(client);
+
+    synchronized (stripe) {
+
+      Bucket bucket = getBucket(stripe, client, now);
+
+      if (bucket._tokens >= needed) {
+
+        bucket._tokens -= cost;
+
+        return 0;
+      }
+
+      return (long) Math.ceil((needed - bucket._tokens) / _ratePerNano / 1e6);
+    }
+  }
+
+  /**
+   * Method charges client for a served request. A negative cost refunds
+   * tokens. A charge takes the bucket at most one burst into debt and never
+   * above a full burst; a deeper debt run up by a batch is kept.
+   *
+   * @param client client key such as its address.
+   * @param cost tokens to be taken.
+   */
+  public void doCharge(String client, double cost) {
+
+    long now = System.nanoTime();
+
+    Map<String, Bucket> stripe = getStripe(client);
+
+    synchronized (stripe) {
+
+      Bucket bucket = getBucket(stripe, client, now);
+
+      bucket._tokens = Math.max(Math.min(-_burst, bucket._tokens), Math.min(_burst, bucket._tokens - cost));
+    }
+  }
+
+  /**
+   * Method returns the bucket of client refilled up to now, creating a full
+   * one if client has none. Must be called holding the stripe lock.
+   *
+   * @param stripe stripe holding the bucket.
+   * @param client client key.
+   * @param now current time in {@link System#nanoTime()} units.
+   * @return {@link Bucket} object.
+   */
+  private Bucket getBucket(Map<String, Bucket> stripe, String client, long now) {
+
+    Bucket bucket = stripe.get(client);
+
+    if (bucket == null) {
+
+      bucket = new Bucket(_burst, now);
+
+      stripe.put(client, bucket);
+
+      return bucket;
+    }
+
+    bucket._tokens = Math.min(_burst, bucket._tokens + (now - bucket._nanos) * _ratePerNano);
+
+    bucket._nanos = now;
+
+    return bucket;
+  }
+
+  /**
+   * Method returns the number of buckets held.
+   *
+   * @return number of buckets.
+   */
+  public int getClientCount() {
+
+    int count = 0;
+
+    for (Map<String, Bucket> stripe : _stripes) {
+
+      synchronized (stripe) {
+        count += stripe.size();
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Method returns the stripe holding the bucket of client.
+   *
+   * @param client client key.
+   * @return stripe {@link Map}.
+   */
+  private Map<String, Bucket> getStripe(String client) {
+
+    int hash = client.hashCode();
+
+    hash ^= hash >>> 16;
+
+    return _stripes.get(hash & (CONSTANT_STRIPES - 1));
+  }
+
+  /**
+   * maximum number of tokens held by a bucket.
+   */
+  private final double _burst;
+
+  /**
+   * tokens added to each bucket per ns.
+   */
+  private final double _ratePerNano;
+
+  /**
+   * buckets by client key, in least recently used order, per stripe.
+   */
+  private final List<Map<String, Bucket>> _stripes = new ArrayList<>(CONSTANT_STRIPES);
+
+  /**
+   * Constant for the number of stripes, a power of two.
+   */
+  final public static int CONSTANT_STRIPES = 64;
+}
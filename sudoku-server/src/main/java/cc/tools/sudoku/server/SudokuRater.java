@@ -0,0 +1,824 @@
+package cc.tools.sudoku.server;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class rates the difficulty of positions.
+ *
+ * A position is solved by logic, always applying the easiest technique which
+ * makes progress: hidden singles, naked singles, locked candidates, naked
+ * subsets, hidden subsets and fish, subsets and fish of two or three. Its
+ * rating is the level of the hardest technique needed. If logic gets stuck
+ * the rest is left to {@link SudokuSolver}, the rating is
+ * {@value CONSTANT_TECHNIQUE_SEARCH} and the score grows with the number of
+ * search nodes visited.
+ *
+ * A rating is the line {@code <code> <score> <technique> <nodes>}, or
+ * {@code <code> -} if position could not be rated, where code is a
+ * {@link SudokuNative} result code. Ratings are cached by canonical position
+ * in striped maps, each guarded by its own lock and dropping its least
+ * recently used entry when full. Batches are rated in chunks on a pool of
+ * threads.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuRater {
+
+  /**
+   * This class holds the cells and candidates of a position being rated.
+   */
+  private static class Grid {
+
+    /**
+     * Method eliminates the candidates ruled out by fish: if in size rows a
+     * digit is confined to size columns, it is removed from those columns in
+     * every other row, and the same with rows and columns swapped.
+     *
+     * @param size number of rows or columns, 2 for an X-wing and 3 for a swordfish.
+     * @return boolean true if a candidate was removed.
+     */
+    private boolean doFish(int size) {
+
+      for (int digit = 1; digit <= 9; ++digit) {
+
+        int bit = 1 << digit;
+
+        for (int orientation = 0; orientation < 2; ++orientation) {
+
+          int[] lines = new int[9];
+
+          for (int line = 0; line < 9; ++line) {
+
+            for (int i = 0; i < 9; ++i) {
+
+              int cell = orientation == 0 ? line * 9 + i : i * 9 + line;
+
+              if ((_candidates[cell] & bit) != 0) {
+                lines[line] |= 1 << i;
+              }
+            }
+          }
+
+          for (int[] found : getSubsets(lines, size)) {
+
+            boolean isChanged = false;
+
+            for (int line = 0; line < 9; ++line) {
+
+              if ((found[0] & (1 << line)) != 0) {
+                continue;
+              }
+
+              for (int i = 0; i < 9; ++i) {
+
+                int cell = orientation == 0 ? line * 9 + i : i * 9 + line;
+
+                if ((found[1] & (1 << i)) != 0 &&
+                    (_candidates[cell] & bit) != 0) {
+
+                  _candidates[cell] &= ~bit;
+
+                  isChanged = true;
+                }
+              }
+            }
+
+            if (isChanged) {
+              return true;
+            }
+          }
+        }
+      }
+
+      return false;
+    }
+
+    /**
+     * Method places the hidden singles, digits with one possible cell in a
+     * unit.
+     *
+     * @return 1 if a digit was placed, 0 if none was and -1 if a unit has no
+     *         cell left for a digit.
+     */
+    private int doHiddenSingles() {
+
+      int placed = 0;
+
+      for (int[] unit : SudokuSolver.CONSTANT_UNITS) {
+
+        int used = 0;
+
+        int once = 0;
+
+        int twice = 0;
+
+        for (int cell : unit) {
+
+          if (_cells[cell] != 0) {
+
+            used |= 1 << _cells[cell];
+
+            continue;
+          }
+
+          twice |= once & _candidates[cell];
+          once |= _candidates[cell];
+        }
+
+        if ((used | once) != SudokuSolver.CONSTANT_DIGITS_MASK) {
+          return -1;
+        }
+
+        int hidden = once & ~twice;
+
+        while (hidden != 0) {
+
+          int bit = hidden & -hidden;
+
+          hidden ^= bit;
+
+          for (int cell : unit) {
+
+            if ((_candidates[cell] & bit) != 0) {
+
+              doPlace(cell, Integer.numberOfTrailingZeros(bit));
+
+              placed = 1;
+
+              break;
+            }
+          }
+        }
+      }
+
+      return placed;
+    }
+
+    /**
+     * Method eliminates the candidates ruled out by hidden subsets: if size
+     * digits of a unit are confined to size cells, those cells hold no other
+     * digit.
+     *
+     * @param size number of digits, 2 or 3.
+     * @return boolean true if a candidate was removed.
+     */
+    private boolean doHiddenSubsets(int size) {
+
+      for (int[] unit : SudokuSolver.CONSTANT_UNITS) {
+
+        int[] places = new int[9];
+
+        for (int i = 0; i < 9; ++i) {
+
+          for (int digit = 1; digit <= 9; ++digit) {
+
+            if ((_candidates[unit[i]] & (1 << digit)) != 0) {
+              places[digit - 1] |= 1 << i;
+            }
+          }
+        }
+
+        for (int[] found : getSubsets(places, size)) {
+
+          int digits = found[0] << 1;
+
+          boolean isChanged = false;
+
+          for (int i = 0; i < 9; ++i) {
+
+            int cell = unit[i];
+
+            if ((found[1] & (1 << i)) != 0 &&
+                (_candidates[cell] & ~digits) != 0) {
+
+              _candidates[cell] &= digits;
+
+              isChanged = true;
+            }
+          }
+
+          if (isChanged) {
+            return true;
+          }
+        }
+      }
+
+      return false;
+    }
+
+    /**
+     * Method eliminates the candidates ruled out by locked candidates: if a
+     * digit of a box is confined to one row or column, it is removed from the
+     * rest of that row or column, and if a digit of a row or column is confined
+     * to one box, it is removed from the rest of that box.
+     *
+     * @return boolean true if a candidate was removed.
+     */
+    private boolean doLockedCandidates() {
+
+      for (int u = 0; u < SudokuSolver.CONSTANT_UNITS.length; ++u) {
+
+        int[] unit = SudokuSolver.CONSTANT_UNITS[u];
+
+        for (int digit = 1; digit <= 9; ++digit) {
+
+          int bit = 1 << digit;
+
+          int rows = 0;
+
+          int columns = 0;
+
+          int boxes = 0;
+
+          for (int cell : unit) {
+
+            if ((_candidates[cell] & bit) != 0) {
+
+              rows |= 1 << (cell / 9);
+              columns |= 1 << (cell % 9);
+              boxes |= 1 << SudokuSolver.CONSTANT_BOX[cell];
+            }
+          }
+
+          if (rows == 0) {
+            continue;
+          }
+
+          int target = -1;
+
+          if (u >= 18) {
+
+            if (Integer.bitCount(rows) == 1) {
+              target = Integer.numberOfTrailingZeros(rows);
+            } else if (Integer.bitCount(columns) == 1) {
+              target = 9 + Integer.numberOfTrailingZeros(columns);
+            }
+
+          } else if (Integer.bitCount(boxes) == 1) {
+            target = 18 + Integer.numberOfTrailingZeros(boxes);
+          }
+
+          if (target < 0) {
+            continue;
+          }
+
+          boolean isChanged = false;
+
+          for (int cell : SudokuSolver.CONSTANT_UNITS[target]) {
+
+            if ((_candidates[cell] & bit) != 0 &&
+                !isInUnit(cell, u)) {
+
+              _candidates[cell] &= ~bit;
+
+              isChanged = true;
+            }
+          }
+
+          if (isChanged) {
+            return true;
+          }
+        }
+      }
+
+      return false;
+    }
+
+    /**
+     * Method places the naked singles, cells with one candidate.
+     *
+     * @return 1 if a digit was placed, 0 if none was and -1 if a cell has no
+     *         candidate left.
+     */
+    private int doNakedSingles() {
+
+      int placed = 0;
+
+      for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+
+        if (_cells[i] != 0) {
+          continue;
+        }
+
+        int mask = _candidates[i];
+
+        if (mask == 0) {
+          return -1;
+        }
+
+        if ((mask & (mask - 1)) == 0) {
+
+          doPlace(i, Integer.numberOfTrailingZeros(mask));
+
+          placed = 1;
+        }
+      }
+
+      return placed;
+    }
+
+    /**
+     * Method eliminates the candidates ruled out by naked subsets: if size
+     * cells of a unit hold only size digits, no other cell of the unit holds
+     * them.
+     *
+     * @param size number of cells, 2 or 3.
+     * @return boolean true if a candidate was removed.
+     */
+    private boolean doNakedSubsets(int size) {
+
+      for (int[] unit : SudokuSolver.CONSTANT_UNITS) {
+
+        int[] masks = new int[9];
+
+        for (int i = 0; i < 9; ++i) {
+          masks[i] = _candidates[unit[i]] >> 1;
+        }
+
+        for (int[] found : getSubsets(masks, size)) {
+
+          int digits = found[1] << 1;
+
+          boolean isChanged = false;
+
+          for (int i = 0; i < 9; ++i) {
+
+            int cell = unit[i];
+
+            if ((found[0] & (1 << i)) == 0 &&
+                (_candidates[cell] & digits) != 0) {
+
+              _candidates[cell] &= ~digits;
+
+              isChanged = true;
+            }
+          }
+
+          if (isChanged) {
+            return true;
+          }
+        }
+      }
+
+      return false;
+    }
+
+    /**
+     * Method places digit in cell and removes it from the candidates of the
+     * cell's row, column and box.
+     *
+     * @param cell cell index.
+     * @param digit digit from 1 to 9.
+     */
+    private void doPlace(int cell, int digit) {
+
+      int bit = ~(1 << digit);
+
+      _cells[cell] = digit;
+
+      _candidates[cell] = 0;
+
+      for (int u : new int[] { cell / 9, 9 + cell % 9, 18 + SudokuSolver.CONSTANT_BOX[cell] }) {
+
+        for (int peer : SudokuSolver.CONSTANT_UNITS[u]) {
+          _candidates[peer] &= bit;
+        }
+      }
+    }
+
+    /**
+     * Method applies the easiest technique which makes progress.
+     *
+     * @return level of the technique applied, 0 if none made progress and -1 if
+     *         the cells reached a contradiction.
+     */
+    private int doStep() {
+
+      int placed = doHiddenSingles();
+
+      if (placed != 0) {
+        return placed;
+      }
+
+      placed = doNakedSingles();
+
+      if (placed != 0) {
+        return placed < 0 ? -1 : 2;
+      }
+
+      if (doLockedCandidates()) {
+        return 3;
+      }
+
+      if (doNakedSubsets(2) ||
+          doNakedSubsets(3)) {
+        return 4;
+      }
+
+      if (doHiddenSubsets(2) ||
+          doHiddenSubsets(3)) {
+        return 5;
+      }
+
+      if (doFish(2) ||
+          doFish(3)) {
+        return 6;
+      }
+
+      return 0;
+    }
+
+    /**
+     * Method returns boolean indicating whether every cell is filled.
+     *
+     * @return boolean true if the cells are filled, false otherwise.
+     */
+    private boolean isSolved() {
+
+      for (int cell : _cells) {
+
+        if (cell == 0) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+
+    /**
+     * candidate digits of each cell as a bitmask, 0 for a filled cell.
+     */
+    private final int[] _candidates = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    /**
+     * cell values.
+     */
+    private final int[] _cells = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+  }
+
+  /**
+   * Constructor for {@link SudokuRater}.
+   *
+   * @param threadCount number of batch rating threads.
+   * @param cacheEntries maximum number of ratings cached, 0 disables the cache.
+   * @param timeoutMs maximum duration of the search for a position in ms.
+   * @param metrics {@link SudokuMetrics} object used to count cache hits.
+   */
+  public SudokuRater(int threadCount, int cacheEntries, int timeoutMs, SudokuMetrics metrics) {
+
+    _metrics = metrics;
+
+    _timeoutMs = timeoutMs;
+
+    int stripeCapacity = cacheEntries / CONSTANT_STRIPES;
+
+    for (int i = 0; i < CONSTANT_STRIPES && stripeCapacity > 0; ++i) {
+
+      _stripes.add(new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+          return size() > stripeCapacity;
+        }
+      });
+    }
+
+    _executor = Executors.newFixedThreadPool(Math.max(threadCount, 1), runnable -> {
+
+      Thread thread = new Thread(runnable, "sudoku-rater");
+
+      thread.setDaemon(true);
+
+      return thread;
+    });
+  }
+
+  /**
+   * Method stops the batch rating threads.
+   */
+  public void close() {
+    _executor.shutdownNow();
+  }
+
+  /**
+   * Method rates cells by logic, leaving the rest to a search if it gets
+   * stuck.
+   *
+   * @param cells int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell values.
+   * @return rating line.
+   */
+  private String doRate(int[] cells) {
+
+    Grid grid = new Grid();
+
+    Arrays.fill(grid._candidates, SudokuSolver.CONSTANT_DIGITS_MASK);
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+
+      if (cells[i] == 0) {
+        continue;
+      }
+
+      if ((grid._candidates[i] & (1 << cells[i])) == 0) {
+        return SudokuNative.CONSTANT_RESULT_SETUP_FAILED + " -";
+      }
+
+      grid.doPlace(i, cells[i]);
+    }
+
+    int level = 1;
+
+    while (!grid.isSolved()) {
+
+      int step = grid.doStep();
+
+      if (step < 0) {
+        return SudokuNative.CONSTANT_RESULT_NO_SOLUTION + " -";
+      }
+
+      if (step == 0) {
+        break;
+      }
+
+      level = Math.max(level, step);
+    }
+
+    if (grid.isSolved()) {
+      return getRatingLine(level, CONSTANT_TECHNIQUES[level - 1], 0);
+    }
+
+    long deadline = System.nanoTime() + _timeoutMs * 1000000L;
+
+    SudokuSolver solver = new SudokuSolver(grid._cells);
+
+    int code = solver.doSolve(() -> System.nanoTime() > deadline);
+
+    if (code != SudokuNative.CONSTANT_RESULT_OK) {
+      return code + " -";
+    }
+
+    long nodes = solver.getNodeCount();
+
+    return getRatingLine(CONSTANT_TECHNIQUES.length + Math.log10(1 + nodes), CONSTANT_TECHNIQUE_SEARCH, nodes);
+  }
+
+  /**
+   * Method returns the rating of position, from the cache if present.
+   *
+   * @param position position in any form accepted by
+   *                 {@link SudokuBoard#getCanonicalPosition(String)}.
+   * @return rating line.
+   */
+  public String getRating(String position) {
+
+    String canonical = SudokuBoard.getCanonicalPosition(position.replace('.', '0'));
+
+    int[] cells = SudokuBoard.getCellsFromPosition(canonical);
+
+    if (cells == null) {
+      return SudokuNative.CONSTANT_RESULT_BAD_PARAMETER + " -";
+    }
+
+    Map<String, String> stripe = _stripes.isEmpty() ? null : getStripe(canonical);
+
+    if (stripe != null) {
+
+      String rating;
+
+      synchronized (stripe) {
+        rating = stripe.get(canonical);
+      }
+
+      if (rating != null) {
+
+        _metrics.doIncrement(CONSTANT_METRIC_HIT);
+
+        return rating;
+      }
+
+      _metrics.doIncrement(CONSTANT_METRIC_MISS);
+    }
+
+    String rating = doRate(cells);
+
+    if (stripe != null &&
+        !rating.startsWith(SudokuNative.CONSTANT_RESULT_TIMEOUT + " ")) {
+
+      synchronized (stripe) {
+        stripe.put(canonical, rating);
+      }
+    }
+
+    return rating;
+  }
+
+  /**
+   * Method returns the ratings of positions, rated in parallel chunks of
+   * {@value CONSTANT_CHUNK_SIZE}.
+   *
+   * @param positions {@link List} of positions.
+   * @return rating lines in the order of positions.
+   * @throws InterruptedException if interrupted while waiting for the ratings.
+   */
+  public String[] getRatings(List<String> positions) throws InterruptedException {
+
+    String[] ratings = new String[positions.size()];
+
+    List<Callable<Void>> chunks = new ArrayList<>();
+
+    for (int start = 0; start < ratings.length; start += CONSTANT_CHUNK_SIZE) {
+
+      int from = start;
+
+      int to = Math.min(start + CONSTANT_CHUNK_SIZE, ratings.length);
+
+      chunks.add(() -> {
+
+        for (int i = from; i < to; ++i) {
+          ratings[i] = getRating(positions.get(i));
+        }
+
+        return null;
+      });
+    }
+
+    for (Future<Void> future : _executor.invokeAll(chunks)) {
+
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+
+    return ratings;
+  }
+
+  /**
+   * Method returns the rating line of a rated position.
+   *
+   * @param score difficulty score.
+   * @param technique name of the hardest technique needed.
+   * @param nodes number of search nodes visited.
+   * @return rating line.
+   */
+  private static String getRatingLine(double score, String technique, long nodes) {
+    return SudokuNative.CONSTANT_RESULT_OK + " " + String.format(Locale.ROOT, "%.2f", score) + " " + 
+        technique + " " + nodes;
+  }
+
+  /**
+   * Method returns the stripe holding the rating of canonical.
+   *
+   * @param canonical canonical position.
+   * @return stripe {@link Map}.
+   */
+  private Map<String, String> getStripe(String canonical) {
+
+    int hash = canonical.hashCode();
+
+    hash ^= hash >>> 16;
+
+    return _stripes.get(hash & (CONSTANT_STRIPES - 1));
+  }
+
+  /**
+   * Method finds every set of size lines among masks whose masks together
+   * cover exactly size bits. Lines with fewer than 2 bits set are skipped.
+   *
+   * @param masks bitmask of each of 9 lines.
+   * @param size number of lines to find, 2 or 3.
+   * @return {@link List} of int arrays, each holding the bitmask of the lines
+   *         found and the union of their masks.
+   */
+  private static List<int[]> getSubsets(int[] masks, int size) {
+
+    List<int[]> subsets = new ArrayList<>();
+
+    for (int a = 0; a < 9; ++a) {
+
+      if (!isSubsetLine(masks[a], size)) {
+        continue;
+      }
+
+      for (int b = a + 1; b < 9; ++b) {
+
+        if (!isSubsetLine(masks[b], size)) {
+          continue;
+        }
+
+        int union = masks[a] | masks[b];
+
+        if (size == 2) {
+
+          if (Integer.bitCount(union) == 2) {
+            subsets.add(new int[] { (1 << a) | (1 << b), union });
+          }
+
+          continue;
+        }
+
+        for (int c = b + 1; c < 9; ++c) {
+
+          if (isSubsetLine(masks[c], size) &&
+              Integer.bitCount(union | masks[c]) == 3) {
+            subsets.add(new int[] { (1 << a) | (1 << b) | (1 << c), union | masks[c] });
+          }
+        }
+      }
+    }
+
+    return subsets;
+  }
+
+  /**
+   * Method returns boolean indicating whether cell is in unit.
+   *
+   * @param cell cell index.
+   * @param unit unit index into {@link SudokuSolver#CONSTANT_UNITS}.
+   * @return boolean true if cell is in unit.
+   */
+  private static boolean isInUnit(int cell, int unit) {
+
+    if (unit < 9) {
+      return cell / 9 == unit;
+    }
+
+    if (unit < 18) {
+      return cell % 9 == unit - 9;
+    }
+
+    return SudokuSolver.CONSTANT_BOX[cell] == unit - 18;
+  }
+
+  /**
+   * Method returns boolean indicating whether a line with mask may be part of
+   * a subset of size lines.
+   *
+   * @param mask bitmask of the line.
+   * @param size number of lines of the subset.
+   * @return boolean true if mask has between 2 and size bits set.
+   */
+  private static boolean isSubsetLine(int mask, int size) {
+
+    int count = Integer.bitCount(mask);
+
+    return count >= 2 && count <= size;
+  }
+
+  /**
+   * batch rating threads.
+   */
+  private final ExecutorService _executor;
+
+  /**
+   * {@link SudokuMetrics} object used to count cache hits.
+   */
+  private final SudokuMetrics _metrics;
+
+  /**
+   * cached ratings by canonical position, in least recently used order, per
+   * stripe. Empty if the cache is disabled.
+   */
+  private final List<Map<String, String>> _stripes = new ArrayList<>(CONSTANT_STRIPES);
+
+  /**
+   * maximum duration of the search for a position in ms.
+   */
+  private final int _timeoutMs;
+
+  /**
+   * Constant for the number of positions rated by a batch task.
+   */
+  final public static int CONSTANT_CHUNK_SIZE = 64;
+
+  /**
+   * Constant for the metric counting rating cache hits.
+   */
+  final public static String CONSTANT_METRIC_HIT = "rating.cache.hit";
+
+  /**
+   * Constant for the metric counting rating cache misses.
+   */
+  final public static String CONSTANT_METRIC_MISS = "rating.cache.miss";
+
+  /**
+   * Constant for the number of cache stripes, a power of two.
+   */
+  final public static int CONSTANT_STRIPES = 64;
+
+  /**
+   * Constant for the name of the rating of positions needing a search.
+   */
+  final public static String CONSTANT_TECHNIQUE_SEARCH = "search";
+
+  /**
+   * Constant for the technique names, indexed by level - 1.
+   */
+  final public static String[] CONSTANT_TECHNIQUES = { "hidden-single", "naked-single", "locked-candidates",
+      "naked-subset", "hidden-subset", "fish" };
+}
@@ -0,0 +1,309 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.logging.*;
+import java.util.zip.*;
+
+/**
+ * This class implements a bounded least-recently-used cache of encoded
+ * {@link Sudoku} responses. Each entry holds the response bytes uncompressed
+ * and, once compressed, gzip compressed, so repeated requests are served
+ * without rendering or compressing the response again. Entries are compressed
+ * only when a client first asks for gzip, so responses only ever fetched
+ * plain are never compressed. The size of the gzip bytes is then added to
+ * the cache size, evicting other entries if needed.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuResponseCache {
+
+  /**
+   * This class holds the encoded bytes of a single cached response.
+   */
+  public static class Entry {
+
+    /**
+     * Constructor for {@link Entry}. The gzip encoding is computed on first
+     * use, once per response, rather than by the container on every request.
+     * 
+     * @param body response body text.
+     * @param contentType response content type or null to use the container default.
+     */
+    public Entry(String body, String contentType) {
+      _identity = body.getBytes(StandardCharsets.UTF_8);
+      _contentType = contentType;
+    }
+
+    /**
+     * Method computes the gzip encoding of the response unless it is held
+     * already, and adds its size to the cache holding this entry, if any.
+     */
+    public void doCompress() {
+      
+      if (_gzip != null) {
+        return;
+      }
+
+      byte[] gzip;
+
+      synchronized (this) {
+
+        if (_gzip != null) {
+          return;
+        }
+
+        gzip = getGzipBytes(_identity);
+
+        _gzip = gzip;
+      }
+
+      SudokuResponseCache cache = _cache;
+
+      if (cache != null &&
+          gzip != null) {
+        cache.doGrow(this, gzip.length);
+      }
+    }
+
+    /**
+     * Method returns the response bytes for content coding encoding.
+     * 
+     * @param encoding content coding negotiated with the client.
+     * @return byte array containing the encoded response.
+     */
+    public byte[] getBytes(String encoding) {
+      
+      if (CONSTANT_ENCODING_GZIP.equals(encoding)) {
+        
+        doCompress();
+
+        byte[] gzip = _gzip;
+
+        if (gzip != null) {
+          return gzip;
+        }
+      }
+      
+      return _identity;
+    }
+
+    /**
+     * Method returns the response content type.
+     * 
+     * @return content type or null to use the container default.
+     */
+    public String getContentType() {
+      return _contentType;
+    }
+
+    /**
+     * Method returns the number of bytes held by this entry.
+     * 
+     * @return size in bytes.
+     */
+    public long getSize() {
+      return _identity.length + (_gzip == null ? 0 : _gzip.length);
+    }
+
+    /**
+     * {@link SudokuResponseCache} holding this entry or null if not cached.
+     */
+    private volatile SudokuResponseCache _cache = null;
+
+    /**
+     * response content type.
+     */
+    private final String _contentType;
+
+    /**
+     * gzip encoded response bytes or null if not yet compressed or
+     * compression failed.
+     */
+    private volatile byte[] _gzip = null;
+
+    /**
+     * uncompressed response bytes.
+     */
+    private final byte[] _identity;
+
+    /**
+     * cache key of this entry or null if not cached.
+     */
+    private String _key = null;
+
+    /**
+     * number of bytes of this entry counted in the cache size. Guarded by the
+     * cache lock.
+     */
+    private long _sizeBytes = 0;
+  }
+
+  /**
+   * Constructor for {@link SudokuResponseCache}.
+   * 
+   * @param capacityBytes maximum number of bytes held by the cache. 0 disables caching.
+   */
+  public SudokuResponseCache(long capacityBytes) {
+    _capacityBytes = capacityBytes;
+  }
+
+  /**
+   * Method creates an {@link Entry} for body and adds it to the cache under key.
+   * 
+   * @param key cache key.
+   * @param body response body text.
+   * @param contentType response content type or null to use the container default.
+   * @return {@link Entry} created for body.
+   */
+  public Entry doPut(String key, String body, String contentType) {
+    
+    Entry entry = new Entry(body, contentType);
+
+    if (entry.getSize() > _capacityBytes) {
+      return entry;
+    }
+
+    entry._key = key;
+
+    synchronized (_entries) {
+      
+      Entry previous = _entries.put(key, entry);
+      
+      if (previous != null) {
+        _sizeBytes -= previous._sizeBytes;
+      }
+
+      entry._sizeBytes = entry.getSize();
+
+      _sizeBytes += entry._sizeBytes;
+
+      entry._cache = this;
+
+      doEvict();
+    }
+
+    return entry;
+  }
+
+  /**
+   * Method evicts least recently used entries until the cache fits its
+   * capacity. Called with the cache lock held.
+   */
+  private void doEvict() {
+
+    Iterator<Entry> iterator = _entries.values().iterator();
+
+    while (_sizeBytes > _capacityBytes &&
+        iterator.hasNext()) {
+      
+      _sizeBytes -= iterator.next()._sizeBytes;
+      
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Method adds bytes to the size of entry once it has been compressed,
+   * unless it has been evicted or replaced meanwhile.
+   *
+   * @param entry {@link Entry} compressed.
+   * @param bytes number of bytes added.
+   */
+  private void doGrow(Entry entry, long bytes) {
+
+    synchronized (_entries) {
+
+      if (_entries.get(entry._key) != entry) {
+        return;
+      }
+
+      entry._sizeBytes += bytes;
+
+      _sizeBytes += bytes;
+
+      doEvict();
+    }
+  }
+
+  /**
+   * Method returns the cached {@link Entry} for key.
+   * 
+   * @param key cache key.
+   * @return {@link Entry} or null if key is not cached.
+   */
+  public Entry get(String key) {
+    
+    if (_capacityBytes <= 0) {
+      return null;
+    }
+    
+    synchronized (_entries) {
+      return _entries.get(key);
+    }
+  }
+
+  /**
+   * Method returns the number of bytes currently held by the cache.
+   * 
+   * @return size in bytes.
+   */
+  public long getSize() {
+    synchronized (_entries) {
+      return _sizeBytes;
+    }
+  }
+
+  /**
+   * Method returns data gzip compressed.
+   * 
+   * @param data bytes to be compressed.
+   * @return byte array containing compressed data or null if compression failed.
+   */
+  private static byte[] getGzipBytes(byte[] data) {
+    
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 4 + 64);
+
+    try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+      
+      out.write(data);
+    
+    } catch (IOException e) {
+      
+      Logger.getLogger(SudokuResponseCache.class.getName()).log(Level.SEVERE, 
+          "error: gzip failed " + e.getMessage());
+      
+      return null;
+    }
+
+    return buffer.toByteArray();
+  }
+
+  /**
+   * maximum number of bytes held by the cache.
+   */
+  private final long _capacityBytes;
+
+  /**
+   * cached entries in least-recently-used order.
+   */
+  private final LinkedHashMap<String, Entry> _entries = new LinkedHashMap<>(1024, 0.75f, true);
+
+  /**
+   * number of bytes currently held by the cache.
+   */
+  private long _sizeBytes = 0;
+
+  /**
+   * Content coding constant for gzip compressed responses.
+   */
+  final public static String CONSTANT_ENCODING_GZIP = "gzip";
+
+  /**
+   * Content coding constant for uncompressed responses.
+   */
+  final public static String CONSTANT_ENCODING_IDENTITY = "identity";
+}
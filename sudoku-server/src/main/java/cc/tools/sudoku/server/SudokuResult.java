@@ -0,0 +1,76 @@
+package cc.tools.sudoku.server;
+
+/**
+ * This class holds the outcome of a single Sudoku-Lib engine call so that it
+ * can be shared between requests.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuResult {
+
+  /**
+   * Constructor for {@link SudokuResult}.
+   * 
+   * @param code engine result code. 0 indicates success.
+   * @param data engine output data. Empty if the call failed.
+   * @param runtime engine run-time in ms or -1 if not available.
+   */
+  public SudokuResult(int code, String data, int runtime) {
+    _code = code;
+    _data = data == null ? "" : data;
+    _runtime = runtime;
+  }
+
+  /**
+   * Method returns the engine result code.
+   * 
+   * @return engine result code.
+   */
+  public int getCode() {
+    return _code;
+  }
+
+  /**
+   * Method returns the engine output data.
+   * 
+   * @return engine output data.
+   */
+  public String getData() {
+    return _data;
+  }
+
+  /**
+   * Method returns the engine run-time.
+   * 
+   * @return engine run-time in ms or -1 if not available.
+   */
+  public int getRuntime() {
+    return _runtime;
+  }
+
+  /**
+   * Method returns boolean indicating whether the engine call succeeded.
+   * 
+   * @return boolean true if result code is 0, false otherwise.
+   */
+  public boolean isSuccess() {
+    return _code == 0;
+  }
+
+  /**
+   * engine result code.
+   */
+  private final int _code;
+
+  /**
+   * engine output data.
+   */
+  private final String _data;
+
+  /**
+   * engine run-time in ms.
+   */
+  private final int _runtime;
+}
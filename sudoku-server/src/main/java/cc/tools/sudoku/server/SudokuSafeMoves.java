@@ -0,0 +1,205 @@
+package cc.tools.sudoku.server;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class filters moves down to the safe moves, those consistent with at
+ * least one solution of the position. For a position with a unique solution
+ * these are the digits of that solution.
+ *
+ * The position is propagated once and every check starts from the shared
+ * propagated cells, so moves ruled out by singles are dropped without a
+ * search. The remaining moves are checked in parallel, one task per cell, by
+ * solving the position with the move placed. Each solution found proves every
+ * move it contains safe, so those moves are skipped by the other tasks. A
+ * known solution, such as a cached one, is used to seed the safe moves.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuSafeMoves {
+
+  /**
+   * Constructor for {@link SudokuSafeMoves}.
+   *
+   * @param threadCount number of check threads.
+   */
+  public SudokuSafeMoves(int threadCount) {
+
+    _executor = Executors.newFixedThreadPool(Math.max(threadCount, 1), runnable -> {
+
+      Thread thread = new Thread(runnable, "sudoku-safe-moves");
+
+      thread.setDaemon(true);
+
+      return thread;
+    });
+  }
+
+  /**
+   * Method stops the check threads.
+   */
+  public void close() {
+    _executor.shutdownNow();
+  }
+
+  /**
+   * Method checks the moves of cell not yet known to be safe.
+   *
+   * @param cell cell index.
+   * @param variant {@link SudokuVariant} or null for the classic game.
+   * @param propagated cells of the position after propagation.
+   * @param moves moves to be checked as bitmask per cell.
+   * @param safe safe moves found so far as bitmask per cell.
+   * @param isStopped check stopping the task once it returns true.
+   * @return boolean false if a check was stopped, true otherwise.
+   */
+  private static boolean doCheckCell(int cell, SudokuVariant variant, int[] propagated, int[] moves, 
+      AtomicIntegerArray safe, BooleanSupplier isStopped) {
+
+    int digits = moves[cell];
+
+    if (propagated[cell] != 0) {
+      digits &= 1 << propagated[cell];
+    }
+
+    while (digits != 0) {
+
+      int bit = digits & -digits;
+
+      digits ^= bit;
+
+      if ((safe.get(cell) & bit) != 0) {
+        continue;
+      }
+
+      int[] cells = propagated.clone();
+
+      cells[cell] = Integer.numberOfTrailingZeros(bit);
+
+      SudokuSolver solver = new SudokuSolver(cells, variant);
+
+      int code = solver.doSolve(isStopped);
+
+      if (code == SudokuNative.CONSTANT_RESULT_TIMEOUT) {
+        return false;
+      }
+
+      if (code == SudokuNative.CONSTANT_RESULT_OK) {
+        doMarkSafe(safe, solver.getCells());
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Method marks every move of solution safe.
+   *
+   * @param safe safe moves as bitmask per cell.
+   * @param solution solved cells.
+   */
+  private static void doMarkSafe(AtomicIntegerArray safe, int[] solution) {
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+
+      int bit = 1 << solution[i];
+
+      int current = safe.get(i);
+
+      while ((current & bit) == 0 &&
+          !safe.compareAndSet(i, current, current | bit)) {
+        current = safe.get(i);
+      }
+    }
+  }
+
+  /**
+   * Method returns the safe moves among moves of the position cells.
+   *
+   * @param cells int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell values.
+   * @param variant {@link SudokuVariant} or null for the classic game.
+   * @param moves moves as bitmask per cell, bit d set for digit d.
+   * @param solution a known solution of cells or null.
+   * @param timeoutMs maximum duration of the checks in ms.
+   * @return safe moves as bitmask per cell or null if the checks did not
+   *         finish in time.
+   * @throws InterruptedException if interrupted while waiting for the checks.
+   */
+  public int[] getSafeMoves(int[] cells, SudokuVariant variant, int[] moves, int[] solution, long timeoutMs)
+      throws InterruptedException {
+
+    int[] result = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    SudokuSolver base = new SudokuSolver(cells, variant);
+
+    if (!base.doPropagate()) {
+      return result;
+    }
+
+    int[] propagated = base.getCells();
+
+    AtomicIntegerArray safe = new AtomicIntegerArray(SudokuBoard.CONSTANT_CELL_COUNT);
+
+    if (solution != null) {
+      doMarkSafe(safe, solution);
+    }
+
+    long deadline = System.nanoTime() + timeoutMs * 1000000L;
+
+    AtomicBoolean isTimedOut = new AtomicBoolean(false);
+
+    BooleanSupplier isStopped = () -> isTimedOut.get() || System.nanoTime() > deadline;
+
+    List<Callable<Boolean>> tasks = new ArrayList<>();
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+
+      int cell = i;
+
+      if (cells[cell] == 0 &&
+          moves[cell] != 0) {
+
+        tasks.add(() -> {
+
+          if (!doCheckCell(cell, variant, propagated, moves, safe, isStopped)) {
+
+            isTimedOut.set(true);
+
+            return false;
+          }
+
+          return true;
+        });
+      }
+    }
+
+    for (Future<Boolean> future : _executor.invokeAll(tasks)) {
+
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+
+    if (isTimedOut.get()) {
+      return null;
+    }
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+      result[i] = cells[i] == 0 ? moves[i] & safe.get(i) : 0;
+    }
+
+    return result;
+  }
+
+  /**
+   * check threads.
+   */
+  private final ExecutorService _executor;
+}
@@ -0,0 +1,439 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+import javax.servlet.*;
+import javax.xml.parsers.*;
+
+import org.w3c.dom.*;
+
+import com.sun.net.httpserver.*;
+
+/**
+ * This class runs the {@link Sudoku} servlet standalone on the JDK Http
+ * server, serving the same endpoints as a servlet container without one.
+ * 
+ * Init parameters are read from the WEB-INF/web.xml packaged in the jar and
+ * may be overridden on the command line as --name=value. The options below
+ * are also recognised.
+ * 
+ * <pre>
+ * --port=n            listening port, default {@value CONSTANT_DEFAULT_PORT}.
+ * --exit-when-ready   exit once warm-up has finished, used to record a
+ *                     class data sharing archive.
+ * </pre>
+ * 
+ * Requests are handled on virtual threads when the JVM provides them and on
+ * a cached thread pool otherwise.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuServer {
+
+  /**
+   * Constructor for {@link SudokuServer}.
+   * 
+   * @param servlet initialised {@link Sudoku} servlet.
+   * @param port listening port.
+   * @throws IOException .
+   */
+  public SudokuServer(Sudoku servlet, int port) throws IOException {
+    
+    _servlet = servlet;
+
+    _executor = getExecutor();
+
+    _server = HttpServer.create(new InetSocketAddress(port), CONSTANT_BACKLOG);
+
+    _server.createContext(CONSTANT_CONTEXT, this::doHandle);
+
+    _server.setExecutor(_executor);
+  }
+
+  /**
+   * Method passes an Http exchange through the servlet. Responses the servlet
+   * flushes are sent chunked as they are written, others once complete.
+   * 
+   * @param exchange {@link HttpExchange} object.
+   * @throws IOException .
+   */
+  private void doHandle(HttpExchange exchange) throws IOException {
+    
+    SudokuSyntheticExchange synthetic = null;
+
+    try {
+      
+      Map<String, String> headers = new LinkedHashMap<>();
+
+      for (Map.Entry<String, List<String>> entry : exchange.getRequestHeaders().entrySet()) {
+        headers.put(entry.getKey(), String.join(", ", entry.getValue()));
+      }
+
+      synthetic = new SudokuSyntheticExchange(exchange.getRequestMethod(), 
+          exchange.getRequestURI().getRawPath(), 
+          getParameters(exchange.getRequestURI().getRawQuery()), 
+          headers, 
+          exchange.getRemoteAddress().getAddress().getHostAddress(), 
+          exchange.getRequestBody());
+
+      synthetic.setCommitter((status, responseHeaders) -> {
+        
+        doSetResponseHeaders(exchange, responseHeaders);
+
+        exchange.sendResponseHeaders(status, 0);
+
+        return exchange.getResponseBody();
+      });
+
+      _servlet.service(synthetic.getRequest(), synthetic.getResponse());
+
+      if (synthetic.isCommitted()) {
+        
+        synthetic.doFlush();
+        
+        return;
+      }
+
+      byte[] body = synthetic.getBody();
+
+      doSetResponseHeaders(exchange, synthetic.getResponseHeaders());
+
+      int status = synthetic.getStatus();
+
+      boolean isBodyAllowed = status != HttpURLConnection.HTTP_NOT_MODIFIED && 
+          !"HEAD".equals(exchange.getRequestMethod());
+
+      exchange.sendResponseHeaders(status, isBodyAllowed && body.length > 0 ? body.length : -1);
+
+      if (isBodyAllowed) {
+        exchange.getResponseBody().write(body);
+      }
+    
+    } catch (ServletException | RuntimeException e) {
+      
+      Logger.getLogger(SudokuServer.class.getName()).log(Level.SEVERE, 
+          "error: request failed " + e.toString());
+      
+      if (synthetic == null ||
+          !synthetic.isCommitted()) {
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_INTERNAL_ERROR, -1);
+      }
+    
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Method copies the servlet response headers to exchange. Content-Length
+   * is left to the Http server.
+   * 
+   * @param exchange {@link HttpExchange} object.
+   * @param headers servlet response headers.
+   */
+  private static void doSetResponseHeaders(HttpExchange exchange, Map<String, String> headers) {
+    
+    for (Map.Entry<String, String> entry : headers.entrySet()) {
+      
+      if (!"Content-Length".equalsIgnoreCase(entry.getKey())) {
+        exchange.getResponseHeaders().set(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Method starts serving requests.
+   */
+  public void doStart() {
+    _server.start();
+  }
+
+  /**
+   * Method stops serving requests and destroys the servlet.
+   */
+  public void doStop() {
+    
+    _server.stop(0);
+
+    _servlet.destroy();
+
+    _executor.shutdown();
+  }
+
+  /**
+   * Method returns the executor handling requests, a virtual thread per task
+   * executor if the JVM provides one and a cached thread pool otherwise.
+   * 
+   * @return {@link ExecutorService} object.
+   */
+  private static ExecutorService getExecutor() {
+    
+    try {
+      
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+
+      return (ExecutorService) method.invoke(null);
+    
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      
+      Logger.getLogger(SudokuServer.class.getName()).log(Level.INFO, 
+          "info: virtual threads not available, using platform threads");
+    }
+
+    return Executors.newCachedThreadPool();
+  }
+
+  /**
+   * Method returns the servlet init parameters declared in the packaged
+   * WEB-INF/web.xml.
+   * 
+   * @return {@link Map} of init parameter names to values. Empty if web.xml
+   *         is not on the class path.
+   */
+  private static Map<String, String> getInitParameters() {
+    
+    Map<String, String> parameters = new LinkedHashMap<>();
+
+    try (InputStream in = SudokuServer.class.getResourceAsStream(CONSTANT_WEB_XML)) {
+      
+      if (in == null) {
+        return parameters;
+      }
+
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+
+      factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+
+      NodeList nodes = factory.newDocumentBuilder().parse(in).getElementsByTagName("init-param");
+
+      for (int i = 0; i < nodes.getLength(); ++i) {
+        
+        Element element = (Element) nodes.item(i);
+
+        parameters.put(element.getElementsByTagName("param-name").item(0).getTextContent().trim(), 
+            element.getElementsByTagName("param-value").item(0).getTextContent().trim());
+      }
+    
+    } catch (Exception e) {
+      
+      Logger.getLogger(SudokuServer.class.getName()).log(Level.SEVERE, 
+          "error: " + CONSTANT_WEB_XML + " unreadable " + e.toString());
+    }
+
+    return parameters;
+  }
+
+  /**
+   * Method returns the parameters of a raw query string. The first value of a
+   * repeated parameter is kept, as returned by 
+   * {@link javax.servlet.ServletRequest#getParameter(String)}.
+   * 
+   * @param query raw query string or null.
+   * @return {@link Map} of decoded parameter names to values.
+   */
+  private static Map<String, String> getParameters(String query) {
+    
+    Map<String, String> parameters = new LinkedHashMap<>();
+
+    if (query == null) {
+      return parameters;
+    }
+
+    for (String pair : query.split("&")) {
+      
+      if (pair.isEmpty()) {
+        continue;
+      }
+
+      int separator = pair.indexOf('=');
+
+      String name = URLDecoder.decode(separator < 0 ? pair : pair.substring(0, separator), 
+          StandardCharsets.UTF_8);
+
+      String value = separator < 0 ? "" : URLDecoder.decode(pair.substring(separator + 1), 
+          StandardCharsets.UTF_8);
+
+      parameters.putIfAbsent(name, value);
+    }
+
+    return parameters;
+  }
+
+  /**
+   * Method returns a servlet configuration holding parameters.
+   * 
+   * @param parameters init parameters.
+   * @return {@link ServletConfig} object.
+   */
+  private static ServletConfig getServletConfig(Map<String, String> parameters) {
+    
+    return (ServletConfig) Proxy.newProxyInstance(SudokuServer.class.getClassLoader(), 
+        new Class<?>[] { ServletConfig.class }, 
+        (proxy, m, args) -> {
+          
+          switch (m.getName()) {
+          
+          case "getInitParameter": {
+            return parameters.get((String) args[0]);
+          }
+
+          case "getInitParameterNames": {
+            return Collections.enumeration(parameters.keySet());
+          }
+
+          case "getServletName": {
+            return CONSTANT_SERVLET_NAME;
+          }
+
+          default: {
+            return null;
+          }
+
+          }
+        });
+  }
+
+  /**
+   * Method returns boolean indicating whether the servlet has finished
+   * warming up. An invalid servlet never warms up and counts as finished.
+   * 
+   * @param servlet {@link Sudoku} servlet.
+   * @return boolean true if the servlet is ready or invalid, false otherwise.
+   * @throws IOException .
+   * @throws ServletException .
+   */
+  private static boolean isWarmedUp(Sudoku servlet) throws IOException, ServletException {
+    
+    SudokuSyntheticExchange exchange = 
+        new SudokuSyntheticExchange(Sudoku.CONSTANT_URI_ENDPOINT_READY, Map.of());
+
+    servlet.service(exchange.getRequest(), exchange.getResponse());
+
+    return exchange.getStatus() == HttpURLConnection.HTTP_OK ||
+        new String(exchange.getBody(), StandardCharsets.UTF_8).startsWith("status: invalid");
+  }
+
+  /**
+   * Method starts the standalone server.
+   * 
+   * @param args command line options, see {@link SudokuServer}.
+   * @throws Exception .
+   */
+  public static void main(String[] args) throws Exception {
+    
+    long start = System.nanoTime();
+
+    Map<String, String> parameters = getInitParameters();
+
+    int port = CONSTANT_DEFAULT_PORT;
+
+    boolean isExitWhenReady = false;
+
+    for (String arg : args) {
+      
+      if (arg.equals("--exit-when-ready")) {
+        
+        isExitWhenReady = true;
+        
+        continue;
+      }
+
+      int separator = arg.indexOf('=');
+
+      if (!arg.startsWith("--") ||
+          separator < 0) {
+        
+        System.err.println("usage: SudokuServer [--port=n] [--exit-when-ready] [--<init-param>=value]...");
+        
+        System.exit(1);
+      }
+
+      String name = arg.substring(2, separator);
+
+      String value = arg.substring(separator + 1);
+
+      if (name.equals("port")) {
+        port = Integer.parseInt(value);
+      } else {
+        parameters.put(name, value);
+      }
+    }
+
+    Sudoku servlet = new Sudoku();
+
+    servlet.init(getServletConfig(parameters));
+
+    SudokuServer server = new SudokuServer(servlet, port);
+
+    server.doStart();
+
+    Runtime.getRuntime().addShutdownHook(new Thread(server::doStop, "sudoku-server-stop"));
+
+    Logger.getLogger(SudokuServer.class.getName()).log(Level.INFO, 
+        "info: listening on port " + port + " after " + (System.nanoTime() - start) / 1000000 + "ms");
+
+    if (isExitWhenReady) {
+      
+      while (!isWarmedUp(servlet)) {
+        Thread.sleep(CONSTANT_READY_POLL_MS);
+      }
+
+      System.exit(0);
+    }
+  }
+
+  /**
+   * executor handling requests.
+   */
+  private final ExecutorService _executor;
+
+  /**
+   * JDK Http server.
+   */
+  private final HttpServer _server;
+
+  /**
+   * servlet handling requests.
+   */
+  private final Sudoku _servlet;
+
+  /**
+   * Constant for the listen backlog.
+   */
+  final public static int CONSTANT_BACKLOG = 1024;
+
+  /**
+   * Constant for the context path served.
+   */
+  final public static String CONSTANT_CONTEXT = "/sudoku/server/game";
+
+  /**
+   * Constant for the default listening port.
+   */
+  final public static int CONSTANT_DEFAULT_PORT = 8080;
+
+  /**
+   * Constant for the interval in ms at which readiness is polled with --exit-when-ready.
+   */
+  final public static long CONSTANT_READY_POLL_MS = 100;
+
+  /**
+   * Constant for the servlet name reported to the servlet.
+   */
+  final public static String CONSTANT_SERVLET_NAME = "sudoku";
+
+  /**
+   * Constant for the resource holding the servlet init parameters.
+   */
+  final public static String CONSTANT_WEB_XML = "/WEB-INF/web.xml";
+}
@@ -0,0 +1,97 @@
+package cc.tools.sudoku.server;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * This class coalesces concurrent engine calls for the same key so that only
+ * one call is in flight at a time. Callers arriving while a call is in flight
+ * wait for, and share, its {@link SudokuResult}.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuSingleFlight {
+
+  /**
+   * Constructor for {@link SudokuSingleFlight}.
+   * 
+   * @param metrics {@link SudokuMetrics} object used to count coalesced calls.
+   */
+  public SudokuSingleFlight(SudokuMetrics metrics) {
+    _metrics = metrics;
+  }
+
+  /**
+   * Method returns the result of call for key. If a call for key is already in
+   * flight the current thread waits for it instead of making its own call.
+   * Whatever call throws, errors included, is rethrown to the caller and
+   * completes the waiting callers exceptionally.
+   * 
+   * @param key key identifying identical calls.
+   * @param call {@link Supplier} making the engine call.
+   * @return {@link SudokuResult} of the shared call.
+   */
+  public SudokuResult doCall(String key, Supplier<SudokuResult> call) {
+
+    CompletableFuture<SudokuResult> future = new CompletableFuture<>();
+
+    CompletableFuture<SudokuResult> inFlight = _inFlight.putIfAbsent(key, future);
+
+    if (inFlight != null) {
+
+      _metrics.doIncrement(CONSTANT_METRIC_COALESCED);
+
+      SudokuEvents.Phase event = SudokuEvents.doBeginPhase();
+
+      try {
+        return inFlight.join();
+      } finally {
+        SudokuEvents.doEndPhase(event, SudokuEvents.CONSTANT_PHASE_QUEUE);
+      }
+    }
+
+    try {
+
+      future.complete(call.get());
+
+    } catch (Throwable e) {
+
+      future.completeExceptionally(e);
+
+      throw e;
+
+    } finally {
+      _inFlight.remove(key, future);
+    }
+
+    return future.join();
+  }
+
+  /**
+   * Method returns the number of calls currently in flight.
+   * 
+   * @return number of calls in flight.
+   */
+  public int getInFlightCount() {
+    return _inFlight.size();
+  }
+
+  /**
+   * {@link SudokuMetrics} object used to count coalesced calls.
+   */
+  private final SudokuMetrics _metrics;
+
+  /**
+   * calls in flight keyed by call key.
+   */
+  private final ConcurrentMap<String, CompletableFuture<SudokuResult>> _inFlight = 
+      new ConcurrentHashMap<>();
+
+  /**
+   * Metric name constant for the number of calls which were served by another
+   * call already in flight.
+   */
+  final public static String CONSTANT_METRIC_COALESCED = "singleflight.coalesced";
+}
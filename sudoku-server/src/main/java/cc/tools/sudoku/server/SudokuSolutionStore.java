@@ -0,0 +1,530 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+/**
+ * This class implements a persistent store of solve results which survives
+ * servlet restarts.
+ * 
+ * Results are appended to a data file as fixed size records, each holding a
+ * packed position, the engine result code and a packed solution. Records are
+ * located through an open-addressing hash index held in a memory-mapped file,
+ * so a restarted servlet answers previously solved positions from the page
+ * cache. Writes are made by a single background thread and never delay the
+ * request thread.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuSolutionStore implements Closeable {
+
+  /**
+   * Constructor for {@link SudokuSolutionStore}. The index is rebuilt from the
+   * data file if it is missing or does not match the data file.
+   * 
+   * @param directory directory holding the store files. Created if missing.
+   * @param capacity number of index slots. Rounded up to a power of two no
+   *                 larger than {@value CONSTANT_MAX_CAPACITY}.
+   * @param metrics {@link SudokuMetrics} object used to record store activity.
+   * @throws IOException if the store files cannot be opened.
+   */
+  public SudokuSolutionStore(File directory, int capacity, SudokuMetrics metrics) throws IOException {
+    
+    Files.createDirectories(directory.toPath());
+
+    _capacity = Integer.highestOneBit(Math.min(Math.max(capacity - 1, 1), CONSTANT_MAX_CAPACITY - 1)) << 1;
+    
+    _limit = (int) (_capacity * CONSTANT_LOAD_FACTOR);
+
+    _metrics = metrics;
+
+    _data = FileChannel.open(new File(directory, CONSTANT_FILE_DATA).toPath(), 
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+    _data.truncate((_data.size() / CONSTANT_RECORD_SIZE) * CONSTANT_RECORD_SIZE);
+
+    try (FileChannel channel = FileChannel.open(new File(directory, CONSTANT_FILE_INDEX).toPath(), 
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      
+      _index = channel.map(FileChannel.MapMode.READ_WRITE, 0, 
+          CONSTANT_INDEX_HEADER_SIZE + (long) _capacity * Long.BYTES);
+    }
+
+    long records = _data.size() / CONSTANT_RECORD_SIZE;
+
+    if (_index.getInt(0) != CONSTANT_INDEX_MAGIC ||
+        _index.getInt(4) != _capacity ||
+        _index.getInt(8) != Math.min(records, _limit)) {
+      
+      doRebuildIndex(records);
+    }
+
+    _count = _index.getInt(8);
+
+    _records = records;
+
+    _writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, 
+        new ArrayBlockingQueue<>(CONSTANT_QUEUE_SIZE), 
+        runnable -> {
+          Thread thread = new Thread(runnable, "sudoku-store-writer");
+          
+          thread.setDaemon(true);
+          
+          return thread;
+        },
+        (runnable, executor) -> _metrics.doIncrement(CONSTANT_METRIC_DROPPED));
+    
+    Logger.getLogger(SudokuSolutionStore.class.getName()).log(Level.INFO, 
+        "info: solution store " + directory + " records: " + _records + " indexed: " + _count);
+  }
+
+  /**
+   * Method stops the writer thread after pending writes complete, then flushes
+   * and closes the store files.
+   * 
+   * @throws IOException if the store files cannot be closed.
+   */
+  public void close() throws IOException {
+    
+    _writer.shutdown();
+
+    try {
+      
+      _writer.awaitTermination(CONSTANT_CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    _index.force();
+
+    _data.close();
+  }
+
+  /**
+   * Method queues result for position to be written to the store. Only results
+   * which are fully determined by the position are stored.
+   * 
+   * @param position String containing a canonical sudoku position.
+   * @param result {@link SudokuResult} returned by the engine.
+   */
+  public void doPutAsync(String position, SudokuResult result) {
+    
+    if (!isStorable(result.getCode())) {
+      return;
+    }
+
+    byte[] packedPosition = SudokuBoard.getPackedPosition(position);
+
+    if (packedPosition == null) {
+      return;
+    }
+
+    _writer.execute(() -> doPut(packedPosition, result));
+  }
+
+  /**
+   * Method returns the stored result for position.
+   * 
+   * @param position String containing a canonical sudoku position.
+   * @return {@link SudokuResult} with runtime -1 or null if position is not stored.
+   */
+  public SudokuResult get(String position) {
+    
+    byte[] packedPosition = SudokuBoard.getPackedPosition(position);
+
+    if (packedPosition == null) {
+      return null;
+    }
+
+    try {
+      
+      ByteBuffer record = ByteBuffer.allocate(CONSTANT_RECORD_SIZE);
+
+      if (getRecordIndex(packedPosition, record) < 0) {
+        
+        _metrics.doIncrement(CONSTANT_METRIC_MISS);
+        
+        return null;
+      }
+
+      _metrics.doIncrement(CONSTANT_METRIC_HIT);
+
+      int code = record.get(SudokuBoard.CONSTANT_PACKED_SIZE);
+
+      if (code != 0) {
+        return new SudokuResult(code, "", -1);
+      }
+
+      byte[] packedSolution = new byte[SudokuBoard.CONSTANT_PACKED_SIZE];
+
+      record.get(SudokuBoard.CONSTANT_PACKED_SIZE + 1, packedSolution);
+
+      return new SudokuResult(0, 
+          SudokuBoard.getSolutionXml(SudokuBoard.getUnpackedCells(packedSolution)), -1);
+
+    } catch (IOException e) {
+      
+      Logger.getLogger(SudokuSolutionStore.class.getName()).log(Level.SEVERE, 
+          "error: solution store read failed " + e.getMessage());
+    }
+
+    return null;
+  }
+
+  /**
+   * Method returns the number of records in the data file.
+   * 
+   * @return number of records.
+   */
+  public long getRecordCount() {
+    return _records;
+  }
+
+  /**
+   * Method appends a record for packedPosition and adds it to the index. Called
+   * on the writer thread only.
+   * 
+   * @param packedPosition packed position.
+   * @param result {@link SudokuResult} returned by the engine.
+   */
+  private void doPut(byte[] packedPosition, SudokuResult result) {
+    
+    try {
+      
+      if (getRecordIndex(packedPosition, ByteBuffer.allocate(CONSTANT_RECORD_SIZE)) >= 0) {
+        return;
+      }
+
+      if (_count >= _limit) {
+        
+        _metrics.doIncrement(CONSTANT_METRIC_DROPPED);
+        
+        return;
+      }
+
+      byte[] packedSolution = new byte[SudokuBoard.CONSTANT_PACKED_SIZE];
+
+      if (result.isSuccess()) {
+        
+        int[] cells = SudokuBoard.getCellsFromSolutionXml(result.getData());
+
+        if (cells == null) {
+          return;
+        }
+
+        packedSolution = SudokuBoard.getPackedCells(cells);
+      }
+
+      ByteBuffer record = ByteBuffer.allocate(CONSTANT_RECORD_SIZE);
+
+      record.put(packedPosition);
+      record.put((byte) result.getCode());
+      record.put(packedSolution);
+      record.flip();
+
+      long offset = _records * CONSTANT_RECORD_SIZE;
+
+      while (record.hasRemaining()) {
+        offset += _data.write(record, offset);
+      }
+
+      doIndex(packedPosition, _records);
+
+      ++_records;
+
+      _metrics.doIncrement(CONSTANT_METRIC_WRITE);
+
+    } catch (IOException e) {
+      
+      Logger.getLogger(SudokuSolutionStore.class.getName()).log(Level.SEVERE, 
+          "error: solution store write failed " + e.getMessage());
+    }
+  }
+
+  /**
+   * Method adds record number recordIndex for packedPosition to the index. The
+   * data record must be written before it is indexed so that readers never
+   * find an index slot referring to a missing record.
+   * 
+   * @param packedPosition packed position.
+   * @param recordIndex record number in the data file.
+   */
+  private void doIndex(byte[] packedPosition, long recordIndex) {
+    
+    long hash = getHash(packedPosition);
+
+    int slot = (int) hash & (_capacity - 1);
+
+    while (_index.getLong(getSlotOffset(slot)) != 0) {
+      slot = (slot + 1) & (_capacity - 1);
+    }
+
+    _index.putLong(getSlotOffset(slot), (hash & 0xffffffff00000000L) | (recordIndex + 1));
+
+    _index.putInt(8, ++_count);
+  }
+
+  /**
+   * Method clears the index and re-indexes the first records of the data file.
+   * 
+   * @param records number of records in the data file.
+   * @throws IOException if the data file cannot be read.
+   */
+  private void doRebuildIndex(long records) throws IOException {
+    
+    Logger.getLogger(SudokuSolutionStore.class.getName()).log(Level.INFO, 
+        "info: solution store rebuilding index of " + records + " records");
+
+    for (long offset = CONSTANT_INDEX_HEADER_SIZE; offset < _index.capacity(); offset += Long.BYTES) {
+      _index.putLong((int) offset, 0);
+    }
+
+    _index.putInt(0, CONSTANT_INDEX_MAGIC);
+    _index.putInt(4, _capacity);
+    _index.putInt(8, 0);
+
+    _count = 0;
+
+    ByteBuffer record = ByteBuffer.allocate(CONSTANT_RECORD_SIZE);
+
+    byte[] packedPosition = new byte[SudokuBoard.CONSTANT_PACKED_SIZE];
+
+    for (long i = 0; i < records && _count < _limit; ++i) {
+      
+      doReadRecord(i, record);
+
+      record.get(0, packedPosition);
+
+      doIndex(packedPosition, i);
+    }
+
+    _index.force();
+  }
+
+  /**
+   * Method reads record number recordIndex from the data file into record.
+   * 
+   * @param recordIndex record number in the data file.
+   * @param record buffer of {@value CONSTANT_RECORD_SIZE} bytes.
+   * @throws IOException if the data file cannot be read.
+   */
+  private void doReadRecord(long recordIndex, ByteBuffer record) throws IOException {
+    
+    record.clear();
+
+    long offset = recordIndex * CONSTANT_RECORD_SIZE;
+
+    while (record.hasRemaining()) {
+      
+      int count = _data.read(record, offset);
+
+      if (count < 0) {
+        throw new EOFException("record " + recordIndex);
+      }
+
+      offset += count;
+    }
+  }
+
+  /**
+   * Method returns a 64 bit FNV-1a hash of packed.
+   * 
+   * @param packed packed position.
+   * @return hash value.
+   */
+  private long getHash(byte[] packed) {
+    
+    long hash = 0xcbf29ce484222325L;
+
+    for (byte b : packed) {
+      
+      hash ^= b & 0xff;
+      
+      hash *= 0x100000001b3L;
+    }
+
+    return hash;
+  }
+
+  /**
+   * Method looks up packedPosition in the index and reads its record.
+   * 
+   * @param packedPosition packed position.
+   * @param record buffer of {@value CONSTANT_RECORD_SIZE} bytes which receives the record.
+   * @return record number in the data file or -1 if packedPosition is not stored.
+   * @throws IOException if the data file cannot be read.
+   */
+  private long getRecordIndex(byte[] packedPosition, ByteBuffer record) throws IOException {
+    
+    long hash = getHash(packedPosition);
+
+    long tag = hash & 0xffffffff00000000L;
+
+    int slot = (int) hash & (_capacity - 1);
+
+    byte[] key = new byte[SudokuBoard.CONSTANT_PACKED_SIZE];
+
+    for (int i = 0; i < _capacity; ++i) {
+      
+      long value = _index.getLong(getSlotOffset(slot));
+
+      if (value == 0) {
+        return -1;
+      }
+
+      if ((value & 0xffffffff00000000L) == tag) {
+        
+        long recordIndex = (value & 0xffffffffL) - 1;
+
+        doReadRecord(recordIndex, record);
+
+        record.get(0, key);
+
+        if (Arrays.equals(key, packedPosition)) {
+          return recordIndex;
+        }
+      }
+
+      slot = (slot + 1) & (_capacity - 1);
+    }
+
+    return -1;
+  }
+
+  /**
+   * Method returns the byte offset of index slot.
+   * 
+   * @param slot index slot.
+   * @return byte offset in the index file.
+   */
+  private int getSlotOffset(int slot) {
+    return CONSTANT_INDEX_HEADER_SIZE + slot * Long.BYTES;
+  }
+
+  /**
+   * Method returns boolean indicating whether results with code are fully
+   * determined by the position and can be stored.
+   * 
+   * @param code engine result code.
+   * @return boolean true for solved and no solution results, false otherwise.
+   */
+  private boolean isStorable(int code) {
+    return code == 0 || code == 4;
+  }
+
+  /**
+   * number of index slots.
+   */
+  private final int _capacity;
+
+  /**
+   * number of indexed records. Updated on the writer thread only.
+   */
+  private int _count = 0;
+
+  /**
+   * data file channel.
+   */
+  private final FileChannel _data;
+
+  /**
+   * memory-mapped index file.
+   */
+  private final MappedByteBuffer _index;
+
+  /**
+   * maximum number of indexed records.
+   */
+  private final int _limit;
+
+  /**
+   * {@link SudokuMetrics} object used to record store activity.
+   */
+  private final SudokuMetrics _metrics;
+
+  /**
+   * number of records in the data file.
+   */
+  private volatile long _records;
+
+  /**
+   * single background thread appending records.
+   */
+  private final ThreadPoolExecutor _writer;
+
+  /**
+   * Constant for the maximum time in ms to wait for pending writes on close.
+   */
+  final public static long CONSTANT_CLOSE_TIMEOUT_MS = 5000;
+
+  /**
+   * Constant for the data file name.
+   */
+  final public static String CONSTANT_FILE_DATA = "solutions.dat";
+
+  /**
+   * Constant for the index file name.
+   */
+  final public static String CONSTANT_FILE_INDEX = "solutions.idx";
+
+  /**
+   * Constant for the index file header size in bytes. The header holds magic
+   * number, slot count and indexed record count.
+   */
+  final public static int CONSTANT_INDEX_HEADER_SIZE = 16;
+
+  /**
+   * Constant for the index file magic number.
+   */
+  final public static int CONSTANT_INDEX_MAGIC = 0x53444b31;
+
+  /**
+   * Constant for the maximum fraction of index slots in use.
+   */
+  final public static double CONSTANT_LOAD_FACTOR = 0.75;
+
+  /**
+   * Constant for the maximum number of index slots, keeping the index file
+   * within a single mapping.
+   */
+  final public static int CONSTANT_MAX_CAPACITY = 1 << 27;
+
+  /**
+   * Metric name constant for results dropped because the write queue or index was full.
+   */
+  final public static String CONSTANT_METRIC_DROPPED = "store.dropped";
+
+  /**
+   * Metric name constant for positions found in the store.
+   */
+  final public static String CONSTANT_METRIC_HIT = "store.hit";
+
+  /**
+   * Metric name constant for positions not found in the store.
+   */
+  final public static String CONSTANT_METRIC_MISS = "store.miss";
+
+  /**
+   * Metric name constant for records written to the store.
+   */
+  final public static String CONSTANT_METRIC_WRITE = "store.write";
+
+  /**
+   * Constant for the maximum number of queued writes.
+   */
+  final public static int CONSTANT_QUEUE_SIZE = 4096;
+
+  /**
+   * Constant for the record size in bytes: packed position, result code and
+   * packed solution.
+   */
+  final public static int CONSTANT_RECORD_SIZE = SudokuBoard.CONSTANT_PACKED_SIZE * 2 + 1;
+}
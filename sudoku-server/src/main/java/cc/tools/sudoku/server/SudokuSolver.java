@@ -0,0 +1,777 @@
+package cc.tools.sudoku.server;
+
+import java.util.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class implements a Java Sudoku solver returning results in the same
+ * form as Sudoku-Lib.
+ * 
+ * The solver keeps the digits used in each row, column and box as bitmasks
+ * and fills naked and hidden singles before a depth first search which
+ * always fills the empty cell with the fewest candidates next. The search polls a cancellation check so that a
+ * solve can be abandoned by another thread, and reports its progress to an
+ * optional {@link Progress} listener at the same points.
+ * 
+ * A {@link SudokuVariant} adds units, kept as bitmasks like the rows, and
+ * cages, whose candidates are the digits of the combinations still open for
+ * the cage's missing sum and empty cells. Singles are found in the extra
+ * units as in the classic ones.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuSolver {
+
+  /**
+   * This interface receives the progress of a solve.
+   */
+  public interface Progress {
+
+    /**
+     * Method reports the progress of a solve, once after the singles are
+     * filled and then every {@value SudokuSolver#CONSTANT_CANCEL_POLL_MASK} + 1
+     * search nodes. It is called on the solving thread.
+     * 
+     * @param fixedCount number of filled cells, givens included.
+     * @param depth current search depth.
+     * @param nodeCount number of search nodes visited.
+     */
+    void doReport(int fixedCount, int depth, long nodeCount);
+  }
+
+  /**
+   * Constructor for {@link SudokuSolver}.
+   * 
+   * @param cells int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell
+   *              values, 0 for an empty cell. The array is copied.
+   */
+  public SudokuSolver(int[] cells) {
+    this(cells, null);
+  }
+
+  /**
+   * Constructor for {@link SudokuSolver}.
+   * 
+   * @param cells int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell
+   *              values, 0 for an empty cell. The array is copied.
+   * @param variant {@link SudokuVariant} or null for the classic game.
+   */
+  public SudokuSolver(int[] cells, SudokuVariant variant) {
+    
+    _cells = cells.clone();
+
+    if (variant != null) {
+      
+      _units = variant.getUnits();
+
+      _cellUnits = variant.getCellUnits();
+
+      _unitsUsed = new int[variant.getUnitCount()];
+
+      _cellCages = variant.getCellCages();
+
+      _cagesUsed = new int[variant.getCageCount()];
+
+      _cagesEmpty = variant.getCageSizes();
+
+      _cagesMissing = variant.getCageSums();
+    }
+  }
+
+  /**
+   * Method places digit in cell.
+   * 
+   * @param cell cell index.
+   * @param digit digit from 1 to 9.
+   */
+  private void doPlace(int cell, int digit) {
+    
+    int bit = 1 << digit;
+
+    _cells[cell] = digit;
+
+    ++_fixedCount;
+
+    _rows[cell / 9] |= bit;
+    _columns[cell % 9] |= bit;
+    _boxes[CONSTANT_BOX[cell]] |= bit;
+
+    if (_cellUnits != null) {
+      
+      for (int unit : _cellUnits[cell]) {
+        _unitsUsed[unit] |= bit;
+      }
+
+      int cage = _cellCages[cell];
+
+      if (cage >= 0) {
+        
+        _cagesUsed[cage] |= bit;
+
+        --_cagesEmpty[cage];
+
+        _cagesMissing[cage] -= digit;
+      }
+    }
+  }
+
+  /**
+   * Method removes digit from cell.
+   * 
+   * @param cell cell index.
+   * @param digit digit placed in cell.
+   */
+  private void doRemove(int cell, int digit) {
+    
+    int bit = ~(1 << digit);
+
+    _cells[cell] = 0;
+
+    --_fixedCount;
+
+    _rows[cell / 9] &= bit;
+    _columns[cell % 9] &= bit;
+    _boxes[CONSTANT_BOX[cell]] &= bit;
+
+    if (_cellUnits != null) {
+      
+      for (int unit : _cellUnits[cell]) {
+        _unitsUsed[unit] &= bit;
+      }
+
+      int cage = _cellCages[cell];
+
+      if (cage >= 0) {
+        
+        _cagesUsed[cage] &= bit;
+
+        ++_cagesEmpty[cage];
+
+        _cagesMissing[cage] += digit;
+      }
+    }
+  }
+
+  /**
+   * Method searches for a solution from the current cells.
+   * 
+   * @param depth search depth of the current cells.
+   * @return boolean true if the cells hold a solution, false if there is no
+   *         solution or the search was cancelled.
+   */
+  private boolean doSearch(int depth) {
+    
+    if ((++_nodeCount & CONSTANT_CANCEL_POLL_MASK) == 0) {
+      
+      if (_progress != null) {
+        _progress.doReport(_fixedCount, depth, _nodeCount);
+      }
+
+      if (_isCancelled.getAsBoolean()) {
+      
+        _isStopped = true;
+      
+        return false;
+      }
+    }
+
+    int cell = -1;
+
+    int candidates = 0;
+
+    int candidateCount = 10;
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT && candidateCount > 1; ++i) {
+      
+      if (_cells[i] != 0) {
+        continue;
+      }
+
+      int mask = getCandidates(i);
+
+      int count = Integer.bitCount(mask);
+
+      if (count < candidateCount) {
+        
+        cell = i;
+        candidates = mask;
+        candidateCount = count;
+      }
+    }
+
+    if (cell < 0) {
+      return true;
+    }
+
+    while (candidates != 0) {
+      
+      int bit = candidates & -candidates;
+
+      int digit = Integer.numberOfTrailingZeros(bit);
+
+      candidates ^= bit;
+
+      doPlace(cell, digit);
+
+      if (doSearch(depth + 1)) {
+        return true;
+      }
+
+      doRemove(cell, digit);
+
+      if (_isStopped) {
+        return false;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Method fills the cells forced by naked and hidden singles until no single
+   * remains. A naked single is a cell with one candidate, a hidden single is a
+   * digit with one possible cell in a row, column or box.
+   * 
+   * @return boolean false if the cells are invalid or reached a contradiction,
+   *         true otherwise.
+   */
+  public boolean doPropagate() {
+    
+    if (doSetup() != SudokuNative.CONSTANT_RESULT_OK) {
+      return false;
+    }
+
+    boolean isChanged = true;
+
+    while (isChanged) {
+      
+      isChanged = false;
+
+      for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+        
+        if (_cells[i] != 0) {
+          continue;
+        }
+
+        int mask = getCandidates(i);
+
+        if (mask == 0) {
+          return false;
+        }
+
+        if ((mask & (mask - 1)) == 0) {
+          
+          doPlace(i, Integer.numberOfTrailingZeros(mask));
+          
+          isChanged = true;
+        }
+      }
+
+      for (int[] unit : _units) {
+        
+        int used = 0;
+
+        int once = 0;
+
+        int twice = 0;
+
+        for (int cell : unit) {
+          
+          if (_cells[cell] != 0) {
+            
+            used |= 1 << _cells[cell];
+            
+            continue;
+          }
+
+          int mask = getCandidates(cell);
+
+          twice |= once & mask;
+          once |= mask;
+        }
+
+        if ((used | once) != CONSTANT_DIGITS_MASK) {
+          return false;
+        }
+
+        int hidden = once & ~twice;
+
+        while (hidden != 0) {
+          
+          int bit = hidden & -hidden;
+
+          hidden ^= bit;
+
+          int cell = -1;
+
+          for (int candidate : unit) {
+            
+            if (_cells[candidate] == 0 &&
+                (getCandidates(candidate) & bit) != 0) {
+              
+              cell = candidate;
+              
+              break;
+            }
+          }
+
+          if (cell < 0) {
+            return false;
+          }
+
+          doPlace(cell, Integer.numberOfTrailingZeros(bit));
+
+          isChanged = true;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Method places the given cells, once per solver.
+   * 
+   * @return result code, {@link SudokuNative#CONSTANT_RESULT_OK} if the cells
+   *         are valid, {@link SudokuNative#CONSTANT_RESULT_BAD_PARAMETER} if a
+   *         cell value is not a digit and
+   *         {@link SudokuNative#CONSTANT_RESULT_SETUP_FAILED} if the given
+   *         cells conflict.
+   */
+  private int doSetup() {
+    
+    if (_setupCode >= 0) {
+      return _setupCode;
+    }
+
+    _setupCode = SudokuNative.CONSTANT_RESULT_OK;
+
+    int[] givens = _cells.clone();
+
+    Arrays.fill(_cells, 0);
+
+    _fixedCount = 0;
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+      
+      int digit = givens[i];
+
+      if (digit < 0 ||
+          digit > 9) {
+        
+        _setupCode = SudokuNative.CONSTANT_RESULT_BAD_PARAMETER;
+        
+        break;
+      }
+
+      if (digit == 0) {
+        continue;
+      }
+
+      if ((getCandidates(i) & (1 << digit)) == 0) {
+        
+        _setupCode = SudokuNative.CONSTANT_RESULT_SETUP_FAILED;
+        
+        break;
+      }
+
+      doPlace(i, digit);
+    }
+
+    return _setupCode;
+  }
+
+  /**
+   * Method solves the cells, filling singles before searching.
+   * 
+   * @param isCancelled check polled during the search. The search stops once
+   *                    it returns true.
+   * @return result code, {@link SudokuNative#CONSTANT_RESULT_OK} if solved,
+   *         {@link SudokuNative#CONSTANT_RESULT_BAD_PARAMETER} if a cell value
+   *         is not a digit, {@link SudokuNative#CONSTANT_RESULT_SETUP_FAILED}
+   *         if the given cells conflict,
+   *         {@link SudokuNative#CONSTANT_RESULT_NO_SOLUTION} if there is no
+   *         solution and {@link SudokuNative#CONSTANT_RESULT_TIMEOUT} if the
+   *         search was cancelled.
+   */
+  public int doSolve(BooleanSupplier isCancelled) {
+    
+    _isCancelled = isCancelled;
+
+    int code = doSetup();
+
+    if (code != SudokuNative.CONSTANT_RESULT_OK) {
+      return code;
+    }
+
+    if (!doPropagate()) {
+      return SudokuNative.CONSTANT_RESULT_NO_SOLUTION;
+    }
+
+    if (_progress != null) {
+      _progress.doReport(_fixedCount, 0, 0);
+    }
+
+    if (doSearch(0)) {
+      return SudokuNative.CONSTANT_RESULT_OK;
+    }
+
+    return _isStopped ? SudokuNative.CONSTANT_RESULT_TIMEOUT : SudokuNative.CONSTANT_RESULT_NO_SOLUTION;
+  }
+
+  /**
+   * Method returns the digits which may be placed in cell.
+   * 
+   * @param cell cell index.
+   * @return bitmask with bit d set for each candidate digit d.
+   */
+  private int getCandidates(int cell) {
+    
+    int mask = ~(_rows[cell / 9] | _columns[cell % 9] | _boxes[CONSTANT_BOX[cell]]) & CONSTANT_DIGITS_MASK;
+
+    if (_cellUnits == null) {
+      return mask;
+    }
+
+    for (int unit : _cellUnits[cell]) {
+      mask &= ~_unitsUsed[unit];
+    }
+
+    int cage = _cellCages[cell];
+
+    if (cage >= 0) {
+      mask &= SudokuVariant.getCageCandidates(_cagesEmpty[cage], _cagesMissing[cage], _cagesUsed[cage]);
+    }
+
+    return mask;
+  }
+
+  /**
+   * Method returns the number of given cells.
+   * 
+   * @param cells int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell values.
+   * @return number of non-empty cells.
+   */
+  public static int getClueCount(int[] cells) {
+    
+    int count = 0;
+
+    for (int cell : cells) {
+      
+      if (cell != 0) {
+        ++count;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Method returns the cells. After a successful solve they hold the solution.
+   * 
+   * @return int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell values.
+   */
+  public int[] getCells() {
+    return _cells;
+  }
+
+  /**
+   * Method returns the number of search nodes visited.
+   * 
+   * @return number of nodes.
+   */
+  public long getNodeCount() {
+    return _nodeCount;
+  }
+
+  /**
+   * Method solves position and returns the result in the form returned by
+   * Sudoku-Lib.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @param isCancelled check polled during the search. The search stops once
+   *                    it returns true.
+   * @param timeoutMs maximum duration of the search in ms.
+   * @return {@link SudokuResult} holding result code, solution data and runtime.
+   */
+  public static SudokuResult getResult(String position, BooleanSupplier isCancelled, long timeoutMs) {
+    return getResult(position, isCancelled, timeoutMs, null);
+  }
+
+  /**
+   * Method solves position, reporting progress to progress, and returns the
+   * result in the form returned by Sudoku-Lib.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @param isCancelled check polled during the search. The search stops once
+   *                    it returns true.
+   * @param timeoutMs maximum duration of the search in ms.
+   * @param progress {@link Progress} listener or null.
+   * @return {@link SudokuResult} holding result code, solution data and runtime.
+   */
+  public static SudokuResult getResult(String position, BooleanSupplier isCancelled, long timeoutMs, 
+      Progress progress) {
+    return getResult(position, null, isCancelled, timeoutMs, progress);
+  }
+
+  /**
+   * Method solves position under the constraints of variant, reporting
+   * progress to progress, and returns the result in the form returned by
+   * Sudoku-Lib.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @param variant {@link SudokuVariant} or null for the classic game.
+   * @param isCancelled check polled during the search. The search stops once
+   *                    it returns true.
+   * @param timeoutMs maximum duration of the search in ms.
+   * @param progress {@link Progress} listener or null.
+   * @return {@link SudokuResult} holding result code, solution data and runtime.
+   */
+  public static SudokuResult getResult(String position, SudokuVariant variant, BooleanSupplier isCancelled, 
+      long timeoutMs, Progress progress) {
+    
+    long start = System.nanoTime();
+
+    long deadline = start + timeoutMs * 1000000L;
+
+    int[] cells = SudokuBoard.getCellsFromPosition(position);
+
+    if (cells == null) {
+      return new SudokuResult(SudokuNative.CONSTANT_RESULT_BAD_PARAMETER, "", 0);
+    }
+
+    SudokuSolver solver = new SudokuSolver(cells, variant);
+
+    solver.setProgress(progress);
+
+    int code = solver.doSolve(() -> isCancelled.getAsBoolean() || System.nanoTime() > deadline);
+
+    int runtime = (int) ((System.nanoTime() - start) / 1000000L);
+
+    return new SudokuResult(code, 
+        code == SudokuNative.CONSTANT_RESULT_OK ? SudokuBoard.getSolutionXml(solver.getCells()) : "", 
+        runtime);
+  }
+
+  /**
+   * Method returns the moves of position under the constraints of variant, the
+   * candidates of each empty cell, in the form returned by Sudoku-Lib.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @param variant {@link SudokuVariant} or null for the classic game.
+   * @return {@link SudokuResult} holding result code, moves data and runtime.
+   */
+  public static SudokuResult getMovesResult(String position, SudokuVariant variant) {
+    
+    long start = System.nanoTime();
+
+    int[] cells = SudokuBoard.getCellsFromPosition(position);
+
+    if (cells == null) {
+      return new SudokuResult(SudokuNative.CONSTANT_RESULT_BAD_PARAMETER, "", 0);
+    }
+
+    SudokuSolver solver = new SudokuSolver(cells, variant);
+
+    int code = solver.doSetup();
+
+    if (code != SudokuNative.CONSTANT_RESULT_OK) {
+      return new SudokuResult(code, "", 0);
+    }
+
+    int[] moves = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+      
+      if (solver._cells[i] == 0) {
+        moves[i] = solver.getCandidates(i);
+      }
+    }
+
+    return new SudokuResult(SudokuNative.CONSTANT_RESULT_OK, SudokuBoard.getMovesXml(moves), 
+        (int) ((System.nanoTime() - start) / 1000000L));
+  }
+
+  /**
+   * Method solves position by singles alone. This is a cheap pre-pass which
+   * answers easy positions without a search. Positions with fewer than
+   * {@value CONSTANT_MIN_UNIQUE_CLUES} clues are not tried as they cannot
+   * have a unique solution, which singles would find.
+   * 
+   * @param position a string contaning a canonical sudoku position.
+   * @return {@link SudokuResult} holding the solution or null if singles do
+   *         not solve position.
+   */
+  public static SudokuResult getResultBySingles(String position) {
+    
+    long start = System.nanoTime();
+
+    int[] cells = SudokuBoard.getCellsFromPosition(position);
+
+    if (cells == null ||
+        getClueCount(cells) < CONSTANT_MIN_UNIQUE_CLUES) {
+      return null;
+    }
+
+    SudokuSolver solver = new SudokuSolver(cells);
+
+    if (!solver.doPropagate() ||
+        !solver.isSolved()) {
+      return null;
+    }
+
+    return new SudokuResult(SudokuNative.CONSTANT_RESULT_OK, 
+        SudokuBoard.getSolutionXml(solver.getCells()), 
+        (int) ((System.nanoTime() - start) / 1000000L));
+  }
+
+  /**
+   * Method returns boolean indicating whether every cell is filled.
+   * 
+   * @return boolean true if the cells are filled, false otherwise.
+   */
+  public boolean isSolved() {
+    
+    for (int cell : _cells) {
+      
+      if (cell == 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Method sets the listener receiving the progress of the solve.
+   * 
+   * @param progress {@link Progress} listener or null.
+   */
+  public void setProgress(Progress progress) {
+    _progress = progress;
+  }
+
+  /**
+   * digits used in each box.
+   */
+  private final int[] _boxes = new int[9];
+
+  /**
+   * digits placed in each cage or null for the classic game.
+   */
+  private int[] _cagesUsed = null;
+
+  /**
+   * number of empty cells of each cage or null for the classic game.
+   */
+  private int[] _cagesEmpty = null;
+
+  /**
+   * sum missing from each cage or null for the classic game.
+   */
+  private int[] _cagesMissing = null;
+
+  /**
+   * cage index of each cell or null for the classic game.
+   */
+  private int[] _cellCages = null;
+
+  /**
+   * extra unit indexes of each cell or null for the classic game.
+   */
+  private int[][] _cellUnits = null;
+
+  /**
+   * cell values.
+   */
+  private final int[] _cells;
+
+  /**
+   * digits used in each column.
+   */
+  private final int[] _columns = new int[9];
+
+  /**
+   * number of filled cells.
+   */
+  private int _fixedCount = 0;
+
+  /**
+   * cancellation check polled during the search.
+   */
+  private BooleanSupplier _isCancelled = () -> false;
+
+  /**
+   * boolean indicating whether the search was cancelled.
+   */
+  private boolean _isStopped = false;
+
+  /**
+   * number of search nodes visited.
+   */
+  private long _nodeCount = 0;
+
+  /**
+   * listener receiving the progress of the solve or null.
+   */
+  private Progress _progress = null;
+
+  /**
+   * digits used in each row.
+   */
+  private final int[] _rows = new int[9];
+
+  /**
+   * result code of placing the given cells or -1 if not yet placed.
+   */
+  private int _setupCode = -1;
+
+  /**
+   * units searched for hidden singles.
+   */
+  private int[][] _units = CONSTANT_UNITS;
+
+  /**
+   * digits used in each extra unit or null for the classic game.
+   */
+  private int[] _unitsUsed = null;
+
+  /**
+   * Constant for the box index of each cell.
+   */
+  final public static int[] CONSTANT_BOX = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+  /**
+   * Constant for the mask of search node counts at which cancellation is polled.
+   */
+  final public static int CONSTANT_CANCEL_POLL_MASK = 0x3ff;
+
+  /**
+   * Constant for the bitmask of the digits 1 to 9.
+   */
+  final public static int CONSTANT_DIGITS_MASK = 0x3fe;
+
+  /**
+   * Constant for the fewest clues of a position with a unique solution.
+   */
+  final public static int CONSTANT_MIN_UNIQUE_CLUES = 17;
+
+  /**
+   * Constant for the cells of each row, column and box.
+   */
+  final public static int[][] CONSTANT_UNITS = new int[27][9];
+
+  static {
+    
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+      
+      CONSTANT_BOX[i] = (i / 27) * 3 + (i % 9) / 3;
+
+      CONSTANT_UNITS[i / 9][i % 9] = i;
+      CONSTANT_UNITS[9 + i % 9][i / 9] = i;
+      CONSTANT_UNITS[18 + CONSTANT_BOX[i]][((i / 9) % 3) * 3 + i % 3] = i;
+    }
+  }
+}
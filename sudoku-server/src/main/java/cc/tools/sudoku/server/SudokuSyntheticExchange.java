@@ -0,0 +1,600 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+/**
+ * This class creates an in-memory {@link javax.servlet.http.HttpServletRequest}
+ * and {@link javax.servlet.http.HttpServletResponse} pair, so that requests can
+ * be passed through the {@link Sudoku} servlet without a servlet container.
+ * 
+ * The request and response implement the parts of the servlet API used by the
+ * servlet. Other methods return null, false or 0.
+ * 
+ * The response body is buffered unless a {@link Committer} is set. Flushing
+ * the response then commits it, passing status and headers to the committer
+ * and writing the rest of the body straight to the stream it returns.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuSyntheticExchange {
+
+  /**
+   * This interface sends the status and headers of a response committed by
+   * flushing it and returns the stream the body is written to.
+   */
+  public interface Committer {
+
+    /**
+     * Method sends the response status and headers.
+     * 
+     * @param status Http status code.
+     * @param headers response headers.
+     * @return {@link OutputStream} the response body is written to.
+     * @throws IOException .
+     */
+    OutputStream doCommit(int status, Map<String, String> headers) throws IOException;
+  }
+
+  /**
+   * Constructor for {@link SudokuSyntheticExchange}.
+   * 
+   * @param method Http method.
+   * @param uri request Uri path.
+   * @param parameters request parameters.
+   * @param headers request headers. Names are matched ignoring case.
+   * @param remoteAddr client address.
+   * @param body request body.
+   */
+  public SudokuSyntheticExchange(String method, String uri, Map<String, String> parameters, 
+      Map<String, String> headers, String remoteAddr, InputStream body) {
+    
+    _method = method;
+    _uri = uri;
+    _parameters = new LinkedHashMap<>(parameters);
+    _remoteAddr = remoteAddr;
+    _body = body;
+
+    for (Map.Entry<String, String> entry : headers.entrySet()) {
+      _requestHeaders.put(entry.getKey().toLowerCase(), entry.getValue());
+    }
+
+    _request = (HttpServletRequest) Proxy.newProxyInstance(
+        SudokuSyntheticExchange.class.getClassLoader(), 
+        new Class<?>[] { HttpServletRequest.class }, 
+        (proxy, m, args) -> getRequestValue(m, args));
+
+    _response = (HttpServletResponse) Proxy.newProxyInstance(
+        SudokuSyntheticExchange.class.getClassLoader(), 
+        new Class<?>[] { HttpServletResponse.class }, 
+        (proxy, m, args) -> getResponseValue(m, args));
+  }
+
+  /**
+   * Constructor for {@link SudokuSyntheticExchange} for a Get request without headers.
+   * 
+   * @param uri request Uri path.
+   * @param parameters request parameters.
+   */
+  public SudokuSyntheticExchange(String uri, Map<String, String> parameters) {
+    this("GET", uri, parameters, Map.of(), CONSTANT_REMOTE_ADDR, InputStream.nullInputStream());
+  }
+
+  /**
+   * Method flushes the response, committing it if a {@link Committer} is set.
+   * 
+   * @throws IOException .
+   */
+  public void doFlush() throws IOException {
+    
+    _writer.flush();
+
+    if (_committer == null) {
+      return;
+    }
+
+    if (!_isCommitted) {
+      
+      _isCommitted = true;
+
+      _sink = _committer.doCommit(_status, _responseHeaders);
+
+      _output.writeTo(_sink);
+
+      _output.reset();
+    }
+
+    _sink.flush();
+  }
+
+  /**
+   * Method returns the response body written so far. Once the response is
+   * committed the body is written to the committer's stream instead.
+   * 
+   * @return byte array containing the response body.
+   */
+  public byte[] getBody() {
+    
+    _writer.flush();
+    
+    return _output.toByteArray();
+  }
+
+  /**
+   * Method returns the request object.
+   * 
+   * @return {@link javax.servlet.http.HttpServletRequest} object.
+   */
+  public HttpServletRequest getRequest() {
+    return _request;
+  }
+
+  /**
+   * Method returns the response object.
+   * 
+   * @return {@link javax.servlet.http.HttpServletResponse} object.
+   */
+  public HttpServletResponse getResponse() {
+    return _response;
+  }
+
+  /**
+   * Method returns boolean indicating whether the response was committed.
+   * 
+   * @return boolean true if status and headers were passed to the committer,
+   *         false otherwise.
+   */
+  public boolean isCommitted() {
+    return _isCommitted;
+  }
+
+  /**
+   * Method returns the response headers, including the content type.
+   * 
+   * @return {@link Map} of header names to values in the order set.
+   */
+  public Map<String, String> getResponseHeaders() {
+    return _responseHeaders;
+  }
+
+  /**
+   * Method returns the response status.
+   * 
+   * @return Http status code.
+   */
+  public int getStatus() {
+    return _status;
+  }
+
+  /**
+   * Method sets the committer of the response. Without one the response is
+   * buffered until the request has been processed.
+   * 
+   * @param committer {@link Committer} object.
+   */
+  public void setCommitter(Committer committer) {
+    _committer = committer;
+  }
+
+  /**
+   * Method returns the default value for type, as returned by unsupported methods.
+   * 
+   * @param type method return type.
+   * @return Object containing null, false or 0.
+   */
+  private Object getDefaultValue(Class<?> type) {
+    
+    if (type == boolean.class) {
+      return false;
+    }
+
+    if (type == int.class) {
+      return 0;
+    }
+
+    if (type == long.class) {
+      return 0L;
+    }
+
+    return null;
+  }
+
+  /**
+   * Method returns the result of calling request method m.
+   * 
+   * @param m {@link Method} called.
+   * @param args call arguments.
+   * @return Object containing the call result.
+   */
+  private Object getRequestValue(Method m, Object[] args) {
+    
+    switch (m.getName()) {
+    
+    case "getAttribute": {
+      return _attributes.get(args[0]);
+    }
+
+    case "getAttributeNames": {
+      return Collections.enumeration(_attributes.keySet());
+    }
+
+    case "getContentLength": {
+      return getRequestIntHeader("content-length");
+    }
+
+    case "getContentLengthLong": {
+      return (long) getRequestIntHeader("content-length");
+    }
+
+    case "getContentType": {
+      return _requestHeaders.get("content-type");
+    }
+
+    case "getDateHeader": {
+      return -1L;
+    }
+
+    case "getHeader": {
+      return _requestHeaders.get(((String) args[0]).toLowerCase());
+    }
+
+    case "getHeaderNames": {
+      return Collections.enumeration(_requestHeaders.keySet());
+    }
+
+    case "getHeaders": {
+      String value = _requestHeaders.get(((String) args[0]).toLowerCase());
+      
+      return Collections.enumeration(value == null ? List.of() : List.of(value));
+    }
+
+    case "getInputStream": {
+      return new ServletInputStream() {
+        
+        public int read() throws IOException {
+          return _body.read();
+        }
+
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+          return _body.read(buffer, offset, length);
+        }
+
+        public boolean isFinished() {
+          return false;
+        }
+
+        public boolean isReady() {
+          return true;
+        }
+
+        public void setReadListener(ReadListener listener) {
+        }
+      };
+    }
+
+    case "getIntHeader": {
+      return getRequestIntHeader(((String) args[0]).toLowerCase());
+    }
+
+    case "getMethod": {
+      return _method;
+    }
+
+    case "getParameter": {
+      return _parameters.get(args[0]);
+    }
+
+    case "getParameterMap": {
+      Map<String, String[]> map = new LinkedHashMap<>();
+      
+      _parameters.forEach((name, value) -> map.put(name, new String[] { value }));
+      
+      return map;
+    }
+
+    case "getParameterNames": {
+      return Collections.enumeration(_parameters.keySet());
+    }
+
+    case "getParameterValues": {
+      String value = _parameters.get(args[0]);
+      
+      return value == null ? null : new String[] { value };
+    }
+
+    case "getProtocol": {
+      return "HTTP/1.1";
+    }
+
+    case "getRemoteAddr": {
+      return _remoteAddr;
+    }
+
+    case "getRequestURI": {
+      return _uri;
+    }
+
+    case "getRequestURL": {
+      return new StringBuffer("http://localhost").append(_uri);
+    }
+
+    case "removeAttribute": {
+      _attributes.remove(args[0]);
+      
+      return null;
+    }
+
+    case "setAttribute": {
+      _attributes.put((String) args[0], args[1]);
+      
+      return null;
+    }
+
+    default: {
+      return getDefaultValue(m.getReturnType());
+    }
+
+    }
+  }
+
+  /**
+   * Method returns the integer value of request header name.
+   * 
+   * @param name lower case header name.
+   * @return int header value or -1 if missing or invalid.
+   */
+  private int getRequestIntHeader(String name) {
+    
+    String value = _requestHeaders.get(name);
+
+    try {
+      
+      return value == null ? -1 : Integer.parseInt(value.trim());
+    
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Method returns the result of calling response method m.
+   * 
+   * @param m {@link Method} called.
+   * @param args call arguments.
+   * @return Object containing the call result.
+   * @throws IOException .
+   */
+  private Object getResponseValue(Method m, Object[] args) throws IOException {
+    
+    switch (m.getName()) {
+    
+    case "addDateHeader": 
+    case "setDateHeader": {
+      _responseHeaders.put((String) args[0], DateTimeFormatter.RFC_1123_DATE_TIME.format(
+          ZonedDateTime.ofInstant(Instant.ofEpochMilli((long) args[1]), ZoneOffset.UTC)));
+      
+      return null;
+    }
+
+    case "addHeader": 
+    case "setHeader": {
+      _responseHeaders.put((String) args[0], (String) args[1]);
+      
+      return null;
+    }
+
+    case "addIntHeader": 
+    case "setIntHeader": {
+      _responseHeaders.put((String) args[0], Integer.toString((int) args[1]));
+      
+      return null;
+    }
+
+    case "containsHeader": {
+      return _responseHeaders.containsKey(args[0]);
+    }
+
+    case "getContentType": {
+      return _responseHeaders.get("Content-Type");
+    }
+
+    case "flushBuffer": {
+      doFlush();
+      
+      return null;
+    }
+
+    case "getCharacterEncoding": {
+      return StandardCharsets.UTF_8.name();
+    }
+
+    case "getHeader": {
+      return _responseHeaders.get(args[0]);
+    }
+
+    case "getOutputStream": {
+      return new ServletOutputStream() {
+        
+        public void write(int b) throws IOException {
+          _stream.write(b);
+        }
+
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+          _stream.write(buffer, offset, length);
+        }
+
+        public void flush() throws IOException {
+          doFlush();
+        }
+
+        public boolean isReady() {
+          return true;
+        }
+
+        public void setWriteListener(WriteListener listener) {
+        }
+      };
+    }
+
+    case "getStatus": {
+      return _status;
+    }
+
+    case "isCommitted": {
+      return _isCommitted;
+    }
+
+    case "getWriter": {
+      return _writer;
+    }
+
+    case "sendError": {
+      _status = (int) args[0];
+      
+      if (args.length > 1) {
+        _writer.append((String) args[1]);
+      }
+      
+      return null;
+    }
+
+    case "setContentLength": {
+      _responseHeaders.put("Content-Length", Integer.toString((int) args[0]));
+      
+      return null;
+    }
+
+    case "setContentLengthLong": {
+      _responseHeaders.put("Content-Length", Long.toString((long) args[0]));
+      
+      return null;
+    }
+
+    case "setContentType": {
+      _responseHeaders.put("Content-Type", (String) args[0]);
+      
+      return null;
+    }
+
+    case "setStatus": {
+      _status = (int) args[0];
+      
+      return null;
+    }
+
+    default: {
+      return getDefaultValue(m.getReturnType());
+    }
+
+    }
+  }
+
+  /**
+   * request attributes.
+   */
+  private final Map<String, Object> _attributes = new HashMap<>();
+
+  /**
+   * request body.
+   */
+  private final InputStream _body;
+
+  /**
+   * committer of the response or null if the body is buffered.
+   */
+  private Committer _committer = null;
+
+  /**
+   * boolean indicating whether the response was committed.
+   */
+  private boolean _isCommitted = false;
+
+  /**
+   * Http method.
+   */
+  private final String _method;
+
+  /**
+   * response body.
+   */
+  private final ByteArrayOutputStream _output = new ByteArrayOutputStream();
+
+  /**
+   * request parameters.
+   */
+  private final Map<String, String> _parameters;
+
+  /**
+   * client address.
+   */
+  private final String _remoteAddr;
+
+  /**
+   * request object.
+   */
+  private final HttpServletRequest _request;
+
+  /**
+   * request headers keyed by lower case name.
+   */
+  private final Map<String, String> _requestHeaders = new LinkedHashMap<>();
+
+  /**
+   * response object.
+   */
+  private final HttpServletResponse _response;
+
+  /**
+   * response headers.
+   */
+  private final Map<String, String> _responseHeaders = new LinkedHashMap<>();
+
+  /**
+   * stream the body is written to, the buffer until the response is committed.
+   */
+  private OutputStream _sink = _output;
+
+  /**
+   * response status.
+   */
+  private int _status = HttpServletResponse.SC_OK;
+
+  /**
+   * request Uri path.
+   */
+  private final String _uri;
+
+  /**
+   * response body stream writing to the current sink.
+   */
+  private final OutputStream _stream = new OutputStream() {
+    
+    public void write(int b) throws IOException {
+      _sink.write(b);
+    }
+
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+      _sink.write(buffer, offset, length);
+    }
+  };
+
+  /**
+   * response writer.
+   */
+  private final PrintWriter _writer = 
+      new PrintWriter(new OutputStreamWriter(_stream, StandardCharsets.UTF_8), false);
+
+  /**
+   * Constant for the client address of synthetic requests.
+   */
+  final public static String CONSTANT_REMOTE_ADDR = "synthetic";
+}
@@ -0,0 +1,426 @@
+package cc.tools.sudoku.server;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * This class records the phase timings and outcome of a single request.
+ * 
+ * The trace of the request being handled is bound to the handling thread, so
+ * code deep in the request pipeline can record phases through the static
+ * methods of this class without the trace being passed to it. The static
+ * methods do nothing when no trace is bound, as for warm-up solves.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuTrace {
+
+  /**
+   * Constructor for {@link SudokuTrace}.
+   * 
+   * @param endpoint request endpoint Uri.
+   */
+  private SudokuTrace(String endpoint) {
+    _endpoint = endpoint;
+    _startMillis = System.currentTimeMillis();
+    _startNanos = System.nanoTime();
+  }
+
+  /**
+   * Method marks the start of phase for the current thread's trace and
+   * starts its flight recorder event if enabled.
+   * 
+   * @param phase phase constant such as {@link SudokuTrace#CONSTANT_PHASE_ENGINE}.
+   */
+  public static void doBeginPhase(int phase) {
+    
+    SudokuTrace trace = _current.get();
+
+    if (trace != null) {
+      
+      trace._phaseStartNanos[phase] = System.nanoTime();
+
+      trace._phaseEvents[phase] = SudokuEvents.doBeginPhase();
+    }
+  }
+
+  /**
+   * Method starts counting the bytes allocated by the current thread for this
+   * trace. Nothing is counted if the JVM does not support it.
+   */
+  public void doCountAllocation() {
+    
+    if (_threadBean instanceof com.sun.management.ThreadMXBean) {
+      
+      com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) _threadBean;
+
+      if (threadBean.isThreadAllocatedMemorySupported() &&
+          threadBean.isThreadAllocatedMemoryEnabled()) {
+        _startAllocatedBytes = threadBean.getCurrentThreadAllocatedBytes();
+      }
+    }
+  }
+
+  /**
+   * Method marks the end of phase for the current thread's trace and adds its
+   * duration to the phase total. The phase's flight recorder event is ended.
+   * 
+   * @param phase phase constant such as {@link SudokuTrace#CONSTANT_PHASE_ENGINE}.
+   */
+  public static void doEndPhase(int phase) {
+    
+    SudokuTrace trace = _current.get();
+
+    if (trace != null &&
+        trace._phaseStartNanos[phase] != 0) {
+      
+      trace._phaseNanos[phase] += System.nanoTime() - trace._phaseStartNanos[phase];
+
+      trace._phaseStartNanos[phase] = 0;
+
+      SudokuEvents.doEndPhase(trace._phaseEvents[phase], CONSTANT_PHASE_NAMES[phase]);
+
+      trace._phaseEvents[phase] = null;
+    }
+  }
+
+  /**
+   * Method creates a trace for a request and binds it to the current thread.
+   * 
+   * @param endpoint request endpoint Uri.
+   * @return {@link SudokuTrace} created.
+   */
+  public static SudokuTrace doStart(String endpoint) {
+    
+    SudokuTrace trace = new SudokuTrace(endpoint);
+
+    _current.set(trace);
+
+    return trace;
+  }
+
+  /**
+   * Method records the total duration of the current thread's trace and
+   * unbinds it from the thread.
+   */
+  public static void doStop() {
+    
+    SudokuTrace trace = _current.get();
+
+    if (trace != null) {
+      
+      trace._allocatedBytes = trace.getAllocatedBytes();
+
+      trace._totalNanos = System.nanoTime() - trace._startNanos;
+      
+      _current.remove();
+    }
+  }
+
+  /**
+   * Method returns the bytes allocated by the request thread since
+   * {@link SudokuTrace#doCountAllocation()}, up to the end of the request
+   * once it has finished. Must be called on the request thread until then.
+   * 
+   * @return allocated bytes or -1 if allocation is not counted.
+   */
+  public long getAllocatedBytes() {
+    
+    if (_startAllocatedBytes < 0 ||
+        _totalNanos != 0) {
+      return _allocatedBytes;
+    }
+
+    return ((com.sun.management.ThreadMXBean) _threadBean).getCurrentThreadAllocatedBytes() - 
+        _startAllocatedBytes;
+  }
+
+  /**
+   * Method returns the cache tier which answered the request.
+   * 
+   * @return cache tier name or null if the engine was called.
+   */
+  public String getCacheTier() {
+    return _cacheTier;
+  }
+
+  /**
+   * Method returns the trace bound to the current thread.
+   * 
+   * @return {@link SudokuTrace} or null if none is bound.
+   */
+  public static SudokuTrace getCurrent() {
+    return _current.get();
+  }
+
+  /**
+   * Method returns the request endpoint.
+   * 
+   * @return endpoint Uri.
+   */
+  public String getEndpoint() {
+    return _endpoint;
+  }
+
+  /**
+   * Method returns the request output format.
+   * 
+   * @return format name or null if not known.
+   */
+  public String getFormat() {
+    return _format;
+  }
+
+  /**
+   * Method returns the total duration of phase.
+   * 
+   * @param phase phase constant such as {@link SudokuTrace#CONSTANT_PHASE_ENGINE}.
+   * @return duration in ns.
+   */
+  public long getPhaseNanos(int phase) {
+    return _phaseNanos[phase];
+  }
+
+  /**
+   * Method returns the engine result code.
+   * 
+   * @return result code or -1 if the engine result is not known.
+   */
+  public int getResultCode() {
+    return _resultCode;
+  }
+
+  /**
+   * Method returns the phase timings recorded so far as a 'Server-Timing'
+   * header value. The write phase is left out as the header precedes it.
+   * The cache tier and allocated bytes are added if known.
+   * 
+   * @return String containing the header value.
+   */
+  public String getServerTiming() {
+    
+    StringBuilder buffer = new StringBuilder();
+
+    for (int i = 0; i < CONSTANT_PHASE_NAMES.length; ++i) {
+      
+      if (i == CONSTANT_PHASE_WRITE) {
+        continue;
+      }
+
+      if (buffer.length() > 0) {
+        buffer.append(", ");
+      }
+
+      buffer.append(CONSTANT_PHASE_NAMES[i]).append(";dur=")
+          .append(String.format(Locale.ROOT, "%.3f", _phaseNanos[i] / 1e6));
+    }
+
+    if (_cacheTier != null) {
+      buffer.append(", cache;desc=\"").append(_cacheTier).append('"');
+    }
+
+    long allocatedBytes = getAllocatedBytes();
+
+    if (allocatedBytes >= 0) {
+      buffer.append(", alloc;desc=\"").append(allocatedBytes).append(" bytes\"");
+    }
+
+    return buffer.toString();
+  }
+
+  /**
+   * Method returns the request start time.
+   * 
+   * @return start time in ms since the epoch.
+   */
+  public long getStartMillis() {
+    return _startMillis;
+  }
+
+  /**
+   * Method returns the request duration.
+   * 
+   * @return duration in ns or 0 if the request has not finished.
+   */
+  public long getTotalNanos() {
+    return _totalNanos;
+  }
+
+  /**
+   * Method records for the current thread's trace the cache tier which
+   * answered the request.
+   * 
+   * @param cacheTier cache tier name.
+   */
+  public static void setCacheTier(String cacheTier) {
+    
+    SudokuTrace trace = _current.get();
+
+    if (trace != null) {
+      trace._cacheTier = cacheTier;
+    }
+  }
+
+  /**
+   * Method records for the current thread's trace the request output format.
+   * 
+   * @param format format name.
+   */
+  public static void setFormat(String format) {
+    
+    SudokuTrace trace = _current.get();
+
+    if (trace != null) {
+      trace._format = format;
+    }
+  }
+
+  /**
+   * Method returns boolean indicating whether the current thread's trace is
+   * of a synthetic request.
+   * 
+   * @return boolean true if a synthetic request is being handled, false otherwise.
+   */
+  public static boolean isSynthetic() {
+    
+    SudokuTrace trace = _current.get();
+
+    return trace != null && trace._isSynthetic;
+  }
+
+  /**
+   * Method records for the current thread's trace the engine result code.
+   * 
+   * @param resultCode engine result code.
+   */
+  public static void setResultCode(int resultCode) {
+    
+    SudokuTrace trace = _current.get();
+
+    if (trace != null) {
+      trace._resultCode = resultCode;
+    }
+  }
+
+  /**
+   * Method marks the current thread's trace as the trace of a synthetic
+   * request made by the servlet itself.
+   */
+  public static void setSynthetic() {
+    
+    SudokuTrace trace = _current.get();
+
+    if (trace != null) {
+      trace._isSynthetic = true;
+    }
+  }
+
+  /**
+   * trace bound to each request thread.
+   */
+  private static final ThreadLocal<SudokuTrace> _current = new ThreadLocal<>();
+
+  /**
+   * platform bean used to read the bytes allocated by a thread.
+   */
+  private static final ThreadMXBean _threadBean = ManagementFactory.getThreadMXBean();
+
+  /**
+   * bytes allocated by the request thread, set once the request has finished.
+   */
+  private long _allocatedBytes = -1;
+
+  /**
+   * cache tier which answered the request.
+   */
+  private String _cacheTier = null;
+
+  /**
+   * request endpoint Uri.
+   */
+  private final String _endpoint;
+
+  /**
+   * request output format.
+   */
+  private String _format = null;
+
+  /**
+   * boolean indicating whether the request is synthetic.
+   */
+  private boolean _isSynthetic = false;
+
+  /**
+   * flight recorder event of each phase in progress.
+   */
+  private final SudokuEvents.Phase[] _phaseEvents = new SudokuEvents.Phase[CONSTANT_PHASE_NAMES.length];
+
+  /**
+   * total duration of each phase in ns.
+   */
+  private final long[] _phaseNanos = new long[CONSTANT_PHASE_NAMES.length];
+
+  /**
+   * start time of each phase in progress.
+   */
+  private final long[] _phaseStartNanos = new long[CONSTANT_PHASE_NAMES.length];
+
+  /**
+   * engine result code.
+   */
+  private int _resultCode = -1;
+
+  /**
+   * bytes allocated by the request thread when counting started, -1 if not
+   * counted.
+   */
+  private long _startAllocatedBytes = -1;
+
+  /**
+   * request start time in ms since the epoch.
+   */
+  private final long _startMillis;
+
+  /**
+   * request start time as {@link System#nanoTime()}.
+   */
+  private final long _startNanos;
+
+  /**
+   * request duration in ns.
+   */
+  private long _totalNanos = 0;
+
+  /**
+   * Phase constant for decoding the Sudoku-Lib output buffer.
+   */
+  final public static int CONSTANT_PHASE_DECODE = 4;
+
+  /**
+   * Phase constant for the engine call.
+   */
+  final public static int CONSTANT_PHASE_ENGINE = 1;
+
+  /**
+   * Phase constant for request parsing and validation.
+   */
+  final public static int CONSTANT_PHASE_PARSE = 0;
+
+  /**
+   * Phase constant for response rendering.
+   */
+  final public static int CONSTANT_PHASE_RENDER = 2;
+
+  /**
+   * Phase constant for writing the response.
+   */
+  final public static int CONSTANT_PHASE_WRITE = 3;
+
+  /**
+   * Constant for the phase names, indexed by phase constant.
+   */
+  final public static String[] CONSTANT_PHASE_NAMES = { "parse", "engine", "render", "write", "decode" };
+}
@@ -0,0 +1,547 @@
+package cc.tools.sudoku.server;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class holds the constraints a Sudoku variant adds to the classic rows,
+ * columns and boxes, for use by {@link SudokuSolver}.
+ *
+ * Variants are built from named {@link Constraint} plugins. Each plugin adds
+ * units, groups of 9 cells holding every digit once such as the diagonals of
+ * X-Sudoku, and cages, groups of cells holding distinct digits adding up to a
+ * sum as in killer Sudoku. Once built, a variant holds the units of each cell
+ * as a peer table and the digit combinations of each cage size and sum as
+ * bitmasks, so the solver keeps propagating with bitmasks alone. The
+ * built-in plugins are {@value CONSTANT_CONSTRAINT_X},
+ * {@value CONSTANT_CONSTRAINT_WINDOKU} and {@value CONSTANT_CONSTRAINT_KILLER}.
+ *
+ * Cages are defined as a comma separated list of cages, each a sum followed
+ * by ':' and the '.' separated indexes of its cells, such as '10:0.1.9'.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuVariant {
+
+  /**
+   * This interface is implemented by variant constraint plugins.
+   */
+  public interface Constraint {
+
+    /**
+     * Method adds the units and cages of the constraint to variant.
+     *
+     * @param variant {@link SudokuVariant} being built.
+     * @param cages cage definitions of the request, empty if none.
+     * @return boolean false if the constraint cannot be added, true otherwise.
+     */
+    boolean doAdd(SudokuVariant variant, String cages);
+  }
+
+  /**
+   * Constructor for {@link SudokuVariant}.
+   *
+   * @param key canonical variant key.
+   */
+  private SudokuVariant(String key) {
+
+    _key = key;
+
+    Arrays.fill(_cellCages, -1);
+  }
+
+  /**
+   * Method adds a cage to the variant. Cages may not overlap.
+   *
+   * @param sum sum of the cage digits.
+   * @param cells cell indexes of the cage.
+   * @return boolean false if the cage is invalid, true otherwise.
+   */
+  public boolean doAddCage(int sum, int[] cells) {
+
+    if (cells.length < 1 ||
+        cells.length > 9 ||
+        sum < 1 ||
+        sum > CONSTANT_DIGITS_SUM) {
+      return false;
+    }
+
+    for (int cell : cells) {
+
+      if (cell < 0 ||
+          cell >= SudokuBoard.CONSTANT_CELL_COUNT ||
+          _cellCages[cell] >= 0) {
+        return false;
+      }
+
+      _cellCages[cell] = _cageCells.size();
+    }
+
+    _cageCells.add(cells.clone());
+
+    _cageSums.add(sum);
+
+    return true;
+  }
+
+  /**
+   * Method adds a unit to the variant.
+   *
+   * @param cells indexes of the 9 cells of the unit.
+   * @return boolean false if the unit is invalid, true otherwise.
+   */
+  public boolean doAddUnit(int[] cells) {
+
+    if (cells.length != 9) {
+      return false;
+    }
+
+    for (int cell : cells) {
+
+      if (cell < 0 ||
+          cell >= SudokuBoard.CONSTANT_CELL_COUNT) {
+        return false;
+      }
+    }
+
+    _extraUnits.add(cells.clone());
+
+    return true;
+  }
+
+  /**
+   * Method builds the peer tables once every constraint has been added.
+   */
+  private void doBuild() {
+
+    _units = new int[SudokuSolver.CONSTANT_UNITS.length + _extraUnits.size()][];
+
+    System.arraycopy(SudokuSolver.CONSTANT_UNITS, 0, _units, 0, SudokuSolver.CONSTANT_UNITS.length);
+
+    int[] counts = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    for (int i = 0; i < _extraUnits.size(); ++i) {
+
+      _units[SudokuSolver.CONSTANT_UNITS.length + i] = _extraUnits.get(i);
+
+      for (int cell : _extraUnits.get(i)) {
+        ++counts[cell];
+      }
+    }
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+      _cellUnits[i] = new int[counts[i]];
+    }
+
+    Arrays.fill(counts, 0);
+
+    for (int i = 0; i < _extraUnits.size(); ++i) {
+
+      for (int cell : _extraUnits.get(i)) {
+        _cellUnits[cell][counts[cell]++] = i;
+      }
+    }
+  }
+
+  /**
+   * Method returns the cage index of each cell.
+   *
+   * @return int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cage
+   *         indexes, -1 for a cell outside any cage.
+   */
+  public int[] getCellCages() {
+    return _cellCages;
+  }
+
+  /**
+   * Method returns the indexes of the extra units holding each cell.
+   *
+   * @return array of {@value SudokuBoard#CONSTANT_CELL_COUNT} extra unit index arrays.
+   */
+  public int[][] getCellUnits() {
+    return _cellUnits;
+  }
+
+  /**
+   * Method returns the number of cages.
+   *
+   * @return number of cages.
+   */
+  public int getCageCount() {
+    return _cageCells.size();
+  }
+
+  /**
+   * Method returns the digits which may still be placed in a cage.
+   *
+   * @param count number of empty cells of the cage.
+   * @param sum sum still missing from the cage.
+   * @param used digits placed in the cage as bitmask.
+   * @return bitmask with bit d set for each candidate digit d.
+   */
+  public static int getCageCandidates(int count, int sum, int used) {
+
+    if (count < 1 ||
+        sum < 1 ||
+        sum > CONSTANT_DIGITS_SUM) {
+      return 0;
+    }
+
+    int mask = 0;
+
+    for (int combination : CONSTANT_CAGE_COMBINATIONS[count][sum]) {
+
+      if ((combination & used) == 0) {
+        mask |= combination;
+      }
+    }
+
+    return mask;
+  }
+
+  /**
+   * Method returns the number of cells of each cage.
+   *
+   * @return int array of cage sizes.
+   */
+  public int[] getCageSizes() {
+
+    int[] sizes = new int[_cageCells.size()];
+
+    for (int i = 0; i < sizes.length; ++i) {
+      sizes[i] = _cageCells.get(i).length;
+    }
+
+    return sizes;
+  }
+
+  /**
+   * Method returns the sum of each cage.
+   *
+   * @return int array of cage sums.
+   */
+  public int[] getCageSums() {
+
+    int[] sums = new int[_cageSums.size()];
+
+    for (int i = 0; i < sums.length; ++i) {
+      sums[i] = _cageSums.get(i);
+    }
+
+    return sums;
+  }
+
+  /**
+   * Method returns the canonical key of the variant. Variants with equal keys
+   * hold the same constraints.
+   *
+   * @return String variant key.
+   */
+  public String getKey() {
+    return _key;
+  }
+
+  /**
+   * Method returns the number of extra units.
+   *
+   * @return number of units added by the variant.
+   */
+  public int getUnitCount() {
+    return _extraUnits.size();
+  }
+
+  /**
+   * Method returns the classic units followed by the extra units.
+   *
+   * @return array of units, each holding 9 cell indexes.
+   */
+  public int[][] getUnits() {
+    return _units;
+  }
+
+  /**
+   * Method returns the variant built from the constraint names listed in
+   * names. The classic game is returned as null.
+   *
+   * @param names comma separated constraint names, empty or
+   *              {@value CONSTANT_CONSTRAINT_CLASSIC} for the classic game.
+   * @param cages cage definitions, empty if none.
+   * @return {@link SudokuVariant} object or null for the classic game.
+   * @throws IllegalArgumentException if a name is unknown or a constraint
+   *                                  cannot be added.
+   */
+  public static SudokuVariant getVariant(String names, String cages) {
+
+    TreeSet<String> sorted = new TreeSet<>();
+
+    for (String name : names.split(",")) {
+
+      name = name.trim().toLowerCase(Locale.ROOT);
+
+      if (!name.isEmpty() &&
+          !CONSTANT_CONSTRAINT_CLASSIC.equals(name)) {
+        sorted.add(name);
+      }
+    }
+
+    if (sorted.isEmpty()) {
+      return null;
+    }
+
+    String cageKey = sorted.contains(CONSTANT_CONSTRAINT_KILLER) ? getCanonicalCages(cages) : "";
+
+    SudokuVariant variant = new SudokuVariant(String.join(",", sorted) +
+        (cageKey.isEmpty() ? "" : "/" + cageKey));
+
+    for (String name : sorted) {
+
+      Constraint constraint = _constraints.get(name);
+
+      if (constraint == null) {
+        throw new IllegalArgumentException("unknown variant " + name);
+      }
+
+      if (!constraint.doAdd(variant, cageKey)) {
+        throw new IllegalArgumentException("variant " + name + " cannot be added");
+      }
+    }
+
+    variant.doBuild();
+
+    return variant;
+  }
+
+  /**
+   * Method returns cages with whitespace removed and the cages sorted, so that
+   * equal cage sets map to the same String.
+   *
+   * @param cages cage definitions.
+   * @return String containing canonical cage definitions.
+   */
+  private static String getCanonicalCages(String cages) {
+
+    TreeSet<String> sorted = new TreeSet<>();
+
+    for (String cage : cages.replaceAll("\\s", "").split(",")) {
+
+      if (!cage.isEmpty()) {
+        sorted.add(cage);
+      }
+    }
+
+    return String.join(",", sorted);
+  }
+
+  /**
+   * Method adds the cages defined by cages to variant.
+   *
+   * @param variant {@link SudokuVariant} being built.
+   * @param cages canonical cage definitions.
+   * @return boolean false if a cage is invalid, true otherwise.
+   */
+  private static boolean doAddCages(SudokuVariant variant, String cages) {
+
+    if (cages.isEmpty()) {
+      return false;
+    }
+
+    try {
+
+      for (String cage : cages.split(",")) {
+
+        int colon = cage.indexOf(':');
+
+        if (colon < 0) {
+          return false;
+        }
+
+        String[] fields = cage.substring(colon + 1).split("\\.");
+
+        int[] cells = new int[fields.length];
+
+        for (int i = 0; i < fields.length; ++i) {
+          cells[i] = Integer.parseInt(fields[i]);
+        }
+
+        if (!variant.doAddCage(Integer.parseInt(cage.substring(0, colon)), cells)) {
+          return false;
+        }
+      }
+
+    } catch (NumberFormatException e) {
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Method registers constraint under name, replacing any constraint
+   * registered under the same name.
+   *
+   * @param name lower case constraint name.
+   * @param constraint {@link Constraint} plugin.
+   */
+  public static void setConstraint(String name, Constraint constraint) {
+    _constraints.put(name, constraint);
+  }
+
+  /**
+   * cells of each cage.
+   */
+  private final List<int[]> _cageCells = new ArrayList<>();
+
+  /**
+   * sum of each cage.
+   */
+  private final List<Integer> _cageSums = new ArrayList<>();
+
+  /**
+   * cage index of each cell, -1 outside any cage.
+   */
+  private final int[] _cellCages = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+  /**
+   * extra unit indexes of each cell.
+   */
+  private final int[][] _cellUnits = new int[SudokuBoard.CONSTANT_CELL_COUNT][];
+
+  /**
+   * registered constraint plugins by name.
+   */
+  private static final Map<String, Constraint> _constraints = new ConcurrentHashMap<>();
+
+  /**
+   * units added by the variant.
+   */
+  private final List<int[]> _extraUnits = new ArrayList<>();
+
+  /**
+   * canonical variant key.
+   */
+  private final String _key;
+
+  /**
+   * classic units followed by the extra units.
+   */
+  private int[][] _units;
+
+  /**
+   * Constant for the digit combinations of each cage size and sum, as
+   * bitmasks with bit d set for digit d.
+   */
+  final public static int[][][] CONSTANT_CAGE_COMBINATIONS = new int[10][][];
+
+  /**
+   * Constant for the name of the classic game.
+   */
+  final public static String CONSTANT_CONSTRAINT_CLASSIC = "classic";
+
+  /**
+   * Constant for the name of the killer cage constraint.
+   */
+  final public static String CONSTANT_CONSTRAINT_KILLER = "killer";
+
+  /**
+   * Constant for the name of the windoku constraint, four extra boxes.
+   */
+  final public static String CONSTANT_CONSTRAINT_WINDOKU = "windoku";
+
+  /**
+   * Constant for the name of the X-Sudoku constraint, both diagonals.
+   */
+  final public static String CONSTANT_CONSTRAINT_X = "x";
+
+  /**
+   * Constant for the sum of the digits 1 to 9.
+   */
+  final public static int CONSTANT_DIGITS_SUM = 45;
+
+  static {
+
+    int[][] counts = new int[10][CONSTANT_DIGITS_SUM + 1];
+
+    for (int mask = 2; mask <= SudokuSolver.CONSTANT_DIGITS_MASK; mask += 2) {
+      ++counts[Integer.bitCount(mask)][getDigitsSum(mask)];
+    }
+
+    for (int count = 0; count < 10; ++count) {
+
+      CONSTANT_CAGE_COMBINATIONS[count] = new int[CONSTANT_DIGITS_SUM + 1][];
+
+      for (int sum = 0; sum <= CONSTANT_DIGITS_SUM; ++sum) {
+
+        CONSTANT_CAGE_COMBINATIONS[count][sum] = new int[counts[count][sum]];
+
+        counts[count][sum] = 0;
+      }
+    }
+
+    for (int mask = 2; mask <= SudokuSolver.CONSTANT_DIGITS_MASK; mask += 2) {
+
+      int count = Integer.bitCount(mask);
+
+      int sum = getDigitsSum(mask);
+
+      CONSTANT_CAGE_COMBINATIONS[count][sum][counts[count][sum]++] = mask;
+    }
+
+    setConstraint(CONSTANT_CONSTRAINT_X, (variant, cages) -> {
+
+      int[] diagonal = new int[9];
+      int[] antiDiagonal = new int[9];
+
+      for (int i = 0; i < 9; ++i) {
+
+        diagonal[i] = i * 10;
+
+        antiDiagonal[i] = (i + 1) * 8;
+      }
+
+      return variant.doAddUnit(diagonal) &&
+          variant.doAddUnit(antiDiagonal);
+    });
+
+    setConstraint(CONSTANT_CONSTRAINT_WINDOKU, (variant, cages) -> {
+
+      for (int top : new int[] { 10, 14, 46, 50 }) {
+
+        int[] window = new int[9];
+
+        for (int i = 0; i < 9; ++i) {
+          window[i] = top + (i / 3) * 9 + i % 3;
+        }
+
+        if (!variant.doAddUnit(window)) {
+          return false;
+        }
+      }
+
+      return true;
+    });
+
+    setConstraint(CONSTANT_CONSTRAINT_KILLER, SudokuVariant::doAddCages);
+  }
+
+  /**
+   * Method returns the sum of the digits set in mask.
+   *
+   * @param mask bitmask with bit d set for digit d.
+   * @return sum of the digits.
+   */
+  private static int getDigitsSum(int mask) {
+
+    int sum = 0;
+
+    for (int digit = 1; digit <= 9; ++digit) {
+
+      if ((mask & (1 << digit)) != 0) {
+        sum += digit;
+      }
+    }
+
+    return sum;
+  }
+}
@@ -0,0 +1,205 @@
+package cc.tools.sudoku.server;
+
+/**
+ * This class provides static helpers for verifying a player's board against
+ * the position it was played from.
+ *
+ * Each check marks the cells it finds at fault in a caller supplied array of
+ * {@value SudokuBoard#CONSTANT_CELL_COUNT} mark bitmasks and allocates
+ * nothing. Conflicts are found with one pass per row, column and box keeping
+ * the digits seen and the digits seen twice as bitmasks, so a completed
+ * board is verified without a solve.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuVerifier {
+
+  /**
+   * Constructor for {@link SudokuVerifier}. Not used.
+   */
+  private SudokuVerifier() {
+  }
+
+  /**
+   * Method marks the clues of cells changed on board with
+   * {@link SudokuVerifier#CONSTANT_MARK_CLUE}.
+   *
+   * @param cells int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell values of the position.
+   * @param board int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell values of the board.
+   * @param marks mark bitmask per cell.
+   * @return number of clues changed.
+   */
+  public static int doCheckClues(int[] cells, int[] board, int[] marks) {
+
+    int count = 0;
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+
+      if (cells[i] != 0 &&
+          board[i] != cells[i]) {
+
+        marks[i] |= CONSTANT_MARK_CLUE;
+
+        ++count;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Method marks the cells of board holding a digit also held by another cell
+   * of the same row, column or box with {@link SudokuVerifier#CONSTANT_MARK_CONFLICT}.
+   *
+   * @param board int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell values of the board.
+   * @param marks mark bitmask per cell.
+   * @return number of cells in conflict.
+   */
+  public static int doCheckConflicts(int[] board, int[] marks) {
+
+    int count = 0;
+
+    for (int[] unit : SudokuSolver.CONSTANT_UNITS) {
+
+      int seen = 0;
+
+      int repeated = 0;
+
+      for (int cell : unit) {
+
+        int bit = (1 << board[cell]) & SudokuSolver.CONSTANT_DIGITS_MASK;
+
+        repeated |= seen & bit;
+
+        seen |= bit;
+      }
+
+      if (repeated == 0) {
+        continue;
+      }
+
+      for (int cell : unit) {
+
+        if ((repeated & (1 << board[cell])) != 0 &&
+            (marks[cell] & CONSTANT_MARK_CONFLICT) == 0) {
+
+          marks[cell] |= CONSTANT_MARK_CONFLICT;
+
+          ++count;
+        }
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Method marks the filled cells of board differing from solution with
+   * {@link SudokuVerifier#CONSTANT_MARK_WRONG}.
+   *
+   * @param board int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell values of the board.
+   * @param solution int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} solved cell values.
+   * @param marks mark bitmask per cell.
+   * @return number of wrong cells.
+   */
+  public static int doCheckSolution(int[] board, int[] solution, int[] marks) {
+
+    int count = 0;
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+
+      if (board[i] != 0 &&
+          board[i] != solution[i]) {
+
+        marks[i] |= CONSTANT_MARK_WRONG;
+
+        ++count;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Method returns the marks as a line of one character per cell, 'c' for a
+   * changed clue, 'x' for a conflict, 'w' for a wrong digit and '.' otherwise.
+   *
+   * @param marks mark bitmask per cell.
+   * @return String of {@value SudokuBoard#CONSTANT_CELL_COUNT} characters.
+   */
+  public static String getMarksLine(int[] marks) {
+
+    char[] line = new char[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+
+      if ((marks[i] & CONSTANT_MARK_CLUE) != 0) {
+        line[i] = 'c';
+      } else if ((marks[i] & CONSTANT_MARK_CONFLICT) != 0) {
+        line[i] = 'x';
+      } else if ((marks[i] & CONSTANT_MARK_WRONG) != 0) {
+        line[i] = 'w';
+      } else {
+        line[i] = '.';
+      }
+    }
+
+    return new String(line);
+  }
+
+  /**
+   * Method returns boolean indicating whether every cell of board is filled.
+   *
+   * @param board int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell values of the board.
+   * @return boolean true if board is complete, false otherwise.
+   */
+  public static boolean isComplete(int[] board) {
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+
+      if (board[i] == 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Constant for the mark of a clue changed on the board.
+   */
+  final public static int CONSTANT_MARK_CLUE = 1;
+
+  /**
+   * Constant for the mark of a digit repeated in a row, column or box.
+   */
+  final public static int CONSTANT_MARK_CONFLICT = 2;
+
+  /**
+   * Constant for the mark of a digit differing from the solution.
+   */
+  final public static int CONSTANT_MARK_WRONG = 4;
+
+  /**
+   * Constant for the state of a complete board without faults.
+   */
+  final public static String CONSTANT_STATE_SOLVED = "solved";
+
+  /**
+   * Constant for the state of an incomplete board without faults.
+   */
+  final public static String CONSTANT_STATE_CORRECT = "correct";
+
+  /**
+   * Constant for the state of a board with faults.
+   */
+  final public static String CONSTANT_STATE_INCORRECT = "incorrect";
+
+  /**
+   * Constant for the state of a board whose filled cells could not be
+   * compared with a solution.
+   */
+  final public static String CONSTANT_STATE_UNKNOWN = "unknown";
+}
@@ -0,0 +1,245 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.logging.*;
+
+/**
+ * This class pre-populates the {@link Sudoku} result caches by solving the
+ * positions of a corpus file, one position per line, on a pool of threads.
+ * 
+ * The corpus is streamed rather than loaded, so its size is not limited by
+ * memory. A ready callback is run once a configured percentage of the corpus
+ * has been solved, letting the servlet take traffic before the whole corpus is
+ * done.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuWarmup implements Runnable {
+
+  /**
+   * Constructor for {@link SudokuWarmup}.
+   * 
+   * @param corpus corpus file holding one position per line.
+   * @param threads number of solver threads.
+   * @param readyPercent percentage of the corpus to be solved before ready is run.
+   * @param solver {@link Predicate} solving a canonical position and returning
+   *               true on success.
+   * @param ready {@link Runnable} run once when the servlet may take traffic.
+   * @param metrics {@link SudokuMetrics} object used to record warm-up progress.
+   */
+  public SudokuWarmup(File corpus, int threads, int readyPercent, Predicate<String> solver, 
+      Runnable ready, SudokuMetrics metrics) {
+    
+    _corpus = corpus;
+    _threads = Math.max(threads, 1);
+    _readyPercent = Math.max(0, Math.min(readyPercent, 100));
+    _solver = solver;
+    _ready = ready;
+    _metrics = metrics;
+  }
+
+  /**
+   * Method stops the warm-up. Positions already being solved are completed.
+   */
+  public void doStop() {
+    _isStopped = true;
+  }
+
+  /**
+   * Method counts the corpus positions, then solves them and runs the ready
+   * callback when the ready percentage is reached. The ready callback is always
+   * run, even if the corpus cannot be read.
+   */
+  public void run() {
+    
+    long startTime = System.nanoTime();
+
+    ExecutorService executor = Executors.newFixedThreadPool(_threads, runnable -> {
+      Thread thread = new Thread(runnable, "sudoku-warmup-solver");
+      
+      thread.setDaemon(true);
+      
+      return thread;
+    });
+
+    try {
+      
+      long total = getPositionCount();
+
+      long readyCount = (total * _readyPercent + 99) / 100;
+
+      AtomicLong completed = new AtomicLong();
+
+      Semaphore permits = new Semaphore(_threads * CONSTANT_QUEUE_PER_THREAD);
+
+      Logger.getLogger(SudokuWarmup.class.getName()).log(Level.INFO, 
+          "info: warm-up of " + total + " positions from " + _corpus + 
+          " ready at " + readyCount);
+
+      doReadyIfReached(0, readyCount);
+
+      try (BufferedReader reader = Files.newBufferedReader(_corpus.toPath(), StandardCharsets.UTF_8)) {
+        
+        String line;
+        
+        while (!_isStopped &&
+            (line = reader.readLine()) != null) {
+          
+          String position = getPosition(line);
+
+          if (position == null) {
+            continue;
+          }
+
+          permits.acquire();
+
+          executor.execute(() -> {
+            
+            try {
+            
+              _metrics.doIncrement(_solver.test(position) ? 
+                  CONSTANT_METRIC_SOLVED : CONSTANT_METRIC_FAILED);
+            
+            } finally {
+              
+              permits.release();
+
+              doReadyIfReached(completed.incrementAndGet(), readyCount);
+            }
+          });
+        }
+      }
+
+      executor.shutdown();
+
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+      Logger.getLogger(SudokuWarmup.class.getName()).log(Level.INFO, 
+          "info: warm-up of " + completed.get() + " positions done in " + 
+          (System.nanoTime() - startTime) / 1000000 + "ms");
+
+    } catch (IOException e) {
+      
+      Logger.getLogger(SudokuWarmup.class.getName()).log(Level.SEVERE, 
+          "error: warm-up corpus " + _corpus + " unreadable: " + e.getMessage());
+
+    } catch (InterruptedException e) {
+      
+      Thread.currentThread().interrupt();
+
+    } finally {
+      
+      executor.shutdownNow();
+
+      doReadyIfReached(1, 0);
+    }
+  }
+
+  /**
+   * Method runs the ready callback, once, when completed reaches readyCount.
+   * 
+   * @param completed number of positions solved.
+   * @param readyCount number of positions to be solved before ready.
+   */
+  private void doReadyIfReached(long completed, long readyCount) {
+    
+    if (completed >= readyCount &&
+        _isReady.compareAndSet(false, true)) {
+      _ready.run();
+    }
+  }
+
+  /**
+   * Method returns the canonical position held in a corpus line.
+   * 
+   * @param line corpus line holding a position as {@value SudokuBoard#CONSTANT_CELL_COUNT}
+   *             digits, optionally space delimited, where '.' may stand for 0.
+   * @return String containing canonical position or null if line is blank or a comment.
+   */
+  private String getPosition(String line) {
+    
+    String text = line.trim();
+
+    if (text.isEmpty() ||
+        text.startsWith("#")) {
+      return null;
+    }
+
+    return SudokuBoard.getCanonicalPosition(text.replace('.', '0'));
+  }
+
+  /**
+   * Method returns the number of positions in the corpus.
+   * 
+   * @return number of positions.
+   * @throws IOException if the corpus cannot be read.
+   */
+  private long getPositionCount() throws IOException {
+    
+    try (BufferedReader reader = Files.newBufferedReader(_corpus.toPath(), StandardCharsets.UTF_8)) {
+      return reader.lines().filter(line -> getPosition(line) != null).count();
+    }
+  }
+
+  /**
+   * corpus file.
+   */
+  private final File _corpus;
+
+  /**
+   * boolean indicating whether the ready callback has been run.
+   */
+  private final AtomicBoolean _isReady = new AtomicBoolean(false);
+
+  /**
+   * boolean indicating whether the warm-up has been stopped.
+   */
+  private volatile boolean _isStopped = false;
+
+  /**
+   * {@link SudokuMetrics} object used to record warm-up progress.
+   */
+  private final SudokuMetrics _metrics;
+
+  /**
+   * ready callback.
+   */
+  private final Runnable _ready;
+
+  /**
+   * percentage of the corpus to be solved before ready.
+   */
+  private final int _readyPercent;
+
+  /**
+   * position solver.
+   */
+  private final Predicate<String> _solver;
+
+  /**
+   * number of solver threads.
+   */
+  private final int _threads;
+
+  /**
+   * Metric name constant for warm-up positions which failed to solve.
+   */
+  final public static String CONSTANT_METRIC_FAILED = "warmup.failed";
+
+  /**
+   * Metric name constant for warm-up positions solved.
+   */
+  final public static String CONSTANT_METRIC_SOLVED = "warmup.solved";
+
+  /**
+   * Constant for the number of positions queued per solver thread.
+   */
+  final public static int CONSTANT_QUEUE_PER_THREAD = 4;
+}
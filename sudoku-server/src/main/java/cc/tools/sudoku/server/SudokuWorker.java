@@ -0,0 +1,225 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class is the main class of a native solver worker process started by
+ * {@link SudokuWorkerPool}. The worker hosts its own instance of Sudoku-Lib
+ * and answers requests read from standard input with results written to
+ * standard output, so a native crash only loses the worker.
+ * 
+ * Requests and results are framed as below, with integers in network byte
+ * order. Requests may be pipelined. Results carry the id of their request.
+ * 
+ * <pre>
+ * handshake: int magic, byte valid
+ * request:   int id, byte function, byte form, position
+ *            form 0: {@value SudokuBoard#CONSTANT_PACKED_SIZE} packed bytes
+ *            form 1: short length, position bytes
+ * result:    int id, byte code, int runtime, int length, data bytes
+ * </pre>
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuWorker {
+
+  /**
+   * Constructor for {@link SudokuWorker}. Not used.
+   */
+  private SudokuWorker() {
+  }
+
+  /**
+   * Method reads a request frame, excluding its id, and returns the position.
+   * 
+   * @param in request stream.
+   * @param function output buffer to hold the function constant.
+   * @return String containing position.
+   * @throws IOException .
+   */
+  public static String doReadRequest(DataInputStream in, int[] function) throws IOException {
+    
+    function[0] = in.readByte();
+
+    if (in.readByte() == CONSTANT_FORM_PACKED) {
+      
+      byte[] packed = new byte[SudokuBoard.CONSTANT_PACKED_SIZE];
+
+      in.readFully(packed);
+
+      return getPositionFromCells(SudokuBoard.getUnpackedCells(packed));
+    }
+
+    byte[] bytes = new byte[in.readUnsignedShort()];
+
+    in.readFully(bytes);
+
+    return new String(bytes, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Method reads a result frame, excluding its id.
+   * 
+   * @param in result stream.
+   * @return {@link SudokuResult} read.
+   * @throws IOException .
+   */
+  public static SudokuResult doReadResult(DataInputStream in) throws IOException {
+    
+    int code = in.readByte();
+
+    int runtime = in.readInt();
+
+    byte[] bytes = new byte[in.readInt()];
+
+    in.readFully(bytes);
+
+    return new SudokuResult(code, new String(bytes, StandardCharsets.ISO_8859_1), runtime);
+  }
+
+  /**
+   * Method writes a request frame. Positions of {@value SudokuBoard#CONSTANT_CELL_COUNT} 
+   * cells are sent packed, other positions are sent as text, truncated to
+   * 65535 bytes, so that Sudoku-Lib reports them.
+   * 
+   * @param out request stream.
+   * @param id request id.
+   * @param function function constant such as {@link SudokuNative#CONSTANT_FUNCTION_SOLUTION}.
+   * @param position a string contaning a canonical sudoku position.
+   * @throws IOException .
+   */
+  public static void doWriteRequest(DataOutputStream out, int id, int function, String position) 
+      throws IOException {
+    
+    byte[] packed = SudokuBoard.getPackedPosition(position);
+
+    out.writeInt(id);
+    out.writeByte(function);
+
+    if (packed != null) {
+      
+      out.writeByte(CONSTANT_FORM_PACKED);
+      out.write(packed);
+      
+      return;
+    }
+
+    byte[] bytes = position.getBytes(StandardCharsets.ISO_8859_1);
+
+    int length = Math.min(bytes.length, 0xffff);
+
+    out.writeByte(CONSTANT_FORM_TEXT);
+    out.writeShort(length);
+    out.write(bytes, 0, length);
+  }
+
+  /**
+   * Method writes a result frame.
+   * 
+   * @param out result stream.
+   * @param id id of the request answered.
+   * @param result {@link SudokuResult} to be written.
+   * @throws IOException .
+   */
+  public static void doWriteResult(DataOutputStream out, int id, SudokuResult result) 
+      throws IOException {
+    
+    byte[] bytes = result.getData().getBytes(StandardCharsets.ISO_8859_1);
+
+    out.writeInt(id);
+    out.writeByte(result.getCode());
+    out.writeInt(result.getRuntime());
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Method returns the canonical position holding cells.
+   * 
+   * @param cells int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell values.
+   * @return String containing canonical position.
+   */
+  private static String getPositionFromCells(int[] cells) {
+    
+    StringBuilder buffer = new StringBuilder(SudokuBoard.CONSTANT_CELL_COUNT * 2);
+
+    for (int i = 0; i < cells.length; ++i) {
+      
+      if (i > 0) {
+        buffer.append(' ');
+      }
+
+      buffer.append((char) ('0' + cells[i]));
+    }
+
+    return buffer.toString();
+  }
+
+  /**
+   * Method runs the worker until standard input is closed. Results are
+   * flushed once no further pipelined requests are buffered.
+   * 
+   * @param args not used.
+   * @throws IOException .
+   */
+  public static void main(String[] args) throws IOException {
+    
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+
+    System.setOut(System.err);
+
+    DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+
+    SudokuNative engine = new SudokuNative();
+
+    out.writeInt(CONSTANT_MAGIC);
+    out.writeByte(engine.isValid() ? 1 : 0);
+    out.flush();
+
+    if (!engine.isValid()) {
+      return;
+    }
+
+    int[] function = { 0 };
+
+    while (true) {
+      
+      int id;
+
+      try {
+        
+        id = in.readInt();
+      
+      } catch (EOFException e) {
+        return;
+      }
+
+      String position = doReadRequest(in, function);
+
+      doWriteResult(out, id, engine.doCall(function[0], position));
+
+      if (in.available() == 0) {
+        out.flush();
+      }
+    }
+  }
+
+  /**
+   * Request form constant for a packed position.
+   */
+  final public static int CONSTANT_FORM_PACKED = 0;
+
+  /**
+   * Request form constant for a position sent as text.
+   */
+  final public static int CONSTANT_FORM_TEXT = 1;
+
+  /**
+   * Constant for the handshake magic number written by a worker on start.
+   */
+  final public static int CONSTANT_MAGIC = 0x53444b57;
+}
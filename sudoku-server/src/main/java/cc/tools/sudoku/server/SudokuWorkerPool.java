@@ -0,0 +1,792 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+/**
+ * This class dispatches Sudoku-Lib calls to a pool of {@link SudokuWorker}
+ * processes over their standard input and output pipes.
+ * 
+ * Each worker hosts its own instance of Sudoku-Lib, so native solving scales
+ * across processes and a native crash only loses one worker. Calls are
+ * pipelined up to a configured depth per worker and sent to the least loaded
+ * live worker. Calls finding every worker at full depth are answered with
+ * Sudoku-Lib's busy result. Workers which exit, break the protocol or time
+ * out are restarted with exponential backoff and their pending calls are
+ * answered with an internal error result.
+ * 
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuWorkerPool implements Closeable {
+
+  /**
+   * This class holds a call sent to a worker process.
+   */
+  private static class Call {
+
+    /**
+     * Constructor for {@link Call}.
+     * 
+     * @param id request id.
+     * @param process worker process the call is sent to.
+     */
+    Call(int id, Process process) {
+      _id = id;
+      _process = process;
+    }
+
+    /**
+     * future result of the call.
+     */
+    final CompletableFuture<SudokuResult> _future = new CompletableFuture<>();
+
+    /**
+     * request id.
+     */
+    final int _id;
+
+    /**
+     * worker process the call is sent to.
+     */
+    final Process _process;
+  }
+
+  /**
+   * This class manages one worker process and its pending calls.
+   */
+  private class Worker {
+
+    /**
+     * Constructor for {@link Worker}.
+     * 
+     * @param index worker index used in thread names and log messages.
+     */
+    Worker(int index) {
+      _index = index;
+    }
+
+    /**
+     * Method reserves up to count pipeline slots of the worker. Reserved slots
+     * are taken by the calls sent next and freed as the calls are answered.
+     * 
+     * @param count number of slots wanted.
+     * @return number of slots reserved, 0 if the worker is at full depth.
+     */
+    int doReserve(int count) {
+      
+      while (true) {
+        
+        int load = _load.get();
+
+        int reserved = Math.min(count, _pipelineDepth - load);
+
+        if (reserved <= 0) {
+          return 0;
+        }
+
+        if (_load.compareAndSet(load, load + reserved)) {
+          return reserved;
+        }
+      }
+    }
+
+    /**
+     * Method removes the pending call with id and frees its pipeline slot.
+     * 
+     * @param id request id.
+     * @return {@link Call} removed or null if the call is not pending.
+     */
+    Call doRemove(int id) {
+      
+      Call call = _pending.remove(id);
+
+      if (call != null) {
+        _load.decrementAndGet();
+      }
+
+      return call;
+    }
+
+    /**
+     * Method sends count calls, from positions[first] on, to the worker
+     * process with a single flush. A pipeline slot must have been reserved
+     * for each call by {@link #doReserve(int)}. Calls which cannot be written
+     * are completed with an internal error result.
+     * 
+     * @param function function constant such as {@link SudokuNative#CONSTANT_FUNCTION_SOLUTION}.
+     * @param positions strings contaning canonical sudoku positions.
+     * @param first index of the first position sent.
+     * @param count number of positions sent.
+     * @param calls list the {@link Call} of each position sent is added to.
+     */
+    void doSend(int function, String[] positions, int first, int count, List<Call> calls) {
+      
+      List<Call> sent = new ArrayList<>(count);
+
+      Process process;
+
+      try {
+        
+        synchronized (this) {
+          
+          process = _process;
+
+          for (int i = first; i < first + count; ++i) {
+            
+            Call call = new Call(_nextId.incrementAndGet(), process);
+
+            _pending.put(call._id, call);
+
+            sent.add(call);
+          }
+
+          if (process == null) {
+            throw new IOException("worker restarting");
+          }
+
+          for (int i = 0; i < count; ++i) {
+            SudokuWorker.doWriteRequest(_out, sent.get(i)._id, function, positions[first + i]);
+          }
+          
+          _out.flush();
+        }
+      
+      } catch (IOException e) {
+        
+        SudokuResult result = new SudokuResult(SudokuNative.CONSTANT_RESULT_INTERNAL_ERROR, "", -1);
+
+        for (Call call : sent) {
+          
+          if (doRemove(call._id) != null) {
+            call._future.complete(result);
+          }
+        }
+        
+        doFail(sent.get(0)._process, "write failed " + e.getMessage());
+      }
+
+      calls.addAll(sent);
+    }
+
+    /**
+     * Method waits for the result of a call sent to the worker process. A
+     * call which times out leaves its process stuck, so that process is failed
+     * and restarted, unless it has already been replaced.
+     * 
+     * @param call {@link Call} sent.
+     * @param deadline {@link System#nanoTime()} after which the call times out.
+     * @return {@link SudokuResult} returned by the worker.
+     */
+    SudokuResult getResult(Call call, long deadline) {
+      
+      try {
+        
+        return call._future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+      
+      } catch (TimeoutException e) {
+        
+        if (doRemove(call._id) == null) {
+          return call._future.join();
+        }
+
+        _metrics.doIncrement(CONSTANT_METRIC_TIMEOUT);
+
+        doFail(call._process, "call " + call._id + " timed out");
+      
+        return new SudokuResult(SudokuNative.CONSTANT_RESULT_TIMEOUT, "", -1);
+      
+      } catch (InterruptedException | ExecutionException e) {
+        
+        if (e instanceof InterruptedException) {
+          Thread.currentThread().interrupt();
+        }
+      
+      } finally {
+        doRemove(call._id);
+      }
+
+      return new SudokuResult(SudokuNative.CONSTANT_RESULT_INTERNAL_ERROR, "", -1);
+    }
+
+    /**
+     * Method marks the worker failed, answers its pending calls and schedules
+     * a restart. Failures of a process already replaced are ignored.
+     * 
+     * @param process failed worker process.
+     * @param reason failure description for the server log.
+     */
+    void doFail(Process process, String reason) {
+      
+      synchronized (this) {
+        
+        if (process == null ||
+            process != _process) {
+          return;
+        }
+
+        _isLive = false;
+
+        _process = null;
+      }
+
+      process.destroyForcibly();
+
+      SudokuResult result = new SudokuResult(SudokuNative.CONSTANT_RESULT_INTERNAL_ERROR, "", -1);
+
+      for (Integer id : new ArrayList<>(_pending.keySet())) {
+        
+        Call call = doRemove(id);
+
+        if (call != null) {
+          call._future.complete(result);
+        }
+      }
+
+      if (_isClosed) {
+        return;
+      }
+
+      _metrics.doIncrement(CONSTANT_METRIC_RESTARTS);
+
+      Logger.getLogger(SudokuWorkerPool.class.getName()).log(Level.SEVERE, 
+          "error: worker " + _index + " failed, restarting in " + _restartDelayMs + "ms: " + reason);
+
+      doScheduleStart();
+    }
+
+    /**
+     * Method reads results from the worker process until it exits, completing
+     * the pending call of each result.
+     * 
+     * @param process worker process.
+     * @param in worker standard output.
+     */
+    void doRead(Process process, DataInputStream in) {
+      
+      try {
+        
+        if (in.readInt() != SudokuWorker.CONSTANT_MAGIC ||
+            in.readByte() != 1) {
+          
+          doFail(process, "handshake failed");
+          
+          return;
+        }
+
+        _isLive = true;
+
+        _restartDelayMs = CONSTANT_RESTART_DELAY_MIN_MS;
+
+        Logger.getLogger(SudokuWorkerPool.class.getName()).log(Level.INFO, 
+            "info: worker " + _index + " started pid " + process.pid());
+
+        while (true) {
+          
+          int id = in.readInt();
+
+          SudokuResult result = SudokuWorker.doReadResult(in);
+
+          Call call = doRemove(id);
+
+          if (call != null) {
+            call._future.complete(result);
+          }
+        }
+      
+      } catch (IOException e) {
+        doFail(process, "exit " + (e instanceof EOFException ? "" : e.getMessage()));
+      }
+    }
+
+    /**
+     * Method schedules the worker process to be started after the restart
+     * delay, doubling the delay for the next restart.
+     */
+    void doScheduleStart() {
+      
+      long delay = _restartDelayMs;
+
+      _restartDelayMs = Math.min(delay * 2, CONSTANT_RESTART_DELAY_MAX_MS);
+
+      try {
+        
+        _restarter.schedule(this::doStart, delay, TimeUnit.MILLISECONDS);
+      
+      } catch (RejectedExecutionException e) {
+        // pool closed.
+      }
+    }
+
+    /**
+     * Method starts the worker process and its result reader thread. The
+     * worker takes calls once its handshake has been read.
+     */
+    void doStart() {
+      
+      if (_isClosed) {
+        return;
+      }
+
+      Process process;
+
+      try {
+        
+        process = new ProcessBuilder(_command)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+      
+      } catch (IOException e) {
+        
+        Logger.getLogger(SudokuWorkerPool.class.getName()).log(Level.SEVERE, 
+            "error: worker " + _index + " start failed: " + e.getMessage());
+
+        doScheduleStart();
+        
+        return;
+      }
+
+      synchronized (this) {
+        
+        _process = process;
+
+        _out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+      }
+
+      DataInputStream in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+
+      Thread reader = new Thread(() -> doRead(process, in), "sudoku-worker-" + _index);
+
+      reader.setDaemon(true);
+
+      reader.start();
+    }
+
+    /**
+     * Method stops the worker process by closing its standard input.
+     */
+    void doStop() {
+      
+      Process process;
+
+      synchronized (this) {
+        
+        process = _process;
+
+        if (process == null) {
+          return;
+        }
+
+        try {
+          
+          _out.close();
+        
+        } catch (IOException e) {
+          // worker already exited.
+        }
+      }
+
+      try {
+        
+        if (!process.waitFor(CONSTANT_STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+          process.destroyForcibly();
+        }
+      
+      } catch (InterruptedException e) {
+        
+        process.destroyForcibly();
+        
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Method returns the number of pipeline slots taken by pending and
+     * reserved calls.
+     * 
+     * @return number of slots taken.
+     */
+    int getLoad() {
+      return _load.get();
+    }
+
+    /**
+     * Method returns boolean indicating whether the worker takes calls.
+     * 
+     * @return boolean true if the worker is live, false otherwise.
+     */
+    boolean isLive() {
+      return _isLive;
+    }
+
+    /**
+     * worker index.
+     */
+    private final int _index;
+
+    /**
+     * boolean indicating whether the worker has completed its handshake and
+     * takes calls.
+     */
+    private volatile boolean _isLive = false;
+
+    /**
+     * number of pipeline slots taken by pending and reserved calls.
+     */
+    private final AtomicInteger _load = new AtomicInteger();
+
+    /**
+     * worker standard input.
+     */
+    private DataOutputStream _out = null;
+
+    /**
+     * calls waiting for a result by request id.
+     */
+    private final ConcurrentHashMap<Integer, Call> _pending = new ConcurrentHashMap<>();
+
+    /**
+     * worker process or null while the worker is being restarted.
+     */
+    private volatile Process _process = null;
+
+    /**
+     * delay in ms before the next restart.
+     */
+    private volatile long _restartDelayMs = CONSTANT_RESTART_DELAY_MIN_MS;
+  }
+
+  /**
+   * Constructor for {@link SudokuWorkerPool}. Starts the worker processes.
+   * 
+   * @param count number of worker processes.
+   * @param pipelineDepth maximum number of pending calls per worker.
+   * @param timeoutMs maximum time in ms to wait for a result.
+   * @param classPath class path of the worker processes or null to derive it
+   *                  from the locations of the servlet and Sudoku-Lib classes.
+   * @param metrics {@link SudokuMetrics} object used to count worker events.
+   */
+  public SudokuWorkerPool(int count, int pipelineDepth, int timeoutMs, String classPath, 
+      SudokuMetrics metrics) {
+    
+    this(count, pipelineDepth, timeoutMs, 
+        getCommand(classPath == null || classPath.isEmpty() ? getDefaultClassPath() : classPath, 
+            SudokuWorker.class.getName()), 
+        metrics);
+  }
+
+  /**
+   * Constructor for {@link SudokuWorkerPool}. Starts the worker processes.
+   * 
+   * @param count number of worker processes.
+   * @param pipelineDepth maximum number of pending calls per worker.
+   * @param timeoutMs maximum time in ms to wait for a result.
+   * @param command command line of the worker processes, which must speak
+   *                the {@link SudokuWorker} protocol.
+   * @param metrics {@link SudokuMetrics} object used to count worker events.
+   */
+  SudokuWorkerPool(int count, int pipelineDepth, int timeoutMs, List<String> command, 
+      SudokuMetrics metrics) {
+    
+    _pipelineDepth = Math.max(pipelineDepth, 1);
+    _timeoutMs = timeoutMs;
+    _metrics = metrics;
+    _command = new ArrayList<>(command);
+
+    _restarter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      
+      Thread thread = new Thread(runnable, "sudoku-worker-restart");
+      
+      thread.setDaemon(true);
+      
+      return thread;
+    });
+
+    for (int i = 0; i < count; ++i) {
+      
+      Worker worker = new Worker(i);
+
+      _workers.add(worker);
+
+      worker.doStart();
+    }
+  }
+
+  /**
+   * Method stops the worker processes.
+   */
+  public void close() {
+    
+    _isClosed = true;
+
+    _restarter.shutdownNow();
+
+    for (Worker worker : _workers) {
+      worker.doStop();
+    }
+  }
+
+  /**
+   * Method calls Sudoku-Lib function with position on the least loaded live
+   * worker and returns its result.
+   * 
+   * @param function function constant such as {@link SudokuNative#CONSTANT_FUNCTION_SOLUTION}.
+   * @param position a string contaning a canonical sudoku position.
+   * @return {@link SudokuResult} holding result code, output data and runtime.
+   */
+  public SudokuResult doCall(int function, String position) {
+    
+    Worker selected = getLeastLoadedWorker();
+
+    if (selected == null ||
+        selected.doReserve(1) == 0) {
+      
+      _metrics.doIncrement(CONSTANT_METRIC_BUSY);
+      
+      return new SudokuResult(SudokuNative.CONSTANT_RESULT_BUSY, "", -1);
+    }
+
+    List<Call> calls = new ArrayList<>(1);
+
+    selected.doSend(function, new String[] { position }, 0, 1, calls);
+
+    return selected.getResult(calls.get(0), System.nanoTime() + _timeoutMs * 1000000L);
+  }
+
+  /**
+   * Method calls Sudoku-Lib function with positions and returns their
+   * results. The positions are sent in runs filling the free pipeline depth
+   * of the least loaded live workers, each run with a single flush.
+   * Positions finding every worker at full depth are answered with
+   * Sudoku-Lib's busy result.
+   * 
+   * @param function function constant such as {@link SudokuNative#CONSTANT_FUNCTION_SOLUTION}.
+   * @param positions strings contaning canonical sudoku positions.
+   * @return array of {@link SudokuResult} objects, one per position, in order.
+   */
+  public SudokuResult[] doCall(int function, String[] positions) {
+    
+    SudokuResult[] results = new SudokuResult[positions.length];
+
+    Worker[] senders = new Worker[positions.length];
+
+    List<Call> calls = new ArrayList<>(positions.length);
+
+    int sent = 0;
+
+    while (sent < positions.length) {
+      
+      Worker selected = getLeastLoadedWorker();
+
+      int count = selected == null ? 0 : selected.doReserve(positions.length - sent);
+
+      if (count <= 0) {
+        break;
+      }
+
+      Arrays.fill(senders, sent, sent + count, selected);
+
+      selected.doSend(function, positions, sent, count, calls);
+
+      sent += count;
+    }
+
+    long deadline = System.nanoTime() + _timeoutMs * 1000000L;
+
+    for (int i = 0; i < sent; ++i) {
+      results[i] = senders[i].getResult(calls.get(i), deadline);
+    }
+
+    for (int i = sent; i < positions.length; ++i) {
+      
+      _metrics.doIncrement(CONSTANT_METRIC_BUSY);
+      
+      results[i] = new SudokuResult(SudokuNative.CONSTANT_RESULT_BUSY, "", -1);
+    }
+
+    return results;
+  }
+
+  /**
+   * Method returns the command line of a worker process running mainClass in
+   * a JVM like this one, inheriting its java.library.path.
+   * 
+   * @param classPath class path of the worker process.
+   * @param mainClass name of the main class of the worker process.
+   * @return {@link List} of command line arguments.
+   */
+  static List<String> getCommand(String classPath, String mainClass) {
+    
+    List<String> command = new ArrayList<>();
+
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    command.add("--enable-preview");
+
+    String libraryPath = System.getProperty("java.library.path");
+
+    if (libraryPath != null) {
+      command.add("-Djava.library.path=" + libraryPath);
+    }
+
+    command.add("-cp");
+    command.add(classPath);
+    command.add(mainClass);
+
+    return command;
+  }
+
+  /**
+   * Method returns the class path of the worker processes, made of the
+   * locations of the servlet classes, the Sudoku-Lib JNI wrapper classes and
+   * the class path of this JVM.
+   * 
+   * @return String containing class path.
+   */
+  private static String getDefaultClassPath() {
+    
+    LinkedHashSet<String> entries = new LinkedHashSet<>();
+
+    for (String name : new String[] { SudokuWorker.class.getName(), "sudoku_jlib", "SWIGTYPE_p_unsigned_char" }) {
+      
+      try {
+        
+        Class<?> cls = Class.forName(name, false, SudokuWorkerPool.class.getClassLoader());
+
+        entries.add(Paths.get(cls.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+      
+      } catch (Exception e) {
+        // class not visible here, left to the JVM class path.
+      }
+    }
+
+    entries.add(System.getProperty("java.class.path"));
+
+    return String.join(File.pathSeparator, entries);
+  }
+
+  /**
+   * Method returns the live worker with the fewest pending calls.
+   * 
+   * @return {@link Worker} or null if no worker is live.
+   */
+  private Worker getLeastLoadedWorker() {
+    
+    Worker selected = null;
+
+    int selectedLoad = Integer.MAX_VALUE;
+
+    for (Worker worker : _workers) {
+      
+      int load = worker.getLoad();
+
+      if (worker.isLive() &&
+          load < selectedLoad) {
+        
+        selected = worker;
+        
+        selectedLoad = load;
+      }
+    }
+
+    return selected;
+  }
+
+  /**
+   * Method returns the number of live workers.
+   * 
+   * @return number of workers taking calls.
+   */
+  public int getLiveCount() {
+    
+    int count = 0;
+
+    for (Worker worker : _workers) {
+      
+      if (worker.isLive()) {
+        ++count;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * worker process command line.
+   */
+  private final List<String> _command;
+
+  /**
+   * boolean indicating whether the pool has been closed.
+   */
+  private volatile boolean _isClosed = false;
+
+  /**
+   * {@link SudokuMetrics} object used to count worker events.
+   */
+  private final SudokuMetrics _metrics;
+
+  /**
+   * next request id.
+   */
+  private final AtomicInteger _nextId = new AtomicInteger();
+
+  /**
+   * maximum number of pending calls per worker.
+   */
+  private final int _pipelineDepth;
+
+  /**
+   * executor restarting failed workers.
+   */
+  private final ScheduledExecutorService _restarter;
+
+  /**
+   * maximum time in ms to wait for a result.
+   */
+  private final int _timeoutMs;
+
+  /**
+   * workers of the pool.
+   */
+  private final List<Worker> _workers = new ArrayList<>();
+
+  /**
+   * Metric name constant for calls refused because every worker was at full depth.
+   */
+  final public static String CONSTANT_METRIC_BUSY = "worker.busy";
+
+  /**
+   * Metric name constant for the number of live workers.
+   */
+  final public static String CONSTANT_METRIC_LIVE = "worker.live";
+
+  /**
+   * Metric name constant for worker restarts.
+   */
+  final public static String CONSTANT_METRIC_RESTARTS = "worker.restarts";
+
+  /**
+   * Metric name constant for calls which timed out waiting for a worker.
+   */
+  final public static String CONSTANT_METRIC_TIMEOUT = "worker.timeout";
+
+  /**
+   * Constant for the maximum delay in ms before restarting a failed worker.
+   */
+  final public static long CONSTANT_RESTART_DELAY_MAX_MS = 30000;
+
+  /**
+   * Constant for the initial delay in ms before restarting a failed worker.
+   */
+  final public static long CONSTANT_RESTART_DELAY_MIN_MS = 100;
+
+  /**
+   * Constant for the time in ms a worker is given to exit on close.
+   */
+  final public static long CONSTANT_STOP_TIMEOUT_MS = 1000;
+}
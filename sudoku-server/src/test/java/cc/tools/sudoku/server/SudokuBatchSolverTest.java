@@ -0,0 +1,130 @@
+package cc.tools.sudoku.server;
+
+import java.util.*;
+
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests that the Java batch engine returns the results of the
+ * scalar {@link SudokuSolver} for every position of a batch. The tests are
+ * skipped when the incubating vector module is not available.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuBatchSolverTest {
+
+  /**
+   * Method tests that batch results match scalar results on a small corpus of
+   * unique puzzles, their relabelings, a position with conflicting clues and an
+   * invalid position.
+   */
+  @Test
+  public void testBatchMatchesScalar() throws ReflectiveOperationException {
+
+    Assume.assumeTrue(ModuleLayer.boot().findModule(CONSTANT_VECTOR_MODULE).isPresent());
+
+    List<String> positions = getCorpus();
+
+    SudokuResult[] results = SudokuJobs.getBatchSolver(CONSTANT_TIMEOUT_MS).doCall(positions.toArray(new String[0]));
+
+    assertEquals(positions.size(), results.length);
+
+    for (int i = 0; i < results.length; ++i) {
+
+      SudokuResult expected = SudokuSolver.getResult(positions.get(i), () -> false, CONSTANT_TIMEOUT_MS);
+
+      assertEquals("code of " + positions.get(i), expected.getCode(), results[i].getCode());
+
+      assertEquals("data of " + positions.get(i), expected.getData(), results[i].getData());
+    }
+
+    assertEquals(SudokuNative.CONSTANT_RESULT_SETUP_FAILED, results[results.length - 2].getCode());
+  }
+
+  /**
+   * Method tests that an empty batch returns no results.
+   */
+  @Test
+  public void testEmptyBatch() throws ReflectiveOperationException {
+
+    Assume.assumeTrue(ModuleLayer.boot().findModule(CONSTANT_VECTOR_MODULE).isPresent());
+
+    assertEquals(0, SudokuJobs.getBatchSolver(CONSTANT_TIMEOUT_MS).doCall(new String[0]).length);
+  }
+
+  /**
+   * Method returns the corpus: the rater and warm-up puzzles, each followed by
+   * relabelings of its digits, then a position with conflicting clues and an
+   * invalid position.
+   *
+   * @return {@link List} of canonical positions.
+   */
+  private static List<String> getCorpus() {
+
+    List<String> puzzles = new ArrayList<>();
+
+    for (String position : SudokuJitWarmup.CONSTANT_POSITIONS) {
+      puzzles.add(position);
+    }
+
+    for (String position : SudokuRaterTest.CONSTANT_POSITIONS) {
+      puzzles.add(SudokuBoard.getCanonicalPosition(position));
+    }
+
+    Random random = new Random(CONSTANT_SEED);
+
+    List<String> positions = new ArrayList<>();
+
+    for (String puzzle : puzzles) {
+
+      positions.add(puzzle);
+
+      int[] cells = SudokuBoard.getCellsFromPosition(puzzle);
+
+      for (int n = 0; n < CONSTANT_RELABELINGS; ++n) {
+
+        List<Integer> digits = new ArrayList<>(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9));
+
+        Collections.shuffle(digits, random);
+
+        StringBuilder relabeled = new StringBuilder();
+
+        for (int cell : cells) {
+          relabeled.append(cell == 0 ? 0 : digits.get(cell - 1));
+        }
+
+        positions.add(SudokuBoard.getCanonicalPosition(relabeled.toString()));
+      }
+    }
+
+    positions.add(SudokuBoard.getCanonicalPosition("11" + SudokuRaterTest.CONSTANT_POSITIONS[0].substring(2)));
+
+    positions.add("1 2 3");
+
+    return positions;
+  }
+
+  /**
+   * Constant for the number of relabelings of each puzzle.
+   */
+  final public static int CONSTANT_RELABELINGS = 4;
+
+  /**
+   * Constant for the seed of the relabelings.
+   */
+  final public static long CONSTANT_SEED = 17;
+
+  /**
+   * Constant for the maximum solve time in ms.
+   */
+  final public static long CONSTANT_TIMEOUT_MS = 30000;
+
+  /**
+   * Constant for the name of the module needed by the batch engine.
+   */
+  final public static String CONSTANT_VECTOR_MODULE = "jdk.incubator.vector";
+}
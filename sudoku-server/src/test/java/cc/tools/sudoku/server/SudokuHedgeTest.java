@@ -0,0 +1,252 @@
+package cc.tools.sudoku.server;
+
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests that {@link SudokuHedge} returns the first definitive
+ * result of its engines, cancels the loser and stops hedging when its
+ * threads are saturated.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuHedgeTest {
+
+  /**
+   * Method tests that a fast primary answers without hedging and that the
+   * hedge delay then falls to the minimum delay.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testFastPrimary() {
+
+    SudokuMetrics metrics = new SudokuMetrics();
+
+    SudokuHedge hedge = new SudokuHedge((position, isCancelled) -> getResult(CONSTANT_PRIMARY),
+        (position, isCancelled) -> getResult(CONSTANT_SECONDARY), 95, CONSTANT_MIN_DELAY_MS, 4, metrics);
+
+    try {
+
+      for (int i = 0; i < SudokuHedge.CONSTANT_MIN_SAMPLES * 2; ++i) {
+        assertEquals(CONSTANT_PRIMARY, hedge.doCall(CONSTANT_POSITION).getData());
+      }
+
+      assertEquals(0, metrics.getValue(SudokuHedge.CONSTANT_METRIC_FIRED));
+
+      assertEquals(CONSTANT_MIN_DELAY_MS * 1000, hedge.getDelayUs());
+
+    } finally {
+      hedge.close();
+    }
+  }
+
+  /**
+   * Method tests that a slow primary is hedged, that the secondary's result
+   * wins and that the primary is cancelled.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testSlowPrimary() throws InterruptedException {
+
+    SudokuMetrics metrics = new SudokuMetrics();
+
+    CountDownLatch cancelled = new CountDownLatch(1);
+
+    SudokuHedge hedge = new SudokuHedge((position, isCancelled) -> {
+
+      doWaitUntil(isCancelled, CONSTANT_SLOW_MS);
+
+      if (isCancelled.getAsBoolean()) {
+        cancelled.countDown();
+      }
+
+      return new SudokuResult(SudokuNative.CONSTANT_RESULT_TIMEOUT, "", -1);
+
+    }, (position, isCancelled) -> getResult(CONSTANT_SECONDARY), 95, 0, 4, metrics);
+
+    try {
+
+      assertEquals(CONSTANT_SECONDARY, hedge.doCall(CONSTANT_POSITION).getData());
+
+      cancelled.await();
+
+      assertEquals(1, metrics.getValue(SudokuHedge.CONSTANT_METRIC_FIRED));
+
+      assertEquals(1, metrics.getValue(SudokuHedge.CONSTANT_METRIC_WON));
+
+    } finally {
+      hedge.close();
+    }
+  }
+
+  /**
+   * Method tests that a hedged solve waits for the slow primary when the
+   * secondary fails rather than returning the failure.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testFailedSecondary() {
+
+    SudokuMetrics metrics = new SudokuMetrics();
+
+    SudokuHedge hedge = new SudokuHedge((position, isCancelled) -> {
+
+      doWaitUntil(() -> false, SudokuHedge.CONSTANT_INITIAL_DELAY_US / 1000 * 3);
+
+      return getResult(CONSTANT_PRIMARY);
+
+    }, (position, isCancelled) -> new SudokuResult(SudokuNative.CONSTANT_RESULT_INTERNAL_ERROR, "", -1),
+        95, 0, 4, metrics);
+
+    try {
+
+      assertEquals(CONSTANT_PRIMARY, hedge.doCall(CONSTANT_POSITION).getData());
+
+      assertEquals(1, metrics.getValue(SudokuHedge.CONSTANT_METRIC_FIRED));
+
+      assertEquals(0, metrics.getValue(SudokuHedge.CONSTANT_METRIC_WON));
+
+    } finally {
+      hedge.close();
+    }
+  }
+
+  /**
+   * Method tests that solves are not hedged while every engine thread is
+   * busy, and that the primary then runs on the calling thread.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testSaturated() throws Exception {
+
+    SudokuMetrics metrics = new SudokuMetrics();
+
+    CountDownLatch release = new CountDownLatch(1);
+
+    CountDownLatch busy = new CountDownLatch(CONSTANT_THREADS);
+
+    SudokuHedge hedge = new SudokuHedge((position, isCancelled) -> {
+
+      if (Thread.currentThread().getName().startsWith("sudoku-hedge")) {
+
+        busy.countDown();
+
+        try {
+
+          release.await();
+
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      return getResult(CONSTANT_PRIMARY);
+
+    }, (position, isCancelled) -> getResult(CONSTANT_SECONDARY), 95, 0, CONSTANT_THREADS, metrics);
+
+    ExecutorService executor = Executors.newFixedThreadPool(CONSTANT_THREADS);
+
+    try {
+
+      Future<?>[] futures = new Future<?>[CONSTANT_THREADS];
+
+      for (int i = 0; i < CONSTANT_THREADS; ++i) {
+        futures[i] = executor.submit(() -> hedge.doCall(CONSTANT_POSITION));
+      }
+
+      busy.await();
+
+      assertEquals(CONSTANT_PRIMARY, hedge.doCall(CONSTANT_POSITION).getData());
+
+      assertTrue(metrics.getValue(SudokuHedge.CONSTANT_METRIC_SKIPPED) >= 1);
+
+      release.countDown();
+
+      for (Future<?> future : futures) {
+        assertEquals(CONSTANT_PRIMARY, ((SudokuResult) future.get()).getData());
+      }
+
+      assertEquals(0, metrics.getValue(SudokuHedge.CONSTANT_METRIC_FIRED));
+
+    } finally {
+
+      release.countDown();
+
+      executor.shutdownNow();
+
+      hedge.close();
+    }
+  }
+
+  /**
+   * Method waits until isCancelled returns true or timeMs have passed.
+   *
+   * @param isCancelled check ending the wait early.
+   * @param timeMs maximum time in ms to wait.
+   */
+  private static void doWaitUntil(BooleanSupplier isCancelled, long timeMs) {
+
+    long deadline = System.nanoTime() + timeMs * 1000000L;
+
+    while (!isCancelled.getAsBoolean() &&
+        System.nanoTime() < deadline) {
+
+      try {
+
+        Thread.sleep(1);
+
+      } catch (InterruptedException e) {
+
+        Thread.currentThread().interrupt();
+
+        return;
+      }
+    }
+  }
+
+  /**
+   * Method returns a successful result holding data.
+   *
+   * @param data result data naming the engine.
+   * @return {@link SudokuResult} object.
+   */
+  private static SudokuResult getResult(String data) {
+    return new SudokuResult(SudokuNative.CONSTANT_RESULT_OK, data, 1);
+  }
+
+  /**
+   * Constant for the minimum hedge delay in ms of the fast primary test.
+   */
+  final public static int CONSTANT_MIN_DELAY_MS = 50;
+
+  /**
+   * Constant for a position.
+   */
+  final public static String CONSTANT_POSITION = SudokuBoard.getCanonicalPosition(SudokuRaterTest.CONSTANT_POSITIONS[0]);
+
+  /**
+   * Constant for the data of primary results.
+   */
+  final public static String CONSTANT_PRIMARY = "primary";
+
+  /**
+   * Constant for the data of secondary results.
+   */
+  final public static String CONSTANT_SECONDARY = "secondary";
+
+  /**
+   * Constant for the time in ms a slow primary takes unless cancelled.
+   */
+  final public static long CONSTANT_SLOW_MS = 10000;
+
+  /**
+   * Constant for the maximum run time of a test in ms.
+   */
+  final public static long CONSTANT_TEST_TIMEOUT_MS = 20000;
+
+  /**
+   * Constant for the number of engine threads of the saturation test.
+   */
+  final public static int CONSTANT_THREADS = 2;
+}
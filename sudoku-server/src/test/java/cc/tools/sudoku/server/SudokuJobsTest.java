@@ -0,0 +1,426 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests that {@link SudokuJobs} solves jobs in input order,
+ * resumes them from their checkpoint after a crash, stops within a bounded
+ * time and expires old jobs.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuJobsTest {
+
+  /**
+   * Method tests that a job is solved into one result line per position, in
+   * input order, skipping blank lines and comments.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testSolve() throws Exception {
+
+    List<String> lines = getResultLines(getResults());
+
+    assertEquals(SudokuRaterTest.CONSTANT_POSITIONS.length + 1, lines.size());
+
+    for (int i = 0; i < SudokuRaterTest.CONSTANT_POSITIONS.length; ++i) {
+
+      String[] fields = lines.get(i).split(" ");
+
+      assertEquals(Integer.toString(SudokuNative.CONSTANT_RESULT_OK), fields[1]);
+
+      assertEquals(SudokuBoard.CONSTANT_CELL_COUNT, fields[2].length());
+    }
+
+    assertTrue(lines.get(lines.size() - 1).endsWith(SudokuJobs.CONSTANT_NO_SOLUTION));
+  }
+
+  /**
+   * Method tests that a job interrupted after a block was written but before
+   * its checkpoint was replaced resumes from the checkpoint, dropping the
+   * results written after it.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testResumeAfterCrash() throws Exception {
+
+    byte[] expected = getResults();
+
+    List<String> lines = getResultLines(expected);
+
+    int done = 2;
+
+    byte[] kept = String.join("\n", lines.subList(0, done)).concat("\n").getBytes(StandardCharsets.US_ASCII);
+
+    File directory = getCrashedJob(kept, lines.get(done).substring(0, 20));
+
+    Properties checkpoint = new Properties();
+
+    checkpoint.setProperty("lines", Integer.toString(getInputLinesUpTo(done)));
+    checkpoint.setProperty("bytes", Integer.toString(kept.length));
+    checkpoint.setProperty("solved", Integer.toString(done));
+    checkpoint.setProperty("failed", "0");
+
+    try (OutputStream out = new FileOutputStream(new File(directory, SudokuJobs.CONSTANT_FILE_CHECKPOINT))) {
+      checkpoint.store(out, null);
+    }
+
+    assertArrayEquals(expected, doResume(directory));
+
+    assertTrue(_solved.get() < SudokuRaterTest.CONSTANT_POSITIONS.length);
+  }
+
+  /**
+   * Method tests that a job whose checkpoint was truncated is solved again
+   * from its start instead of trusting the values left.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testResumeAfterTruncatedCheckpoint() throws Exception {
+
+    byte[] expected = getResults();
+
+    List<String> lines = getResultLines(expected);
+
+    byte[] kept = String.join("\n", lines.subList(0, 2)).concat("\n").getBytes(StandardCharsets.US_ASCII);
+
+    for (String text : new String[] {
+        "lines=" + getInputLinesUpTo(2) + "\nsolved=2\n",
+        "lines=" + getInputLinesUpTo(2) + "\nsolved=2\nfailed=0\nbytes=" + (kept.length - 3) + "\n" }) {
+
+      File directory = getCrashedJob(kept, "");
+
+      Files.write(new File(directory, SudokuJobs.CONSTANT_FILE_CHECKPOINT).toPath(),
+          text.getBytes(StandardCharsets.ISO_8859_1));
+
+      assertArrayEquals(expected, doResume(directory));
+
+      assertEquals(SudokuRaterTest.CONSTANT_POSITIONS.length, _solved.get());
+    }
+  }
+
+  /**
+   * Method tests that closing the jobs stops the runner while a solve is
+   * stuck and that the job is resumed at the next start.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testCloseWhileStuck() throws Exception {
+
+    File directory = _folder.newFolder();
+
+    CountDownLatch entered = new CountDownLatch(1);
+
+    SudokuJobs jobs = new SudokuJobs(directory, 2, CONSTANT_BLOCK_LINES, CONSTANT_INPUT_MAX_BYTES, 0, 0,
+        position -> {
+
+          entered.countDown();
+
+          try {
+
+            new CountDownLatch(1).await();
+
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+
+          return new SudokuResult(SudokuNative.CONSTANT_RESULT_INTERNAL_ERROR, "", 0);
+        }, null, new SudokuMetrics());
+
+    jobs.doStart();
+
+    String id = jobs.doSubmit(new ByteArrayInputStream(getInput()), CONSTANT_CLIENT);
+
+    entered.await();
+
+    long startMs = System.currentTimeMillis();
+
+    jobs.close();
+
+    assertTrue(System.currentTimeMillis() - startMs < SudokuJobs.CONSTANT_STOP_WAIT_MS * 3);
+
+    assertEquals(SudokuJobs.CONSTANT_STATE_QUEUED, jobs.getState(id));
+
+    SudokuJobs resumed = getJobs(directory, 0);
+
+    try {
+
+      resumed.doStart();
+
+      doAwaitDone(resumed, id);
+
+    } finally {
+      resumed.close();
+    }
+  }
+
+  /**
+   * Method tests that done jobs are forgotten and deleted once older than the
+   * retention time, also when found at start-up.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testExpire() throws Exception {
+
+    File directory = _folder.newFolder();
+
+    SudokuJobs jobs = getJobs(directory, CONSTANT_RETENTION_MS);
+
+    String id;
+
+    try {
+
+      jobs.doStart();
+
+      id = jobs.doSubmit(new ByteArrayInputStream(getInput()), CONSTANT_CLIENT);
+
+      doAwaitDone(jobs, id);
+
+      jobs.doExpire(System.currentTimeMillis());
+
+      assertNotNull(jobs.getResults(id));
+
+    } finally {
+      jobs.close();
+    }
+
+    jobs = getJobs(directory, CONSTANT_RETENTION_MS);
+
+    try {
+
+      jobs.doStart();
+
+      assertEquals(SudokuJobs.CONSTANT_STATE_DONE, jobs.getState(id));
+
+      jobs.doExpire(System.currentTimeMillis() + CONSTANT_RETENTION_MS);
+
+      assertNull(jobs.getState(id));
+
+      assertFalse(new File(directory, id).exists());
+
+    } finally {
+      jobs.close();
+    }
+  }
+
+  /**
+   * Method resumes the job in directory and returns its results.
+   *
+   * @param directory job directory.
+   * @return byte array holding the results file.
+   * @throws Exception if the job fails or the test thread is interrupted.
+   */
+  private byte[] doResume(File directory) throws Exception {
+
+    SudokuJobs jobs = getJobs(directory.getParentFile(), 0);
+
+    try {
+
+      jobs.doStart();
+
+      return Files.readAllBytes(doAwaitDone(jobs, directory.getName()).toPath());
+
+    } finally {
+      jobs.close();
+    }
+  }
+
+  /**
+   * Method waits until the job id is done and returns its results.
+   *
+   * @param jobs {@link SudokuJobs} running the job.
+   * @param id job id.
+   * @return results {@link File}.
+   * @throws InterruptedException if the test thread is interrupted.
+   */
+  private static File doAwaitDone(SudokuJobs jobs, String id) throws InterruptedException {
+
+    File results;
+
+    while ((results = jobs.getResults(id)) == null) {
+
+      assertNotEquals(SudokuJobs.CONSTANT_STATE_FAILED, jobs.getState(id));
+
+      Thread.sleep(10);
+    }
+
+    return results;
+  }
+
+  /**
+   * Method returns a job directory left by a crash, holding the input and the
+   * results kept followed by a partly written line.
+   *
+   * @param kept results written up to the checkpoint.
+   * @param torn partly written result line.
+   * @return job directory.
+   * @throws IOException if the files cannot be written.
+   */
+  private File getCrashedJob(byte[] kept, String torn) throws IOException {
+
+    File directory = new File(_folder.newFolder(), UUID.randomUUID().toString());
+
+    Files.createDirectories(directory.toPath());
+
+    Files.write(new File(directory, SudokuJobs.CONSTANT_FILE_INPUT).toPath(), getInput());
+
+    try (OutputStream out = new FileOutputStream(new File(directory, SudokuJobs.CONSTANT_FILE_RESULTS))) {
+
+      out.write(kept);
+
+      out.write(torn.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    return directory;
+  }
+
+  /**
+   * Method returns the input of the test job: the classic positions, a
+   * comment, a blank line and an unsolvable position.
+   *
+   * @return byte array holding the input.
+   */
+  private static byte[] getInput() {
+
+    StringBuilder buffer = new StringBuilder("# positions\n");
+
+    for (int i = 0; i < SudokuRaterTest.CONSTANT_POSITIONS.length; ++i) {
+
+      buffer.append(SudokuRaterTest.CONSTANT_POSITIONS[i]).append('\n');
+
+      if (i == 0) {
+        buffer.append('\n');
+      }
+    }
+
+    buffer.append(CONSTANT_CONFLICT).append('\n');
+
+    return buffer.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Method returns the number of input lines up to and including the count-th
+   * position.
+   *
+   * @param count number of positions.
+   * @return number of input lines.
+   */
+  private static int getInputLinesUpTo(int count) {
+    return count + (count >= 1 ? 2 : 1);
+  }
+
+  /**
+   * Method returns a job runner solving positions with the Java engine and
+   * counting the positions solved.
+   *
+   * @param directory jobs directory.
+   * @param retentionMs time in ms done jobs are kept.
+   * @return {@link SudokuJobs} object.
+   * @throws IOException if directory cannot be created.
+   */
+  private SudokuJobs getJobs(File directory, long retentionMs) throws IOException {
+
+    _solved.set(0);
+
+    Function<String, SudokuResult> solver = position -> {
+
+      SudokuResult result = SudokuSolver.getResult(position, () -> false, CONSTANT_SOLVE_TIMEOUT_MS);
+
+      if (result.isSuccess()) {
+        _solved.incrementAndGet();
+      }
+
+      return result;
+    };
+
+    return new SudokuJobs(directory, 2, CONSTANT_BLOCK_LINES, CONSTANT_INPUT_MAX_BYTES, 0, retentionMs,
+        solver, null, new SudokuMetrics());
+  }
+
+  /**
+   * Method returns the results of the test job solved without interruption.
+   *
+   * @return byte array holding the results file.
+   * @throws Exception if the job fails or the test thread is interrupted.
+   */
+  private byte[] getResults() throws Exception {
+
+    SudokuJobs jobs = getJobs(_folder.newFolder(), 0);
+
+    try {
+
+      jobs.doStart();
+
+      String id = jobs.doSubmit(new ByteArrayInputStream(getInput()), CONSTANT_CLIENT);
+
+      return Files.readAllBytes(doAwaitDone(jobs, id).toPath());
+
+    } finally {
+      jobs.close();
+    }
+  }
+
+  /**
+   * Method returns the lines of results.
+   *
+   * @param results byte array holding a results file.
+   * @return {@link List} of result lines.
+   */
+  private static List<String> getResultLines(byte[] results) {
+    return Arrays.asList(new String(results, StandardCharsets.US_ASCII).split("\n"));
+  }
+
+  /**
+   * temporary folder holding the jobs directories.
+   */
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  /**
+   * number of positions solved by the last job runner.
+   */
+  private final AtomicInteger _solved = new AtomicInteger();
+
+  /**
+   * Constant for the number of input lines solved between checkpoints.
+   */
+  final public static int CONSTANT_BLOCK_LINES = 2;
+
+  /**
+   * Constant for the submitting client.
+   */
+  final public static String CONSTANT_CLIENT = "127.0.0.1";
+
+  /**
+   * Constant for a position with conflicting clues.
+   */
+  final public static String CONSTANT_CONFLICT = "11" + "0".repeat(SudokuBoard.CONSTANT_CELL_COUNT - 2);
+
+  /**
+   * Constant for the maximum size of a job's input.
+   */
+  final public static long CONSTANT_INPUT_MAX_BYTES = 1 << 20;
+
+  /**
+   * Constant for the retention time in ms of the expiry test.
+   */
+  final public static long CONSTANT_RETENTION_MS = 3600000;
+
+  /**
+   * Constant for the maximum solve time in ms.
+   */
+  final public static long CONSTANT_SOLVE_TIMEOUT_MS = 30000;
+
+  /**
+   * Constant for the maximum run time of a test in ms.
+   */
+  final public static long CONSTANT_TEST_TIMEOUT_MS = 60000;
+}
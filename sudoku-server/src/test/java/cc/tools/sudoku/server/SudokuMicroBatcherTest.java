@@ -0,0 +1,183 @@
+package cc.tools.sudoku.server;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests that {@link SudokuMicroBatcher} solves concurrent calls in
+ * one engine call and completes every call of a batch, whatever the engine
+ * returns or throws.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuMicroBatcherTest {
+
+  /**
+   * Method tests that calls arriving within the window are solved together
+   * and that each gets the result of its own position.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testBatch() throws Exception {
+
+    List<Integer> sizes = new CopyOnWriteArrayList<>();
+
+    SudokuMetrics metrics = new SudokuMetrics();
+
+    SudokuMicroBatcher batcher = new SudokuMicroBatcher(positions -> {
+
+      sizes.add(positions.length);
+
+      SudokuResult[] results = new SudokuResult[positions.length];
+
+      for (int i = 0; i < positions.length; ++i) {
+        results[i] = new SudokuResult(SudokuNative.CONSTANT_RESULT_OK, positions[i], 1);
+      }
+
+      return results;
+    }, CONSTANT_LONG_WINDOW_US, CONSTANT_CALLERS, metrics);
+
+    List<Future<SudokuResult>> futures = doStart(batcher);
+
+    for (int i = 0; i < CONSTANT_CALLERS; ++i) {
+      assertEquals(getPosition(i), futures.get(i).get().getData());
+    }
+
+    assertEquals(Collections.singletonList(CONSTANT_CALLERS), sizes);
+  }
+
+  /**
+   * Method tests that a call arriving alone is dispatched once its window has
+   * passed.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testWindow() {
+
+    SudokuMicroBatcher batcher = new SudokuMicroBatcher(positions ->
+        new SudokuResult[] { new SudokuResult(SudokuNative.CONSTANT_RESULT_OK, positions[0], 1) },
+        CONSTANT_SHORT_WINDOW_US, CONSTANT_CALLERS, new SudokuMetrics());
+
+    assertEquals(getPosition(0), batcher.doCall(getPosition(0)).getData());
+
+    assertEquals(getPosition(1), batcher.doCall(getPosition(1)).getData());
+  }
+
+  /**
+   * Method tests that calls left without a result by the engine get an
+   * internal error instead of failing the leader.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testMissingResults() throws Exception {
+
+    SudokuResult first = new SudokuResult(SudokuNative.CONSTANT_RESULT_OK, "", 1);
+
+    SudokuMicroBatcher batcher = new SudokuMicroBatcher(positions -> new SudokuResult[] { first, null },
+        CONSTANT_LONG_WINDOW_US, CONSTANT_CALLERS, new SudokuMetrics());
+
+    int ok = 0;
+
+    for (Future<SudokuResult> future : doStart(batcher)) {
+
+      SudokuResult result = future.get();
+
+      if (result == first) {
+        ++ok;
+      } else {
+        assertEquals(SudokuNative.CONSTANT_RESULT_INTERNAL_ERROR, result.getCode());
+      }
+    }
+
+    assertEquals(1, ok);
+  }
+
+  /**
+   * Method tests that an exception thrown by the engine reaches the leader
+   * and that the other calls of the batch get an internal error.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testEngineException() throws Exception {
+
+    IllegalStateException failure = new IllegalStateException("engine failed");
+
+    SudokuMicroBatcher batcher = new SudokuMicroBatcher(positions -> {
+      throw failure;
+    }, CONSTANT_LONG_WINDOW_US, CONSTANT_CALLERS, new SudokuMetrics());
+
+    int thrown = 0;
+
+    for (Future<SudokuResult> future : doStart(batcher)) {
+
+      try {
+
+        assertEquals(SudokuNative.CONSTANT_RESULT_INTERNAL_ERROR, future.get().getCode());
+
+      } catch (ExecutionException e) {
+
+        assertSame(failure, e.getCause());
+
+        ++thrown;
+      }
+    }
+
+    assertEquals(1, thrown);
+  }
+
+  /**
+   * Method starts {@value CONSTANT_CALLERS} concurrent calls, each for its own
+   * position.
+   *
+   * @param batcher {@link SudokuMicroBatcher} tested.
+   * @return {@link List} of the futures of the calls, in position order.
+   */
+  private static List<Future<SudokuResult>> doStart(SudokuMicroBatcher batcher) {
+
+    ExecutorService executor = Executors.newFixedThreadPool(CONSTANT_CALLERS);
+
+    List<Future<SudokuResult>> futures = new ArrayList<>();
+
+    for (int i = 0; i < CONSTANT_CALLERS; ++i) {
+
+      String position = getPosition(i);
+
+      futures.add(executor.submit(() -> batcher.doCall(position)));
+    }
+
+    executor.shutdown();
+
+    return futures;
+  }
+
+  /**
+   * Method returns the position of call i.
+   *
+   * @param i number of the call.
+   * @return String containing a position tagged with i.
+   */
+  private static String getPosition(int i) {
+    return SudokuBoard.getCanonicalPosition(SudokuRaterTest.CONSTANT_POSITIONS[0]) + " " + i;
+  }
+
+  /**
+   * Constant for the number of concurrent callers, also the batch size.
+   */
+  final public static int CONSTANT_CALLERS = 8;
+
+  /**
+   * Constant for a window in us long enough for every caller to join.
+   */
+  final public static long CONSTANT_LONG_WINDOW_US = 30000000;
+
+  /**
+   * Constant for a short window in us.
+   */
+  final public static long CONSTANT_SHORT_WINDOW_US = 1000;
+
+  /**
+   * Constant for the maximum run time of a test in ms.
+   */
+  final public static long CONSTANT_TEST_TIMEOUT_MS = 20000;
+}
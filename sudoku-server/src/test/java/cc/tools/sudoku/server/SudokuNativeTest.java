@@ -0,0 +1,124 @@
+package cc.tools.sudoku.server;
+
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests that results of Sudoku-Lib are rendered to the same bytes
+ * as results of the Java engine, the stores and the caches.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuNativeTest {
+
+  /**
+   * Method tests that a solution in the Sudoku-Lib layout renders to the body
+   * returned by the Java engine and the off-heap cache for the same position.
+   */
+  @Test
+  public void testRenderedSolution() {
+
+    String position = SudokuBoard.getCanonicalPosition(SudokuRaterTest.CONSTANT_POSITIONS[4]);
+
+    SudokuResult java = SudokuSolver.getResult(position, () -> false, CONSTANT_TIMEOUT_MS);
+
+    assertEquals(SudokuNative.CONSTANT_RESULT_OK, java.getCode());
+
+    int[] cells = SudokuBoard.getCellsFromSolutionXml(java.getData());
+
+    StringBuilder data = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><solution>");
+
+    for (int i = 0; i < cells.length; ++i) {
+      data.append("<m><c> ").append(i).append(" </c><v>").append(cells[i]).append("</v></m>");
+    }
+
+    data.append("</solution>");
+
+    String rendered = SudokuNative.getRenderedData(SudokuNative.CONSTANT_FUNCTION_SOLUTION, data.toString());
+
+    assertEquals(java.getData(), rendered);
+
+    SudokuOffHeapCache cache = new SudokuOffHeapCache(SudokuOffHeapCacheTest.CONSTANT_CAPACITY_BYTES,
+        new SudokuMetrics());
+
+    cache.doPut(position, new SudokuResult(SudokuNative.CONSTANT_RESULT_OK, rendered, 3));
+
+    assertEquals(rendered, cache.get(position).getData());
+  }
+
+  /**
+   * Method tests that moves in the Sudoku-Lib layout, in any order, render to
+   * the body returned by the Java engine for the same position.
+   */
+  @Test
+  public void testRenderedMoves() {
+
+    String position = SudokuBoard.getCanonicalPosition(SudokuRaterTest.CONSTANT_POSITIONS[0]);
+
+    SudokuResult java = SudokuSolver.getMovesResult(position, null);
+
+    assertEquals(SudokuNative.CONSTANT_RESULT_OK, java.getCode());
+
+    int[] moves = SudokuBoard.getMovesFromXml(java.getData());
+
+    StringBuilder data = new StringBuilder("<moves>");
+
+    for (int i = moves.length - 1; i >= 0; --i) {
+
+      for (int digit = 9; digit >= 1; --digit) {
+
+        if ((moves[i] & (1 << digit)) != 0) {
+          data.append("<m><c>").append(i).append("</c><v>").append(digit).append("</v></m>");
+        }
+      }
+    }
+
+    data.append("</moves>");
+
+    assertEquals(java.getData(), SudokuNative.getRenderedData(SudokuNative.CONSTANT_FUNCTION_MOVES, data.toString()));
+  }
+
+  /**
+   * Method tests that data which cannot be parsed is returned unchanged.
+   */
+  @Test
+  public void testRenderedInvalid() {
+
+    assertEquals("<solution/>", SudokuNative.getRenderedData(SudokuNative.CONSTANT_FUNCTION_SOLUTION, "<solution/>"));
+
+    assertEquals("", SudokuNative.getRenderedData(SudokuNative.CONSTANT_FUNCTION_MOVES, ""));
+
+    assertNull(SudokuNative.getRenderedData(SudokuNative.CONSTANT_FUNCTION_SOLUTION, null));
+  }
+
+  /**
+   * Method tests that Sudoku-Lib and the Java engine return identical bodies
+   * for the same positions. Skipped when Sudoku-Lib cannot be loaded.
+   */
+  @Test
+  public void testNativeMatchesJava() {
+
+    SudokuNative engine = new SudokuNative();
+
+    Assume.assumeTrue(engine.isValid());
+
+    for (String puzzle : SudokuRaterTest.CONSTANT_POSITIONS) {
+
+      String position = SudokuBoard.getCanonicalPosition(puzzle);
+
+      assertEquals(SudokuSolver.getResult(position, () -> false, CONSTANT_TIMEOUT_MS).getData(),
+          engine.doCall(SudokuNative.CONSTANT_FUNCTION_SOLUTION, position).getData());
+
+      assertEquals(SudokuSolver.getMovesResult(position, null).getData(),
+          engine.doCall(SudokuNative.CONSTANT_FUNCTION_MOVES, position).getData());
+    }
+  }
+
+  /**
+   * Constant for the maximum solve time in ms.
+   */
+  final public static long CONSTANT_TIMEOUT_MS = 30000;
+}
@@ -0,0 +1,174 @@
+package cc.tools.sudoku.server;
+
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests that {@link SudokuOffHeapCache} returns the entries it
+ * stores and evicts by the clock algorithm once its shards are full.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuOffHeapCacheTest {
+
+  /**
+   * Method tests that solved and unsolvable results are returned as stored
+   * and that other results are not cached.
+   */
+  @Test
+  public void testPutGet() {
+
+    SudokuOffHeapCache cache = new SudokuOffHeapCache(CONSTANT_CAPACITY_BYTES, new SudokuMetrics());
+
+    String solved = SudokuBoard.getCanonicalPosition(SudokuVariantTest.CONSTANT_X_PUZZLE);
+
+    String unsolvable = SudokuBoard.getCanonicalPosition("11" + SudokuVariantTest.CONSTANT_X_PUZZLE.substring(2));
+
+    String timedOut = SudokuBoard.getCanonicalPosition(SudokuVariantTest.CONSTANT_WINDOKU_PUZZLE);
+
+    assertNull(cache.get(solved));
+
+    cache.doPut(solved, getSolved(SudokuVariantTest.CONSTANT_X_SOLUTION));
+
+    cache.doPut(unsolvable, new SudokuResult(SudokuNative.CONSTANT_RESULT_NO_SOLUTION, "", 3));
+
+    cache.doPut(timedOut, new SudokuResult(SudokuNative.CONSTANT_RESULT_TIMEOUT, "", 3));
+
+    assertEquals(2, cache.getCount());
+
+    doCheckResult(getSolved(SudokuVariantTest.CONSTANT_X_SOLUTION), cache.get(solved));
+
+    doCheckResult(new SudokuResult(SudokuNative.CONSTANT_RESULT_NO_SOLUTION, "", 3), cache.get(unsolvable));
+
+    assertNull(cache.get(timedOut));
+
+    assertEquals(-1, cache.get(solved).getRuntime());
+  }
+
+  /**
+   * Method tests an insert, evict and get cycle on a cache much smaller than
+   * the positions inserted: the cache stays within its load factor, evicts,
+   * keeps the entry read after each insert and returns stored entries only.
+   */
+  @Test
+  public void testEvict() {
+
+    SudokuMetrics metrics = new SudokuMetrics();
+
+    SudokuOffHeapCache cache = new SudokuOffHeapCache(CONSTANT_CAPACITY_BYTES, metrics);
+
+    long limit = (long) (CONSTANT_CAPACITY_BYTES / SudokuOffHeapCache.CONSTANT_SLOT_SIZE *
+        SudokuOffHeapCache.CONSTANT_LOAD_FACTOR);
+
+    Map<String, SudokuResult> stored = new LinkedHashMap<>();
+
+    Random random = new Random(CONSTANT_SEED);
+
+    String[] solutions = { SudokuVariantTest.CONSTANT_X_SOLUTION, SudokuVariantTest.CONSTANT_WINDOKU_SOLUTION,
+        SudokuVariantTest.CONSTANT_KILLER_SOLUTION };
+
+    while (stored.size() < limit * 8) {
+
+      String solution = solutions[random.nextInt(solutions.length)];
+
+      char[] digits = solution.toCharArray();
+
+      for (int i = 0; i < digits.length; ++i) {
+
+        if (random.nextInt(2) == 0) {
+          digits[i] = '0';
+        }
+      }
+
+      stored.put(SudokuBoard.getCanonicalPosition(new String(digits)), getSolved(solution));
+    }
+
+    Iterator<Map.Entry<String, SudokuResult>> entries = stored.entrySet().iterator();
+
+    Map.Entry<String, SudokuResult> kept = entries.next();
+
+    cache.doPut(kept.getKey(), kept.getValue());
+
+    String last = null;
+
+    while (entries.hasNext()) {
+
+      Map.Entry<String, SudokuResult> entry = entries.next();
+
+      cache.doPut(entry.getKey(), entry.getValue());
+
+      last = entry.getKey();
+
+      doCheckResult(kept.getValue(), cache.get(kept.getKey()));
+
+      assertTrue(cache.getCount() <= limit);
+    }
+
+    assertTrue(metrics.getValue(SudokuOffHeapCache.CONSTANT_METRIC_EVICT) > 0);
+
+    doCheckResult(stored.get(last), cache.get(last));
+
+    int hits = 0;
+
+    for (Map.Entry<String, SudokuResult> entry : stored.entrySet()) {
+
+      SudokuResult result = cache.get(entry.getKey());
+
+      if (result != null) {
+
+        doCheckResult(entry.getValue(), result);
+
+        ++hits;
+      }
+    }
+
+    assertEquals(cache.getCount(), hits);
+  }
+
+  /**
+   * Method checks that actual holds the code and data of expected.
+   *
+   * @param expected {@link SudokuResult} stored.
+   * @param actual {@link SudokuResult} returned by the cache.
+   */
+  private static void doCheckResult(SudokuResult expected, SudokuResult actual) {
+
+    assertNotNull(actual);
+
+    assertEquals(expected.getCode(), actual.getCode());
+
+    assertEquals(expected.getData(), actual.getData());
+  }
+
+  /**
+   * Method returns a solved result for solution.
+   *
+   * @param solution String of 81 digits.
+   * @return {@link SudokuResult} holding the solution XML.
+   */
+  private static SudokuResult getSolved(String solution) {
+
+    int[] cells = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    for (int i = 0; i < cells.length; ++i) {
+      cells[i] = solution.charAt(i) - '0';
+    }
+
+    return new SudokuResult(SudokuNative.CONSTANT_RESULT_OK, SudokuBoard.getSolutionXml(cells), 3);
+  }
+
+  /**
+   * Constant for the cache size in bytes, 8 slots per shard.
+   */
+  final public static long CONSTANT_CAPACITY_BYTES =
+      8L * SudokuOffHeapCache.CONSTANT_SHARD_COUNT * SudokuOffHeapCache.CONSTANT_SLOT_SIZE;
+
+  /**
+   * Constant for the seed of the generated positions.
+   */
+  final public static long CONSTANT_SEED = 17;
+}
@@ -0,0 +1,218 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests that {@link SudokuPeers} agrees on the owner of each
+ * position on every node, moves few positions when the cluster changes,
+ * checks peer calls and forwards solves to their owner.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuPeersTest {
+
+  /**
+   * Method tests that every node finds the same owner for each position,
+   * that exactly one node owns it and that positions spread over the nodes.
+   */
+  @Test
+  public void testOwner() {
+
+    List<SudokuPeers> peers = new ArrayList<>();
+
+    for (String node : CONSTANT_NODES) {
+      peers.add(new SudokuPeers(Arrays.asList(CONSTANT_NODES), node + "/", 1000, "", new SudokuMetrics()));
+    }
+
+    Map<String, Integer> counts = new HashMap<>();
+
+    for (int i = 0; i < CONSTANT_POSITIONS; ++i) {
+
+      String position = getPosition(i);
+
+      String owner = peers.get(0).getOwner(position);
+
+      int owners = 0;
+
+      for (SudokuPeers node : peers) {
+
+        assertTrue(node.isMember());
+
+        assertEquals(owner, node.getOwner(position));
+
+        owners += node.isOwner(position) ? 1 : 0;
+      }
+
+      assertEquals(1, owners);
+
+      counts.merge(owner, 1, Integer::sum);
+    }
+
+    for (String node : CONSTANT_NODES) {
+      assertTrue(node + " " + counts.get(node), counts.getOrDefault(node, 0) > CONSTANT_POSITIONS / 6);
+    }
+
+    assertFalse(new SudokuPeers(Arrays.asList(CONSTANT_NODES), "http://10.0.0.9:8080", 1000, "",
+        new SudokuMetrics()).isMember());
+  }
+
+  /**
+   * Method tests that removing a node only moves the positions it owned.
+   */
+  @Test
+  public void testRemoveNode() {
+
+    SudokuPeers all = new SudokuPeers(Arrays.asList(CONSTANT_NODES), CONSTANT_NODES[0], 1000, "",
+        new SudokuMetrics());
+
+    SudokuPeers rest = new SudokuPeers(Arrays.asList(CONSTANT_NODES).subList(0, 2), CONSTANT_NODES[0], 1000, "",
+        new SudokuMetrics());
+
+    for (int i = 0; i < CONSTANT_POSITIONS; ++i) {
+
+      String position = getPosition(i);
+
+      String owner = all.getOwner(position);
+
+      if (!owner.equals(CONSTANT_NODES[2])) {
+        assertEquals(owner, rest.getOwner(position));
+      }
+    }
+  }
+
+  /**
+   * Method tests that peer calls are taken from node addresses without a
+   * secret and only with the secret otherwise.
+   */
+  @Test
+  public void testIsPeer() {
+
+    List<String> nodes = Arrays.asList("http://127.0.0.1:8080", "http://127.0.0.2:8080");
+
+    SudokuPeers byAddress = new SudokuPeers(nodes, nodes.get(0), 1000, "", new SudokuMetrics());
+
+    assertTrue(byAddress.isPeer("127.0.0.2", null));
+
+    assertFalse(byAddress.isPeer("127.0.0.3", null));
+
+    SudokuPeers bySecret = new SudokuPeers(nodes, nodes.get(0), 1000, CONSTANT_SECRET, new SudokuMetrics());
+
+    assertTrue(bySecret.isPeer("10.0.0.1", CONSTANT_SECRET));
+
+    assertFalse(bySecret.isPeer("127.0.0.2", null));
+
+    assertFalse(bySecret.isPeer("127.0.0.2", CONSTANT_SECRET + "x"));
+  }
+
+  /**
+   * Method tests that a solve is forwarded to its owner with the secret and
+   * that a solve whose owner cannot answer falls back to the caller.
+   */
+  @Test
+  public void testForward() throws IOException {
+
+    SudokuResult result = new SudokuResult(SudokuNative.CONSTANT_RESULT_OK, "<solution/>", 7);
+
+    AtomicReference<String> secret = new AtomicReference<>();
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+    server.createContext(Sudoku.CONSTANT_URI_ENDPOINT_PEER, exchange -> {
+
+      secret.set(exchange.getRequestHeaders().getFirst(SudokuPeers.CONSTANT_HTTP_HEADER_SECRET));
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+      SudokuWorker.doWriteResult(new DataOutputStream(bytes), 0, result);
+
+      exchange.sendResponseHeaders(200, bytes.size());
+
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(bytes.toByteArray());
+      }
+    });
+
+    server.start();
+
+    try {
+
+      String owner = "http://127.0.0.1:" + server.getAddress().getPort();
+
+      SudokuMetrics metrics = new SudokuMetrics();
+
+      SudokuPeers peers = new SudokuPeers(Collections.singletonList(owner), "http://127.0.0.1:1", 5000,
+          CONSTANT_SECRET, metrics);
+
+      SudokuResult forwarded = peers.doForward(getPosition(0));
+
+      assertNotNull(forwarded);
+
+      assertEquals(result.getCode(), forwarded.getCode());
+
+      assertEquals(result.getData(), forwarded.getData());
+
+      assertEquals(CONSTANT_SECRET, secret.get());
+
+      assertEquals(1, metrics.getValue(SudokuPeers.CONSTANT_METRIC_FORWARDED));
+
+    } finally {
+      server.stop(0);
+    }
+
+    SudokuMetrics metrics = new SudokuMetrics();
+
+    SudokuPeers peers = new SudokuPeers(Collections.singletonList("http://127.0.0.1:1"), "http://127.0.0.1:2",
+        5000, "", metrics);
+
+    assertNull(peers.doForward(getPosition(0)));
+
+    assertEquals(1, metrics.getValue(SudokuPeers.CONSTANT_METRIC_FALLBACK));
+  }
+
+  /**
+   * Method returns a canonical position numbered i, the X-Sudoku solution
+   * with the cells of i's bits cleared.
+   *
+   * @param i number of the position.
+   * @return String containing a canonical position.
+   */
+  private static String getPosition(int i) {
+
+    char[] digits = SudokuVariantTest.CONSTANT_X_SOLUTION.toCharArray();
+
+    for (int bit = 0; bit < 16; ++bit) {
+
+      if (((i >> bit) & 1) != 0) {
+        digits[bit * 5] = '0';
+      }
+    }
+
+    return SudokuBoard.getCanonicalPosition(new String(digits));
+  }
+
+  /**
+   * Constant for the cluster node base Urls.
+   */
+  final public static String[] CONSTANT_NODES = {
+      "http://10.0.0.1:8080", "http://10.0.0.2:8080", "http://10.0.0.3:8080" };
+
+  /**
+   * Constant for the number of positions placed on the ring.
+   */
+  final public static int CONSTANT_POSITIONS = 3000;
+
+  /**
+   * Constant for the secret shared by the nodes.
+   */
+  final public static String CONSTANT_SECRET = "cluster-secret";
+}
@@ -0,0 +1,150 @@
+package cc.tools.sudoku.server;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests that {@link SudokuRateLimiter} admits bursts, keeps the
+ * debt run up by batches and charges, and refills buckets over time.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuRateLimiterTest {
+
+  /**
+   * Method tests that a full bucket admits one burst and then asks the client
+   * to wait for the missing tokens.
+   */
+  @Test
+  public void testBurst() {
+
+    SudokuRateLimiter limiter = new SudokuRateLimiter(CONSTANT_RATE, CONSTANT_BURST, CONSTANT_CLIENTS);
+
+    for (int i = 0; i < CONSTANT_BURST; ++i) {
+      assertEquals(0, limiter.doAcquire(CONSTANT_CLIENT, 1));
+    }
+
+    long retryMs = limiter.doAcquire(CONSTANT_CLIENT, 1);
+
+    assertTrue("retry " + retryMs, retryMs > 0 && retryMs <= getMs(1));
+
+    assertEquals(0, limiter.doAcquire("other", 1));
+  }
+
+  /**
+   * Method tests that a batch costing more than a burst is admitted from a
+   * full bucket, that the client then waits for the whole debt and that later
+   * charges do not forgive it.
+   */
+  @Test
+  public void testBatchDebt() {
+
+    SudokuRateLimiter limiter = new SudokuRateLimiter(CONSTANT_RATE, CONSTANT_BURST, CONSTANT_CLIENTS);
+
+    assertEquals(0, limiter.doAcquire(CONSTANT_CLIENT, CONSTANT_BATCH_COST));
+
+    limiter.doCharge(CONSTANT_CLIENT, 1);
+
+    limiter.doCharge(CONSTANT_CLIENT, -1);
+
+    long retryMs = limiter.doAcquire(CONSTANT_CLIENT, 1);
+
+    assertTrue("retry " + retryMs, retryMs > getMs(CONSTANT_BATCH_COST - CONSTANT_BURST - 1));
+  }
+
+  /**
+   * Method tests that a charge takes a bucket at most one burst into debt and
+   * that a refund fills it at most to a burst.
+   */
+  @Test
+  public void testChargeBounds() {
+
+    SudokuRateLimiter limiter = new SudokuRateLimiter(CONSTANT_RATE, CONSTANT_BURST, CONSTANT_CLIENTS);
+
+    limiter.doCharge(CONSTANT_CLIENT, CONSTANT_BATCH_COST);
+
+    long retryMs = limiter.doAcquire(CONSTANT_CLIENT, 1);
+
+    assertTrue("retry " + retryMs, retryMs > getMs(CONSTANT_BURST) && retryMs <= getMs(CONSTANT_BURST + 1));
+
+    limiter.doCharge(CONSTANT_CLIENT, -CONSTANT_BATCH_COST);
+
+    for (int i = 0; i < CONSTANT_BURST; ++i) {
+      assertEquals(0, limiter.doAcquire(CONSTANT_CLIENT, 1));
+    }
+
+    assertTrue(limiter.doAcquire(CONSTANT_CLIENT, 1) > 0);
+  }
+
+  /**
+   * Method tests that an empty bucket is refilled at the configured rate.
+   */
+  @Test
+  public void testRefill() throws InterruptedException {
+
+    SudokuRateLimiter limiter = new SudokuRateLimiter(CONSTANT_RATE, CONSTANT_BURST, CONSTANT_CLIENTS);
+
+    assertEquals(0, limiter.doAcquire(CONSTANT_CLIENT, CONSTANT_BURST));
+
+    assertTrue(limiter.doAcquire(CONSTANT_CLIENT, 1) > 0);
+
+    Thread.sleep(getMs(2));
+
+    assertEquals(0, limiter.doAcquire(CONSTANT_CLIENT, 1));
+
+    assertEquals(0, limiter.doAcquire(CONSTANT_CLIENT, 1));
+  }
+
+  /**
+   * Method tests that the number of buckets held stays bounded.
+   */
+  @Test
+  public void testClientCount() {
+
+    SudokuRateLimiter limiter = new SudokuRateLimiter(CONSTANT_RATE, CONSTANT_BURST, CONSTANT_CLIENTS);
+
+    for (int i = 0; i < CONSTANT_CLIENTS * 4; ++i) {
+      limiter.doAcquire("client" + i, 1);
+    }
+
+    assertTrue(limiter.getClientCount() <= CONSTANT_CLIENTS);
+  }
+
+  /**
+   * Method returns the time in ms to refill tokens at {@value CONSTANT_RATE}
+   * tokens per second.
+   *
+   * @param tokens number of tokens.
+   * @return time in ms.
+   */
+  private static long getMs(double tokens) {
+    return (long) Math.ceil(tokens * 1000 / CONSTANT_RATE);
+  }
+
+  /**
+   * Constant for the cost of a batch, well above a burst.
+   */
+  final public static double CONSTANT_BATCH_COST = 100;
+
+  /**
+   * Constant for the burst size of the buckets.
+   */
+  final public static int CONSTANT_BURST = 5;
+
+  /**
+   * Constant for the client key.
+   */
+  final public static String CONSTANT_CLIENT = "127.0.0.1";
+
+  /**
+   * Constant for the maximum number of buckets held.
+   */
+  final public static int CONSTANT_CLIENTS = 128;
+
+  /**
+   * Constant for the tokens added per second.
+   */
+  final public static double CONSTANT_RATE = 20;
+}
@@ -0,0 +1,87 @@
+package cc.tools.sudoku.server;
+
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests that {@link SudokuRater} rates positions by the hardest
+ * technique needed to solve them.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuRaterTest {
+
+  /**
+   * Method tests the rating of a position for each technique level and one
+   * needing a search.
+   */
+  @Test
+  public void testRating() throws InterruptedException {
+
+    SudokuRater rater = new SudokuRater(1, 16, CONSTANT_TIMEOUT_MS, new SudokuMetrics());
+
+    try {
+
+      for (int i = 0; i < CONSTANT_POSITIONS.length; ++i) {
+        assertEquals(CONSTANT_RATINGS[i], rater.getRating(CONSTANT_POSITIONS[i]));
+      }
+
+      assertArrayEquals(CONSTANT_RATINGS, rater.getRatings(Arrays.asList(CONSTANT_POSITIONS)));
+
+    } finally {
+      rater.close();
+    }
+  }
+
+  /**
+   * Method tests the rating of invalid positions and of positions with
+   * conflicting clues.
+   */
+  @Test
+  public void testRatingInvalid() {
+
+    SudokuRater rater = new SudokuRater(1, 0, CONSTANT_TIMEOUT_MS, new SudokuMetrics());
+
+    try {
+
+      assertEquals(SudokuNative.CONSTANT_RESULT_BAD_PARAMETER + " -", rater.getRating("123"));
+
+      assertEquals(SudokuNative.CONSTANT_RESULT_SETUP_FAILED + " -",
+          rater.getRating("11" + CONSTANT_POSITIONS[0].substring(2)));
+
+    } finally {
+      rater.close();
+    }
+  }
+
+  /**
+   * Constant for the positions rated, in the order of {@link #CONSTANT_RATINGS}.
+   */
+  final public static String[] CONSTANT_POSITIONS = {
+      "030540000690031520005628930504973080000002340321080709870000150003000000002017890",
+      "580000000004680275030400086429000008315000090678049102001020003050904001062100000",
+      "890000030030000025006395400000609080009004056360500009080002004621070593940050860",
+      "080040653020905000400000020002070008397814500800590007908023475050000031200000096",
+      "080020000070600009351400006000250001106807340000001008008002000405010000030080700"
+  };
+
+  /**
+   * Constant for the expected rating lines of {@link #CONSTANT_POSITIONS}.
+   */
+  final public static String[] CONSTANT_RATINGS = {
+      "0 1.00 hidden-single 0",
+      "0 2.00 naked-single 0",
+      "0 3.00 locked-candidates 0",
+      "0 4.00 naked-subset 0",
+      "0 6.90 search 7"
+  };
+
+  /**
+   * Constant for the maximum rating time in ms.
+   */
+  final public static int CONSTANT_TIMEOUT_MS = 10000;
+}
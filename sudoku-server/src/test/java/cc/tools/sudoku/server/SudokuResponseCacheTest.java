@@ -0,0 +1,174 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests that {@link SudokuResponseCache} compresses an entry only
+ * when gzip is first asked for, counts the compressed bytes in its size and
+ * stays within its capacity.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuResponseCacheTest {
+
+  /**
+   * Method tests that a stored entry is held uncompressed until gzip is asked
+   * for, and compressed once then.
+   */
+  @Test
+  public void testLazyCompression() throws IOException {
+
+    SudokuResponseCache cache = new SudokuResponseCache(CONSTANT_CAPACITY_BYTES);
+
+    String body = getBody(0);
+
+    SudokuResponseCache.Entry entry = cache.doPut(CONSTANT_KEY, body, CONSTANT_CONTENT_TYPE);
+
+    int identity = body.getBytes(StandardCharsets.UTF_8).length;
+
+    assertEquals(identity, entry.getSize());
+
+    assertEquals(identity, cache.getSize());
+
+    assertEquals(body, new String(entry.getBytes(SudokuResponseCache.CONSTANT_ENCODING_IDENTITY),
+        StandardCharsets.UTF_8));
+
+    assertEquals(identity, cache.getSize());
+
+    byte[] gzip = entry.getBytes(SudokuResponseCache.CONSTANT_ENCODING_GZIP);
+
+    assertEquals(body, getGunzipped(gzip));
+
+    assertSame(gzip, cache.get(CONSTANT_KEY).getBytes(SudokuResponseCache.CONSTANT_ENCODING_GZIP));
+
+    assertEquals(identity + gzip.length, entry.getSize());
+
+    assertEquals(identity + gzip.length, cache.getSize());
+
+    assertEquals(CONSTANT_CONTENT_TYPE, entry.getContentType());
+  }
+
+  /**
+   * Method tests that the cache stays within its capacity as entries are
+   * stored and compressed, evicting the least recently used ones.
+   */
+  @Test
+  public void testCapacity() {
+
+    int identity = getBody(0).getBytes(StandardCharsets.UTF_8).length;
+
+    SudokuResponseCache cache = new SudokuResponseCache(identity * 3 + identity / 2);
+
+    for (int i = 0; i < 3; ++i) {
+      cache.doPut(CONSTANT_KEY + i, getBody(i), CONSTANT_CONTENT_TYPE);
+    }
+
+    assertEquals(identity * 3, cache.getSize());
+
+    cache.get(CONSTANT_KEY + 0).getBytes(SudokuResponseCache.CONSTANT_ENCODING_GZIP);
+
+    assertNotNull(cache.get(CONSTANT_KEY + 0));
+
+    assertTrue(cache.getSize() <= identity * 3 + identity / 2);
+
+    cache.doPut(CONSTANT_KEY + 3, getBody(3), CONSTANT_CONTENT_TYPE);
+
+    assertNull(cache.get(CONSTANT_KEY + 1));
+
+    assertNotNull(cache.get(CONSTANT_KEY + 3));
+
+    assertTrue(cache.getSize() <= identity * 3 + identity / 2);
+  }
+
+  /**
+   * Method tests that an entry replaced or evicted before it is compressed
+   * does not add its gzip bytes to the cache size.
+   */
+  @Test
+  public void testCompressAfterEviction() {
+
+    SudokuResponseCache cache = new SudokuResponseCache(CONSTANT_CAPACITY_BYTES);
+
+    SudokuResponseCache.Entry replaced = cache.doPut(CONSTANT_KEY, getBody(0), CONSTANT_CONTENT_TYPE);
+
+    SudokuResponseCache.Entry entry = cache.doPut(CONSTANT_KEY, getBody(1), CONSTANT_CONTENT_TYPE);
+
+    replaced.getBytes(SudokuResponseCache.CONSTANT_ENCODING_GZIP);
+
+    assertEquals(entry.getSize(), cache.getSize());
+  }
+
+  /**
+   * Method tests that nothing is cached when caching is disabled.
+   */
+  @Test
+  public void testDisabled() {
+
+    SudokuResponseCache cache = new SudokuResponseCache(0);
+
+    SudokuResponseCache.Entry entry = cache.doPut(CONSTANT_KEY, getBody(0), CONSTANT_CONTENT_TYPE);
+
+    assertNull(cache.get(CONSTANT_KEY));
+
+    assertEquals(getBody(0), getGunzipped(entry.getBytes(SudokuResponseCache.CONSTANT_ENCODING_GZIP)));
+
+    assertEquals(0, cache.getSize());
+  }
+
+  /**
+   * Method returns a response body rendering the solution of the X-Sudoku
+   * with n added to each digit.
+   *
+   * @param n number added to each digit.
+   * @return String containing the body.
+   */
+  private static String getBody(int n) {
+
+    int[] cells = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    for (int i = 0; i < cells.length; ++i) {
+      cells[i] = (SudokuVariantTest.CONSTANT_X_SOLUTION.charAt(i) - '0' + n - 1) % 9 + 1;
+    }
+
+    return SudokuBoard.getSolutionXml(cells);
+  }
+
+  /**
+   * Method returns gzip decompressed as text.
+   *
+   * @param gzip gzip compressed bytes.
+   * @return String containing the text.
+   */
+  private static String getGunzipped(byte[] gzip) {
+
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Constant for the capacity of the caches.
+   */
+  final public static long CONSTANT_CAPACITY_BYTES = 1 << 20;
+
+  /**
+   * Constant for the content type of the bodies.
+   */
+  final public static String CONSTANT_CONTENT_TYPE = "application/xml";
+
+  /**
+   * Constant for the cache key.
+   */
+  final public static String CONSTANT_KEY = "\"solution-key\"";
+}
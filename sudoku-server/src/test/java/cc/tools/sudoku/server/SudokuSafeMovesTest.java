@@ -0,0 +1,244 @@
+package cc.tools.sudoku.server;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests that {@link SudokuSafeMoves} keeps exactly the moves
+ * consistent with a solution of the position.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuSafeMovesTest {
+
+  /**
+   * Method tests that a move is found safe exactly if the position can be
+   * solved with it placed, with or without a solution known.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testSolutions() throws InterruptedException {
+
+    for (String puzzle : SudokuRaterTest.CONSTANT_POSITIONS) {
+
+      int[] cells = SudokuBoard.getCellsFromPosition(SudokuBoard.getCanonicalPosition(puzzle));
+
+      int[] solution = getSolution(cells);
+
+      int[] moves = getAllMoves(cells);
+
+      int[] safe = _safeMoves.getSafeMoves(cells, null, moves, null, CONSTANT_TIMEOUT_MS);
+
+      assertArrayEquals(puzzle, safe, _safeMoves.getSafeMoves(cells, null, moves, solution, CONSTANT_TIMEOUT_MS));
+
+      for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+
+        if (cells[i] != 0) {
+
+          assertEquals(0, safe[i]);
+
+          continue;
+        }
+
+        assertTrue(puzzle + " cell " + i, (safe[i] & (1 << solution[i])) != 0);
+
+        for (int digit = 1; digit <= 9; ++digit) {
+
+          int[] placed = cells.clone();
+
+          placed[i] = digit;
+
+          assertEquals(puzzle + " cell " + i + " digit " + digit,
+              new SudokuSolver(placed, null).doSolve(() -> false) == SudokuNative.CONSTANT_RESULT_OK,
+              (safe[i] & (1 << digit)) != 0);
+        }
+      }
+    }
+  }
+
+  /**
+   * Method tests that a position with two solutions has two safe moves in
+   * each cell where the solutions differ.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testTwoSolutions() throws InterruptedException {
+
+    int[] cells = SudokuBoard.getCellsFromPosition(CONSTANT_TWO_SOLUTIONS_PUZZLE);
+
+    int[] safe = _safeMoves.getSafeMoves(cells, null, getAllMoves(cells), null, CONSTANT_TIMEOUT_MS);
+
+    assertEquals((1 << 2) | (1 << 8), safe[CONSTANT_TWO_SOLUTIONS_CELL]);
+  }
+
+  /**
+   * Method tests that only the moves asked for are returned.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testMovesSubset() throws InterruptedException {
+
+    int[] cells = SudokuBoard.getCellsFromPosition(
+        SudokuBoard.getCanonicalPosition(SudokuRaterTest.CONSTANT_POSITIONS[0]));
+
+    int[] solution = getSolution(cells);
+
+    int[] moves = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    int right = -1;
+
+    int wrong = -1;
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+
+      if (cells[i] != 0) {
+        continue;
+      }
+
+      if (right < 0) {
+
+        right = i;
+
+        moves[i] = 1 << solution[i];
+
+      } else if (wrong < 0) {
+
+        wrong = i;
+
+        moves[i] = CONSTANT_ALL_MOVES & ~(1 << solution[i]);
+      }
+    }
+
+    int[] safe = _safeMoves.getSafeMoves(cells, null, moves, null, CONSTANT_TIMEOUT_MS);
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+      assertEquals("cell " + i, i == right ? 1 << solution[i] : 0, safe[i]);
+    }
+  }
+
+  /**
+   * Method tests that every move of a position with many solutions is safe
+   * when it is consistent with one of them.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testManySolutions() throws InterruptedException {
+
+    int[] cells = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    cells[0] = 1;
+
+    int[] safe = _safeMoves.getSafeMoves(cells, null, getAllMoves(cells), null, CONSTANT_TIMEOUT_MS);
+
+    for (int i = 1; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+
+      boolean isPeer = i / 9 == 0 || i % 9 == 0 || (i / 27 == 0 && i % 9 < 3);
+
+      assertEquals("cell " + i, isPeer ? CONSTANT_ALL_MOVES & ~(1 << 1) : CONSTANT_ALL_MOVES, safe[i]);
+    }
+  }
+
+  /**
+   * Method tests that a position without a solution has no safe moves.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testNoSolution() throws InterruptedException {
+
+    int[] cells = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    cells[0] = 1;
+
+    cells[1] = 1;
+
+    int[] safe = _safeMoves.getSafeMoves(cells, null, getAllMoves(cells), null, CONSTANT_TIMEOUT_MS);
+
+    assertArrayEquals(new int[SudokuBoard.CONSTANT_CELL_COUNT], safe);
+  }
+
+  /**
+   * Method tests that checks not finished in time return null.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testTimeout() throws InterruptedException {
+
+    int[] cells = SudokuBoard.getCellsFromPosition(CONSTANT_HARD_PUZZLE);
+
+    assertNull(_safeMoves.getSafeMoves(cells, null, getAllMoves(cells), null, -1));
+  }
+
+  /**
+   * Method stops the check threads.
+   */
+  @After
+  public void doClose() {
+    _safeMoves.close();
+  }
+
+  /**
+   * Method returns every digit as move of each empty cell of cells.
+   *
+   * @param cells int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell values.
+   * @return moves as bitmask per cell.
+   */
+  private static int[] getAllMoves(int[] cells) {
+
+    int[] moves = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+      moves[i] = cells[i] == 0 ? CONSTANT_ALL_MOVES : 0;
+    }
+
+    return moves;
+  }
+
+  /**
+   * Method returns the solution of cells found by the Java engine.
+   *
+   * @param cells int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell values.
+   * @return int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} solved cell values.
+   */
+  private static int[] getSolution(int[] cells) {
+
+    SudokuSolver solver = new SudokuSolver(cells.clone(), null);
+
+    assertEquals(SudokuNative.CONSTANT_RESULT_OK, solver.doSolve(() -> false));
+
+    return solver.getCells();
+  }
+
+  /**
+   * checker tested.
+   */
+  private final SudokuSafeMoves _safeMoves = new SudokuSafeMoves(4);
+
+  /**
+   * Constant for the moves of every digit as bitmask.
+   */
+  final public static int CONSTANT_ALL_MOVES = 0x3fe;
+
+  /**
+   * Constant for a position whose checks take many search steps.
+   */
+  final public static String CONSTANT_HARD_PUZZLE = SudokuBoard.getCanonicalPosition(
+      "800000000003600000070090200050007000000045700000100030001000068008500010090000400");
+
+  /**
+   * Constant for the cell in which the solutions of {@link #CONSTANT_TWO_SOLUTIONS_PUZZLE} hold 2 and 8.
+   */
+  final public static int CONSTANT_TWO_SOLUTIONS_CELL = 24;
+
+  /**
+   * Constant for a position with two solutions.
+   */
+  final public static String CONSTANT_TWO_SOLUTIONS_PUZZLE = SudokuBoard.getCanonicalPosition(
+      "080020000070600009351400006000250001106807340000001008008002000405010000030080700");
+
+  /**
+   * Constant for the maximum duration of the checks in ms.
+   */
+  final public static long CONSTANT_TIMEOUT_MS = 30000;
+
+  /**
+   * Constant for the maximum run time of a test in ms.
+   */
+  final public static long CONSTANT_TEST_TIMEOUT_MS = 60000;
+}
@@ -0,0 +1,202 @@
+package cc.tools.sudoku.server;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests that {@link SudokuSingleFlight} shares one call among
+ * concurrent callers for the same key and never leaves a caller waiting when
+ * the call fails.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuSingleFlightTest {
+
+  /**
+   * Method tests that callers arriving while a call is in flight share its
+   * result and that the call is made once.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testCoalesce() throws Exception {
+
+    SudokuMetrics metrics = new SudokuMetrics();
+
+    SudokuSingleFlight singleFlight = new SudokuSingleFlight(metrics);
+
+    CountDownLatch release = new CountDownLatch(1);
+
+    AtomicInteger calls = new AtomicInteger();
+
+    SudokuResult result = new SudokuResult(SudokuNative.CONSTANT_RESULT_OK, "<solution/>", 5);
+
+    List<Future<SudokuResult>> futures = doStart(singleFlight, metrics, () -> {
+
+      calls.incrementAndGet();
+
+      doAwait(release);
+
+      return result;
+    });
+
+    release.countDown();
+
+    for (Future<SudokuResult> future : futures) {
+      assertSame(result, future.get());
+    }
+
+    assertEquals(1, calls.get());
+
+    assertEquals(CONSTANT_CALLERS - 1, metrics.getValue(SudokuSingleFlight.CONSTANT_METRIC_COALESCED));
+
+    assertEquals(0, singleFlight.getInFlightCount());
+  }
+
+  /**
+   * Method tests that an exception thrown by the call reaches every caller.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testLeaderException() throws Exception {
+    doTestFailure(new IllegalStateException("engine failed"));
+  }
+
+  /**
+   * Method tests that an error thrown by the call reaches every caller instead
+   * of leaving the waiting callers blocked.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testLeaderError() throws Exception {
+    doTestFailure(new StackOverflowError());
+  }
+
+  /**
+   * Method makes concurrent calls failing with failure and checks that each
+   * caller sees it and that the next call for the key is made anew.
+   *
+   * @param failure {@link Throwable} thrown by the call.
+   * @throws Exception if the test thread is interrupted.
+   */
+  private static void doTestFailure(Throwable failure) throws Exception {
+
+    SudokuMetrics metrics = new SudokuMetrics();
+
+    SudokuSingleFlight singleFlight = new SudokuSingleFlight(metrics);
+
+    CountDownLatch release = new CountDownLatch(1);
+
+    List<Future<SudokuResult>> futures = doStart(singleFlight, metrics, () -> {
+
+      doAwait(release);
+
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+
+      throw (RuntimeException) failure;
+    });
+
+    release.countDown();
+
+    for (Future<SudokuResult> future : futures) {
+
+      try {
+
+        future.get();
+
+        fail("call did not fail");
+
+      } catch (ExecutionException e) {
+
+        Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+
+        assertSame(failure, cause);
+      }
+    }
+
+    assertEquals(0, singleFlight.getInFlightCount());
+
+    SudokuResult result = new SudokuResult(SudokuNative.CONSTANT_RESULT_OK, "", 1);
+
+    assertSame(result, singleFlight.doCall(CONSTANT_KEY, () -> result));
+  }
+
+  /**
+   * Method starts {@value CONSTANT_CALLERS} callers of call and returns once
+   * all but the first are waiting for it.
+   *
+   * @param singleFlight {@link SudokuSingleFlight} tested.
+   * @param metrics {@link SudokuMetrics} counting the waiting callers.
+   * @param call {@link java.util.function.Supplier} making the call.
+   * @return {@link List} of the futures of the callers.
+   * @throws InterruptedException if the test thread is interrupted.
+   */
+  private static List<Future<SudokuResult>> doStart(SudokuSingleFlight singleFlight, SudokuMetrics metrics,
+      java.util.function.Supplier<SudokuResult> call) throws InterruptedException {
+
+    ExecutorService executor = Executors.newFixedThreadPool(CONSTANT_CALLERS);
+
+    List<Future<SudokuResult>> futures = new ArrayList<>();
+
+    CountDownLatch started = new CountDownLatch(1);
+
+    futures.add(executor.submit(() -> singleFlight.doCall(CONSTANT_KEY, () -> {
+
+      started.countDown();
+
+      return call.get();
+    })));
+
+    started.await();
+
+    for (int i = 1; i < CONSTANT_CALLERS; ++i) {
+      futures.add(executor.submit(() -> singleFlight.doCall(CONSTANT_KEY, call)));
+    }
+
+    while (metrics.getValue(SudokuSingleFlight.CONSTANT_METRIC_COALESCED) < CONSTANT_CALLERS - 1) {
+      Thread.sleep(1);
+    }
+
+    executor.shutdown();
+
+    return futures;
+  }
+
+  /**
+   * Method waits for latch, failing the call if interrupted.
+   *
+   * @param latch {@link CountDownLatch} released by the test.
+   */
+  private static void doAwait(CountDownLatch latch) {
+
+    try {
+
+      latch.await();
+
+    } catch (InterruptedException e) {
+
+      Thread.currentThread().interrupt();
+
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Constant for the number of concurrent callers.
+   */
+  final public static int CONSTANT_CALLERS = 8;
+
+  /**
+   * Constant for the key shared by the callers.
+   */
+  final public static String CONSTANT_KEY = "solution?0 0 0";
+
+  /**
+   * Constant for the maximum run time of a test in ms.
+   */
+  final public static long CONSTANT_TEST_TIMEOUT_MS = 10000;
+}
@@ -0,0 +1,217 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests that {@link SudokuSolutionStore} returns stored results
+ * after it is closed and reopened, after a torn write and after its index is
+ * lost.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuSolutionStoreTest {
+
+  /**
+   * Method tests that results written before a close are returned after the
+   * store is reopened, that duplicates and transient results are not written
+   * and that the store keeps growing after the reopen.
+   */
+  @Test
+  public void testReopen() throws IOException {
+
+    File directory = _folder.newFolder();
+
+    Map<String, SudokuResult> stored = getResults(0, CONSTANT_RESULTS);
+
+    try (SudokuSolutionStore store = new SudokuSolutionStore(directory, CONSTANT_CAPACITY, new SudokuMetrics())) {
+
+      for (Map.Entry<String, SudokuResult> entry : stored.entrySet()) {
+
+        store.doPutAsync(entry.getKey(), entry.getValue());
+
+        store.doPutAsync(entry.getKey(), entry.getValue());
+      }
+
+      store.doPutAsync(CONSTANT_TIMED_OUT, new SudokuResult(SudokuNative.CONSTANT_RESULT_TIMEOUT, "", 3));
+    }
+
+    try (SudokuSolutionStore store = new SudokuSolutionStore(directory, CONSTANT_CAPACITY, new SudokuMetrics())) {
+
+      assertEquals(stored.size(), store.getRecordCount());
+
+      doCheckStore(store, stored);
+
+      assertNull(store.get(CONSTANT_TIMED_OUT));
+
+      Map<String, SudokuResult> added = getResults(CONSTANT_RESULTS, CONSTANT_RESULTS * 2);
+
+      for (Map.Entry<String, SudokuResult> entry : added.entrySet()) {
+        store.doPutAsync(entry.getKey(), entry.getValue());
+      }
+
+      stored.putAll(added);
+    }
+
+    try (SudokuSolutionStore store = new SudokuSolutionStore(directory, CONSTANT_CAPACITY, new SudokuMetrics())) {
+
+      assertEquals(stored.size(), store.getRecordCount());
+
+      doCheckStore(store, stored);
+    }
+  }
+
+  /**
+   * Method tests that a partly written record left by a crash is dropped on
+   * reopen and that the complete records are still returned.
+   */
+  @Test
+  public void testReopenAfterTornWrite() throws IOException {
+
+    File directory = _folder.newFolder();
+
+    Map<String, SudokuResult> stored = getResults(0, CONSTANT_RESULTS);
+
+    try (SudokuSolutionStore store = new SudokuSolutionStore(directory, CONSTANT_CAPACITY, new SudokuMetrics())) {
+
+      for (Map.Entry<String, SudokuResult> entry : stored.entrySet()) {
+        store.doPutAsync(entry.getKey(), entry.getValue());
+      }
+    }
+
+    Path data = new File(directory, SudokuSolutionStore.CONSTANT_FILE_DATA).toPath();
+
+    Files.write(data, new byte[SudokuSolutionStore.CONSTANT_RECORD_SIZE / 2], StandardOpenOption.APPEND);
+
+    try (SudokuSolutionStore store = new SudokuSolutionStore(directory, CONSTANT_CAPACITY, new SudokuMetrics())) {
+
+      assertEquals(stored.size(), store.getRecordCount());
+
+      doCheckStore(store, stored);
+    }
+
+    assertEquals((long) stored.size() * SudokuSolutionStore.CONSTANT_RECORD_SIZE, Files.size(data));
+  }
+
+  /**
+   * Method tests that the index is rebuilt from the data file when it is lost
+   * or was built for another capacity.
+   */
+  @Test
+  public void testRebuildIndex() throws IOException {
+
+    File directory = _folder.newFolder();
+
+    Map<String, SudokuResult> stored = getResults(0, CONSTANT_RESULTS);
+
+    try (SudokuSolutionStore store = new SudokuSolutionStore(directory, CONSTANT_CAPACITY, new SudokuMetrics())) {
+
+      for (Map.Entry<String, SudokuResult> entry : stored.entrySet()) {
+        store.doPutAsync(entry.getKey(), entry.getValue());
+      }
+    }
+
+    Files.delete(new File(directory, SudokuSolutionStore.CONSTANT_FILE_INDEX).toPath());
+
+    try (SudokuSolutionStore store = new SudokuSolutionStore(directory, CONSTANT_CAPACITY, new SudokuMetrics())) {
+      doCheckStore(store, stored);
+    }
+
+    try (SudokuSolutionStore store = new SudokuSolutionStore(directory, CONSTANT_CAPACITY * 4, new SudokuMetrics())) {
+      doCheckStore(store, stored);
+    }
+  }
+
+  /**
+   * Method checks that store returns the code and data of each stored result
+   * with runtime -1.
+   *
+   * @param store {@link SudokuSolutionStore} to be checked.
+   * @param stored {@link Map} of the results stored, keyed by position.
+   */
+  private static void doCheckStore(SudokuSolutionStore store, Map<String, SudokuResult> stored) {
+
+    for (Map.Entry<String, SudokuResult> entry : stored.entrySet()) {
+
+      SudokuResult result = store.get(entry.getKey());
+
+      assertNotNull("missing " + entry.getKey(), result);
+
+      assertEquals(entry.getValue().getCode(), result.getCode());
+
+      assertEquals(entry.getValue().getData(), result.getData());
+
+      assertEquals(-1, result.getRuntime());
+    }
+  }
+
+  /**
+   * Method returns results for positions generated from the X-Sudoku solution,
+   * every fifth of them unsolvable.
+   *
+   * @param from number of the first position.
+   * @param to number after the last position.
+   * @return {@link Map} of results keyed by position, in order.
+   */
+  private static Map<String, SudokuResult> getResults(int from, int to) {
+
+    Map<String, SudokuResult> results = new LinkedHashMap<>();
+
+    int[] cells = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    for (int i = 0; i < cells.length; ++i) {
+      cells[i] = SudokuVariantTest.CONSTANT_X_SOLUTION.charAt(i) - '0';
+    }
+
+    String solution = SudokuBoard.getSolutionXml(cells);
+
+    for (int n = from; n < to; ++n) {
+
+      char[] digits = SudokuVariantTest.CONSTANT_X_SOLUTION.toCharArray();
+
+      for (int i = 0; i < digits.length; ++i) {
+
+        if (((n >> (i % 16)) & 1) == 0 ||
+            i / 16 == n % 5) {
+          digits[i] = '0';
+        }
+      }
+
+      results.put(SudokuBoard.getCanonicalPosition(new String(digits)), n % 5 == 0 ?
+          new SudokuResult(SudokuNative.CONSTANT_RESULT_NO_SOLUTION, "", 3) :
+          new SudokuResult(SudokuNative.CONSTANT_RESULT_OK, solution, 3));
+    }
+
+    return results;
+  }
+
+  /**
+   * temporary folder holding the store directories.
+   */
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  /**
+   * Constant for the number of index slots of the stores.
+   */
+  final public static int CONSTANT_CAPACITY = 1024;
+
+  /**
+   * Constant for the number of results written per round.
+   */
+  final public static int CONSTANT_RESULTS = 200;
+
+  /**
+   * Constant for a position with a transient result.
+   */
+  final public static String CONSTANT_TIMED_OUT =
+      SudokuBoard.getCanonicalPosition(SudokuVariantTest.CONSTANT_WINDOKU_PUZZLE);
+}
@@ -0,0 +1,51 @@
+package cc.tools.sudoku.server;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests the singles route of {@link SudokuSolver} against its
+ * full solve.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuSolverTest {
+
+  /**
+   * Method tests that positions solved by singles are answered with the data
+   * of the full solve and that the others are left to the engines.
+   */
+  @Test
+  public void testResultBySingles() {
+
+    for (int i = 0; i < SudokuRaterTest.CONSTANT_POSITIONS.length; ++i) {
+
+      String position = SudokuBoard.getCanonicalPosition(SudokuRaterTest.CONSTANT_POSITIONS[i]);
+
+      SudokuResult singles = SudokuSolver.getResultBySingles(position);
+
+      if (!SudokuRaterTest.CONSTANT_RATINGS[i].contains("single")) {
+
+        assertNull(position, singles);
+
+        continue;
+      }
+
+      assertNotNull(position, singles);
+
+      assertEquals(SudokuSolver.getResult(position, () -> false, CONSTANT_TIMEOUT_MS).getData(), singles.getData());
+    }
+
+    assertNull(SudokuSolver.getResultBySingles("1 2 3"));
+
+    assertNull(SudokuSolver.getResultBySingles(SudokuBoard.getCanonicalPosition(
+        SudokuVariantTest.CONSTANT_KILLER_PUZZLE)));
+  }
+
+  /**
+   * Constant for the maximum solve time in ms.
+   */
+  final public static long CONSTANT_TIMEOUT_MS = 30000;
+}
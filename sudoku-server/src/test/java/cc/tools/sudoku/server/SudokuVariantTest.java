@@ -0,0 +1,299 @@
+package cc.tools.sudoku.server;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests the variant constraints of {@link SudokuVariant} solved by
+ * {@link SudokuSolver}. Each puzzle has a unique solution, which is compared
+ * with the solver's and checked against the rules of its variant.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuVariantTest {
+
+  /**
+   * Method tests that an X-Sudoku is solved with distinct digits on both diagonals.
+   */
+  @Test
+  public void testSolveX() {
+
+    int[] cells = getSolution(CONSTANT_X_PUZZLE, SudokuVariant.getVariant(SudokuVariant.CONSTANT_CONSTRAINT_X, ""));
+
+    assertArrayEquals(getCells(CONSTANT_X_SOLUTION), cells);
+
+    doCheckClassic(CONSTANT_X_PUZZLE, cells);
+
+    int[] diagonal = new int[9];
+
+    int[] antiDiagonal = new int[9];
+
+    for (int i = 0; i < 9; ++i) {
+
+      diagonal[i] = i * 10;
+
+      antiDiagonal[i] = i * 8 + 8;
+    }
+
+    doCheckUnit(cells, diagonal);
+
+    doCheckUnit(cells, antiDiagonal);
+  }
+
+  /**
+   * Method tests that a windoku is solved with distinct digits in the four
+   * extra boxes.
+   */
+  @Test
+  public void testSolveWindoku() {
+
+    int[] cells = getSolution(CONSTANT_WINDOKU_PUZZLE,
+        SudokuVariant.getVariant(SudokuVariant.CONSTANT_CONSTRAINT_WINDOKU, ""));
+
+    assertArrayEquals(getCells(CONSTANT_WINDOKU_SOLUTION), cells);
+
+    doCheckClassic(CONSTANT_WINDOKU_PUZZLE, cells);
+
+    for (int top : new int[] { 1, 5 }) {
+
+      for (int left : new int[] { 1, 5 }) {
+
+        int[] box = new int[9];
+
+        for (int i = 0; i < 9; ++i) {
+          box[i] = (top + i / 3) * 9 + left + i % 3;
+        }
+
+        doCheckUnit(cells, box);
+      }
+    }
+  }
+
+  /**
+   * Method tests that a killer Sudoku is solved with distinct digits adding up
+   * to the sum of each cage.
+   */
+  @Test
+  public void testSolveKiller() {
+
+    int[] cells = getSolution(CONSTANT_KILLER_PUZZLE,
+        SudokuVariant.getVariant(SudokuVariant.CONSTANT_CONSTRAINT_KILLER, CONSTANT_KILLER_CAGES));
+
+    assertArrayEquals(getCells(CONSTANT_KILLER_SOLUTION), cells);
+
+    doCheckClassic(CONSTANT_KILLER_PUZZLE, cells);
+
+    for (String cage : CONSTANT_KILLER_CAGES.split(",")) {
+
+      String[] fields = cage.split("[:.]");
+
+      int sum = 0;
+
+      int used = 0;
+
+      for (int i = 1; i < fields.length; ++i) {
+
+        int digit = cells[Integer.parseInt(fields[i])];
+
+        assertEquals("digit repeated in cage " + cage, 0, used & (1 << digit));
+
+        used |= 1 << digit;
+
+        sum += digit;
+      }
+
+      assertEquals("sum of cage " + cage, Integer.parseInt(fields[0]), sum);
+    }
+  }
+
+  /**
+   * Method tests that variants combine and that the classic game is no variant.
+   */
+  @Test
+  public void testGetVariant() {
+
+    assertNull(SudokuVariant.getVariant("", ""));
+
+    assertNull(SudokuVariant.getVariant(SudokuVariant.CONSTANT_CONSTRAINT_CLASSIC, ""));
+
+    SudokuVariant variant = SudokuVariant.getVariant("windoku, X", "");
+
+    assertEquals("windoku,x", variant.getKey());
+
+    assertEquals(6, variant.getUnitCount());
+
+    assertEquals(variant.getKey(), SudokuVariant.getVariant("x,windoku", "").getKey());
+  }
+
+  /**
+   * Method tests that invalid cage definitions are refused.
+   */
+  @Test
+  public void testInvalidCages() {
+
+    String[] cages = {
+        "",
+        "10",
+        "10:",
+        "a:0.1",
+        "10:0.x",
+        "0:0.1",
+        "46:0.1.2.3.4.5.6.7.8",
+        "10:0.81",
+        "10:-1.0",
+        "10:0.1,5:1.2",
+        "45:0.1.2.3.4.5.6.7.8.9"
+    };
+
+    for (String cage : cages) {
+
+      try {
+
+        SudokuVariant.getVariant(SudokuVariant.CONSTANT_CONSTRAINT_KILLER, cage);
+
+        fail("cages '" + cage + "' accepted");
+
+      } catch (IllegalArgumentException e) {
+        // expected.
+      }
+    }
+  }
+
+  /**
+   * Method tests that unknown variant names are refused.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownVariant() {
+    SudokuVariant.getVariant("x,jigsaw", "");
+  }
+
+  /**
+   * Method checks that cells keep the clues of puzzle and hold every digit
+   * once in each row, column and box.
+   *
+   * @param puzzle String of 81 digits, 0 for empty cells.
+   * @param cells solved cells.
+   */
+  private static void doCheckClassic(String puzzle, int[] cells) {
+
+    int[] clues = getCells(puzzle);
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+
+      if (clues[i] != 0) {
+        assertEquals("clue of cell " + i, clues[i], cells[i]);
+      }
+    }
+
+    for (int[] unit : SudokuSolver.CONSTANT_UNITS) {
+      doCheckUnit(cells, unit);
+    }
+  }
+
+  /**
+   * Method checks that the cells of unit hold the digits 1 to 9.
+   *
+   * @param cells solved cells.
+   * @param unit indexes of the 9 cells of a unit.
+   */
+  private static void doCheckUnit(int[] cells, int[] unit) {
+
+    int used = 0;
+
+    for (int cell : unit) {
+
+      assertTrue("cell " + cell + " empty", cells[cell] >= 1 && cells[cell] <= 9);
+
+      used |= 1 << cells[cell];
+    }
+
+    assertEquals("digits of unit " + java.util.Arrays.toString(unit), SudokuSolver.CONSTANT_DIGITS_MASK, used);
+  }
+
+  /**
+   * Method returns the cells of a String of 81 digits.
+   *
+   * @param digits String of 81 digits, 0 for empty cells.
+   * @return int array of 81 cells.
+   */
+  private static int[] getCells(String digits) {
+
+    int[] cells = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    for (int i = 0; i < cells.length; ++i) {
+      cells[i] = digits.charAt(i) - '0';
+    }
+
+    return cells;
+  }
+
+  /**
+   * Method solves puzzle under variant and returns the solved cells.
+   *
+   * @param puzzle String of 81 digits, 0 for empty cells.
+   * @param variant {@link SudokuVariant} to be solved.
+   * @return int array of 81 solved cells.
+   */
+  private static int[] getSolution(String puzzle, SudokuVariant variant) {
+
+    SudokuResult result = SudokuSolver.getResult(SudokuBoard.getCanonicalPosition(puzzle), variant,
+        () -> false, CONSTANT_TIMEOUT_MS, null);
+
+    assertEquals(SudokuNative.CONSTANT_RESULT_OK, result.getCode());
+
+    return SudokuBoard.getCellsFromSolutionXml(result.getData());
+  }
+
+  /**
+   * Constant for the cages of the killer puzzle, runs of 2 or 3 cells along
+   * each row.
+   */
+  final public static String CONSTANT_KILLER_CAGES =
+      "12:0.1.2,13:3.4,17:5.6,3:7.8,13:9.10,12:11.12.13,8:14.15,12:16.17,10:18.19,11:20.21," +
+      "11:22.23.24,13:25.26,13:27.28,16:29.30,7:31.32,9:33.34.35,12:36.37.38,13:39.40,10:41.42," +
+      "10:43.44,8:45.46,14:47.48.49,12:50.51,11:52.53,15:54.55,6:56.57,12:58.59.60,12:61.62," +
+      "10:63.64,11:65.66,10:67.68,14:69.70.71,12:72.73.74,10:75.76,7:77.78,16:79.80";
+
+  /**
+   * Constant for a killer puzzle with a unique solution.
+   */
+  final public static String CONSTANT_KILLER_PUZZLE =
+      "500000000000000008000000000000000000000000000010000006000000000000000000000000000";
+
+  /**
+   * Constant for the solution of the killer puzzle.
+   */
+  final public static String CONSTANT_KILLER_SOLUTION =
+      "534678912672195348198342567859761423426853791713924856961537284287419635345286179";
+
+  /**
+   * Constant for the maximum solve time in ms.
+   */
+  final public static long CONSTANT_TIMEOUT_MS = 30000;
+
+  /**
+   * Constant for a windoku puzzle with a unique solution.
+   */
+  final public static String CONSTANT_WINDOKU_PUZZLE =
+      "000000600000000000000100245020000050700020000010050000030064080064001000090000000";
+
+  /**
+   * Constant for the solution of the windoku puzzle.
+   */
+  final public static String CONSTANT_WINDOKU_SOLUTION =
+      "381245679245679138679138245923816754756423891418957362132564987864791523597382416";
+
+  /**
+   * Constant for an X-Sudoku puzzle with a unique solution.
+   */
+  final public static String CONSTANT_X_PUZZLE =
+      "000000600045600100000008040007500000000000020100000004000080050050900080002000096";
+
+  /**
+   * Constant for the solution of the X-Sudoku puzzle.
+   */
+  final public static String CONSTANT_X_SOLUTION =
+      "381245679245679138679138245927564813564813927138792564496381752753926481812457396";
+}
@@ -0,0 +1,185 @@
+package cc.tools.sudoku.server;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests that {@link SudokuVerifier} marks changed clues, conflicts
+ * and wrong digits of a board, and nothing on a correct one.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuVerifierTest {
+
+  /**
+   * Method tests that the solution of a position passes every check.
+   */
+  @Test
+  public void testSolved() {
+
+    int[] cells = getCells();
+
+    int[] solution = getSolution(cells);
+
+    int[] marks = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    assertEquals(0, SudokuVerifier.doCheckClues(cells, solution, marks));
+
+    assertEquals(0, SudokuVerifier.doCheckConflicts(solution, marks));
+
+    assertEquals(0, SudokuVerifier.doCheckSolution(solution, solution, marks));
+
+    assertTrue(SudokuVerifier.isComplete(solution));
+
+    assertEquals(".".repeat(SudokuBoard.CONSTANT_CELL_COUNT), SudokuVerifier.getMarksLine(marks));
+  }
+
+  /**
+   * Method tests that empty cells are neither conflicts nor wrong and that a
+   * board with empty cells is not complete.
+   */
+  @Test
+  public void testEmptyCells() {
+
+    int[] cells = getCells();
+
+    int[] marks = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    assertEquals(0, SudokuVerifier.doCheckConflicts(cells, marks));
+
+    assertEquals(0, SudokuVerifier.doCheckSolution(cells, getSolution(cells), marks));
+
+    assertFalse(SudokuVerifier.isComplete(cells));
+
+    assertEquals(".".repeat(SudokuBoard.CONSTANT_CELL_COUNT), SudokuVerifier.getMarksLine(marks));
+  }
+
+  /**
+   * Method tests that a changed clue is marked and takes precedence over the
+   * other marks of its cell.
+   */
+  @Test
+  public void testChangedClue() {
+
+    int[] cells = getCells();
+
+    int[] board = getSolution(cells);
+
+    int clue = getFirstCell(cells, true);
+
+    board[clue] = board[clue] % 9 + 1;
+
+    int[] marks = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    assertEquals(1, SudokuVerifier.doCheckClues(cells, board, marks));
+
+    assertTrue(SudokuVerifier.doCheckConflicts(board, marks) > 0);
+
+    assertEquals(1, SudokuVerifier.doCheckSolution(board, getSolution(cells), marks));
+
+    assertEquals('c', SudokuVerifier.getMarksLine(marks).charAt(clue));
+  }
+
+  /**
+   * Method tests that both cells holding a repeated digit are marked, each
+   * counted once even if repeated in several units.
+   */
+  @Test
+  public void testConflicts() {
+
+    int[] cells = getCells();
+
+    int[] board = getSolution(cells);
+
+    int cell = getFirstCell(cells, false);
+
+    int other = cell % 9 == 0 ? cell + 1 : cell - 1;
+
+    board[cell] = board[other];
+
+    int[] marks = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    int count = SudokuVerifier.doCheckConflicts(board, marks);
+
+    String line = SudokuVerifier.getMarksLine(marks);
+
+    assertEquals('x', line.charAt(cell));
+
+    assertEquals('x', line.charAt(other));
+
+    assertEquals(line.replace(".", "").length(), count);
+
+    assertEquals(count, SudokuVerifier.doCheckConflicts(board, new int[SudokuBoard.CONSTANT_CELL_COUNT]));
+
+    assertEquals(0, SudokuVerifier.doCheckConflicts(board, marks));
+  }
+
+  /**
+   * Method tests that a filled digit differing from the solution is marked
+   * wrong even without a conflict.
+   */
+  @Test
+  public void testWrong() {
+
+    int[] cells = getCells();
+
+    int[] solution = getSolution(cells);
+
+    int[] board = cells.clone();
+
+    int cell = getFirstCell(cells, false);
+
+    board[cell] = solution[cell] % 9 + 1;
+
+    int[] marks = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+    assertEquals(1, SudokuVerifier.doCheckSolution(board, solution, marks));
+
+    assertEquals('w', SudokuVerifier.getMarksLine(marks).charAt(cell));
+  }
+
+  /**
+   * Method returns the cells of the first classic test position.
+   *
+   * @return int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell values.
+   */
+  private static int[] getCells() {
+    return SudokuBoard.getCellsFromPosition(SudokuBoard.getCanonicalPosition(SudokuRaterTest.CONSTANT_POSITIONS[0]));
+  }
+
+  /**
+   * Method returns the index of the first clue or empty cell of cells.
+   *
+   * @param cells int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell values.
+   * @param isClue true for the first clue, false for the first empty cell.
+   * @return cell index.
+   */
+  private static int getFirstCell(int[] cells, boolean isClue) {
+
+    for (int i = 0; i < cells.length; ++i) {
+
+      if ((cells[i] != 0) == isClue) {
+        return i;
+      }
+    }
+
+    throw new IllegalStateException("no such cell");
+  }
+
+  /**
+   * Method returns the solution of cells found by the Java engine.
+   *
+   * @param cells int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} cell values.
+   * @return int array of {@value SudokuBoard#CONSTANT_CELL_COUNT} solved cell values.
+   */
+  private static int[] getSolution(int[] cells) {
+
+    SudokuSolver solver = new SudokuSolver(cells.clone(), null);
+
+    assertEquals(SudokuNative.CONSTANT_RESULT_OK, solver.doSolve(() -> false));
+
+    return solver.getCells();
+  }
+}
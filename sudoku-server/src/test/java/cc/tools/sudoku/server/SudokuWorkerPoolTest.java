@@ -0,0 +1,390 @@
+package cc.tools.sudoku.server;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * This class tests {@link SudokuWorkerPool} against worker processes speaking
+ * the {@link SudokuWorker} protocol, solved by the Java engine so that no
+ * Sudoku-Lib is needed. Commands sent as positions make a worker misbehave.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuWorkerPoolTest {
+
+  /**
+   * This class is the main class of the test worker processes.
+   */
+  public static class TestWorker {
+
+    /**
+     * Method runs the test worker until standard input is closed. Positions
+     * are solved by the Java engine; the commands {@value CONSTANT_COMMAND_PID},
+     * {@value CONSTANT_COMMAND_EXIT}, {@value CONSTANT_COMMAND_HANG} and
+     * {@value CONSTANT_COMMAND_SLOW} answer with the process id, exit, never
+     * answer and answer after a delay.
+     *
+     * @param args not used.
+     * @throws Exception if the pipes fail or the worker is interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+
+      DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+
+      DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+
+      out.writeInt(SudokuWorker.CONSTANT_MAGIC);
+      out.writeByte(1);
+      out.flush();
+
+      int[] function = { 0 };
+
+      while (true) {
+
+        int id;
+
+        try {
+
+          id = in.readInt();
+
+        } catch (EOFException e) {
+          return;
+        }
+
+        String position = SudokuWorker.doReadRequest(in, function);
+
+        SudokuResult result;
+
+        if (position.equals(CONSTANT_COMMAND_PID)) {
+
+          result = new SudokuResult(SudokuNative.CONSTANT_RESULT_OK, Long.toString(ProcessHandle.current().pid()), 0);
+
+        } else if (position.equals(CONSTANT_COMMAND_EXIT)) {
+
+          System.exit(1);
+
+          return;
+
+        } else if (position.equals(CONSTANT_COMMAND_HANG)) {
+
+          Thread.sleep(Long.MAX_VALUE);
+
+          return;
+
+        } else if (position.equals(CONSTANT_COMMAND_SLOW)) {
+
+          Thread.sleep(CONSTANT_SLOW_MS);
+
+          result = new SudokuResult(SudokuNative.CONSTANT_RESULT_OK, "", (int) CONSTANT_SLOW_MS);
+
+        } else if (function[0] == SudokuNative.CONSTANT_FUNCTION_MOVES) {
+
+          result = SudokuSolver.getMovesResult(position, null);
+
+        } else {
+
+          result = SudokuSolver.getResult(position, () -> false, CONSTANT_TIMEOUT_MS);
+        }
+
+        SudokuWorker.doWriteResult(out, id, result);
+
+        if (in.available() == 0) {
+          out.flush();
+        }
+      }
+    }
+  }
+
+  /**
+   * Method tests that single and batched calls are answered by the workers.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testCall() throws InterruptedException {
+
+    SudokuWorkerPool pool = getPool(2, 4, CONSTANT_TIMEOUT_MS);
+
+    try {
+
+      doAwaitLive(pool, 2);
+
+      String[] positions = new String[SudokuRaterTest.CONSTANT_POSITIONS.length];
+
+      for (int i = 0; i < positions.length; ++i) {
+
+        positions[i] = SudokuBoard.getCanonicalPosition(SudokuRaterTest.CONSTANT_POSITIONS[i]);
+
+        SudokuResult expected = SudokuSolver.getResult(positions[i], () -> false, CONSTANT_TIMEOUT_MS);
+
+        SudokuResult result = pool.doCall(SudokuNative.CONSTANT_FUNCTION_SOLUTION, positions[i]);
+
+        assertEquals(expected.getCode(), result.getCode());
+
+        assertEquals(expected.getData(), result.getData());
+
+        assertEquals(SudokuSolver.getMovesResult(positions[i], null).getData(),
+            pool.doCall(SudokuNative.CONSTANT_FUNCTION_MOVES, positions[i]).getData());
+      }
+
+      SudokuResult[] results = pool.doCall(SudokuNative.CONSTANT_FUNCTION_SOLUTION, positions);
+
+      for (int i = 0; i < positions.length; ++i) {
+        assertEquals(SudokuSolver.getResult(positions[i], () -> false, CONSTANT_TIMEOUT_MS).getData(),
+            results[i].getData());
+      }
+
+    } finally {
+      pool.close();
+    }
+  }
+
+  /**
+   * Method tests that a call left unanswered times out, that its worker is
+   * restarted as a new process and that the restarted worker answers.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testTimeoutRestart() throws InterruptedException {
+
+    SudokuMetrics metrics = new SudokuMetrics();
+
+    SudokuWorkerPool pool = new SudokuWorkerPool(1, 4, CONSTANT_SHORT_TIMEOUT_MS, getCommand(), metrics);
+
+    try {
+
+      doAwaitLive(pool, 1);
+
+      String pid = pool.doCall(SudokuNative.CONSTANT_FUNCTION_SOLUTION, CONSTANT_COMMAND_PID).getData();
+
+      assertEquals(SudokuNative.CONSTANT_RESULT_TIMEOUT,
+          pool.doCall(SudokuNative.CONSTANT_FUNCTION_SOLUTION, CONSTANT_COMMAND_HANG).getCode());
+
+      assertEquals(1, metrics.getValue(SudokuWorkerPool.CONSTANT_METRIC_TIMEOUT));
+
+      assertEquals(1, metrics.getValue(SudokuWorkerPool.CONSTANT_METRIC_RESTARTS));
+
+      doAwaitLive(pool, 1);
+
+      SudokuResult result = pool.doCall(SudokuNative.CONSTANT_FUNCTION_SOLUTION, CONSTANT_COMMAND_PID);
+
+      assertEquals(SudokuNative.CONSTANT_RESULT_OK, result.getCode());
+
+      assertNotEquals(pid, result.getData());
+
+      assertEquals(1, metrics.getValue(SudokuWorkerPool.CONSTANT_METRIC_RESTARTS));
+
+    } finally {
+      pool.close();
+    }
+  }
+
+  /**
+   * Method tests that a worker which exits fails its pending calls and is
+   * restarted, and that a later timeout of a call answered by the failure
+   * does not fail the restarted worker.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testExitRestart() throws Exception {
+
+    SudokuMetrics metrics = new SudokuMetrics();
+
+    SudokuWorkerPool pool = new SudokuWorkerPool(1, 4, CONSTANT_SHORT_TIMEOUT_MS, getCommand(), metrics);
+
+    try {
+
+      doAwaitLive(pool, 1);
+
+      SudokuResult[] results = pool.doCall(SudokuNative.CONSTANT_FUNCTION_SOLUTION,
+          new String[] { CONSTANT_COMMAND_EXIT, CONSTANT_COMMAND_PID });
+
+      assertEquals(SudokuNative.CONSTANT_RESULT_INTERNAL_ERROR, results[0].getCode());
+
+      assertEquals(SudokuNative.CONSTANT_RESULT_INTERNAL_ERROR, results[1].getCode());
+
+      doAwaitLive(pool, 1);
+
+      String pid = pool.doCall(SudokuNative.CONSTANT_FUNCTION_SOLUTION, CONSTANT_COMMAND_PID).getData();
+
+      Thread.sleep(CONSTANT_SHORT_TIMEOUT_MS * 2);
+
+      assertEquals(pid, pool.doCall(SudokuNative.CONSTANT_FUNCTION_SOLUTION, CONSTANT_COMMAND_PID).getData());
+
+      assertEquals(0, metrics.getValue(SudokuWorkerPool.CONSTANT_METRIC_TIMEOUT));
+
+      assertEquals(1, metrics.getValue(SudokuWorkerPool.CONSTANT_METRIC_RESTARTS));
+
+    } finally {
+      pool.close();
+    }
+  }
+
+  /**
+   * Method tests that concurrent calls never exceed the pipeline depth of a
+   * worker: calls beyond it are answered busy.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testPipelineDepth() throws Exception {
+
+    SudokuMetrics metrics = new SudokuMetrics();
+
+    SudokuWorkerPool pool = new SudokuWorkerPool(1, CONSTANT_DEPTH, CONSTANT_TIMEOUT_MS, getCommand(), metrics);
+
+    ExecutorService executor = Executors.newFixedThreadPool(CONSTANT_CALLERS);
+
+    try {
+
+      doAwaitLive(pool, 1);
+
+      CyclicBarrier barrier = new CyclicBarrier(CONSTANT_CALLERS);
+
+      List<Future<SudokuResult>> futures = new ArrayList<>();
+
+      for (int i = 0; i < CONSTANT_CALLERS; ++i) {
+
+        futures.add(executor.submit(() -> {
+
+          barrier.await();
+
+          return pool.doCall(SudokuNative.CONSTANT_FUNCTION_SOLUTION, CONSTANT_COMMAND_SLOW);
+        }));
+      }
+
+      int answered = 0;
+
+      for (Future<SudokuResult> future : futures) {
+
+        int code = future.get().getCode();
+
+        if (code == SudokuNative.CONSTANT_RESULT_OK) {
+          ++answered;
+        } else {
+          assertEquals(SudokuNative.CONSTANT_RESULT_BUSY, code);
+        }
+      }
+
+      assertEquals(CONSTANT_DEPTH, answered);
+
+      assertEquals(CONSTANT_CALLERS - CONSTANT_DEPTH, metrics.getValue(SudokuWorkerPool.CONSTANT_METRIC_BUSY));
+
+      assertEquals(SudokuNative.CONSTANT_RESULT_OK,
+          pool.doCall(SudokuNative.CONSTANT_FUNCTION_SOLUTION, CONSTANT_COMMAND_PID).getCode());
+
+    } finally {
+
+      executor.shutdownNow();
+
+      pool.close();
+    }
+  }
+
+  /**
+   * Method tests that calls are answered busy while no worker is live.
+   */
+  @Test(timeout = CONSTANT_TEST_TIMEOUT_MS)
+  public void testNoLiveWorker() {
+
+    SudokuWorkerPool pool = new SudokuWorkerPool(1, 4, CONSTANT_TIMEOUT_MS,
+        Arrays.asList(getCommand().get(0), "-version"), new SudokuMetrics());
+
+    try {
+
+      assertEquals(0, pool.getLiveCount());
+
+      assertEquals(SudokuNative.CONSTANT_RESULT_BUSY,
+          pool.doCall(SudokuNative.CONSTANT_FUNCTION_SOLUTION, CONSTANT_COMMAND_PID).getCode());
+
+    } finally {
+      pool.close();
+    }
+  }
+
+  /**
+   * Method waits until count workers of pool are live.
+   *
+   * @param pool {@link SudokuWorkerPool} started.
+   * @param count number of live workers awaited.
+   * @throws InterruptedException if the test thread is interrupted.
+   */
+  private static void doAwaitLive(SudokuWorkerPool pool, int count) throws InterruptedException {
+
+    while (pool.getLiveCount() < count) {
+      Thread.sleep(10);
+    }
+  }
+
+  /**
+   * Method returns the command line of a test worker process.
+   *
+   * @return {@link List} of command line arguments.
+   */
+  private static List<String> getCommand() {
+    return SudokuWorkerPool.getCommand(System.getProperty("java.class.path"), TestWorker.class.getName());
+  }
+
+  /**
+   * Method returns a pool of test workers.
+   *
+   * @param count number of workers.
+   * @param pipelineDepth maximum number of pending calls per worker.
+   * @param timeoutMs maximum time in ms to wait for a result.
+   * @return {@link SudokuWorkerPool} started.
+   */
+  private static SudokuWorkerPool getPool(int count, int pipelineDepth, int timeoutMs) {
+    return new SudokuWorkerPool(count, pipelineDepth, timeoutMs, getCommand(), new SudokuMetrics());
+  }
+
+  /**
+   * Constant for the number of concurrent callers.
+   */
+  final public static int CONSTANT_CALLERS = 16;
+
+  /**
+   * Command constant making a test worker exit.
+   */
+  final public static String CONSTANT_COMMAND_EXIT = "exit";
+
+  /**
+   * Command constant making a test worker never answer.
+   */
+  final public static String CONSTANT_COMMAND_HANG = "hang";
+
+  /**
+   * Command constant making a test worker answer with its process id.
+   */
+  final public static String CONSTANT_COMMAND_PID = "pid";
+
+  /**
+   * Command constant making a test worker answer after {@value CONSTANT_SLOW_MS}ms.
+   */
+  final public static String CONSTANT_COMMAND_SLOW = "slow";
+
+  /**
+   * Constant for the pipeline depth of the depth test.
+   */
+  final public static int CONSTANT_DEPTH = 2;
+
+  /**
+   * Constant for the short call timeout in ms.
+   */
+  final public static int CONSTANT_SHORT_TIMEOUT_MS = 1000;
+
+  /**
+   * Constant for the time in ms a slow call takes.
+   */
+  final public static long CONSTANT_SLOW_MS = 1000;
+
+  /**
+   * Constant for the maximum run time of a test in ms.
+   */
+  final public static long CONSTANT_TEST_TIMEOUT_MS = 60000;
+
+  /**
+   * Constant for the call timeout in ms.
+   */
+  final public static int CONSTANT_TIMEOUT_MS = 30000;
+}
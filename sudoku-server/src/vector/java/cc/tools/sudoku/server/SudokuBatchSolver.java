@@ -0,0 +1,475 @@
+package cc.tools.sudoku.server;
+
+import java.util.*;
+
+import jdk.incubator.vector.*;
+
+/**
+ * This class solves batches of independent positions, propagating singles on
+ * several boards per instruction with the incubating Vector API.
+ *
+ * Boards are solved in groups of {@link SudokuBatchSolver#CONSTANT_LANES},
+ * one board per vector lane. The group is held in structure-of-arrays form:
+ * for each cell the digits placed and the candidates of every board are
+ * adjacent, as are the digits used in each row, column and box, so a cell or
+ * unit of the whole group is loaded as one vector. Placing digits removes
+ * them from the candidates of the cell's 20 peers. Naked and hidden singles
+ * are found with the same bitmask steps as {@link SudokuSolver#doPropagate()},
+ * lane by lane under masks, until no board changes. Boards left with empty cells
+ * are finished one at a time by a {@link SudokuSolver} search from their
+ * propagated cells.
+ *
+ * The class needs the 'jdk.incubator.vector' module, so it is compiled in its
+ * own source set with the module added and loaded by name through
+ * {@link SudokuJobs#getBatchSolver(long)} once the module is found at run-time.
+ *
+ * @author cc
+ * @version %I%, %G%
+ * @since 0.1
+ */
+public class SudokuBatchSolver implements SudokuMicroBatcher.Engine {
+
+  /**
+   * Constructor for {@link SudokuBatchSolver}.
+   *
+   * @param timeoutMs maximum duration in ms of the search of each board left
+   *                  unsolved by propagation.
+   */
+  public SudokuBatchSolver(long timeoutMs) {
+    _timeoutMs = timeoutMs;
+  }
+
+  /**
+   * Method solves positions, as {@link SudokuBatchSolver#getResults(String[])}.
+   *
+   * @param positions strings containing canonical sudoku positions.
+   * @return array of {@link SudokuResult} objects, one per position.
+   */
+  public SudokuResult[] doCall(String[] positions) {
+    return getResults(positions);
+  }
+
+  /**
+   * Method places the digits marked in place on the lanes of cell, removing
+   * them from the candidates of its peers.
+   *
+   * @param bits placed digit bit per cell and lane.
+   * @param candidates candidate digits per cell and lane, 0 for filled cells.
+   * @param used used digits per unit and lane.
+   * @param cell cell index.
+   * @param place digit bit per lane, 0 where nothing is placed.
+   */
+  private static void doPlace(int[] bits, int[] candidates, int[] used, int cell, IntVector place) {
+
+    IntVector.fromArray(CONSTANT_SPECIES, bits, cell * CONSTANT_LANES)
+        .or(place)
+        .intoArray(bits, cell * CONSTANT_LANES);
+
+    IntVector.fromArray(CONSTANT_SPECIES, candidates, cell * CONSTANT_LANES)
+        .blend(0, place.compare(VectorOperators.NE, 0))
+        .intoArray(candidates, cell * CONSTANT_LANES);
+
+    for (int peer : CONSTANT_PEERS[cell]) {
+
+      IntVector.fromArray(CONSTANT_SPECIES, candidates, peer * CONSTANT_LANES)
+          .lanewise(VectorOperators.AND_NOT, place)
+          .intoArray(candidates, peer * CONSTANT_LANES);
+    }
+
+    for (int unit : CONSTANT_CELL_UNITS[cell]) {
+
+      IntVector.fromArray(CONSTANT_SPECIES, used, unit * CONSTANT_LANES)
+          .or(place)
+          .intoArray(used, unit * CONSTANT_LANES);
+    }
+  }
+
+  /**
+   * Method propagates naked and hidden singles on every lane until no lane
+   * changes. Vectors are not carried from one loop iteration to the next, so
+   * that they are kept in registers rather than boxed.
+   *
+   * @param bits placed digit bit per cell and lane.
+   * @param candidates candidate digits per cell and lane, 0 for filled cells.
+   * @param used used digits per unit and lane.
+   * @param failed -1 on each lane which reached a contradiction, 0 otherwise.
+   */
+  private static void doPropagate(int[] bits, int[] candidates, int[] used, int[] failed) {
+
+    boolean isChanged = true;
+
+    while (isChanged) {
+
+      isChanged = false;
+
+      for (int cell = 0; cell < SudokuBoard.CONSTANT_CELL_COUNT; ++cell) {
+
+        IntVector mask = IntVector.fromArray(CONSTANT_SPECIES, candidates, cell * CONSTANT_LANES);
+
+        VectorMask<Integer> empty = IntVector.fromArray(CONSTANT_SPECIES, bits, cell * CONSTANT_LANES)
+            .compare(VectorOperators.EQ, 0);
+
+        VectorMask<Integer> failing = mask.compare(VectorOperators.EQ, 0).and(empty);
+
+        IntVector state = IntVector.fromArray(CONSTANT_SPECIES, failed, 0).blend(-1, failing);
+
+        state.intoArray(failed, 0);
+
+        VectorMask<Integer> single = mask.and(mask.sub(1))
+            .compare(VectorOperators.EQ, 0)
+            .and(mask.compare(VectorOperators.NE, 0))
+            .and(state.compare(VectorOperators.EQ, 0));
+
+        if (single.anyTrue()) {
+
+          doPlace(bits, candidates, used, cell, mask.blend(0, single.not()));
+
+          isChanged = true;
+        }
+      }
+
+      for (int unit = 0; unit < SudokuSolver.CONSTANT_UNITS.length; ++unit) {
+
+        isChanged |= doPropagateHidden(bits, candidates, used, failed, unit);
+      }
+    }
+  }
+
+  /**
+   * Method places the hidden singles of unit on every lane.
+   *
+   * @param bits placed digit bit per cell and lane.
+   * @param candidates candidate digits per cell and lane, 0 for filled cells.
+   * @param used used digits per unit and lane.
+   * @param failed -1 on each lane which reached a contradiction, 0 otherwise.
+   * @param unit unit index.
+   * @return boolean true if a digit was placed, false otherwise.
+   */
+  private static boolean doPropagateHidden(int[] bits, int[] candidates, int[] used, int[] failed, int unit) {
+
+    int[] cells = SudokuSolver.CONSTANT_UNITS[unit];
+
+    IntVector m0 = IntVector.fromArray(CONSTANT_SPECIES, candidates, cells[0] * CONSTANT_LANES);
+    IntVector m1 = IntVector.fromArray(CONSTANT_SPECIES, candidates, cells[1] * CONSTANT_LANES);
+    IntVector m2 = IntVector.fromArray(CONSTANT_SPECIES, candidates, cells[2] * CONSTANT_LANES);
+    IntVector m3 = IntVector.fromArray(CONSTANT_SPECIES, candidates, cells[3] * CONSTANT_LANES);
+    IntVector m4 = IntVector.fromArray(CONSTANT_SPECIES, candidates, cells[4] * CONSTANT_LANES);
+    IntVector m5 = IntVector.fromArray(CONSTANT_SPECIES, candidates, cells[5] * CONSTANT_LANES);
+    IntVector m6 = IntVector.fromArray(CONSTANT_SPECIES, candidates, cells[6] * CONSTANT_LANES);
+    IntVector m7 = IntVector.fromArray(CONSTANT_SPECIES, candidates, cells[7] * CONSTANT_LANES);
+    IntVector m8 = IntVector.fromArray(CONSTANT_SPECIES, candidates, cells[8] * CONSTANT_LANES);
+
+    IntVector once01 = m0.or(m1);
+    IntVector twice01 = m0.and(m1);
+    IntVector once23 = m2.or(m3);
+    IntVector twice23 = m2.and(m3);
+    IntVector once45 = m4.or(m5);
+    IntVector twice45 = m4.and(m5);
+    IntVector once67 = m6.or(m7);
+    IntVector twice67 = m6.and(m7);
+
+    IntVector once03 = once01.or(once23);
+    IntVector twice03 = twice01.or(twice23).or(once01.and(once23));
+    IntVector once47 = once45.or(once67);
+    IntVector twice47 = twice45.or(twice67).or(once45.and(once67));
+
+    IntVector once07 = once03.or(once47);
+    IntVector twice07 = twice03.or(twice47).or(once03.and(once47));
+
+    IntVector once = once07.or(m8);
+    IntVector twice = twice07.or(once07.and(m8));
+
+    VectorMask<Integer> failing = IntVector.fromArray(CONSTANT_SPECIES, used, unit * CONSTANT_LANES)
+        .or(once)
+        .compare(VectorOperators.NE, SudokuSolver.CONSTANT_DIGITS_MASK);
+
+    IntVector state = IntVector.fromArray(CONSTANT_SPECIES, failed, 0).blend(-1, failing);
+
+    state.intoArray(failed, 0);
+
+    IntVector hidden = once.lanewise(VectorOperators.AND_NOT, twice).blend(0, state.compare(VectorOperators.NE, 0));
+
+    if (!hidden.compare(VectorOperators.NE, 0).anyTrue()) {
+      return false;
+    }
+
+    boolean isChanged = false;
+
+    for (int cell : cells) {
+
+      IntVector place = IntVector.fromArray(CONSTANT_SPECIES, candidates, cell * CONSTANT_LANES).and(hidden);
+
+      VectorMask<Integer> found = place.compare(VectorOperators.NE, 0);
+
+      if (!found.anyTrue()) {
+        continue;
+      }
+
+      VectorMask<Integer> conflict = place.and(place.sub(1)).compare(VectorOperators.NE, 0);
+
+      IntVector current = IntVector.fromArray(CONSTANT_SPECIES, failed, 0).blend(-1, conflict);
+
+      current.intoArray(failed, 0);
+
+      found = found.and(current.compare(VectorOperators.EQ, 0));
+
+      if (found.anyTrue()) {
+
+        doPlace(bits, candidates, used, cell, place.blend(0, found.not()));
+
+        isChanged = true;
+      }
+    }
+
+    return isChanged;
+  }
+
+  /**
+   * Method solves a group of at most {@link SudokuBatchSolver#CONSTANT_LANES}
+   * boards.
+   *
+   * @param boards cell values of each board or null for an invalid board.
+   * @param first index of the first board of the group.
+   * @param results results array filled in for the group.
+   */
+  private void doSolveGroup(int[][] boards, int first, SudokuResult[] results) {
+
+    long start = System.nanoTime();
+
+    int count = Math.min(CONSTANT_LANES, boards.length - first);
+
+    int[] bits = new int[SudokuBoard.CONSTANT_CELL_COUNT * CONSTANT_LANES];
+
+    int[] used = new int[SudokuSolver.CONSTANT_UNITS.length * CONSTANT_LANES];
+
+    boolean[] isFailed = new boolean[CONSTANT_LANES];
+
+    for (int lane = 0; lane < count; ++lane) {
+
+      int[] cells = boards[first + lane];
+
+      for (int cell = 0; cell < SudokuBoard.CONSTANT_CELL_COUNT && !isFailed[lane]; ++cell) {
+
+        if (cells[cell] == 0) {
+          continue;
+        }
+
+        int bit = 1 << cells[cell];
+
+        for (int unit : CONSTANT_CELL_UNITS[cell]) {
+
+          if ((used[unit * CONSTANT_LANES + lane] & bit) != 0) {
+
+            isFailed[lane] = true;
+
+            break;
+          }
+
+          used[unit * CONSTANT_LANES + lane] |= bit;
+        }
+
+        bits[cell * CONSTANT_LANES + lane] = bit;
+      }
+
+      if (isFailed[lane]) {
+        results[first + lane] = new SudokuResult(SudokuNative.CONSTANT_RESULT_SETUP_FAILED, "", 0);
+      }
+    }
+
+    int[] candidates = new int[SudokuBoard.CONSTANT_CELL_COUNT * CONSTANT_LANES];
+
+    IntVector digits = IntVector.broadcast(CONSTANT_SPECIES, SudokuSolver.CONSTANT_DIGITS_MASK);
+
+    for (int cell = 0; cell < SudokuBoard.CONSTANT_CELL_COUNT; ++cell) {
+      getCandidates(bits, used, cell, digits).intoArray(candidates, cell * CONSTANT_LANES);
+    }
+
+    int[] failed = new int[CONSTANT_LANES];
+
+    for (int lane = 0; lane < CONSTANT_LANES; ++lane) {
+      failed[lane] = isFailed[lane] ? -1 : 0;
+    }
+
+    doPropagate(bits, candidates, used, failed);
+
+    int runtime = (int) ((System.nanoTime() - start) / 1000000L);
+
+    for (int lane = 0; lane < count; ++lane) {
+
+      if (isFailed[lane]) {
+        continue;
+      }
+
+      if (failed[lane] != 0) {
+
+        results[first + lane] = new SudokuResult(SudokuNative.CONSTANT_RESULT_NO_SOLUTION, "", runtime);
+
+        continue;
+      }
+
+      int[] cells = new int[SudokuBoard.CONSTANT_CELL_COUNT];
+
+      boolean isSolved = true;
+
+      for (int cell = 0; cell < SudokuBoard.CONSTANT_CELL_COUNT; ++cell) {
+
+        int bit = bits[cell * CONSTANT_LANES + lane];
+
+        cells[cell] = bit == 0 ? 0 : Integer.numberOfTrailingZeros(bit);
+
+        isSolved &= bit != 0;
+      }
+
+      results[first + lane] = isSolved ?
+          new SudokuResult(SudokuNative.CONSTANT_RESULT_OK, SudokuBoard.getSolutionXml(cells), runtime) :
+          getSearchResult(cells);
+    }
+  }
+
+  /**
+   * Method returns the candidates of cell on every lane, 0 on lanes where the
+   * cell is filled.
+   *
+   * @param bits placed digit bit per cell and lane.
+   * @param used used digits per unit and lane.
+   * @param cell cell index.
+   * @param digits broadcast of {@link SudokuSolver#CONSTANT_DIGITS_MASK}.
+   * @return {@link IntVector} of candidate bitmasks.
+   */
+  private static IntVector getCandidates(int[] bits, int[] used, int cell, IntVector digits) {
+
+    int[] units = CONSTANT_CELL_UNITS[cell];
+
+    IntVector taken = IntVector.fromArray(CONSTANT_SPECIES, used, units[0] * CONSTANT_LANES)
+        .or(IntVector.fromArray(CONSTANT_SPECIES, used, units[1] * CONSTANT_LANES))
+        .or(IntVector.fromArray(CONSTANT_SPECIES, used, units[2] * CONSTANT_LANES));
+
+    IntVector placed = IntVector.fromArray(CONSTANT_SPECIES, bits, cell * CONSTANT_LANES);
+
+    return digits.lanewise(VectorOperators.AND_NOT, taken)
+        .blend(0, placed.compare(VectorOperators.NE, 0));
+  }
+
+  /**
+   * Method solves positions and returns their results in the form returned by
+   * Sudoku-Lib, in order.
+   *
+   * @param positions strings containing canonical sudoku positions.
+   * @return array of {@link SudokuResult} objects, one per position.
+   */
+  public SudokuResult[] getResults(String[] positions) {
+
+    int[][] boards = new int[positions.length][];
+
+    SudokuResult[] results = new SudokuResult[positions.length];
+
+    for (int i = 0; i < positions.length; ++i) {
+
+      boards[i] = SudokuBoard.getCellsFromPosition(positions[i]);
+
+      if (boards[i] == null) {
+        results[i] = new SudokuResult(SudokuNative.CONSTANT_RESULT_BAD_PARAMETER, "", 0);
+      }
+    }
+
+    int[][] valid = Arrays.stream(boards).filter(Objects::nonNull).toArray(int[][]::new);
+
+    SudokuResult[] solved = getResults(valid);
+
+    for (int i = 0, j = 0; i < positions.length; ++i) {
+
+      if (boards[i] != null) {
+        results[i] = solved[j++];
+      }
+    }
+
+    return results;
+  }
+
+  /**
+   * Method solves boards and returns their results in the form returned by
+   * Sudoku-Lib, in order.
+   *
+   * @param boards int arrays of {@value SudokuBoard#CONSTANT_CELL_COUNT}
+   *               digits from 0 to 9, 0 for an empty cell.
+   * @return array of {@link SudokuResult} objects, one per board.
+   */
+  public SudokuResult[] getResults(int[][] boards) {
+
+    SudokuResult[] results = new SudokuResult[boards.length];
+
+    for (int first = 0; first < boards.length; first += CONSTANT_LANES) {
+      doSolveGroup(boards, first, results);
+    }
+
+    return results;
+  }
+
+  /**
+   * Method searches cells left with empty cells by propagation.
+   *
+   * @param cells propagated cell values.
+   * @return {@link SudokuResult} holding result code, solution data and runtime.
+   */
+  private SudokuResult getSearchResult(int[] cells) {
+
+    long start = System.nanoTime();
+
+    long deadline = start + _timeoutMs * 1000000L;
+
+    SudokuSolver solver = new SudokuSolver(cells);
+
+    int code = solver.doSolve(() -> System.nanoTime() > deadline);
+
+    return new SudokuResult(code,
+        code == SudokuNative.CONSTANT_RESULT_OK ? SudokuBoard.getSolutionXml(solver.getCells()) : "",
+        (int) ((System.nanoTime() - start) / 1000000L));
+  }
+
+  /**
+   * maximum duration in ms of each search.
+   */
+  private final long _timeoutMs;
+
+  /**
+   * Constant for the vector species, the widest supported by the platform.
+   */
+  final public static VectorSpecies<Integer> CONSTANT_SPECIES = IntVector.SPECIES_PREFERRED;
+
+  /**
+   * Constant for the number of boards propagated together.
+   */
+  final public static int CONSTANT_LANES = CONSTANT_SPECIES.length();
+
+  /**
+   * Constant for the row, column and box unit indexes of each cell, as
+   * indexes into {@link SudokuSolver#CONSTANT_UNITS}.
+   */
+  final public static int[][] CONSTANT_CELL_UNITS = new int[SudokuBoard.CONSTANT_CELL_COUNT][];
+
+  /**
+   * Constant for the 20 cells sharing a row, column or box with each cell.
+   */
+  final public static int[][] CONSTANT_PEERS = new int[SudokuBoard.CONSTANT_CELL_COUNT][];
+
+  static {
+
+    for (int i = 0; i < SudokuBoard.CONSTANT_CELL_COUNT; ++i) {
+
+      CONSTANT_CELL_UNITS[i] = new int[] { i / 9, 9 + i % 9, 18 + SudokuSolver.CONSTANT_BOX[i] };
+
+      TreeSet<Integer> peers = new TreeSet<>();
+
+      for (int unit : CONSTANT_CELL_UNITS[i]) {
+
+        for (int cell : SudokuSolver.CONSTANT_UNITS[unit]) {
+          peers.add(cell);
+        }
+      }
+
+      peers.remove(i);
+
+      CONSTANT_PEERS[i] = peers.stream().mapToInt(Integer::intValue).toArray();
+    }
+  }
+}